@@ -352,6 +352,140 @@ public class ArrayList<T> implements List<T>, Serializable {
         }
     }
 
+    /**
+     * {@inheritDoc} <p> If the list is unsorted, the items are appended as a
+     * single range.
+     *
+     * @see ListListener#itemsInserted(List, int, int)
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public void addAll(final Collection<T> collection) {
+        Utils.checkNull(collection, "collection");
+
+        if (comparator == null) {
+            if (collection instanceof Sequence) {
+                insertAll((Sequence<T>) collection, length);
+            } else {
+                ArrayList<T> sequence = new ArrayList<>();
+                collection.forEach(item -> sequence.add(item));
+                insertAll(sequence, length);
+            }
+        } else {
+            collection.forEach(item -> add(item));
+        }
+    }
+
+    /**
+     * {@inheritDoc} <p> If the list is unsorted, the items are appended as a
+     * single range.
+     *
+     * @see ListListener#itemsInserted(List, int, int)
+     */
+    @Override
+    public void addAll(final T[] array) {
+        Utils.checkNull(array, "array");
+
+        if (comparator == null) {
+            insertAll(new ArrayList<>(array), length);
+        } else {
+            for (T item : array) {
+                add(item);
+            }
+        }
+    }
+
+    @Override
+    public void insertAll(final Sequence<T> sequence, final int index) {
+        Utils.checkNull(sequence, "sequence");
+        Utils.checkIndexBounds(index, 0, length);
+
+        // Copy the items first, in case the sequence is this list
+        int count = sequence.getLength();
+        Object[] inserted = new Object[count];
+        for (int i = 0; i < count; i++) {
+            inserted[i] = sequence.get(i);
+        }
+
+        if (comparator != null) {
+            checkOrder(inserted, index, index);
+        }
+
+        if (count > 0) {
+            ensureCapacity(length + count);
+            System.arraycopy(items, index, items, index + count, length - index);
+            System.arraycopy(inserted, 0, items, index, count);
+
+            length += count;
+            modificationCount++;
+
+            if (listListeners != null) {
+                listListeners.itemsInserted(this, index, count);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Sequence<T> updateAll(final int index, final Sequence<T> sequence) {
+        Utils.checkNull(sequence, "sequence");
+
+        int count = sequence.getLength();
+        Utils.checkIndexBounds(index, count, 0, length);
+
+        Object[] updated = new Object[count];
+        for (int i = 0; i < count; i++) {
+            updated[i] = sequence.get(i);
+        }
+
+        if (comparator != null) {
+            checkOrder(updated, index, index + count);
+        }
+
+        ArrayList<T> previousItems = new ArrayList<>((T[]) items, index, count);
+
+        if (count > 0) {
+            System.arraycopy(updated, 0, items, index, count);
+            modificationCount++;
+
+            if (listListeners != null) {
+                listListeners.itemsUpdated(this, index, previousItems);
+            }
+        }
+
+        return previousItems;
+    }
+
+    /**
+     * Ensures that a range of items is in sorted order, and that it fits
+     * between the item before <tt>start</tt> and the item at <tt>end</tt>.
+     *
+     * @param range The items to check.
+     * @param start The index of the first item of the range in the list.
+     * @param end The index of the first item that follows the range in the
+     * list.
+     * @throws IllegalArgumentException if the items are not in order.
+     */
+    @SuppressWarnings("unchecked")
+    private void checkOrder(final Object[] range, final int start, final int end) {
+        T previousItem = (start > 0 ? (T) items[start - 1] : null);
+
+        for (int i = 0; i < range.length; i++) {
+            T item = (T) range[i];
+            if (previousItem != null && comparator.compare(item, previousItem) < 0) {
+                throw new IllegalArgumentException(
+                    "Item " + i + " of the range at index " + start + " is not in correct sorted order.");
+            }
+
+            previousItem = item;
+        }
+
+        if (previousItem != null && end < length && comparator.compare(previousItem, (T) items[end]) > 0) {
+            throw new IllegalArgumentException(
+                "Range at index " + start + " is not in correct sorted order.");
+        }
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public T update(final int index, final T item) {
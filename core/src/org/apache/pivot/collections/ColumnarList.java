@@ -0,0 +1,1468 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.DoublePredicate;
+
+import org.apache.pivot.annotations.UnsupportedOperation;
+import org.apache.pivot.util.ImmutableIterator;
+import org.apache.pivot.util.ListenerList;
+import org.apache.pivot.util.Utils;
+
+/**
+ * Implementation of the {@link List} interface that stores its rows by column:
+ * one array per column, with <tt>int</tt>, <tt>long</tt> and <tt>double</tt>
+ * columns held in primitive arrays and string, boolean and enum columns
+ * dictionary encoded (a <tt>char</tt> code per row for up to
+ * {@link #MAX_DICTIONARY_SIZE} distinct values). <p> Rows are returned as
+ * lightweight {@link Map} views that are created on demand and read and write
+ * the column arrays directly. A view is bound to a row index, so it refers to
+ * a different row once rows are inserted or removed ahead of it or the list
+ * is sorted. <p> Sorting by a column with {@link #sort(String, boolean)} and
+ * filtering with {@link #filter(String, DoublePredicate)} scan the column
+ * arrays without creating row views.
+ */
+public class ColumnarList implements List<Map<String, Object>> {
+    /**
+     * Storage for the values of a single column.
+     */
+    private abstract static class Column {
+        public final String key;
+        public final Class<?> type;
+
+        public Column(final String key, final Class<?> type) {
+            this.key = key;
+            this.type = type;
+        }
+
+        public abstract Object get(int index);
+
+        public abstract void set(int index, Object value);
+
+        public abstract void ensureCapacity(int capacity);
+
+        public abstract void move(int from, int to, int count);
+
+        public abstract void clear(int from, int to);
+
+        public abstract void permute(int[] order, int length);
+
+        public abstract Column select(int[] indexes, int count);
+
+        /**
+         * Compares the values at two indexes, ordering nulls first.
+         */
+        public abstract int compare(int index1, int index2);
+
+        /**
+         * Called before a sequence of comparisons.
+         */
+        public void beginCompare() {
+            // No-op
+        }
+
+        public double getDouble(final int index) {
+            throw new UnsupportedOperationException(key + " is not a numeric column.");
+        }
+    }
+
+    /**
+     * Base class for columns of primitive values, with a bit set marking nulls.
+     */
+    private abstract static class PrimitiveColumn extends Column {
+        protected BitSet nulls = null;
+
+        public PrimitiveColumn(final String key, final Class<?> type) {
+            super(key, type);
+        }
+
+        public boolean isNull(final int index) {
+            return (nulls != null && nulls.get(index));
+        }
+
+        protected void setNull(final int index, final boolean isNull) {
+            if (isNull) {
+                if (nulls == null) {
+                    nulls = new BitSet();
+                }
+
+                nulls.set(index);
+            } else if (nulls != null) {
+                nulls.clear(index);
+            }
+        }
+
+        protected void moveNulls(final int from, final int to, final int count) {
+            if (nulls != null && !nulls.isEmpty()) {
+                if (from < to) {
+                    for (int i = count - 1; i >= 0; i--) {
+                        nulls.set(to + i, nulls.get(from + i));
+                    }
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        nulls.set(to + i, nulls.get(from + i));
+                    }
+                }
+            }
+        }
+
+        protected void permuteNulls(final int[] order, final int length) {
+            if (nulls != null && !nulls.isEmpty()) {
+                nulls = selectNulls(order, length);
+            }
+        }
+
+        protected BitSet selectNulls(final int[] indexes, final int count) {
+            BitSet selected = null;
+
+            if (nulls != null && !nulls.isEmpty()) {
+                selected = new BitSet(count);
+                for (int i = 0; i < count; i++) {
+                    if (nulls.get(indexes[i])) {
+                        selected.set(i);
+                    }
+                }
+            }
+
+            return selected;
+        }
+
+        @Override
+        public void clear(final int from, final int to) {
+            if (nulls != null) {
+                nulls.clear(from, to);
+            }
+        }
+
+        protected int compareNulls(final int index1, final int index2) {
+            boolean null1 = isNull(index1);
+            boolean null2 = isNull(index2);
+
+            return (null1 == null2) ? 0 : (null1 ? -1 : 1);
+        }
+    }
+
+    private static final class IntColumn extends PrimitiveColumn {
+        private int[] values = new int[DEFAULT_CAPACITY];
+
+        public IntColumn(final String key) {
+            super(key, Integer.class);
+        }
+
+        public int getInt(final int index) {
+            return values[index];
+        }
+
+        @Override
+        public double getDouble(final int index) {
+            return values[index];
+        }
+
+        @Override
+        public Object get(final int index) {
+            return isNull(index) ? null : Integer.valueOf(values[index]);
+        }
+
+        @Override
+        public void set(final int index, final Object value) {
+            setNull(index, value == null);
+            if (value == null) {
+                values[index] = 0;
+            } else if (value instanceof Number) {
+                values[index] = ((Number) value).intValue();
+            } else {
+                values[index] = Integer.parseInt(value.toString());
+            }
+        }
+
+        @Override
+        public void ensureCapacity(final int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 3 / 2, capacity));
+            }
+        }
+
+        @Override
+        public void move(final int from, final int to, final int count) {
+            System.arraycopy(values, from, values, to, count);
+            moveNulls(from, to, count);
+        }
+
+        @Override
+        public void permute(final int[] order, final int length) {
+            int[] permuted = new int[values.length];
+            for (int i = 0; i < length; i++) {
+                permuted[i] = values[order[i]];
+            }
+
+            values = permuted;
+            permuteNulls(order, length);
+        }
+
+        @Override
+        public Column select(final int[] indexes, final int count) {
+            IntColumn column = new IntColumn(key);
+            column.values = new int[Math.max(count, DEFAULT_CAPACITY)];
+            for (int i = 0; i < count; i++) {
+                column.values[i] = values[indexes[i]];
+            }
+
+            column.nulls = selectNulls(indexes, count);
+
+            return column;
+        }
+
+        @Override
+        public int compare(final int index1, final int index2) {
+            int result = compareNulls(index1, index2);
+            return (result == 0) ? Integer.compare(values[index1], values[index2]) : result;
+        }
+    }
+
+    private static final class LongColumn extends PrimitiveColumn {
+        private long[] values = new long[DEFAULT_CAPACITY];
+
+        public LongColumn(final String key) {
+            super(key, Long.class);
+        }
+
+        public long getLong(final int index) {
+            return values[index];
+        }
+
+        @Override
+        public double getDouble(final int index) {
+            return values[index];
+        }
+
+        @Override
+        public Object get(final int index) {
+            return isNull(index) ? null : Long.valueOf(values[index]);
+        }
+
+        @Override
+        public void set(final int index, final Object value) {
+            setNull(index, value == null);
+            if (value == null) {
+                values[index] = 0;
+            } else if (value instanceof Number) {
+                values[index] = ((Number) value).longValue();
+            } else {
+                values[index] = Long.parseLong(value.toString());
+            }
+        }
+
+        @Override
+        public void ensureCapacity(final int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 3 / 2, capacity));
+            }
+        }
+
+        @Override
+        public void move(final int from, final int to, final int count) {
+            System.arraycopy(values, from, values, to, count);
+            moveNulls(from, to, count);
+        }
+
+        @Override
+        public void permute(final int[] order, final int length) {
+            long[] permuted = new long[values.length];
+            for (int i = 0; i < length; i++) {
+                permuted[i] = values[order[i]];
+            }
+
+            values = permuted;
+            permuteNulls(order, length);
+        }
+
+        @Override
+        public Column select(final int[] indexes, final int count) {
+            LongColumn column = new LongColumn(key);
+            column.values = new long[Math.max(count, DEFAULT_CAPACITY)];
+            for (int i = 0; i < count; i++) {
+                column.values[i] = values[indexes[i]];
+            }
+
+            column.nulls = selectNulls(indexes, count);
+
+            return column;
+        }
+
+        @Override
+        public int compare(final int index1, final int index2) {
+            int result = compareNulls(index1, index2);
+            return (result == 0) ? Long.compare(values[index1], values[index2]) : result;
+        }
+    }
+
+    private static final class DoubleColumn extends PrimitiveColumn {
+        private double[] values = new double[DEFAULT_CAPACITY];
+
+        public DoubleColumn(final String key) {
+            super(key, Double.class);
+        }
+
+        @Override
+        public double getDouble(final int index) {
+            return values[index];
+        }
+
+        @Override
+        public Object get(final int index) {
+            return isNull(index) ? null : Double.valueOf(values[index]);
+        }
+
+        @Override
+        public void set(final int index, final Object value) {
+            setNull(index, value == null);
+            if (value == null) {
+                values[index] = 0;
+            } else if (value instanceof Number) {
+                values[index] = ((Number) value).doubleValue();
+            } else {
+                values[index] = Double.parseDouble(value.toString());
+            }
+        }
+
+        @Override
+        public void ensureCapacity(final int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 3 / 2, capacity));
+            }
+        }
+
+        @Override
+        public void move(final int from, final int to, final int count) {
+            System.arraycopy(values, from, values, to, count);
+            moveNulls(from, to, count);
+        }
+
+        @Override
+        public void permute(final int[] order, final int length) {
+            double[] permuted = new double[values.length];
+            for (int i = 0; i < length; i++) {
+                permuted[i] = values[order[i]];
+            }
+
+            values = permuted;
+            permuteNulls(order, length);
+        }
+
+        @Override
+        public Column select(final int[] indexes, final int count) {
+            DoubleColumn column = new DoubleColumn(key);
+            column.values = new double[Math.max(count, DEFAULT_CAPACITY)];
+            for (int i = 0; i < count; i++) {
+                column.values[i] = values[indexes[i]];
+            }
+
+            column.nulls = selectNulls(indexes, count);
+
+            return column;
+        }
+
+        @Override
+        public int compare(final int index1, final int index2) {
+            int result = compareNulls(index1, index2);
+            return (result == 0) ? Double.compare(values[index1], values[index2]) : result;
+        }
+    }
+
+    /**
+     * Column of arbitrary values; also used by an encoded column whose
+     * dictionary has overflowed.
+     */
+    private static final class ObjectColumn extends Column {
+        private Object[] values = new Object[DEFAULT_CAPACITY];
+
+        public ObjectColumn(final String key, final Class<?> type) {
+            super(key, type);
+        }
+
+        @Override
+        public Object get(final int index) {
+            return values[index];
+        }
+
+        @Override
+        public void set(final int index, final Object value) {
+            values[index] = value;
+        }
+
+        @Override
+        public void ensureCapacity(final int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 3 / 2, capacity));
+            }
+        }
+
+        @Override
+        public void move(final int from, final int to, final int count) {
+            System.arraycopy(values, from, values, to, count);
+        }
+
+        @Override
+        public void clear(final int from, final int to) {
+            Arrays.fill(values, from, to, null);
+        }
+
+        @Override
+        public void permute(final int[] order, final int length) {
+            Object[] permuted = new Object[values.length];
+            for (int i = 0; i < length; i++) {
+                permuted[i] = values[order[i]];
+            }
+
+            values = permuted;
+        }
+
+        @Override
+        public Column select(final int[] indexes, final int count) {
+            ObjectColumn column = new ObjectColumn(key, type);
+            column.values = new Object[Math.max(count, DEFAULT_CAPACITY)];
+            for (int i = 0; i < count; i++) {
+                column.values[i] = values[indexes[i]];
+            }
+
+            return column;
+        }
+
+        @Override
+        public int compare(final int index1, final int index2) {
+            return compareValues(values[index1], values[index2]);
+        }
+    }
+
+    /**
+     * Dictionary encoded column: each row holds a code into a table of the
+     * distinct values, with code 0 standing for <tt>null</tt>.
+     */
+    private static final class EncodedColumn extends Column {
+        private char[] codes = new char[DEFAULT_CAPACITY];
+        private ArrayList<Object> dictionary = new ArrayList<>();
+        private java.util.HashMap<Object, Integer> dictionaryIndex = new java.util.HashMap<>();
+
+        private ObjectColumn overflow = null;
+        private int[] ranks = null;
+
+        public EncodedColumn(final String key, final Class<?> type) {
+            super(key, type);
+
+            dictionary.add(null);
+        }
+
+        public int getDictionarySize() {
+            return (overflow == null) ? dictionary.getLength() - 1 : -1;
+        }
+
+        @Override
+        public Object get(final int index) {
+            return (overflow == null) ? dictionary.get(codes[index]) : overflow.get(index);
+        }
+
+        @Override
+        public void set(final int index, final Object value) {
+            if (overflow != null) {
+                overflow.set(index, value);
+                return;
+            }
+
+            int code = 0;
+            if (value != null) {
+                Integer existingCode = dictionaryIndex.get(value);
+                if (existingCode == null) {
+                    if (dictionary.getLength() == MAX_DICTIONARY_SIZE + 1) {
+                        decode();
+                        overflow.set(index, value);
+                        return;
+                    }
+
+                    code = dictionary.add(value);
+                    dictionaryIndex.put(value, code);
+                    ranks = null;
+                } else {
+                    code = existingCode;
+                }
+            }
+
+            codes[index] = (char) code;
+        }
+
+        /**
+         * Switches to unencoded storage once there are too many distinct
+         * values for the codes.
+         */
+        private void decode() {
+            overflow = new ObjectColumn(key, type);
+            overflow.ensureCapacity(codes.length);
+            for (int i = 0; i < codes.length; i++) {
+                overflow.set(i, dictionary.get(codes[i]));
+            }
+
+            codes = null;
+            dictionary = null;
+            dictionaryIndex = null;
+            ranks = null;
+        }
+
+        @Override
+        public void ensureCapacity(final int capacity) {
+            if (overflow == null) {
+                if (capacity > codes.length) {
+                    codes = Arrays.copyOf(codes, Math.max(codes.length * 3 / 2, capacity));
+                }
+            } else {
+                overflow.ensureCapacity(capacity);
+            }
+        }
+
+        @Override
+        public void move(final int from, final int to, final int count) {
+            if (overflow == null) {
+                System.arraycopy(codes, from, codes, to, count);
+            } else {
+                overflow.move(from, to, count);
+            }
+        }
+
+        @Override
+        public void clear(final int from, final int to) {
+            if (overflow == null) {
+                Arrays.fill(codes, from, to, (char) 0);
+            } else {
+                overflow.clear(from, to);
+            }
+        }
+
+        @Override
+        public void permute(final int[] order, final int length) {
+            if (overflow == null) {
+                char[] permuted = new char[codes.length];
+                for (int i = 0; i < length; i++) {
+                    permuted[i] = codes[order[i]];
+                }
+
+                codes = permuted;
+            } else {
+                overflow.permute(order, length);
+            }
+        }
+
+        @Override
+        public Column select(final int[] indexes, final int count) {
+            if (overflow != null) {
+                return overflow.select(indexes, count);
+            }
+
+            EncodedColumn column = new EncodedColumn(key, type);
+            column.dictionary = new ArrayList<>(dictionary);
+            column.dictionaryIndex = new java.util.HashMap<>(dictionaryIndex);
+            column.codes = new char[Math.max(count, DEFAULT_CAPACITY)];
+            for (int i = 0; i < count; i++) {
+                column.codes[i] = codes[indexes[i]];
+            }
+
+            return column;
+        }
+
+        @Override
+        public void beginCompare() {
+            // Rank the dictionary once so that rows compare by code
+            if (overflow == null && ranks == null) {
+                int n = dictionary.getLength();
+                Integer[] sortedCodes = new Integer[n];
+                for (int i = 0; i < n; i++) {
+                    sortedCodes[i] = i;
+                }
+
+                Arrays.sort(sortedCodes, (code1, code2) ->
+                    compareValues(dictionary.get(code1), dictionary.get(code2)));
+
+                ranks = new int[n];
+                for (int i = 0; i < n; i++) {
+                    ranks[sortedCodes[i]] = i;
+                }
+            }
+        }
+
+        @Override
+        public int compare(final int index1, final int index2) {
+            if (overflow != null) {
+                return overflow.compare(index1, index2);
+            }
+
+            if (ranks != null) {
+                return Integer.compare(ranks[codes[index1]], ranks[codes[index2]]);
+            }
+
+            return compareValues(dictionary.get(codes[index1]), dictionary.get(codes[index2]));
+        }
+    }
+
+    /**
+     * Row view onto the columns at a given index.
+     */
+    private final class Row implements Map<String, Object> {
+        private int index;
+        private MapListener.Listeners<String, Object> mapListeners = null;
+
+        public Row(final int index) {
+            this.index = index;
+        }
+
+        private ColumnarList getList() {
+            return ColumnarList.this;
+        }
+
+        private Column getColumn(final String key) {
+            Utils.checkNull(key, "key");
+            Utils.checkIndexBounds(index, 0, length - 1);
+
+            return columnMap.get(key);
+        }
+
+        @Override
+        public Object get(final String key) {
+            Column column = getColumn(key);
+            return (column == null) ? null : column.get(index);
+        }
+
+        @Override
+        public Object put(final String key, final Object value) {
+            Column column = getColumn(key);
+            if (column == null) {
+                throw new IllegalArgumentException("\"" + key + "\" is not a column of this list.");
+            }
+
+            // The row is a view, so listeners are passed a copy of its previous values
+            HashMap<String, Object> previousItem = (listListeners == null) ? null : toHashMap(index);
+
+            Object previousValue = column.get(index);
+            column.set(index, value);
+
+            if (mapListeners != null) {
+                mapListeners.valueUpdated(this, key, previousValue);
+            }
+
+            if (listListeners != null) {
+                listListeners.itemUpdated(ColumnarList.this, index, previousItem);
+            }
+
+            return previousValue;
+        }
+
+        @Override
+        public Object remove(final String key) {
+            Column column = getColumn(key);
+            return (column == null) ? null : put(key, null);
+        }
+
+        @Override
+        public boolean containsKey(final String key) {
+            return (columnMap.get(key) != null);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return columns.isEmpty();
+        }
+
+        @Override
+        public int getCount() {
+            return columns.getLength();
+        }
+
+        @Override
+        @UnsupportedOperation
+        public void clear() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Comparator<String> getComparator() {
+            return null;
+        }
+
+        @Override
+        @UnsupportedOperation
+        public void setComparator(final Comparator<String> comparator) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new ImmutableIterator<>(keys.iterator());
+        }
+
+        @Override
+        public ListenerList<MapListener<String, Object>> getMapListeners() {
+            if (mapListeners == null) {
+                mapListeners = new MapListener.Listeners<>();
+            }
+
+            return mapListeners;
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            return (object instanceof Row
+                && ((Row) object).getList() == ColumnarList.this
+                && ((Row) object).index == index);
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+
+        @Override
+        public String toString() {
+            return toHashMap(index).toString();
+        }
+    }
+
+    /**
+     * Comparator that orders rows by the values of one column.
+     */
+    private final class ColumnComparator implements Comparator<Map<String, Object>> {
+        private final String key;
+        private final boolean ascending;
+
+        public ColumnComparator(final String key, final boolean ascending) {
+            this.key = key;
+            this.ascending = ascending;
+        }
+
+        private ColumnarList getList() {
+            return ColumnarList.this;
+        }
+
+        @Override
+        public int compare(final Map<String, Object> row1, final Map<String, Object> row2) {
+            int result = compareValues(row1.get(key), row2.get(key));
+            return ascending ? result : -result;
+        }
+    }
+
+    private class ItemIterator implements Iterator<Map<String, Object>> {
+        private int i = 0;
+
+        @Override
+        public boolean hasNext() {
+            return (i < length);
+        }
+
+        @Override
+        public Map<String, Object> next() {
+            if (i >= length) {
+                throw new NoSuchElementException();
+            }
+
+            return new Row(i++);
+        }
+
+        @Override
+        @UnsupportedOperation
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private ArrayList<String> keys = new ArrayList<>();
+    private ArrayList<Column> columns = new ArrayList<>();
+    private HashMap<String, Column> columnMap = new HashMap<>();
+
+    private int length = 0;
+    private int capacity;
+
+    private Comparator<Map<String, Object>> comparator = null;
+
+    private ListListenerList<Map<String, Object>> listListeners = null;
+
+    public static final int DEFAULT_CAPACITY = 10;
+
+    /**
+     * The largest number of distinct values kept in a dictionary encoded
+     * column; once a column has more, its values are stored unencoded.
+     */
+    public static final int MAX_DICTIONARY_SIZE = 65535;
+
+    public ColumnarList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ColumnarList(final int capacity) {
+        Utils.checkNonNegative(capacity, "capacity");
+
+        this.capacity = Math.max(capacity, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Adds a column to the list. Existing rows have a <tt>null</tt> value in
+     * the new column. <p> <tt>int</tt>, <tt>long</tt> and <tt>double</tt>
+     * columns (or their wrapper types) are stored in primitive arrays;
+     * {@link String}, {@link Boolean} and enum columns are dictionary encoded;
+     * any other type is stored as an array of objects.
+     *
+     * @param key The column key.
+     * @param type The type of the column values.
+     * @throws IllegalArgumentException if either argument is {@code null} or
+     * the list already has a column with this key.
+     */
+    public void addColumn(final String key, final Class<?> type) {
+        Utils.checkNull(key, "key");
+        Utils.checkNull(type, "type");
+
+        if (columnMap.containsKey(key)) {
+            throw new IllegalArgumentException("Duplicate column \"" + key + "\".");
+        }
+
+        Column column;
+        if (type == Integer.class || type == Integer.TYPE) {
+            column = new IntColumn(key);
+        } else if (type == Long.class || type == Long.TYPE) {
+            column = new LongColumn(key);
+        } else if (type == Double.class || type == Double.TYPE) {
+            column = new DoubleColumn(key);
+        } else if (type == String.class || type == Boolean.class || type == Boolean.TYPE
+            || type.isEnum()) {
+            column = new EncodedColumn(key, (type == Boolean.TYPE) ? Boolean.class : type);
+        } else {
+            column = new ObjectColumn(key, type);
+        }
+
+        column.ensureCapacity(capacity);
+
+        // Existing rows have no value in the new column
+        if (column instanceof PrimitiveColumn && length > 0) {
+            PrimitiveColumn primitiveColumn = (PrimitiveColumn) column;
+            primitiveColumn.nulls = new BitSet();
+            primitiveColumn.nulls.set(0, length);
+        }
+
+        keys.add(key);
+        columns.add(column);
+        columnMap.put(key, column);
+    }
+
+    /**
+     * @return The keys of the columns, in the order they were added.
+     */
+    public Sequence<String> getColumnKeys() {
+        return keys;
+    }
+
+    /**
+     * Returns the type of the values in a column.
+     *
+     * @param key The column key.
+     * @return The (wrapper) type of the column values, or <tt>null</tt> if
+     * there is no such column.
+     */
+    public Class<?> getColumnType(final String key) {
+        Utils.checkNull(key, "key");
+
+        Column column = columnMap.get(key);
+        return (column == null) ? null : column.type;
+    }
+
+    /**
+     * Returns the number of distinct values in a dictionary encoded column.
+     *
+     * @param key The column key.
+     * @return The dictionary size, or <tt>-1</tt> if the column is not
+     * dictionary encoded.
+     */
+    public int getDictionarySize(final String key) {
+        Column column = getColumn(key);
+        return (column instanceof EncodedColumn) ? ((EncodedColumn) column).getDictionarySize() : -1;
+    }
+
+    private Column getColumn(final String key) {
+        Utils.checkNull(key, "key");
+
+        Column column = columnMap.get(key);
+        if (column == null) {
+            throw new IllegalArgumentException("\"" + key + "\" is not a column of this list.");
+        }
+
+        return column;
+    }
+
+    /**
+     * Appends a row to the end of the list.
+     *
+     * @param values The row values, in column order.
+     * @return The index of the new row.
+     * @throws IllegalArgumentException if the number of values does not match
+     * the number of columns.
+     * @throws IllegalStateException if the list is sorted by a comparator.
+     */
+    public int addRow(final Object... values) {
+        Utils.checkNull(values, "values");
+
+        if (values.length != columns.getLength()) {
+            throw new IllegalArgumentException("Expected " + columns.getLength() + " values but got "
+                + values.length + ".");
+        }
+
+        if (comparator != null) {
+            throw new IllegalStateException("Rows cannot be appended to a sorted list.");
+        }
+
+        int index = length;
+        ensureCapacity(length + 1);
+
+        for (int i = 0; i < values.length; i++) {
+            columns.get(i).set(index, values[i]);
+        }
+
+        length++;
+
+        if (listListeners != null) {
+            listListeners.itemInserted(this, index);
+        }
+
+        return index;
+    }
+
+    /**
+     * Returns the value of an <tt>int</tt> column without boxing it.
+     *
+     * @param index The row index.
+     * @param key The column key.
+     * @return The value, or <tt>0</tt> for a <tt>null</tt> value.
+     * @throws IllegalArgumentException if the column is not an <tt>int</tt> column.
+     */
+    public int getInt(final int index, final String key) {
+        Utils.checkIndexBounds(index, 0, length - 1);
+
+        Column column = getColumn(key);
+        if (!(column instanceof IntColumn)) {
+            throw new IllegalArgumentException(key + " is not an int column.");
+        }
+
+        return ((IntColumn) column).getInt(index);
+    }
+
+    /**
+     * Returns the value of a <tt>long</tt> column without boxing it.
+     *
+     * @param index The row index.
+     * @param key The column key.
+     * @return The value, or <tt>0</tt> for a <tt>null</tt> value.
+     * @throws IllegalArgumentException if the column is not a <tt>long</tt> column.
+     */
+    public long getLong(final int index, final String key) {
+        Utils.checkIndexBounds(index, 0, length - 1);
+
+        Column column = getColumn(key);
+        if (!(column instanceof LongColumn)) {
+            throw new IllegalArgumentException(key + " is not a long column.");
+        }
+
+        return ((LongColumn) column).getLong(index);
+    }
+
+    /**
+     * Returns the value of a numeric column as a <tt>double</tt>.
+     *
+     * @param index The row index.
+     * @param key The column key.
+     * @return The value, or <tt>0</tt> for a <tt>null</tt> value.
+     * @throws IllegalArgumentException if the column is not an <tt>int</tt>,
+     * <tt>long</tt> or <tt>double</tt> column.
+     */
+    public double getDouble(final int index, final String key) {
+        Utils.checkIndexBounds(index, 0, length - 1);
+
+        Column column = getColumn(key);
+        if (!(column instanceof PrimitiveColumn)) {
+            throw new IllegalArgumentException(key + " is not a numeric column.");
+        }
+
+        return column.getDouble(index);
+    }
+
+    /**
+     * Tests whether a row has a <tt>null</tt> value in a column.
+     *
+     * @param index The row index.
+     * @param key The column key.
+     * @return Whether or not the value is <tt>null</tt>.
+     */
+    public boolean isNull(final int index, final String key) {
+        Utils.checkIndexBounds(index, 0, length - 1);
+
+        Column column = getColumn(key);
+        return (column instanceof PrimitiveColumn) ? ((PrimitiveColumn) column).isNull(index)
+            : (column.get(index) == null);
+    }
+
+    /**
+     * Sorts the list by the values of one column, comparing the column arrays
+     * directly. <tt>null</tt> values sort first in ascending order. The list
+     * keeps the resulting comparator, so rows added later are inserted in
+     * order.
+     *
+     * @param key The column key.
+     * @param ascending Whether to sort in ascending or descending order.
+     */
+    public void sort(final String key, final boolean ascending) {
+        getColumn(key);
+
+        setComparator(new ColumnComparator(key, ascending));
+    }
+
+    /**
+     * Returns the rows whose value in a numeric column satisfies a predicate,
+     * scanning the column array directly. Rows with a <tt>null</tt> value are
+     * excluded.
+     *
+     * @param key The key of an <tt>int</tt>, <tt>long</tt> or <tt>double</tt>
+     * column.
+     * @param predicate The predicate to apply to the column values.
+     * @return A new list with the same columns, containing the matching rows
+     * in order.
+     * @throws IllegalArgumentException if the column is not numeric.
+     */
+    public ColumnarList filter(final String key, final DoublePredicate predicate) {
+        Utils.checkNull(predicate, "predicate");
+
+        Column column = getColumn(key);
+        if (!(column instanceof PrimitiveColumn)) {
+            throw new IllegalArgumentException(key + " is not a numeric column.");
+        }
+
+        PrimitiveColumn primitiveColumn = (PrimitiveColumn) column;
+
+        int[] indexes = new int[length];
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            if (!primitiveColumn.isNull(i) && predicate.test(primitiveColumn.getDouble(i))) {
+                indexes[count++] = i;
+            }
+        }
+
+        ColumnarList filteredList = new ColumnarList(count);
+        for (int i = 0, n = columns.getLength(); i < n; i++) {
+            Column filteredColumn = columns.get(i).select(indexes, count);
+            filteredList.keys.add(filteredColumn.key);
+            filteredList.columns.add(filteredColumn);
+            filteredList.columnMap.put(filteredColumn.key, filteredColumn);
+        }
+
+        filteredList.length = count;
+
+        return filteredList;
+    }
+
+    @Override
+    public int add(final Map<String, Object> item) {
+        int index;
+
+        if (comparator == null) {
+            index = length;
+        } else {
+            // Perform a binary search to find the insertion point
+            index = binarySearch(item);
+            if (index < 0) {
+                index = -(index + 1);
+            }
+        }
+
+        insert(item, index, false);
+
+        return index;
+    }
+
+    @Override
+    public void insert(final Map<String, Object> item, final int index) {
+        insert(item, index, true);
+    }
+
+    private void insert(final Map<String, Object> item, final int index, final boolean validate) {
+        Utils.checkNull(item, "item");
+        Utils.checkIndexBounds(index, 0, length);
+
+        if (comparator != null && validate) {
+            int i = binarySearch(item);
+            if (i < 0) {
+                i = -(i + 1);
+            }
+
+            if (index != i) {
+                throw new IllegalArgumentException(
+                    "Given insertion point " + index + " does not match the sorted insertion location " + i + ".");
+            }
+        }
+
+        // Copy the values first, in case the item is a view of this list
+        Object[] values = getValues(item);
+
+        ensureCapacity(length + 1);
+
+        for (int i = 0, n = columns.getLength(); i < n; i++) {
+            Column column = columns.get(i);
+            column.move(index, index + 1, length - index);
+            column.set(index, values[i]);
+        }
+
+        length++;
+
+        if (listListeners != null) {
+            listListeners.itemInserted(this, index);
+        }
+    }
+
+    @Override
+    public Map<String, Object> update(final int index, final Map<String, Object> item) {
+        Utils.checkNull(item, "item");
+        Utils.checkIndexBounds(index, 0, length - 1);
+
+        HashMap<String, Object> previousItem = toHashMap(index);
+        Object[] values = getValues(item);
+
+        for (int i = 0, n = columns.getLength(); i < n; i++) {
+            columns.get(i).set(index, values[i]);
+        }
+
+        if (comparator != null) {
+            // Ensure that the updated row is still in sorted order
+            if ((index > 0 && comparator.compare(get(index), get(index - 1)) < 0)
+                || (index < length - 1 && comparator.compare(get(index), get(index + 1)) > 0)) {
+                for (int i = 0, n = columns.getLength(); i < n; i++) {
+                    Column column = columns.get(i);
+                    column.set(index, previousItem.get(column.key));
+                }
+
+                throw new IllegalArgumentException(
+                    "Updated item at index " + index + " is not in correct sorted order.");
+            }
+        }
+
+        if (listListeners != null) {
+            listListeners.itemUpdated(this, index, previousItem);
+        }
+
+        return previousItem;
+    }
+
+    @Override
+    public int remove(final Map<String, Object> item) {
+        int index = indexOf(item);
+
+        if (index >= 0) {
+            remove(index, 1);
+        }
+
+        return index;
+    }
+
+    @Override
+    public Sequence<Map<String, Object>> remove(final int index, final int count) {
+        Utils.checkIndexBounds(index, count, 0, length);
+
+        ArrayList<Map<String, Object>> removed = new ArrayList<>(count);
+        for (int i = index, n = index + count; i < n; i++) {
+            removed.add(toHashMap(i));
+        }
+
+        if (count > 0) {
+            int end = index + count;
+
+            for (int i = 0, n = columns.getLength(); i < n; i++) {
+                Column column = columns.get(i);
+                column.move(end, index, length - end);
+                column.clear(length - count, length);
+            }
+
+            length -= count;
+
+            if (listListeners != null) {
+                listListeners.itemsRemoved(this, index, removed);
+            }
+        }
+
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        if (length > 0) {
+            for (int i = 0, n = columns.getLength(); i < n; i++) {
+                columns.get(i).clear(0, length);
+            }
+
+            length = 0;
+
+            if (listListeners != null) {
+                listListeners.listCleared(this);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> get(final int index) {
+        Utils.checkIndexBounds(index, 0, length - 1);
+
+        return new Row(index);
+    }
+
+    @Override
+    public int indexOf(final Map<String, Object> item) {
+        if (item instanceof Row && ((Row) item).getList() == this) {
+            int index = ((Row) item).index;
+            return (index < length) ? index : -1;
+        }
+
+        if (item != null) {
+            Object[] values = getValues(item);
+
+            for (int i = 0; i < length; i++) {
+                boolean equals = true;
+
+                for (int j = 0, n = columns.getLength(); j < n && equals; j++) {
+                    Object value = columns.get(j).get(i);
+                    equals = (value == null) ? (values[j] == null) : value.equals(values[j]);
+                }
+
+                if (equals) {
+                    return i;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (length == 0);
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Ensure there is sufficient capacity in every column for the given number
+     * of rows.
+     *
+     * @param capacityArgument The new capacity to allow for.
+     */
+    public void ensureCapacity(final int capacityArgument) {
+        if (capacityArgument > capacity) {
+            capacity = Math.max(capacity * 3 / 2, capacityArgument);
+
+            for (int i = 0, n = columns.getLength(); i < n; i++) {
+                columns.get(i).ensureCapacity(capacity);
+            }
+        }
+    }
+
+    @Override
+    public Comparator<Map<String, Object>> getComparator() {
+        return comparator;
+    }
+
+    @Override
+    public void setComparator(final Comparator<Map<String, Object>> comparator) {
+        Comparator<Map<String, Object>> previousComparator = this.comparator;
+
+        if (comparator != null) {
+            int[] order = new int[length];
+            for (int i = 0; i < length; i++) {
+                order[i] = i;
+            }
+
+            if (comparator instanceof ColumnComparator
+                && ((ColumnComparator) comparator).getList() == this) {
+                // Compare the column array directly
+                ColumnComparator columnComparator = (ColumnComparator) comparator;
+                Column column = columnMap.get(columnComparator.key);
+                boolean ascending = columnComparator.ascending;
+
+                column.beginCompare();
+                sort(order, (index1, index2) -> ascending ? column.compare(index1, index2)
+                    : column.compare(index2, index1));
+            } else {
+                Row row1 = new Row(0);
+                Row row2 = new Row(0);
+
+                sort(order, (index1, index2) -> {
+                    row1.index = index1;
+                    row2.index = index2;
+                    return comparator.compare(row1, row2);
+                });
+            }
+
+            for (int i = 0, n = columns.getLength(); i < n; i++) {
+                columns.get(i).permute(order, length);
+            }
+        }
+
+        this.comparator = comparator;
+
+        if (listListeners != null) {
+            listListeners.comparatorChanged(this, previousComparator);
+        }
+    }
+
+    @Override
+    public Iterator<Map<String, Object>> iterator() {
+        return new ItemIterator();
+    }
+
+    @Override
+    public ListenerList<ListListener<Map<String, Object>>> getListListeners() {
+        if (listListeners == null) {
+            listListeners = new ListListenerList<>();
+        }
+
+        return listListeners;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(getClass().getSimpleName());
+        sb.append(" ");
+        sb.append(keys);
+        sb.append(" [");
+        sb.append(length);
+        sb.append(" rows]");
+
+        return sb.toString();
+    }
+
+    private Object[] getValues(final Map<String, Object> item) {
+        Object[] values = new Object[columns.getLength()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = item.get(columns.get(i).key);
+        }
+
+        return values;
+    }
+
+    private HashMap<String, Object> toHashMap(final int index) {
+        HashMap<String, Object> map = new HashMap<>();
+        for (int i = 0, n = columns.getLength(); i < n; i++) {
+            Column column = columns.get(i);
+            map.put(column.key, column.get(index));
+        }
+
+        return map;
+    }
+
+    private int binarySearch(final Map<String, Object> item) {
+        int low = 0;
+        int high = length - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int result = comparator.compare(new Row(mid), item);
+
+            if (result < 0) {
+                low = mid + 1;
+            } else if (result > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -(low + 1);
+    }
+
+    /**
+     * Compares two values, ordering nulls first and comparable values by their
+     * natural order.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compareValues(final Object value1, final Object value2) {
+        int result;
+
+        if (value1 == null) {
+            result = (value2 == null) ? 0 : -1;
+        } else if (value2 == null) {
+            result = 1;
+        } else if (value1 instanceof Comparable) {
+            result = ((Comparable) value1).compareTo(value2);
+        } else {
+            result = value1.toString().compareTo(value2.toString());
+        }
+
+        return result;
+    }
+
+    /**
+     * Comparison of two row indexes.
+     */
+    private interface IndexComparator {
+        int compare(int index1, int index2);
+    }
+
+    /**
+     * Stable merge sort of an array of row indexes.
+     */
+    private static void sort(final int[] order, final IndexComparator comparator) {
+        int n = order.length;
+        int[] source = order;
+        int[] target = new int[n];
+
+        for (int width = 1; width < n; width *= 2) {
+            for (int low = 0; low < n; low += 2 * width) {
+                int mid = Math.min(low + width, n);
+                int high = Math.min(low + 2 * width, n);
+
+                int i = low;
+                int j = mid;
+                int k = low;
+
+                while (i < mid && j < high) {
+                    target[k++] = (comparator.compare(source[j], source[i]) < 0) ? source[j++]
+                        : source[i++];
+                }
+
+                while (i < mid) {
+                    target[k++] = source[i++];
+                }
+
+                while (j < high) {
+                    target[k++] = source[j++];
+                }
+            }
+
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+
+        if (source != order) {
+            System.arraycopy(source, 0, order, 0, n);
+        }
+    }
+}
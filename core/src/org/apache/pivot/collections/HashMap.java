@@ -190,6 +190,25 @@ public class HashMap<K, V> implements Map<K, V>, Serializable {
         return put(key, value, true);
     }
 
+    @Override
+    public void putAll(Map<K, V> entries) {
+        Utils.checkNull(entries, "entries");
+
+        ArrayList<K> addedKeys = new ArrayList<>();
+        for (K key : entries) {
+            if (containsKey(key)) {
+                put(key, entries.get(key), true);
+            } else {
+                put(key, entries.get(key), false);
+                addedKeys.add(key);
+            }
+        }
+
+        if (mapListeners != null && addedKeys.getLength() > 0) {
+            mapListeners.valuesAdded(this, addedKeys);
+        }
+    }
+
     private V put(K key, V value, boolean notifyListeners) {
         Utils.checkNull(key, "key");
 
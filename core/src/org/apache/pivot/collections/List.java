@@ -52,6 +52,11 @@ public interface List<T> extends Sequence<T>, Collection<T> {
             forEach(listener -> listener.itemInserted(list, index));
         }
 
+        @Override
+        public void itemsInserted(List<T> list, int index, int count) {
+            forEach(listener -> listener.itemsInserted(list, index, count));
+        }
+
         @Override
         public void itemsRemoved(List<T> list, int index, Sequence<T> items) {
             forEach(listener -> listener.itemsRemoved(list, index, items));
@@ -62,6 +67,11 @@ public interface List<T> extends Sequence<T>, Collection<T> {
             forEach(listener -> listener.itemUpdated(list, index, previousItem));
         }
 
+        @Override
+        public void itemsUpdated(List<T> list, int index, Sequence<T> previousItems) {
+            forEach(listener -> listener.itemsUpdated(list, index, previousItems));
+        }
+
         @Override
         public void listCleared(List<T> list) {
             forEach(listener -> listener.listCleared(list));
@@ -97,6 +107,23 @@ public interface List<T> extends Sequence<T>, Collection<T> {
     @Override
     public void insert(T item, int index);
 
+    /**
+     * Inserts a sequence of items into the list as a single range.
+     * <p> The default implementation inserts the items one at a time.
+     *
+     * @param items The items to be added to the list.
+     * @param index The index at which the first item should be inserted. Must
+     * be a value between <tt>0</tt> and <tt>getLength()</tt>.
+     * @throws IllegalArgumentException If the list is sorted and the items
+     * would not be in order at the given index.
+     * @see ListListener#itemsInserted(List, int, int)
+     */
+    default void insertAll(Sequence<T> items, int index) {
+        for (int i = 0, n = items.getLength(); i < n; i++) {
+            insert(items.get(i), index + i);
+        }
+    }
+
     /**
      * Updates the item at the given index.
      *
@@ -110,6 +137,29 @@ public interface List<T> extends Sequence<T>, Collection<T> {
     @Override
     public T update(int index, T item);
 
+    /**
+     * Updates a range of items, starting at the given index.
+     * <p> The default implementation updates the items one at a time.
+     *
+     * @param index The index of the first item to update.
+     * @param items The items that will replace the existing values in the
+     * range.
+     * @return The items that were previously stored in the range.
+     * @throws IllegalArgumentException If the list is sorted and the updated
+     * items would not be in order.
+     * @see ListListener#itemsUpdated(List, int, Sequence)
+     */
+    default Sequence<T> updateAll(int index, Sequence<T> items) {
+        int count = items.getLength();
+        ArrayList<T> previousItems = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            previousItems.add(update(index + i, items.get(i)));
+        }
+
+        return previousItems;
+    }
+
     /**
      * @see ListListener#itemsRemoved(List, int, Sequence)
      */
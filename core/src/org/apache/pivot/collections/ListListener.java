@@ -63,6 +63,21 @@ public interface ListListener<T> {
     default void itemInserted(List<T> list, int index) {
     }
 
+    /**
+     * Called when a range of items has been inserted into a list. The
+     * default implementation calls {@link #itemInserted} for each item, so
+     * listeners that can handle the range in one pass should override it.
+     *
+     * @param list The source of the list event.
+     * @param index The index at which the first item was added.
+     * @param count The number of items that were added.
+     */
+    default void itemsInserted(List<T> list, int index, int count) {
+        for (int i = 0; i < count; i++) {
+            itemInserted(list, index + i);
+        }
+    }
+
     /**
      * Called when items have been removed from a list.
      *
@@ -83,6 +98,21 @@ public interface ListListener<T> {
     default void itemUpdated(List<T> list, int index, T previousItem) {
     }
 
+    /**
+     * Called when a range of list items has been updated. The default
+     * implementation calls {@link #itemUpdated} for each item, so listeners
+     * that can handle the range in one pass should override it.
+     *
+     * @param list The source of the list event.
+     * @param index The index of the first item that was updated.
+     * @param previousItems The items that were previously stored in the range.
+     */
+    default void itemsUpdated(List<T> list, int index, Sequence<T> previousItems) {
+        for (int i = 0, n = previousItems.getLength(); i < n; i++) {
+            itemUpdated(list, index + i, previousItems.get(i));
+        }
+    }
+
     /**
      * Called when list data has been reset.
      *
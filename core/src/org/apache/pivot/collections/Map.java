@@ -36,6 +36,21 @@ public interface Map<K, V> extends Dictionary<K, V>, Collection<K> {
     @Override
     public V put(K key, V value);
 
+    /**
+     * Copies all the entries of another map into this map. Entries whose keys
+     * are new to this map are reported with a single event. <p> The default
+     * implementation puts the entries one at a time.
+     *
+     * @param entries The map whose entries are to be copied.
+     * @see MapListener#valuesAdded(Map, Sequence)
+     * @see MapListener#valueUpdated(Map, Object, Object)
+     */
+    default void putAll(Map<K, V> entries) {
+        for (K key : entries) {
+            put(key, entries.get(key));
+        }
+    }
+
     /**
      * @see MapListener#valueRemoved(Map, Object, Object)
      */
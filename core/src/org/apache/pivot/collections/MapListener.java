@@ -33,6 +33,11 @@ public interface MapListener<K, V> {
             forEach(listener -> listener.valueAdded(map, key));
         }
 
+        @Override
+        public void valuesAdded(Map<K, V> map, Sequence<K> keys) {
+            forEach(listener -> listener.valuesAdded(map, keys));
+        }
+
         @Override
         public void valueRemoved(Map<K, V> map, K key, V value) {
             forEach(listener -> listener.valueRemoved(map, key, value));
@@ -95,6 +100,20 @@ public interface MapListener<K, V> {
     default void valueAdded(Map<K, V> map, K key) {
     }
 
+    /**
+     * Called when several key/value pairs have been added to a map at once.
+     * The default implementation calls {@link #valueAdded} for each key, so
+     * listeners that can handle the keys in one pass should override it.
+     *
+     * @param map The source of the map event.
+     * @param keys The keys that were added to the map.
+     */
+    default void valuesAdded(Map<K, V> map, Sequence<K> keys) {
+        for (int i = 0, n = keys.getLength(); i < n; i++) {
+            valueAdded(map, keys.get(i));
+        }
+    }
+
     /**
      * Called when a map value has been updated.
      *
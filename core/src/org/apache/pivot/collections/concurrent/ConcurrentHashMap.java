@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections.concurrent;
+
+import java.util.Comparator;
+import java.util.Iterator;
+
+import org.apache.pivot.annotations.UnsupportedOperation;
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.collections.MapListener;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.util.CopyOnWriteListenerList;
+import org.apache.pivot.util.ImmutableIterator;
+import org.apache.pivot.util.ListenerList;
+import org.apache.pivot.util.Utils;
+
+/**
+ * Concurrent implementation of the {@link Map} interface. Unlike
+ * {@link SynchronizedMap}, no operation takes a lock on the whole map: entries
+ * are kept in a {@link java.util.concurrent.ConcurrentHashMap}, whose bins are
+ * updated with compare-and-set operations, and listeners are notified without
+ * holding any lock. <p> Events are fired on the thread that made the change,
+ * after the change has been made; events for changes made concurrently by
+ * different threads may therefore be received in a different order than the
+ * changes were applied. Iteration is weakly consistent, and never throws
+ * {@link java.util.ConcurrentModificationException}. Null values are
+ * supported, but the map cannot be sorted.
+ */
+public class ConcurrentHashMap<K, V> implements Map<K, V> {
+    private static class ConcurrentMapListenerList<K, V> extends CopyOnWriteListenerList<MapListener<K, V>>
+        implements MapListener<K, V> {
+        @Override
+        public void valueAdded(Map<K, V> map, K key) {
+            forEach(listener -> listener.valueAdded(map, key));
+        }
+
+        @Override
+        public void valuesAdded(Map<K, V> map, Sequence<K> keys) {
+            forEach(listener -> listener.valuesAdded(map, keys));
+        }
+
+        @Override
+        public void valueRemoved(Map<K, V> map, K key, V value) {
+            forEach(listener -> listener.valueRemoved(map, key, value));
+        }
+
+        @Override
+        public void valueUpdated(Map<K, V> map, K key, V previousValue) {
+            forEach(listener -> listener.valueUpdated(map, key, previousValue));
+        }
+
+        @Override
+        public void mapCleared(Map<K, V> map) {
+            forEach(listener -> listener.mapCleared(map));
+        }
+
+        @Override
+        public void comparatorChanged(Map<K, V> map, Comparator<K> previousComparator) {
+            forEach(listener -> listener.comparatorChanged(map, previousComparator));
+        }
+    }
+
+    // Stands in for null values, which the backing map does not allow
+    private static final Object NULL_VALUE = new Object();
+
+    private java.util.concurrent.ConcurrentHashMap<K, Object> map;
+    private ConcurrentMapListenerList<K, V> mapListeners = new ConcurrentMapListenerList<>();
+
+    public ConcurrentHashMap() {
+        map = new java.util.concurrent.ConcurrentHashMap<>();
+    }
+
+    public ConcurrentHashMap(int capacity) {
+        map = new java.util.concurrent.ConcurrentHashMap<>(capacity);
+    }
+
+    public ConcurrentHashMap(Map<K, V> map) {
+        this(map.getCount());
+
+        putAll(map);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V unmask(Object value) {
+        return (value == NULL_VALUE) ? null : (V) value;
+    }
+
+    @Override
+    public V get(K key) {
+        Utils.checkNull(key, "key");
+
+        return unmask(map.get(key));
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Utils.checkNull(key, "key");
+
+        Object previousValue = map.put(key, (value == null) ? NULL_VALUE : value);
+
+        if (previousValue == null) {
+            mapListeners.valueAdded(this, key);
+        } else {
+            mapListeners.valueUpdated(this, key, unmask(previousValue));
+        }
+
+        return unmask(previousValue);
+    }
+
+    /**
+     * Puts the value of the given key only if the key is not already present
+     * in the map, as a single atomic operation.
+     *
+     * @param key The key whose value is to be set.
+     * @param value The value to be associated with the given key.
+     * @return <tt>true</tt> if the value was added; <tt>false</tt> if the key
+     * was already present.
+     * @see MapListener#valueAdded(Map, Object)
+     */
+    public boolean putIfAbsent(K key, V value) {
+        Utils.checkNull(key, "key");
+
+        boolean added = (map.putIfAbsent(key, (value == null) ? NULL_VALUE : value) == null);
+
+        if (added) {
+            mapListeners.valueAdded(this, key);
+        }
+
+        return added;
+    }
+
+    @Override
+    public void putAll(Map<K, V> entries) {
+        Utils.checkNull(entries, "entries");
+
+        ArrayList<K> addedKeys = new ArrayList<>();
+        for (K key : entries) {
+            V value = entries.get(key);
+            Object previousValue = map.put(key, (value == null) ? NULL_VALUE : value);
+
+            if (previousValue == null) {
+                addedKeys.add(key);
+            } else {
+                mapListeners.valueUpdated(this, key, unmask(previousValue));
+            }
+        }
+
+        if (addedKeys.getLength() > 0) {
+            mapListeners.valuesAdded(this, addedKeys);
+        }
+    }
+
+    @Override
+    public V remove(K key) {
+        Utils.checkNull(key, "key");
+
+        Object value = map.remove(key);
+
+        if (value != null) {
+            mapListeners.valueRemoved(this, key, unmask(value));
+        }
+
+        return unmask(value);
+    }
+
+    @Override
+    public void clear() {
+        if (!map.isEmpty()) {
+            map.clear();
+            mapListeners.mapCleared(this);
+        }
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        Utils.checkNull(key, "key");
+
+        return map.containsKey(key);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public int getCount() {
+        return map.size();
+    }
+
+    @Override
+    public Comparator<K> getComparator() {
+        return null;
+    }
+
+    @Override
+    @UnsupportedOperation
+    public void setComparator(Comparator<K> comparator) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+        return new ImmutableIterator<>(map.keySet().iterator());
+    }
+
+    @Override
+    public ListenerList<MapListener<K, V>> getMapListeners() {
+        return mapListeners;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(getClass().getName());
+        sb.append(" {");
+
+        int i = 0;
+        for (java.util.Map.Entry<K, Object> entry : map.entrySet()) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+
+            sb.append(entry.getKey() + ":" + unmask(entry.getValue()));
+            i++;
+        }
+
+        sb.append("}");
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections.concurrent;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pivot.annotations.UnsupportedOperation;
+import org.apache.pivot.collections.Queue;
+import org.apache.pivot.collections.QueueListener;
+import org.apache.pivot.util.CopyOnWriteListenerList;
+import org.apache.pivot.util.ListenerList;
+import org.apache.pivot.util.Utils;
+
+/**
+ * Lock-free implementation of the {@link Queue} interface. Unlike
+ * {@link SynchronizedQueue}, enqueuing and dequeuing never block: items are
+ * kept in a {@link ConcurrentLinkedQueue}, which is a Michael-Scott
+ * non-blocking linked queue, and listeners are notified without holding any
+ * lock. <p> Events are fired on the thread that made the change, after the
+ * change has been made. {@link #dequeue} throws if the queue is empty, so
+ * consumers that race with each other should use {@link #poll} instead.
+ * Iteration runs from the head to the tail of the queue and is weakly
+ * consistent. Null items are supported, but the queue cannot be sorted.
+ */
+public class ConcurrentQueue<T> implements Queue<T> {
+    private static class ConcurrentQueueListenerList<T> extends CopyOnWriteListenerList<QueueListener<T>>
+        implements QueueListener<T> {
+        @Override
+        public void itemEnqueued(Queue<T> queue, T item) {
+            forEach(listener -> listener.itemEnqueued(queue, item));
+        }
+
+        @Override
+        public void itemDequeued(Queue<T> queue, T item) {
+            forEach(listener -> listener.itemDequeued(queue, item));
+        }
+
+        @Override
+        public void queueCleared(Queue<T> queue) {
+            forEach(listener -> listener.queueCleared(queue));
+        }
+
+        @Override
+        public void comparatorChanged(Queue<T> queue, Comparator<T> previousComparator) {
+            forEach(listener -> listener.comparatorChanged(queue, previousComparator));
+        }
+    }
+
+    // Stands in for null items, which the backing queue does not allow
+    private static final Object NULL_ITEM = new Object();
+
+    private ConcurrentLinkedQueue<Object> queue = new ConcurrentLinkedQueue<>();
+    private AtomicInteger length = new AtomicInteger();
+    private volatile int maxLength = 0;
+
+    private ConcurrentQueueListenerList<T> queueListeners = new ConcurrentQueueListenerList<>();
+
+    public ConcurrentQueue() {
+        this(0);
+    }
+
+    public ConcurrentQueue(int maxLength) {
+        setMaxLength(maxLength);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unmask(Object item) {
+        return (item == NULL_ITEM) ? null : (T) item;
+    }
+
+    @Override
+    public void enqueue(T item) {
+        // Reserve a place in the queue first, so that concurrent producers
+        // can't exceed the maximum length
+        int max = maxLength;
+        if (max == 0) {
+            length.incrementAndGet();
+        } else {
+            int current;
+            do {
+                current = length.get();
+                if (current >= max) {
+                    return;
+                }
+            } while (!length.compareAndSet(current, current + 1));
+        }
+
+        queue.offer((item == null) ? NULL_ITEM : item);
+        queueListeners.itemEnqueued(this, item);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException If the queue is empty.
+     */
+    @Override
+    public T dequeue() {
+        Object item = queue.poll();
+        if (item == null) {
+            throw new IllegalStateException("queue is empty");
+        }
+
+        length.decrementAndGet();
+
+        T dequeuedItem = unmask(item);
+        queueListeners.itemDequeued(this, dequeuedItem);
+
+        return dequeuedItem;
+    }
+
+    /**
+     * Removes the item from the head of the queue and returns it, or returns
+     * null if the queue is empty. Unlike checking {@link #isEmpty} before
+     * calling {@link #dequeue}, this is a single atomic operation. As with
+     * {@link #peek}, {@link #isEmpty} can't be used afterwards to tell an empty
+     * queue from a null item, so queues that may contain null items should use
+     * {@link #dequeue} and handle its exception instead.
+     *
+     * @return The (removed) object at the head of the queue, or null.
+     */
+    public T poll() {
+        Object item = queue.poll();
+        T dequeuedItem = null;
+
+        if (item != null) {
+            length.decrementAndGet();
+
+            dequeuedItem = unmask(item);
+            queueListeners.itemDequeued(this, dequeuedItem);
+        }
+
+        return dequeuedItem;
+    }
+
+    @Override
+    public T peek() {
+        return unmask(queue.peek());
+    }
+
+    @Override
+    public void clear() {
+        int removed = 0;
+        while (queue.poll() != null) {
+            removed++;
+        }
+
+        if (removed > 0) {
+            length.addAndGet(-removed);
+            queueListeners.queueCleared(this);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc} <p> The length is maintained separately from the items,
+     * so while other threads are changing the queue it may briefly include
+     * items that are still being enqueued.
+     */
+    @Override
+    public int getLength() {
+        return length.get();
+    }
+
+    @Override
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    @Override
+    public void setMaxLength(int maxLength) {
+        Utils.checkNonNegative(maxLength, "maxLength");
+        this.maxLength = maxLength;
+    }
+
+    @Override
+    public Comparator<T> getComparator() {
+        return null;
+    }
+
+    @Override
+    @UnsupportedOperation
+    public void setComparator(Comparator<T> comparator) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        Iterator<Object> iterator = queue.iterator();
+
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return unmask(iterator.next());
+            }
+
+            @Override
+            @UnsupportedOperation
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public ListenerList<QueueListener<T>> getQueueListeners() {
+        return queueListeners;
+    }
+}
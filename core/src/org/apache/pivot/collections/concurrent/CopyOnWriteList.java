@@ -0,0 +1,510 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections.concurrent;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+
+import org.apache.pivot.annotations.UnsupportedOperation;
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.Collection;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.ListListener;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.util.CopyOnWriteListenerList;
+import org.apache.pivot.util.ListenerList;
+import org.apache.pivot.util.Utils;
+
+/**
+ * Copy-on-write implementation of the {@link List} interface, for lists that
+ * are read much more often than they are changed. <p> The items are kept in
+ * an array that is replaced on every change, so reads and iteration never
+ * take a lock and never throw
+ * {@link java.util.ConcurrentModificationException}; an iterator always sees
+ * the list as it was when the iterator was created. Changes are serialized,
+ * and listeners are notified before the next change is made, so events are
+ * received in the order the changes were applied.
+ */
+public class CopyOnWriteList<T> implements List<T> {
+    private static class CopyOnWriteListListenerList<T> extends CopyOnWriteListenerList<ListListener<T>>
+        implements ListListener<T> {
+        @Override
+        public void itemInserted(List<T> list, int index) {
+            forEach(listener -> listener.itemInserted(list, index));
+        }
+
+        @Override
+        public void itemsInserted(List<T> list, int index, int count) {
+            forEach(listener -> listener.itemsInserted(list, index, count));
+        }
+
+        @Override
+        public void itemsRemoved(List<T> list, int index, Sequence<T> items) {
+            forEach(listener -> listener.itemsRemoved(list, index, items));
+        }
+
+        @Override
+        public void itemUpdated(List<T> list, int index, T previousItem) {
+            forEach(listener -> listener.itemUpdated(list, index, previousItem));
+        }
+
+        @Override
+        public void itemsUpdated(List<T> list, int index, Sequence<T> previousItems) {
+            forEach(listener -> listener.itemsUpdated(list, index, previousItems));
+        }
+
+        @Override
+        public void listCleared(List<T> list) {
+            forEach(listener -> listener.listCleared(list));
+        }
+
+        @Override
+        public void comparatorChanged(List<T> list, Comparator<T> previousComparator) {
+            forEach(listener -> listener.comparatorChanged(list, previousComparator));
+        }
+    }
+
+    /**
+     * Iterator through a snapshot of the items.
+     */
+    private static class SnapshotItemIterator<T> implements ItemIterator<T> {
+        private final Object[] items;
+        private int index = 0;
+
+        public SnapshotItemIterator(Object[] items) {
+            this.items = items;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return (index < items.length);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return (T) items[index++];
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return (index > 0);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T previous() {
+            if (!hasPrevious()) {
+                throw new NoSuchElementException();
+            }
+
+            return (T) items[--index];
+        }
+
+        @Override
+        public void toStart() {
+            index = 0;
+        }
+
+        @Override
+        public void toEnd() {
+            index = items.length;
+        }
+
+        @Override
+        @UnsupportedOperation
+        public void insert(T item) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        @UnsupportedOperation
+        public void update(T item) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        @UnsupportedOperation
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final Object[] EMPTY_ITEMS = new Object[0];
+
+    private volatile Object[] items = EMPTY_ITEMS;
+    private volatile Comparator<T> comparator = null;
+
+    private final Object lock = new Object();
+
+    private CopyOnWriteListListenerList<T> listListeners = new CopyOnWriteListListenerList<>();
+
+    public CopyOnWriteList() {
+    }
+
+    public CopyOnWriteList(Comparator<T> comparator) {
+        this.comparator = comparator;
+    }
+
+    @SafeVarargs
+    public CopyOnWriteList(T... items) {
+        // Copied element by element, so that the varargs array doesn't escape
+        Object[] itemsLocal = new Object[items.length];
+        for (int i = 0; i < itemsLocal.length; i++) {
+            itemsLocal[i] = items[i];
+        }
+
+        this.items = itemsLocal;
+    }
+
+    public CopyOnWriteList(Sequence<T> items) {
+        Utils.checkNull(items, "items");
+
+        Object[] itemsLocal = new Object[items.getLength()];
+        for (int i = 0; i < itemsLocal.length; i++) {
+            itemsLocal[i] = items.get(i);
+        }
+
+        this.items = itemsLocal;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int search(Object[] itemsArgument, T item) {
+        return Arrays.binarySearch((T[]) itemsArgument, item, comparator);
+    }
+
+    @Override
+    public int add(T item) {
+        synchronized (lock) {
+            int index;
+
+            if (comparator == null) {
+                index = items.length;
+            } else {
+                index = search(items, item);
+                if (index < 0) {
+                    index = -(index + 1);
+                }
+            }
+
+            insertItems(new Object[] {item}, index);
+
+            return index;
+        }
+    }
+
+    @Override
+    public void insert(T item, int index) {
+        synchronized (lock) {
+            Utils.checkIndexBounds(index, 0, items.length);
+
+            Object[] inserted = new Object[] {item};
+
+            if (comparator != null) {
+                checkOrder(inserted, index, index);
+            }
+
+            insertItems(inserted, index);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void addAll(Collection<T> collection) {
+        Utils.checkNull(collection, "collection");
+
+        synchronized (lock) {
+            if (comparator == null) {
+                if (collection instanceof Sequence) {
+                    insertAll((Sequence<T>) collection, items.length);
+                } else {
+                    ArrayList<T> sequence = new ArrayList<>();
+                    collection.forEach(item -> sequence.add(item));
+                    insertAll(sequence, items.length);
+                }
+            } else {
+                collection.forEach(item -> add(item));
+            }
+        }
+    }
+
+    @Override
+    public void insertAll(Sequence<T> sequence, int index) {
+        Utils.checkNull(sequence, "sequence");
+
+        synchronized (lock) {
+            Utils.checkIndexBounds(index, 0, items.length);
+
+            Object[] inserted = new Object[sequence.getLength()];
+            for (int i = 0; i < inserted.length; i++) {
+                inserted[i] = sequence.get(i);
+            }
+
+            if (comparator != null) {
+                checkOrder(inserted, index, index);
+            }
+
+            insertItems(inserted, index);
+        }
+    }
+
+    // Must be called while holding the lock
+    private void insertItems(Object[] inserted, int index) {
+        int count = inserted.length;
+
+        if (count > 0) {
+            Object[] updatedItems = new Object[items.length + count];
+            System.arraycopy(items, 0, updatedItems, 0, index);
+            System.arraycopy(inserted, 0, updatedItems, index, count);
+            System.arraycopy(items, index, updatedItems, index + count, items.length - index);
+
+            items = updatedItems;
+
+            if (count == 1) {
+                listListeners.itemInserted(this, index);
+            } else {
+                listListeners.itemsInserted(this, index, count);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T update(int index, T item) {
+        synchronized (lock) {
+            Utils.checkIndexBounds(index, 0, items.length - 1);
+
+            T previousItem = (T) items[index];
+
+            if (previousItem != item) {
+                if (comparator != null) {
+                    checkOrder(new Object[] {item}, index, index + 1);
+                }
+
+                Object[] updatedItems = items.clone();
+                updatedItems[index] = item;
+                items = updatedItems;
+            }
+
+            listListeners.itemUpdated(this, index, previousItem);
+
+            return previousItem;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Sequence<T> updateAll(int index, Sequence<T> sequence) {
+        Utils.checkNull(sequence, "sequence");
+
+        synchronized (lock) {
+            int count = sequence.getLength();
+            Utils.checkIndexBounds(index, count, 0, items.length);
+
+            Object[] updated = new Object[count];
+            for (int i = 0; i < count; i++) {
+                updated[i] = sequence.get(i);
+            }
+
+            if (comparator != null) {
+                checkOrder(updated, index, index + count);
+            }
+
+            ArrayList<T> previousItems = new ArrayList<>((T[]) items, index, count);
+
+            if (count > 0) {
+                Object[] updatedItems = items.clone();
+                System.arraycopy(updated, 0, updatedItems, index, count);
+                items = updatedItems;
+
+                listListeners.itemsUpdated(this, index, previousItems);
+            }
+
+            return previousItems;
+        }
+    }
+
+    /**
+     * Ensures that a range of items is in sorted order, and that it fits
+     * between the item before <tt>start</tt> and the item at <tt>end</tt>.
+     * Must be called while holding the lock.
+     */
+    @SuppressWarnings("unchecked")
+    private void checkOrder(Object[] range, int start, int end) {
+        T previousItem = (start > 0 ? (T) items[start - 1] : null);
+
+        for (int i = 0; i < range.length; i++) {
+            T item = (T) range[i];
+            if (previousItem != null && comparator.compare(item, previousItem) < 0) {
+                throw new IllegalArgumentException(
+                    "Item " + i + " of the range at index " + start + " is not in correct sorted order.");
+            }
+
+            previousItem = item;
+        }
+
+        if (previousItem != null && end < items.length && comparator.compare(previousItem, (T) items[end]) > 0) {
+            throw new IllegalArgumentException(
+                "Range at index " + start + " is not in correct sorted order.");
+        }
+    }
+
+    @Override
+    public int remove(T item) {
+        synchronized (lock) {
+            int index = indexOf(item);
+
+            if (index >= 0) {
+                remove(index, 1);
+            }
+
+            return index;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Sequence<T> remove(int index, int count) {
+        synchronized (lock) {
+            Utils.checkIndexBounds(index, count, 0, items.length);
+
+            ArrayList<T> removed = new ArrayList<>((T[]) items, index, count);
+
+            if (count > 0) {
+                Object[] updatedItems = new Object[items.length - count];
+                System.arraycopy(items, 0, updatedItems, 0, index);
+                System.arraycopy(items, index + count, updatedItems, index, updatedItems.length - index);
+                items = updatedItems;
+
+                listListeners.itemsRemoved(this, index, removed);
+            }
+
+            return removed;
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (lock) {
+            if (items.length > 0) {
+                items = EMPTY_ITEMS;
+                listListeners.listCleared(this);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T get(int index) {
+        Object[] itemsLocal = items;
+        Utils.checkZeroBasedIndex(index, itemsLocal.length);
+
+        return (T) itemsLocal[index];
+    }
+
+    @Override
+    public int indexOf(T item) {
+        Object[] itemsLocal = items;
+
+        if (comparator == null) {
+            for (int i = 0; i < itemsLocal.length; i++) {
+                if ((item == null && itemsLocal[i] == null) || (item != null && item.equals(itemsLocal[i]))) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        int i = search(itemsLocal, item);
+        return (i < 0) ? -1 : i;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return items.length == 0;
+    }
+
+    @Override
+    public int getLength() {
+        return items.length;
+    }
+
+    @Override
+    public Comparator<T> getComparator() {
+        return comparator;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void setComparator(Comparator<T> comparator) {
+        synchronized (lock) {
+            Comparator<T> previousComparator = this.comparator;
+
+            if (comparator != null) {
+                T[] sortedItems = (T[]) items.clone();
+                Arrays.sort(sortedItems, comparator);
+                items = sortedItems;
+            }
+
+            this.comparator = comparator;
+
+            listListeners.comparatorChanged(this, previousComparator);
+        }
+    }
+
+    /**
+     * @return An iterator over a snapshot of the list. The iterator does not
+     * support changing the list.
+     */
+    @Override
+    public ItemIterator<T> iterator() {
+        return new SnapshotItemIterator<>(items);
+    }
+
+    @Override
+    public ListenerList<ListListener<T>> getListListeners() {
+        return listListeners;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(getClass().getSimpleName());
+        sb.append(" [");
+
+        int i = 0;
+        for (T item : this) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+
+            sb.append(item);
+            i++;
+        }
+
+        sb.append("]");
+
+        return sb.toString();
+    }
+}
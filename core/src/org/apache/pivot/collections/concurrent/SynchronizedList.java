@@ -19,6 +19,7 @@ package org.apache.pivot.collections.concurrent;
 import java.util.Comparator;
 import java.util.Iterator;
 
+import org.apache.pivot.collections.Collection;
 import org.apache.pivot.collections.List;
 import org.apache.pivot.collections.ListListener;
 import org.apache.pivot.collections.Sequence;
@@ -46,6 +47,11 @@ public class SynchronizedList<T> implements List<T> {
             super.itemInserted(list, index);
         }
 
+        @Override
+        public synchronized void itemsInserted(List<T> list, int index, int count) {
+            super.itemsInserted(list, index, count);
+        }
+
         @Override
         public synchronized void itemsRemoved(List<T> list, int index, Sequence<T> items) {
             super.itemsRemoved(list, index, items);
@@ -56,6 +62,11 @@ public class SynchronizedList<T> implements List<T> {
             super.itemUpdated(list, index, previousItem);
         }
 
+        @Override
+        public synchronized void itemsUpdated(List<T> list, int index, Sequence<T> previousItems) {
+            super.itemsUpdated(list, index, previousItems);
+        }
+
         @Override
         public synchronized void listCleared(List<T> list) {
             super.listCleared(list);
@@ -100,6 +111,35 @@ public class SynchronizedList<T> implements List<T> {
         return previousItem;
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public synchronized void addAll(Collection<T> collection) {
+        if (list.getComparator() == null && collection instanceof Sequence) {
+            insertAll((Sequence<T>) collection, list.getLength());
+        } else {
+            collection.forEach(item -> add(item));
+        }
+    }
+
+    @Override
+    public synchronized void insertAll(Sequence<T> items, int index) {
+        int count = items.getLength();
+        list.insertAll(items, index);
+        if (count > 0) {
+            listListeners.itemsInserted(this, index, count);
+        }
+    }
+
+    @Override
+    public synchronized Sequence<T> updateAll(int index, Sequence<T> items) {
+        Sequence<T> previousItems = list.updateAll(index, items);
+        if (previousItems.getLength() > 0) {
+            listListeners.itemsUpdated(this, index, previousItems);
+        }
+
+        return previousItems;
+    }
+
     @Override
     public synchronized int remove(T item) {
         int index = indexOf(item);
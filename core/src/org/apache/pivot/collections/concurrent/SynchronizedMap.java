@@ -19,8 +19,10 @@ package org.apache.pivot.collections.concurrent;
 import java.util.Comparator;
 import java.util.Iterator;
 
+import org.apache.pivot.collections.ArrayList;
 import org.apache.pivot.collections.Map;
 import org.apache.pivot.collections.MapListener;
+import org.apache.pivot.collections.Sequence;
 import org.apache.pivot.util.ImmutableIterator;
 import org.apache.pivot.util.ListenerList;
 import org.apache.pivot.util.Utils;
@@ -45,6 +47,11 @@ public class SynchronizedMap<K, V> implements Map<K, V> {
             super.valueAdded(map, key);
         }
 
+        @Override
+        public synchronized void valuesAdded(Map<K, V> map, Sequence<K> keys) {
+            super.valuesAdded(map, keys);
+        }
+
         @Override
         public synchronized void valueRemoved(Map<K, V> map, K key, V value) {
             super.valueRemoved(map, key, value);
@@ -94,6 +101,25 @@ public class SynchronizedMap<K, V> implements Map<K, V> {
         return previousValue;
     }
 
+    @Override
+    public synchronized void putAll(Map<K, V> entries) {
+        ArrayList<K> addedKeys = new ArrayList<>();
+        for (K key : entries) {
+            boolean update = containsKey(key);
+            V previousValue = map.put(key, entries.get(key));
+
+            if (update) {
+                mapListeners.valueUpdated(this, key, previousValue);
+            } else {
+                addedKeys.add(key);
+            }
+        }
+
+        if (addedKeys.getLength() > 0) {
+            mapListeners.valuesAdded(this, addedKeys);
+        }
+    }
+
     @Override
     public synchronized V remove(K key) {
         V value = null;
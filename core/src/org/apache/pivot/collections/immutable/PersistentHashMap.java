@@ -0,0 +1,541 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections.immutable;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.pivot.annotations.UnsupportedOperation;
+import org.apache.pivot.collections.Dictionary;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.util.Utils;
+
+/**
+ * Persistent implementation of the {@link Dictionary} interface. <p> A
+ * persistent map is never modified: {@link #with} and {@link #without} return
+ * a new map and leave this one unchanged, sharing all but O(log n) of its
+ * structure with it. The entries are kept in a hash array mapped trie, in
+ * which each node holds up to 32 entries or subnodes indexed by five bits of
+ * the key's hash code, so lookups and updates visit at most seven nodes. Since
+ * the maps can't change, they can be handed to other threads and kept as
+ * snapshots without copying or locking. <p> Keys are iterated in no particular
+ * order. Null values are supported, but null keys are not.
+ *
+ * @param <K> Type of the keys in this map.
+ * @param <V> Type of the values in this map.
+ */
+public final class PersistentHashMap<K, V> implements Dictionary<K, V>, Iterable<K>, Serializable {
+    private static final long serialVersionUID = 3390524418396573916L;
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    // The deepest path through the trie: seven levels of bitmap nodes (the
+    // last of which only uses two bits of the hash code) and a collision node
+    private static final int MAXIMUM_DEPTH = 8;
+
+    /**
+     * Trie node. The array holds the node's entries as pairs: either a key and
+     * its value, or null and a subnode.
+     */
+    private abstract static class Node implements Serializable {
+        private static final long serialVersionUID = -5138271426604306437L;
+
+        protected final Object[] array;
+
+        protected Node(final Object[] array) {
+            this.array = array;
+        }
+
+        public abstract Object find(int shift, int hash, Object key, Object notFound);
+
+        public abstract Node with(int shift, int hash, Object key, Object value, boolean[] added);
+
+        public abstract Node without(int shift, int hash, Object key);
+    }
+
+    /**
+     * Node whose entries are indexed by a bitmap of the hash code bits that
+     * are present at its level.
+     */
+    private static final class BitmapNode extends Node {
+        private static final long serialVersionUID = 7862398853524413541L;
+
+        private final int bitmap;
+
+        public BitmapNode(final int bitmap, final Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        private int index(final int bit) {
+            return Integer.bitCount(bitmap & (bit - 1)) * 2;
+        }
+
+        @Override
+        public Object find(final int shift, final int hash, final Object key, final Object notFound) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return notFound;
+            }
+
+            int i = index(bit);
+            Object entryKey = array[i];
+            if (entryKey == null) {
+                return ((Node) array[i + 1]).find(shift + BITS, hash, key, notFound);
+            }
+
+            return key.equals(entryKey) ? array[i + 1] : notFound;
+        }
+
+        @Override
+        public Node with(final int shift, final int hash, final Object key, final Object value,
+            final boolean[] added) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int i = index(bit);
+
+            if ((bitmap & bit) == 0) {
+                Object[] updatedArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, updatedArray, 0, i);
+                updatedArray[i] = key;
+                updatedArray[i + 1] = value;
+                System.arraycopy(array, i, updatedArray, i + 2, array.length - i);
+
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, updatedArray);
+            }
+
+            Object entryKey = array[i];
+            Object entryValue = array[i + 1];
+
+            if (entryKey == null) {
+                Node node = ((Node) entryValue).with(shift + BITS, hash, key, value, added);
+                return (node == entryValue) ? this : replace(i + 1, node);
+            }
+
+            if (key.equals(entryKey)) {
+                return (value == entryValue) ? this : replace(i + 1, value);
+            }
+
+            // Push both entries down into a new subnode
+            added[0] = true;
+
+            Node node = createNode(shift + BITS, entryKey, entryValue, hash, key, value);
+            Object[] updatedArray = array.clone();
+            updatedArray[i] = null;
+            updatedArray[i + 1] = node;
+
+            return new BitmapNode(bitmap, updatedArray);
+        }
+
+        @Override
+        public Node without(final int shift, final int hash, final Object key) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+
+            int i = index(bit);
+            Object entryKey = array[i];
+
+            if (entryKey == null) {
+                Node node = ((Node) array[i + 1]).without(shift + BITS, hash, key);
+
+                if (node == array[i + 1]) {
+                    return this;
+                }
+
+                if (node != null) {
+                    return replace(i + 1, node);
+                }
+            } else if (!key.equals(entryKey)) {
+                return this;
+            }
+
+            // Remove the entry
+            if (bitmap == bit) {
+                return null;
+            }
+
+            Object[] updatedArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, updatedArray, 0, i);
+            System.arraycopy(array, i + 2, updatedArray, i, array.length - i - 2);
+
+            return new BitmapNode(bitmap & ~bit, updatedArray);
+        }
+
+        private BitmapNode replace(final int i, final Object object) {
+            Object[] updatedArray = array.clone();
+            updatedArray[i] = object;
+
+            return new BitmapNode(bitmap, updatedArray);
+        }
+    }
+
+    /**
+     * Node holding entries whose keys all have the same hash code.
+     */
+    private static final class CollisionNode extends Node {
+        private static final long serialVersionUID = -3236193796931262183L;
+
+        private final int hash;
+
+        public CollisionNode(final int hash, final Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        private int indexOf(final Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        @Override
+        public Object find(final int shift, final int hashArgument, final Object key, final Object notFound) {
+            int i = (hashArgument == hash) ? indexOf(key) : -1;
+
+            return (i < 0) ? notFound : array[i + 1];
+        }
+
+        @Override
+        public Node with(final int shift, final int hashArgument, final Object key, final Object value,
+            final boolean[] added) {
+            if (hashArgument != hash) {
+                // Nest this node in a bitmap node, which tells the hash codes apart
+                Node node = new BitmapNode(1 << ((hash >>> shift) & MASK), new Object[] {null, this});
+                return node.with(shift, hashArgument, key, value, added);
+            }
+
+            int i = indexOf(key);
+            if (i >= 0) {
+                if (array[i + 1] == value) {
+                    return this;
+                }
+
+                Object[] updatedArray = array.clone();
+                updatedArray[i + 1] = value;
+
+                return new CollisionNode(hash, updatedArray);
+            }
+
+            Object[] updatedArray = new Object[array.length + 2];
+            System.arraycopy(array, 0, updatedArray, 0, array.length);
+            updatedArray[array.length] = key;
+            updatedArray[array.length + 1] = value;
+
+            added[0] = true;
+            return new CollisionNode(hash, updatedArray);
+        }
+
+        @Override
+        public Node without(final int shift, final int hashArgument, final Object key) {
+            int i = (hashArgument == hash) ? indexOf(key) : -1;
+            if (i < 0) {
+                return this;
+            }
+
+            if (array.length == 2) {
+                return null;
+            }
+
+            Object[] updatedArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, updatedArray, 0, i);
+            System.arraycopy(array, i + 2, updatedArray, i, array.length - i - 2);
+
+            return new CollisionNode(hash, updatedArray);
+        }
+    }
+
+    private static Node createNode(final int shift, final Object key1, final Object value1,
+        final int hash2, final Object key2, final Object value2) {
+        int hash1 = hash(key1);
+        if (hash1 == hash2) {
+            return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+        }
+
+        boolean[] added = new boolean[1];
+        return EMPTY_NODE.with(shift, hash1, key1, value1, added).with(shift, hash2, key2, value2, added);
+    }
+
+    private static int hash(final Object key) {
+        int hashCode = key.hashCode();
+        return hashCode ^ (hashCode >>> 16);
+    }
+
+    private static final BitmapNode EMPTY_NODE = new BitmapNode(0, new Object[0]);
+
+    // Stands in for missing keys in lookups, since values may be null
+    private static final Object NOT_FOUND = new Object();
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentHashMap EMPTY = new PersistentHashMap<>(EMPTY_NODE, 0);
+
+    private final Node root;
+    private final int count;
+
+    private PersistentHashMap(final Node root, final int count) {
+        this.root = root;
+        this.count = count;
+    }
+
+    /**
+     * @param <K> Type of the keys in the map.
+     * @param <V> Type of the values in the map.
+     * @return The empty persistent map.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a persistent map containing the entries of the given map.
+     *
+     * @param <K> Type of the keys in the map.
+     * @param <V> Type of the values in the map.
+     * @param map The entries of the map.
+     * @return A map containing the entries.
+     */
+    public static <K, V> PersistentHashMap<K, V> of(final Map<K, V> map) {
+        Utils.checkNull(map, "map");
+
+        PersistentHashMap<K, V> persistentMap = empty();
+        for (K key : map) {
+            persistentMap = persistentMap.with(key, map.get(key));
+        }
+
+        return persistentMap;
+    }
+
+    /**
+     * Returns a map in which the given key is associated with the given
+     * value, replacing any existing value.
+     *
+     * @param key The key whose value is to be set.
+     * @param value The value to be associated with the given key.
+     * @return The new map, or this map if the key was already associated with
+     * the same value.
+     */
+    public PersistentHashMap<K, V> with(final K key, final V value) {
+        Utils.checkNull(key, "key");
+
+        boolean[] added = new boolean[1];
+        Node updatedRoot = root.with(0, hash(key), key, value, added);
+
+        return (updatedRoot == root) ? this : new PersistentHashMap<>(updatedRoot, added[0] ? count + 1 : count);
+    }
+
+    /**
+     * Returns a map without the entry for the given key.
+     *
+     * @param key The key whose entry is to be removed.
+     * @return The new map, or this map if it doesn't contain the key.
+     */
+    public PersistentHashMap<K, V> without(final K key) {
+        Utils.checkNull(key, "key");
+
+        Node updatedRoot = root.without(0, hash(key), key);
+        if (updatedRoot == root) {
+            return this;
+        }
+
+        return (updatedRoot == null) ? empty() : new PersistentHashMap<>(updatedRoot, count - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(final K key) {
+        Utils.checkNull(key, "key");
+
+        Object value = root.find(0, hash(key), key, NOT_FOUND);
+        return (value == NOT_FOUND) ? null : (V) value;
+    }
+
+    @Override
+    public boolean containsKey(final K key) {
+        Utils.checkNull(key, "key");
+
+        return root.find(0, hash(key), key, NOT_FOUND) != NOT_FOUND;
+    }
+
+    /**
+     * Setting a value in a persistent map is unsupported; use {@link #with}
+     * instead.
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    @UnsupportedOperation
+    public V put(final K key, final V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Removing a value from a persistent map is unsupported; use
+     * {@link #without} instead.
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    @UnsupportedOperation
+    public V remove(final K key) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return The number of entries in the map.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+        return new Iterator<K>() {
+            // The arrays of the nodes on the path to the next key, and the
+            // index of the next entry to visit in each of them
+            private Object[][] arrays = new Object[MAXIMUM_DEPTH][];
+            private int[] indexes = new int[MAXIMUM_DEPTH];
+            private int depth = 0;
+            private Object next = null;
+
+            {
+                arrays[0] = root.array;
+                advance();
+            }
+
+            private void advance() {
+                next = null;
+
+                while (depth >= 0) {
+                    Object[] array = arrays[depth];
+                    int i = indexes[depth];
+
+                    if (i >= array.length) {
+                        depth--;
+                    } else {
+                        indexes[depth] += 2;
+
+                        if (array[i] != null) {
+                            next = array[i];
+                            return;
+                        }
+
+                        depth++;
+                        arrays[depth] = ((Node) array[i + 1]).array;
+                        indexes[depth] = 0;
+                    }
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return (next != null);
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public K next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+
+                K key = (K) next;
+                advance();
+
+                return key;
+            }
+
+            @Override
+            @UnsupportedOperation
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof PersistentHashMap<?, ?>)) {
+            return false;
+        }
+
+        PersistentHashMap<K, V> map = (PersistentHashMap<K, V>) o;
+        if (count != map.count) {
+            return false;
+        }
+
+        for (K key : this) {
+            Object value = map.root.find(0, hash(key), key, NOT_FOUND);
+            Object thisValue = get(key);
+
+            if (value == NOT_FOUND || (thisValue == null ? value != null : !thisValue.equals(value))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        // Sum the entries, so that the iteration order doesn't matter
+        int hashCode = 0;
+
+        for (K key : this) {
+            V value = get(key);
+            hashCode += key.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(getClass().getSimpleName());
+        sb.append(" {");
+
+        int i = 0;
+        for (K key : this) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+
+            sb.append(key + ":" + get(key));
+            i++;
+        }
+
+        sb.append("}");
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections.immutable;
+
+import java.io.Serializable;
+import java.util.Iterator;
+
+
+/**
+ * Persistent set, backed by a {@link PersistentHashMap}. <p> A persistent set
+ * is never modified: {@link #with} and {@link #without} return a new set and
+ * leave this one unchanged, sharing most of its structure with it. Elements
+ * are iterated in no particular order, and can't be null.
+ *
+ * @param <E> Type of the elements in this set.
+ */
+public final class PersistentHashSet<E> implements Iterable<E>, Serializable {
+    private static final long serialVersionUID = -1570813372566151296L;
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentHashSet EMPTY = new PersistentHashSet<>(PersistentHashMap.empty());
+
+    private final PersistentHashMap<E, Boolean> map;
+
+    private PersistentHashSet(final PersistentHashMap<E, Boolean> map) {
+        this.map = map;
+    }
+
+    /**
+     * @param <E> Type of the elements in the set.
+     * @return The empty persistent set.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentHashSet<E> empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a persistent set containing the given elements.
+     *
+     * @param <E> Type of the elements in the set.
+     * @param elements The elements of the set.
+     * @return A set containing the elements.
+     */
+    @SafeVarargs
+    public static <E> PersistentHashSet<E> of(final E... elements) {
+        // The varargs array is only read, never passed on, so that it is safe
+        if (elements == null) {
+            throw new IllegalArgumentException("elements must not be null.");
+        }
+
+        PersistentHashSet<E> set = empty();
+        for (E element : elements) {
+            set = set.with(element);
+        }
+
+        return set;
+    }
+
+    /**
+     * Returns a set that contains the given element.
+     *
+     * @param element The element to add.
+     * @return The new set, or this set if it already contains the element.
+     */
+    public PersistentHashSet<E> with(final E element) {
+        PersistentHashMap<E, Boolean> updatedMap = map.with(element, Boolean.TRUE);
+        return (updatedMap == map) ? this : new PersistentHashSet<>(updatedMap);
+    }
+
+    /**
+     * Returns a set that doesn't contain the given element.
+     *
+     * @param element The element to remove.
+     * @return The new set, or this set if it doesn't contain the element.
+     */
+    public PersistentHashSet<E> without(final E element) {
+        PersistentHashMap<E, Boolean> updatedMap = map.without(element);
+        if (updatedMap == map) {
+            return this;
+        }
+
+        return updatedMap.isEmpty() ? empty() : new PersistentHashSet<>(updatedMap);
+    }
+
+    public boolean contains(final E element) {
+        return map.containsKey(element);
+    }
+
+    /**
+     * @return The number of elements in the set.
+     */
+    public int getCount() {
+        return map.getCount();
+    }
+
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return map.iterator();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return (this == o) || (o instanceof PersistentHashSet<?> && map.equals(((PersistentHashSet<?>) o).map));
+    }
+
+    @Override
+    public int hashCode() {
+        return map.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(getClass().getSimpleName());
+        sb.append(" {");
+
+        int i = 0;
+        for (E element : this) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+
+            sb.append(element);
+            i++;
+        }
+
+        sb.append("}");
+
+        return sb.toString();
+    }
+}
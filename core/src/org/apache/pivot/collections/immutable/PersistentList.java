@@ -0,0 +1,420 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections.immutable;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.pivot.annotations.UnsupportedOperation;
+import org.apache.pivot.collections.ReadOnlySequence;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.util.Utils;
+
+/**
+ * Persistent implementation of the {@link Sequence} interface. <p> A
+ * persistent list is never modified: {@link #with}, {@link #withInserted},
+ * {@link #withUpdated} and {@link #without} return a new list and leave this
+ * one unchanged, sharing all but O(log n) of its structure with it. The items
+ * are kept in a balanced binary tree whose nodes are annotated with the size
+ * of their subtrees, so that reading, inserting, updating and removing at any
+ * index all take O(log n) time. Since the lists can't change, they can be
+ * handed to other threads and kept as snapshots (for example in an undo
+ * history) without copying or locking.
+ *
+ * @param <T> Type of elements in this list.
+ */
+public final class PersistentList<T> extends ReadOnlySequence<T> implements Iterable<T> {
+    private static final long serialVersionUID = -6468400187880862364L;
+
+    private static final class Node<T> implements Serializable {
+        private static final long serialVersionUID = 2879087549811519046L;
+
+        private final T item;
+        private final Node<T> left;
+        private final Node<T> right;
+        private final int size;
+        private final int height;
+
+        private Node(final T item, final Node<T> left, final Node<T> right) {
+            this.item = item;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + size(right) + 1;
+            this.height = Math.max(height(left), height(right)) + 1;
+        }
+    }
+
+    private static int size(final Node<?> node) {
+        return (node == null) ? 0 : node.size;
+    }
+
+    private static int height(final Node<?> node) {
+        return (node == null) ? 0 : node.height;
+    }
+
+    /**
+     * Creates a node from the given item and subtrees, whose heights may
+     * differ by at most two, rotating it so that they differ by at most one.
+     */
+    private static <T> Node<T> balance(final T item, final Node<T> left, final Node<T> right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.item, left.left, new Node<>(item, left.right, right));
+            }
+
+            return new Node<>(left.right.item, new Node<>(left.item, left.left, left.right.left),
+                new Node<>(item, left.right.right, right));
+        }
+
+        if (rightHeight > leftHeight + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.item, new Node<>(item, left, right.left), right.right);
+            }
+
+            return new Node<>(right.left.item, new Node<>(item, left, right.left.left),
+                new Node<>(right.item, right.left.right, right.right));
+        }
+
+        return new Node<>(item, left, right);
+    }
+
+    private static <T> Node<T> get(final Node<T> root, final int index) {
+        Node<T> node = root;
+        int i = index;
+
+        while (true) {
+            int leftSize = size(node.left);
+            if (i < leftSize) {
+                node = node.left;
+            } else if (i > leftSize) {
+                i -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+    }
+
+    private static <T> Node<T> insert(final Node<T> node, final int index, final T item) {
+        if (node == null) {
+            return new Node<>(item, null, null);
+        }
+
+        int leftSize = size(node.left);
+        if (index <= leftSize) {
+            return balance(node.item, insert(node.left, index, item), node.right);
+        }
+
+        return balance(node.item, node.left, insert(node.right, index - leftSize - 1, item));
+    }
+
+    private static <T> Node<T> update(final Node<T> node, final int index, final T item) {
+        int leftSize = size(node.left);
+        if (index < leftSize) {
+            return new Node<>(node.item, update(node.left, index, item), node.right);
+        }
+
+        if (index > leftSize) {
+            return new Node<>(node.item, node.left, update(node.right, index - leftSize - 1, item));
+        }
+
+        return new Node<>(item, node.left, node.right);
+    }
+
+    private static <T> Node<T> remove(final Node<T> node, final int index) {
+        int leftSize = size(node.left);
+        if (index < leftSize) {
+            return balance(node.item, remove(node.left, index), node.right);
+        }
+
+        if (index > leftSize) {
+            return balance(node.item, node.left, remove(node.right, index - leftSize - 1));
+        }
+
+        if (node.left == null) {
+            return node.right;
+        }
+
+        if (node.right == null) {
+            return node.left;
+        }
+
+        // Replace the node with the first item of its right subtree
+        return balance(get(node.right, 0).item, node.left, remove(node.right, 0));
+    }
+
+    private static <T> Node<T> build(final Object[] items, final int start, final int end) {
+        if (start >= end) {
+            return null;
+        }
+
+        int middle = (start + end) >>> 1;
+
+        @SuppressWarnings("unchecked")
+        T item = (T) items[middle];
+
+        return new Node<>(item, build(items, start, middle), build(items, middle + 1, end));
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentList EMPTY = new PersistentList<>(null);
+
+    private final Node<T> root;
+
+    private PersistentList(final Node<T> root) {
+        this.root = root;
+    }
+
+    /**
+     * @param <T> Type of elements in the list.
+     * @return The empty persistent list.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentList<T> empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a persistent list containing the given items, in O(n) time.
+     *
+     * @param <T> Type of elements in the list.
+     * @param items The items of the list.
+     * @return A list containing the items.
+     */
+    @SafeVarargs
+    public static <T> PersistentList<T> of(final T... items) {
+        // The varargs array is only read, never passed on, so that it is safe
+        if (items == null) {
+            throw new IllegalArgumentException("items must not be null.");
+        }
+
+        Object[] itemsLocal = new Object[items.length];
+        for (int i = 0; i < itemsLocal.length; i++) {
+            itemsLocal[i] = items[i];
+        }
+
+        return (itemsLocal.length == 0) ? empty() : new PersistentList<>(build(itemsLocal, 0, itemsLocal.length));
+    }
+
+    /**
+     * Creates a persistent list containing the items of the given sequence,
+     * in O(n) time.
+     *
+     * @param <T> Type of elements in the list.
+     * @param sequence The items of the list.
+     * @return A list containing the items.
+     */
+    public static <T> PersistentList<T> of(final Sequence<T> sequence) {
+        Utils.checkNull(sequence, "sequence");
+
+        if (sequence instanceof PersistentList<?>) {
+            return (PersistentList<T>) sequence;
+        }
+
+        Object[] items = new Object[sequence.getLength()];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = sequence.get(i);
+        }
+
+        return (items.length == 0) ? empty() : new PersistentList<>(build(items, 0, items.length));
+    }
+
+    /**
+     * Returns a list with the given item appended to the end of this list.
+     *
+     * @param item The item to append.
+     * @return The new list.
+     */
+    public PersistentList<T> with(final T item) {
+        return withInserted(item, getLength());
+    }
+
+    /**
+     * Returns a list with the given item inserted into this list.
+     *
+     * @param item The item to insert.
+     * @param index The index at which the item should be inserted. Must be a
+     * value between <tt>0</tt> and <tt>getLength()</tt>.
+     * @return The new list.
+     */
+    public PersistentList<T> withInserted(final T item, final int index) {
+        Utils.checkIndexBounds(index, 0, getLength());
+
+        return new PersistentList<>(insert(root, index, item));
+    }
+
+    /**
+     * Returns a list with the item at the given index replaced.
+     *
+     * @param index The index of the item to replace.
+     * @param item The item that will replace the existing one.
+     * @return The new list.
+     */
+    public PersistentList<T> withUpdated(final int index, final T item) {
+        Utils.checkZeroBasedIndex(index, getLength());
+
+        return new PersistentList<>(update(root, index, item));
+    }
+
+    /**
+     * Returns a list with the item at the given index removed.
+     *
+     * @param index The index of the item to remove.
+     * @return The new list.
+     */
+    public PersistentList<T> without(final int index) {
+        Utils.checkZeroBasedIndex(index, getLength());
+
+        Node<T> updatedRoot = remove(root, index);
+        return (updatedRoot == null) ? empty() : new PersistentList<>(updatedRoot);
+    }
+
+    @Override
+    public T get(final int index) {
+        Utils.checkZeroBasedIndex(index, getLength());
+
+        return get(root, index).item;
+    }
+
+    @Override
+    public int indexOf(final T item) {
+        int i = 0;
+        for (T t : this) {
+            if ((item == null && t == null) || (item != null && item.equals(t))) {
+                return i;
+            }
+
+            i++;
+        }
+
+        return -1;
+    }
+
+    @Override
+    public int getLength() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            // The nodes whose items and right subtrees are still to be visited
+            private final ArrayDeque<Node<T>> stack = new ArrayDeque<>(Math.max(height(root), 1));
+
+            {
+                pushLeft(root);
+            }
+
+            private void pushLeft(final Node<T> node) {
+                for (Node<T> n = node; n != null; n = n.left) {
+                    stack.push(n);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+
+                Node<T> node = stack.pop();
+                pushLeft(node.right);
+
+                return node.item;
+            }
+
+            @Override
+            @UnsupportedOperation
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof PersistentList<?>)) {
+            return false;
+        }
+
+        PersistentList<?> list = (PersistentList<?>) o;
+        if (getLength() != list.getLength()) {
+            return false;
+        }
+
+        Iterator<?> iterator = list.iterator();
+        for (T item : this) {
+            Object other = iterator.next();
+            if (item == null ? other != null : !item.equals(other)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 1;
+
+        for (T item : this) {
+            hashCode = 31 * hashCode + (item == null ? 0 : item.hashCode());
+        }
+
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(getClass().getSimpleName());
+        sb.append(" [");
+
+        int i = 0;
+        for (T item : this) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+
+            sb.append(item);
+            i++;
+        }
+
+        sb.append("]");
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,487 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections.mapped;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.pivot.annotations.UnsupportedOperation;
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.Dictionary;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.ListListener;
+import org.apache.pivot.collections.ReadOnlySequence;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.collections.immutable.ImmutableList;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.util.ListenerList;
+import org.apache.pivot.util.Utils;
+
+/**
+ * Read-only implementation of the {@link List} interface whose records are
+ * stored in a memory-mapped file written by {@link MappedListWriter}. <p>
+ * Opening a list only maps the file and reads the column keys; nothing else
+ * is read until it is needed. {@link #get} returns a lightweight {@link Row}
+ * view of a record that decodes each value from the mapped file the first
+ * time it is requested, and the most recently used views are handed out
+ * again rather than recreated. Scrolling through the list in a
+ * <tt>TableView</tt> therefore only touches the visible records, and the
+ * operating system pages the file in and out as needed, so lists much larger
+ * than the heap (or than 2GB) can be viewed. <p> Like the other collections,
+ * a mapped list is not thread-safe: the list and the rows it returns cache
+ * what they read, so they must be used by one thread at a time, such as the
+ * UI thread. <p> A mapped list is a view of its file, so it can't be
+ * serialized; send the file, and open it again, instead.
+ */
+public final class MappedList extends ReadOnlySequence<MappedList.Row> implements List<MappedList.Row> {
+    private static final long serialVersionUID = 4617399612386417152L;
+
+    /**
+     * A read-only view of one record of a mapped list, which maps the column
+     * keys to the record's values.
+     */
+    public static final class Row implements Dictionary<String, Object> {
+        /**
+         * The offsets of a record's values, and the values decoded so far.
+         */
+        private static final class Record {
+            public final int[] offsets;
+            public final Object[] values;
+
+            public Record(final int[] offsets) {
+                this.offsets = offsets;
+                this.values = new Object[offsets.length];
+            }
+        }
+
+        private final MappedList list;
+        private final int index;
+        private final ByteBuffer segment;
+        private final int start;
+
+        // The offsets and values are created together, so that one is never
+        // seen without the other
+        private Record record = null;
+
+        private Row(final MappedList list, final int index, final ByteBuffer segment, final int start) {
+            this.list = list;
+            this.index = index;
+            this.segment = segment;
+            this.start = start;
+        }
+
+        /**
+         * @return The index of this row in its list.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns the value of a column, by index.
+         *
+         * @param column The index of the column, in key order.
+         * @return The value of the column in this row.
+         */
+        public Object get(final int column) {
+            Utils.checkZeroBasedIndex(column, list.keys.length);
+
+            Record recordLocal = record;
+            if (recordLocal == null) {
+                // Locate the values in a single pass over the record
+                int[] offsets = new int[list.keys.length];
+                int offset = start;
+                for (int i = 0; i < offsets.length; i++) {
+                    offsets[i] = offset;
+                    offset = skipValue(segment, offset);
+                }
+
+                recordLocal = new Record(offsets);
+                record = recordLocal;
+            }
+
+            Object value = recordLocal.values[column];
+            if (value == null) {
+                value = readValue(segment, recordLocal.offsets[column]);
+                recordLocal.values[column] = value;
+            }
+
+            return (value == NULL_VALUE) ? null : value;
+        }
+
+        @Override
+        public Object get(final String key) {
+            Integer column = list.columns.get(key);
+            return (column == null) ? null : get(column.intValue());
+        }
+
+        @Override
+        @UnsupportedOperation
+        public Object put(final String key, final Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        @UnsupportedOperation
+        public Object remove(final String key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean containsKey(final String key) {
+            return list.columns.containsKey(key);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return (o instanceof Row) && ((Row) o).list == list && ((Row) o).index == index;
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+
+            sb.append(getClass().getSimpleName());
+            sb.append(" {");
+
+            for (int i = 0; i < list.keys.length; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+
+                sb.append(list.keys[i] + ":" + get(i));
+            }
+
+            sb.append("}");
+
+            return sb.toString();
+        }
+    }
+
+    private final File file;
+    private final ByteBuffer[] segments;
+    private final int segmentSize;
+    private final int length;
+    private final long indexPosition;
+
+    private final String[] keys;
+    private final HashMap<String, Integer> columns = new HashMap<>();
+    private final Sequence<String> keySequence;
+
+    private final Row[] rowCache = new Row[ROW_CACHE_SIZE];
+
+    private transient ListListenerList<Row> listListeners = new ListListenerList<>();
+
+    static final int MAGIC = 0x50564D4C;
+    static final int VERSION = 1;
+
+    // Positions of the fields of the header
+    static final int SEGMENT_SIZE_POSITION = 8;
+    static final int LENGTH_POSITION = 12;
+    static final int INDEX_POSITION_POSITION = 16;
+    static final int KEY_COUNT_POSITION = 24;
+    static final int HEADER_SIZE = 28;
+
+    // Value types
+    static final byte NULL_TYPE = 0;
+    static final byte STRING_TYPE = 1;
+    static final byte INTEGER_TYPE = 2;
+    static final byte LONG_TYPE = 3;
+    static final byte FLOAT_TYPE = 4;
+    static final byte DOUBLE_TYPE = 5;
+    static final byte TRUE_TYPE = 6;
+    static final byte FALSE_TYPE = 7;
+    static final byte JSON_TYPE = 8;
+
+    private static final int ROW_CACHE_SIZE = 1024;
+
+    // Marks a decoded null value in a row
+    private static final Object NULL_VALUE = new Object();
+
+    /**
+     * Opens a list stored in the given file.
+     *
+     * @param file A file written by {@link MappedListWriter}.
+     * @throws IOException if the file can't be read or isn't a mapped list file.
+     */
+    public MappedList(final File file) throws IOException {
+        Utils.checkNull(file, "file");
+
+        this.file = file;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                continue;
+            }
+
+            if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+                throw new IOException(file + " is not a mapped list file.");
+            }
+
+            if (header.getInt(4) != VERSION) {
+                throw new IOException(file + " has unsupported version " + header.getInt(4) + ".");
+            }
+
+            segmentSize = header.getInt(SEGMENT_SIZE_POSITION);
+            length = header.getInt(LENGTH_POSITION);
+            indexPosition = header.getLong(INDEX_POSITION_POSITION);
+
+            if (segmentSize <= 0 || length < 0 || indexPosition + 8L * length > size) {
+                throw new IOException(file + " is incomplete or corrupt.");
+            }
+
+            // Map the file in segments, since a single buffer can't exceed 2GB
+            segments = new ByteBuffer[(int) ((size + segmentSize - 1) / segmentSize)];
+            for (int i = 0; i < segments.length; i++) {
+                long position = (long) i * segmentSize;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(segmentSize, size - position));
+            }
+
+            // The keys are stored in the first segment, after the header
+            ByteBuffer segment = segments[0];
+            keys = new String[segment.getInt(KEY_COUNT_POSITION)];
+
+            int offset = HEADER_SIZE;
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = (String) readValue(segment, offset);
+                columns.put(keys[i], Integer.valueOf(i));
+                offset = skipValue(segment, offset);
+            }
+        }
+
+        keySequence = new ImmutableList<>(new ArrayList<>(keys));
+    }
+
+    /**
+     * @return The file this list is stored in.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return The keys of the columns of each row, in column order.
+     */
+    public Sequence<String> getKeys() {
+        return keySequence;
+    }
+
+    /**
+     * Returns a view of the record at the given index. The view is decoded
+     * lazily, and may be shared with other callers requesting the same
+     * record.
+     *
+     * @param index The index of the record.
+     * @return A read-only view of the record.
+     */
+    @Override
+    public Row get(final int index) {
+        Utils.checkZeroBasedIndex(index, length);
+
+        int slot = index & (ROW_CACHE_SIZE - 1);
+        Row row = rowCache[slot];
+
+        if (row == null || row.index != index) {
+            long indexEntry = indexPosition + 8L * index;
+            long position = segments[(int) (indexEntry / segmentSize)].getLong((int) (indexEntry % segmentSize));
+
+            // Records never span segments
+            row = new Row(this, index, segments[(int) (position / segmentSize)], (int) (position % segmentSize));
+            rowCache[slot] = row;
+        }
+
+        return row;
+    }
+
+    @Override
+    public int indexOf(final Row row) {
+        return (row != null && row.list == this) ? row.index : -1;
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (length == 0);
+    }
+
+    @Override
+    @UnsupportedOperation
+    public void clear() {
+        throw new UnsupportedOperationException(unsupportedOperationMsg);
+    }
+
+    @Override
+    public Comparator<Row> getComparator() {
+        return null;
+    }
+
+    @Override
+    @UnsupportedOperation
+    public void setComparator(final Comparator<Row> comparator) {
+        throw new UnsupportedOperationException(unsupportedOperationMsg);
+    }
+
+    @Override
+    public Iterator<Row> iterator() {
+        return new Iterator<Row>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return (index < length);
+            }
+
+            @Override
+            public Row next() {
+                if (index >= length) {
+                    throw new NoSuchElementException();
+                }
+
+                return get(index++);
+            }
+
+            @Override
+            @UnsupportedOperation
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Get the list of listeners for this list. <p> The listeners are never
+     * called, since the list can't change.
+     *
+     * @return The list listener list.
+     */
+    @Override
+    public ListenerList<ListListener<Row>> getListListeners() {
+        return listListeners;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [" + file.getPath() + ", " + length + " rows]";
+    }
+
+    private static int skipValue(final ByteBuffer segment, final int offset) {
+        byte type = segment.get(offset);
+
+        switch (type) {
+            case NULL_TYPE:
+            case TRUE_TYPE:
+            case FALSE_TYPE:
+                return offset + 1;
+
+            case INTEGER_TYPE:
+            case FLOAT_TYPE:
+                return offset + 5;
+
+            case LONG_TYPE:
+            case DOUBLE_TYPE:
+                return offset + 9;
+
+            case STRING_TYPE:
+            case JSON_TYPE:
+                return offset + 5 + segment.getInt(offset + 1);
+
+            default:
+                throw new IllegalStateException("Invalid value type " + type + " at offset " + offset + ".");
+        }
+    }
+
+    private static Object readValue(final ByteBuffer segment, final int offset) {
+        byte type = segment.get(offset);
+
+        switch (type) {
+            case NULL_TYPE:
+                return NULL_VALUE;
+
+            case TRUE_TYPE:
+                return Boolean.TRUE;
+
+            case FALSE_TYPE:
+                return Boolean.FALSE;
+
+            case INTEGER_TYPE:
+                return Integer.valueOf(segment.getInt(offset + 1));
+
+            case FLOAT_TYPE:
+                return Float.valueOf(segment.getFloat(offset + 1));
+
+            case LONG_TYPE:
+                return Long.valueOf(segment.getLong(offset + 1));
+
+            case DOUBLE_TYPE:
+                return Double.valueOf(segment.getDouble(offset + 1));
+
+            case STRING_TYPE:
+                return readString(segment, offset);
+
+            case JSON_TYPE:
+                try {
+                    return JSONSerializer.parse(readString(segment, offset));
+                } catch (SerializationException exception) {
+                    throw new IllegalStateException(exception);
+                }
+
+            default:
+                throw new IllegalStateException("Invalid value type " + type + " at offset " + offset + ".");
+        }
+    }
+
+    private static String readString(final ByteBuffer segment, final int offset) {
+        ByteBuffer bytes = segment.duplicate();
+        bytes.limit(offset + 5 + segment.getInt(offset + 1));
+        bytes.position(offset + 5);
+
+        return StandardCharsets.UTF_8.decode(bytes).toString();
+    }
+
+    private void writeObject(final ObjectOutputStream outputStream) throws IOException {
+        throw new NotSerializableException(getClass().getName());
+    }
+
+    private void readObject(final ObjectInputStream inputStream) throws IOException {
+        throw new NotSerializableException(getClass().getName());
+    }
+}
@@ -0,0 +1,559 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections.mapped;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.Dictionary;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.json.JSONSerializerListener;
+import org.apache.pivot.serialization.CSVSerializer;
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.util.Constants;
+import org.apache.pivot.util.Utils;
+
+/**
+ * Writes records to a file that can be opened as a {@link MappedList}. <p>
+ * Each record is a row of values, one per key; values may be strings,
+ * integers, longs, floats, doubles, booleans, <tt>null</tt>, or dictionaries
+ * and sequences (which are stored as JSON). Any other value is stored as its
+ * string representation. Records are written as they are added, so only the
+ * record being written is held in memory; the file is complete once the
+ * writer has been closed. <p> {@link #writeCSV} and {@link #writeJSON}
+ * convert comma-separated value and JSON input without reading all of it
+ * into memory.
+ */
+public final class MappedListWriter implements Closeable {
+    /**
+     * Adds the items read from CSV or JSON input to a writer, which is
+     * created once the keys are known.
+     */
+    private static final class ItemWriter implements JSONSerializerListener {
+        private final File file;
+        private ArrayList<String> keys;
+        private MappedListWriter writer = null;
+
+        // Tracks the position in the JSON input
+        private int sequenceDepth = 0;
+        private int dictionaryDepth = 0;
+        private boolean collectKeys;
+
+        public ItemWriter(final File file, final Sequence<String> keys) {
+            this.file = file;
+            this.keys = (keys == null) ? new ArrayList<>() : new ArrayList<>(keys);
+
+            collectKeys = (keys == null);
+        }
+
+        public void add(final Object item) {
+            try {
+                if (writer == null) {
+                    writer = new MappedListWriter(file, keys);
+                }
+
+                writer.addItem(item);
+            } catch (IOException | SerializationException exception) {
+                throw new ItemException(exception);
+            }
+        }
+
+        public int close() throws IOException {
+            if (writer == null) {
+                writer = new MappedListWriter(file, keys);
+            }
+
+            writer.close();
+
+            return writer.getLength();
+        }
+
+        public void discard() {
+            if (writer != null) {
+                writer.discard();
+            }
+        }
+
+        @Override
+        public void beginSequence(final JSONSerializer jsonSerializer, final Sequence<?> value) {
+            sequenceDepth++;
+        }
+
+        @Override
+        public void endSequence(final JSONSerializer jsonSerializer) {
+            sequenceDepth--;
+        }
+
+        @Override
+        public void beginDictionary(final JSONSerializer jsonSerializer, final Dictionary<String, ?> value) {
+            dictionaryDepth++;
+        }
+
+        @Override
+        public void endDictionary(final JSONSerializer jsonSerializer) {
+            dictionaryDepth--;
+
+            // Take the keys from the first item, in the order they appear
+            if (dictionaryDepth == 0) {
+                collectKeys = false;
+            }
+        }
+
+        @Override
+        public void readKey(final JSONSerializer jsonSerializer, final String key) {
+            if (collectKeys && sequenceDepth == 1 && dictionaryDepth == 1) {
+                keys.add(key);
+            }
+        }
+
+        @Override
+        public void readItem(final JSONSerializer jsonSerializer, final Sequence<?> sequence, final Object item) {
+            if (sequenceDepth == 1) {
+                add(item);
+
+                // Don't keep the items that have been written
+                sequence.remove(sequence.getLength() - 1, 1);
+            }
+        }
+    }
+
+    /**
+     * Carries a checked exception out of a consumer or listener.
+     */
+    private static final class ItemException extends RuntimeException {
+        private static final long serialVersionUID = -2839165047916358521L;
+
+        public ItemException(final Exception cause) {
+            super(cause);
+        }
+    }
+
+    private final File file;
+    private final ArrayList<String> keys;
+    private final int keyCount;
+    private final int segmentSize;
+
+    private final DataOutputStream output;
+    private long position = 0;
+    private int length = 0;
+
+    private final File indexFile;
+    private final DataOutputStream indexOutput;
+
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final DataOutputStream recordOutput = new DataOutputStream(recordBytes);
+
+    private boolean closed = false;
+
+    /**
+     * The default size of the segments the file is mapped in (1GB).
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+    private static final byte[] PADDING = new byte[Constants.BUFFER_SIZE];
+
+    /**
+     * Creates a writer using the default segment size.
+     *
+     * @param file The file to write.
+     * @param keys The keys of the columns of each record.
+     * @throws IOException if the file can't be written.
+     */
+    public MappedListWriter(final File file, final Sequence<String> keys) throws IOException {
+        this(file, keys, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates a writer.
+     *
+     * @param file The file to write.
+     * @param keys The keys of the columns of each record.
+     * @param segmentSize The size of the segments the file will be mapped in.
+     * Records are laid out so that none spans two segments, so each record
+     * must fit in a segment. Must be a positive multiple of 8.
+     * @throws IOException if the file can't be written.
+     */
+    public MappedListWriter(final File file, final Sequence<String> keys, final int segmentSize)
+        throws IOException {
+        Utils.checkNull(file, "file");
+        Utils.checkNull(keys, "keys");
+        Utils.checkPositive(segmentSize, "segmentSize");
+
+        if (segmentSize % 8 != 0) {
+            throw new IllegalArgumentException("segmentSize must be a multiple of 8.");
+        }
+
+        this.file = file;
+        this.keys = new ArrayList<>(keys);
+        this.keyCount = keys.getLength();
+        this.segmentSize = segmentSize;
+
+        // Write the header, leaving the length and index position to be filled in on close
+        recordOutput.writeInt(MappedList.MAGIC);
+        recordOutput.writeInt(MappedList.VERSION);
+        recordOutput.writeInt(segmentSize);
+        recordOutput.writeInt(0);
+        recordOutput.writeLong(0);
+        recordOutput.writeInt(keyCount);
+
+        for (int i = 0; i < keyCount; i++) {
+            writeString(MappedList.STRING_TYPE, keys.get(i));
+        }
+
+        if (recordBytes.size() > segmentSize) {
+            throw new IllegalArgumentException("The keys don't fit in a segment.");
+        }
+
+        // Record offsets are collected in a separate file, and appended on
+        // close; it is deleted by close() or discard(), or here on failure
+        indexFile = File.createTempFile(file.getName(), ".index", file.getAbsoluteFile().getParentFile());
+
+        try {
+            indexOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile),
+                Constants.BUFFER_SIZE));
+        } catch (IOException exception) {
+            indexFile.delete();
+            throw exception;
+        }
+
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file),
+                Constants.BUFFER_SIZE));
+        } catch (IOException exception) {
+            indexOutput.close();
+            indexFile.delete();
+            throw exception;
+        }
+
+        recordBytes.writeTo(output);
+        position = recordBytes.size();
+    }
+
+    /**
+     * Adds a record.
+     *
+     * @param values The values of the record, in key order.
+     * @throws IOException if the record can't be written.
+     * @throws SerializationException if a dictionary or sequence value can't
+     * be converted to JSON.
+     * @throws IllegalArgumentException if the number of values doesn't match
+     * the number of keys, or the record doesn't fit in a segment.
+     */
+    public void add(final Object... values) throws IOException, SerializationException {
+        Utils.checkNull(values, "values");
+
+        if (values.length != keyCount) {
+            throw new IllegalArgumentException("Expected " + keyCount + " values, not " + values.length + ".");
+        }
+
+        checkOpen();
+
+        recordBytes.reset();
+        for (Object value : values) {
+            writeValue(value);
+        }
+
+        writeRecord();
+    }
+
+    /**
+     * Adds a record.
+     *
+     * @param values The values of the record, by key. Missing keys have
+     * <tt>null</tt> values.
+     * @throws IOException if the record can't be written.
+     * @throws SerializationException if a dictionary or sequence value can't
+     * be converted to JSON.
+     * @throws IllegalArgumentException if the record doesn't fit in a segment.
+     */
+    public void add(final Dictionary<String, ?> values) throws IOException, SerializationException {
+        Utils.checkNull(values, "values");
+
+        checkOpen();
+
+        recordBytes.reset();
+        for (int i = 0; i < keyCount; i++) {
+            writeValue(values.get(keys.get(i)));
+        }
+
+        writeRecord();
+    }
+
+    /**
+     * @return The number of records added so far.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Completes the file by appending the index of the records and filling
+     * in the header.
+     *
+     * @throws IOException if the file can't be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        try {
+            indexOutput.close();
+
+            // Align the index, so that no offset in it spans two segments
+            pad((int) (-position & 7));
+            long indexPosition = position;
+
+            Files.copy(indexFile.toPath(), output);
+            output.flush();
+
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                randomAccessFile.seek(MappedList.LENGTH_POSITION);
+                randomAccessFile.writeInt(length);
+                randomAccessFile.writeLong(indexPosition);
+            }
+        } finally {
+            output.close();
+            indexFile.delete();
+        }
+    }
+
+    /**
+     * Closes the writer without completing the file, and deletes the file.
+     */
+    private void discard() {
+        closed = true;
+
+        try {
+            indexOutput.close();
+        } catch (IOException exception) {
+            // No-op
+        }
+
+        try {
+            output.close();
+        } catch (IOException exception) {
+            // No-op
+        }
+
+        indexFile.delete();
+        file.delete();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The writer has been closed.");
+        }
+    }
+
+    private void addItem(final Object item) throws IOException, SerializationException {
+        if (item instanceof Object[]) {
+            add((Object[]) item);
+        } else if (item instanceof Dictionary<?, ?>) {
+            @SuppressWarnings("unchecked")
+            Dictionary<String, ?> dictionary = (Dictionary<String, ?>) item;
+            add(dictionary);
+        } else {
+            throw new IllegalArgumentException("Items must be dictionaries, not "
+                + ((item == null) ? "null" : item.getClass().getName()) + ".");
+        }
+    }
+
+    private void writeRecord() throws IOException {
+        int recordSize = recordBytes.size();
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("Record " + length + " is " + recordSize
+                + " bytes, which is larger than the segment size.");
+        }
+
+        if (length == Integer.MAX_VALUE) {
+            throw new IllegalStateException("A mapped list can't have more than " + Integer.MAX_VALUE + " records.");
+        }
+
+        // Move the record to the next segment rather than let it span two
+        long segmentEnd = (position / segmentSize + 1) * segmentSize;
+        if (position + recordSize > segmentEnd) {
+            pad((int) (segmentEnd - position));
+        }
+
+        indexOutput.writeLong(position);
+        recordBytes.writeTo(output);
+
+        position += recordSize;
+        length++;
+    }
+
+    private void pad(final int count) throws IOException {
+        int remaining = count;
+        while (remaining > 0) {
+            int n = Math.min(remaining, PADDING.length);
+            output.write(PADDING, 0, n);
+            remaining -= n;
+        }
+
+        position += count;
+    }
+
+    private void writeValue(final Object value) throws IOException, SerializationException {
+        if (value == null) {
+            recordOutput.writeByte(MappedList.NULL_TYPE);
+        } else if (value instanceof String) {
+            writeString(MappedList.STRING_TYPE, (String) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            recordOutput.writeByte(MappedList.INTEGER_TYPE);
+            recordOutput.writeInt(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            recordOutput.writeByte(MappedList.LONG_TYPE);
+            recordOutput.writeLong(((Long) value).longValue());
+        } else if (value instanceof Float) {
+            recordOutput.writeByte(MappedList.FLOAT_TYPE);
+            recordOutput.writeFloat(((Float) value).floatValue());
+        } else if (value instanceof Double) {
+            recordOutput.writeByte(MappedList.DOUBLE_TYPE);
+            recordOutput.writeDouble(((Double) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            recordOutput.writeByte(((Boolean) value).booleanValue() ? MappedList.TRUE_TYPE : MappedList.FALSE_TYPE);
+        } else if (value instanceof Dictionary<?, ?> || value instanceof Sequence<?>) {
+            writeString(MappedList.JSON_TYPE, JSONSerializer.toString(value));
+        } else {
+            writeString(MappedList.STRING_TYPE, value.toString());
+        }
+    }
+
+    private void writeString(final byte type, final String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        recordOutput.writeByte(type);
+        recordOutput.writeInt(bytes.length);
+        recordOutput.write(bytes);
+    }
+
+    /**
+     * Converts comma-separated values to a mapped list file. The input is
+     * read by the given serializer, whose keys (if it has none, they are read
+     * from the first line), column types and other settings apply as usual.
+     * If the conversion fails, the partly written file is deleted.
+     *
+     * @param reader The comma-separated values to convert.
+     * @param csvSerializer The serializer to read the values with.
+     * @param file The file to write.
+     * @return The number of records written.
+     * @throws IOException if the input can't be read or the file can't be written.
+     * @throws SerializationException for any formatting errors in the input.
+     */
+    public static int writeCSV(final Reader reader, final CSVSerializer csvSerializer, final File file)
+        throws IOException, SerializationException {
+        Utils.checkNull(csvSerializer, "csvSerializer");
+        Utils.checkNull(file, "file");
+
+        ItemWriter itemWriter = new ItemWriter(file, null);
+        boolean written = false;
+
+        try {
+            csvSerializer.readItems(reader, item -> {
+                if (itemWriter.writer == null) {
+                    itemWriter.keys = new ArrayList<>(csvSerializer.getKeys());
+                }
+
+                itemWriter.add(item);
+            });
+
+            if (itemWriter.writer == null) {
+                itemWriter.keys = new ArrayList<>(csvSerializer.getKeys());
+            }
+
+            int count = itemWriter.close();
+            written = true;
+
+            return count;
+        } catch (ItemException exception) {
+            throw rethrow(exception);
+        } finally {
+            if (!written) {
+                itemWriter.discard();
+            }
+        }
+    }
+
+    /**
+     * Converts a JSON array of objects to a mapped list file. The array is
+     * parsed one item at a time, so it needn't fit in memory. If the
+     * conversion fails, the partly written file is deleted.
+     *
+     * @param reader The JSON to convert.
+     * @param keys The keys of the values to write, or <tt>null</tt> to use the
+     * keys of the first object, in the order they appear.
+     * @param file The file to write.
+     * @return The number of records written.
+     * @throws IOException if the input can't be read or the file can't be written.
+     * @throws SerializationException for any formatting errors in the input,
+     * or if it isn't an array.
+     */
+    public static int writeJSON(final Reader reader, final Sequence<String> keys, final File file)
+        throws IOException, SerializationException {
+        Utils.checkNull(reader, "reader");
+        Utils.checkNull(file, "file");
+
+        ItemWriter itemWriter = new ItemWriter(file, keys);
+
+        JSONSerializer jsonSerializer = new JSONSerializer();
+        jsonSerializer.getJSONSerializerListeners().add(itemWriter);
+
+        boolean written = false;
+
+        try {
+            Object value = jsonSerializer.readObject(reader);
+            if (!(value instanceof Sequence<?>)) {
+                throw new SerializationException("Expected a JSON array of objects.");
+            }
+
+            int count = itemWriter.close();
+            written = true;
+
+            return count;
+        } catch (ItemException exception) {
+            throw rethrow(exception);
+        } finally {
+            if (!written) {
+                itemWriter.discard();
+            }
+        }
+    }
+
+    private static IOException rethrow(final ItemException exception) throws SerializationException {
+        Throwable cause = exception.getCause();
+        if (cause instanceof SerializationException) {
+            throw (SerializationException) cause;
+        }
+
+        return (IOException) cause;
+    }
+}
@@ -54,6 +54,11 @@ public interface JSONSerializerListener {
             forEach(listener -> listener.endSequence(jsonSerializer));
         }
 
+        @Override
+        public void readItem(JSONSerializer jsonSerializer, Sequence<?> sequence, Object item) {
+            forEach(listener -> listener.readItem(jsonSerializer, sequence, item));
+        }
+
         @Override
         public void readString(JSONSerializer jsonSerializer, String value) {
             forEach(listener -> listener.readString(jsonSerializer, value));
@@ -106,6 +111,11 @@ public interface JSONSerializerListener {
             // empty block
         }
 
+        @Override
+        public void readItem(JSONSerializer jsonSerializer, Sequence<?> sequence, Object item) {
+            // empty block
+        }
+
         @Override
         public void readString(JSONSerializer jsonSerializer, String value) {
             // empty block
@@ -170,6 +180,17 @@ public interface JSONSerializerListener {
     default void endSequence(JSONSerializer jsonSerializer) {
     }
 
+    /**
+     * Called when the serializer has read an item of a sequence and added it
+     * to the sequence.
+     *
+     * @param jsonSerializer The current serializer.
+     * @param sequence The sequence the item was added to.
+     * @param item The item just read.
+     */
+    default void readItem(JSONSerializer jsonSerializer, Sequence<?> sequence, Object item) {
+    }
+
     /**
      * Called when the serializer has read a string value.
      *
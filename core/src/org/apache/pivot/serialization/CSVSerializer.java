@@ -18,29 +18,50 @@ package org.apache.pivot.serialization;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.LineNumberReader;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.text.DateFormat;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 
 import org.apache.pivot.beans.BeanAdapter;
 import org.apache.pivot.collections.ArrayAdapter;
 import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.ArrayQueue;
+import org.apache.pivot.collections.ColumnarList;
 import org.apache.pivot.collections.Dictionary;
 import org.apache.pivot.collections.HashMap;
 import org.apache.pivot.collections.List;
 import org.apache.pivot.collections.Sequence;
 import org.apache.pivot.io.EchoReader;
 import org.apache.pivot.io.EchoWriter;
+import org.apache.pivot.util.CalendarDate;
 import org.apache.pivot.util.Constants;
 import org.apache.pivot.util.ListenerList;
 import org.apache.pivot.util.Utils;
@@ -50,6 +71,504 @@ import org.apache.pivot.util.Utils;
  * writes data to a comma-separated value (CSV) file.
  */
 public class CSVSerializer implements Serializer<List<?>> {
+    /**
+     * Reads records from a character buffer, refilling it in bulk from a
+     * reader (if any) rather than reading one character at a time.
+     */
+    private final class RecordReader {
+        private final Reader reader;
+        private final String[] recordKeys;
+        private final boolean columnar = CSVSerializer.this.columnar;
+        private Constructor<?> itemConstructor = null;
+        private DateFormat dateFormat = null;
+
+        private char[] buffer;
+        private int index;
+        private int count;
+
+        private int c = -1;
+        private int lineNumber = 1;
+        private StringBuilder valueBuilder = new StringBuilder();
+
+        public RecordReader(final Reader reader) {
+            this.reader = reader;
+            this.recordKeys = null;
+
+            buffer = new char[Constants.BUFFER_SIZE];
+            index = 0;
+            count = 0;
+        }
+
+        public RecordReader(final char[] chars, final int offset, final int length) {
+            this.reader = null;
+            this.recordKeys = keysToArray();
+
+            buffer = chars;
+            index = offset;
+            count = offset + length;
+        }
+
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        private String[] keysToArray() {
+            String[] keyArray = new String[keys.getLength()];
+            for (int i = 0; i < keyArray.length; i++) {
+                keyArray[i] = keys.get(i);
+            }
+
+            return keyArray;
+        }
+
+        private boolean fill() throws IOException {
+            if (reader == null) {
+                return false;
+            }
+
+            int n;
+            do {
+                n = reader.read(buffer, 0, buffer.length);
+            } while (n == 0);
+
+            index = 0;
+            count = Math.max(n, 0);
+
+            return (n > 0);
+        }
+
+        private int read() throws IOException {
+            if (index == count && !fill()) {
+                return -1;
+            }
+
+            return buffer[index++];
+        }
+
+        public String readLine() throws IOException {
+            int ch = read();
+            if (ch == -1) {
+                return null;
+            }
+
+            StringBuilder lineBuilder = new StringBuilder();
+            while (ch != -1 && ch != '\r' && ch != '\n') {
+                lineBuilder.append((char) ch);
+                ch = read();
+            }
+
+            // Treat CR LF as a single line break
+            if (ch == '\r' && (index < count || fill()) && buffer[index] == '\n') {
+                index++;
+            }
+
+            lineNumber++;
+
+            return lineBuilder.toString();
+        }
+
+        public void readItems(final Consumer<Object> consumer, final boolean skipLeadingLineBreaks)
+            throws IOException, SerializationException {
+            String[] itemKeys = (recordKeys == null) ? keysToArray() : recordKeys;
+
+            Class<?>[] itemTypes = new Class<?>[itemKeys.length];
+            for (int i = 0; i < itemKeys.length; i++) {
+                itemTypes[i] = columnTypes.get(itemKeys[i]);
+            }
+
+            // Move to the first character
+            c = read();
+
+            // Ignore Byte Order Mark (if present)
+            if (c == Constants.BYTE_ORDER_MARK) {
+                c = read();
+            }
+
+            if (skipLeadingLineBreaks) {
+                skipLineBreaks();
+            }
+
+            while (c != -1) {
+                consumer.accept(readItem(itemKeys, itemTypes));
+
+                // Move to next line
+                skipLineBreaks();
+            }
+        }
+
+        private void skipLineBreaks() throws IOException {
+            while (c == '\r' || c == '\n') {
+                int previous = c;
+                c = read();
+
+                if (previous == '\n' || c != '\n') {
+                    lineNumber++;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object readItem(final String[] itemKeys, final Class<?>[] itemTypes)
+            throws IOException, SerializationException {
+            Object item;
+            Dictionary<String, Object> itemDictionary = null;
+            Object[] itemValues = null;
+
+            if (columnar) {
+                // Collect the values for a row of the columnar list
+                itemValues = new Object[itemKeys.length];
+                item = itemValues;
+            } else {
+                // Instantiate the item
+                if (itemConstructor == null) {
+                    itemConstructor = getItemConstructor();
+                }
+
+                try {
+                    item = itemConstructor.newInstance();
+                } catch (IllegalAccessException | InstantiationException
+                       | InvocationTargetException exception) {
+                    throw new SerializationException(exception);
+                }
+
+                if (item instanceof Dictionary<?, ?>) {
+                    itemDictionary = (Dictionary<String, Object>) item;
+                } else {
+                    itemDictionary = new BeanAdapter(item);
+                }
+            }
+
+            // Add values to the item
+            for (int i = 0, n = itemKeys.length; i < n; i++) {
+                String key = itemKeys[i];
+                String value = readValue();
+                if (value == null) {
+                    throw new SerializationException("Error reading value for " + key
+                        + " from input stream.");
+                }
+
+                if (c == '\r' || c == '\n') {
+                    if (i < n - 1) {
+                        throw new SerializationException("Line data is incomplete.");
+                    }
+
+                    // Move to next char; if LF, move again
+                    int lineBreak = c;
+                    c = read();
+                    lineNumber++;
+
+                    if (c == '\n') {
+                        if (lineBreak == '\n') {
+                            lineNumber++;
+                        }
+
+                        c = read();
+                    }
+                }
+
+                Class<?> type = itemTypes[i];
+                Object itemValue = (type == null) ? value : decodeValue(key, value, type);
+
+                if (itemValues == null) {
+                    itemDictionary.put(key, itemValue);
+                } else {
+                    itemValues[i] = itemValue;
+                }
+            }
+
+            return item;
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private Object decodeValue(final String key, final String value, final Class<?> type)
+            throws SerializationException {
+            // Empty values decode to null for all types other than String
+            if (type == String.class) {
+                return value;
+            }
+
+            if (value.isEmpty()) {
+                return null;
+            }
+
+            try {
+                Object decodedValue;
+
+                if (type == Integer.class || type == Integer.TYPE) {
+                    decodedValue = Integer.valueOf(value);
+                } else if (type == Long.class || type == Long.TYPE) {
+                    decodedValue = Long.valueOf(value);
+                } else if (type == Double.class || type == Double.TYPE) {
+                    decodedValue = Double.valueOf(value);
+                } else if (type == Float.class || type == Float.TYPE) {
+                    decodedValue = Float.valueOf(value);
+                } else if (type == Boolean.class || type == Boolean.TYPE) {
+                    if (value.equalsIgnoreCase("true")) {
+                        decodedValue = Boolean.TRUE;
+                    } else if (value.equalsIgnoreCase("false")) {
+                        decodedValue = Boolean.FALSE;
+                    } else {
+                        throw new IllegalArgumentException("Not a boolean.");
+                    }
+                } else if (type == Date.class) {
+                    if (dateFormat == null) {
+                        dateFormat = new SimpleDateFormat(dateFormatPattern);
+                        dateFormat.setLenient(false);
+                    }
+
+                    // The whole value must be a date
+                    ParsePosition position = new ParsePosition(0);
+                    decodedValue = dateFormat.parse(value, position);
+                    if (decodedValue == null || position.getIndex() != value.length()) {
+                        throw new IllegalArgumentException("Not a date in the format " + dateFormatPattern + ".");
+                    }
+                } else if (type == CalendarDate.class) {
+                    decodedValue = CalendarDate.decode(value);
+                } else {
+                    decodedValue = Enum.valueOf((Class<? extends Enum>) type,
+                        value.toUpperCase(Locale.ENGLISH));
+                }
+
+                return decodedValue;
+            } catch (IllegalArgumentException exception) {
+                throw new SerializationException("Invalid value \"" + value + "\" for " + key
+                    + ".", exception);
+            }
+        }
+
+        private String readValue() throws IOException, SerializationException {
+            // Read the next value from this line, returning null if there are
+            // no more values on the line
+            if (c == -1 || c == '\r' || c == '\n') {
+                return null;
+            }
+
+            // Values may be bounded in quotes; the double-quote character is
+            // escaped by two successive occurrences
+            String value = (c == '"') ? readQuotedValue() : readUnquotedValue();
+
+            // Move to the next character after ',' (don't automatically advance
+            // to the next line)
+            if (c == ',') {
+                c = read();
+            }
+
+            return value;
+        }
+
+        private String readUnquotedValue() throws IOException, SerializationException {
+            // The current character is the last one taken from the buffer
+            int start = index - 1;
+            int i = start;
+            boolean partial = false;
+
+            while (true) {
+                // Scan the buffer for the end of the value
+                while (i < count) {
+                    char ch = buffer[i];
+                    if (ch == ',' || ch == '\r' || ch == '\n') {
+                        break;
+                    }
+
+                    if (ch == '"') {
+                        throw new SerializationException("Dangling quote.");
+                    }
+
+                    i++;
+                }
+
+                if (i < count) {
+                    c = buffer[i];
+                    index = i + 1;
+                    break;
+                }
+
+                // The value continues past the end of the buffer
+                if (!partial) {
+                    valueBuilder.setLength(0);
+                    partial = true;
+                }
+
+                valueBuilder.append(buffer, start, i - start);
+
+                if (!fill()) {
+                    c = -1;
+                    start = 0;
+                    i = 0;
+                    break;
+                }
+
+                start = index;
+                i = index;
+            }
+
+            if (!partial) {
+                return newTrimmedString(buffer, start, i);
+            }
+
+            valueBuilder.append(buffer, start, i - start);
+
+            return valueBuilder.toString().trim();
+        }
+
+        private String readQuotedValue() throws IOException, SerializationException {
+            valueBuilder.setLength(0);
+
+            // Skip the opening quote
+            int start = index;
+            int i = start;
+
+            while (true) {
+                while (i < count && buffer[i] != '"') {
+                    if (buffer[i] == '\n') {
+                        lineNumber++;
+                    }
+
+                    i++;
+                }
+
+                valueBuilder.append(buffer, start, i - start);
+
+                if (i == count) {
+                    if (!fill()) {
+                        throw new SerializationException("Unterminated string.");
+                    }
+
+                    start = index;
+                    i = index;
+                    continue;
+                }
+
+                // Either an escaped quote or the closing quote
+                index = i + 1;
+                c = read();
+
+                if (c != '"') {
+                    break;
+                }
+
+                valueBuilder.append('"');
+                start = index;
+                i = index;
+            }
+
+            if (c != ',' && c != '\r' && c != '\n' && c != -1) {
+                throw new SerializationException("Prematurely terminated quote.");
+            }
+
+            return valueBuilder.toString().trim();
+        }
+    }
+
+    /**
+     * Locates record boundaries in a memory-mapped file, tracking whether the
+     * scan is inside a quoted value so that quoted line breaks are skipped.
+     */
+    private static final class RecordSplitter {
+        private final FileChannel channel;
+        private final long size;
+        private final int chunkSize;
+
+        private MappedByteBuffer window = null;
+        private long windowStart = 0;
+        private long windowEnd = 0;
+
+        private long position = 0;
+        private boolean quoted = false;
+
+        public RecordSplitter(final FileChannel channel, final int chunkSize) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            this.chunkSize = chunkSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        private int get(final long offset) throws IOException {
+            if (offset < windowStart || offset >= windowEnd) {
+                windowStart = offset;
+                windowEnd = Math.min(offset + chunkSize, size);
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+            }
+
+            return window.get((int) (offset - windowStart)) & 0xFF;
+        }
+
+        public void skipByteOrderMark() throws IOException {
+            if (size - position >= 3 && get(position) == 0xEF && get(position + 1) == 0xBB
+                && get(position + 2) == 0xBF) {
+                position += 3;
+            }
+        }
+
+        public String readLine(final Charset charset) throws IOException {
+            if (position == size) {
+                return null;
+            }
+
+            long start = position;
+            long end = start;
+            while (end < size) {
+                int b = get(end);
+                if (b == '\r' || b == '\n') {
+                    break;
+                }
+
+                end++;
+            }
+
+            position = end;
+
+            // Treat CR LF as a single line break
+            if (position < size && get(position) == '\r') {
+                position++;
+            }
+
+            if (position < size && get(position) == '\n') {
+                position++;
+            }
+
+            ByteBuffer line = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+
+            return charset.decode(line).toString();
+        }
+
+        /**
+         * Advances to the first record boundary at least one chunk beyond the
+         * current position.
+         * @return The offset of the boundary, or the file size if there is no
+         * other boundary.
+         */
+        public long nextBoundary() throws IOException {
+            long target = Math.min(position + chunkSize, size);
+
+            while (position < target) {
+                if (get(position++) == '"') {
+                    quoted = !quoted;
+                }
+            }
+
+            while (position < size) {
+                int b = get(position++);
+
+                if (b == '"') {
+                    quoted = !quoted;
+                } else if (!quoted && (b == '\n' || (b == '\r' && position < size
+                    && get(position) != '\n'))) {
+                    break;
+                }
+            }
+
+            return position;
+        }
+    }
+
     private Charset charset;
     private Type itemType;
 
@@ -58,12 +577,19 @@ public class CSVSerializer implements Serializer<List<?>> {
     private boolean writeKeys = false;
     private boolean verbose = false;
 
-    private int c = -1;
+    private HashMap<String, Class<?>> columnTypes = new HashMap<>();
+    private String dateFormatPattern = DEFAULT_DATE_FORMAT;
+
+    private boolean columnar = false;
+    private boolean parallel = false;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
 
     private CSVSerializerListener.Listeners csvSerializerListeners = null;
 
     public static final Charset DEFAULT_CHARSET = StandardCharsets.ISO_8859_1;
     public static final Type DEFAULT_ITEM_TYPE = HashMap.class;
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    public static final String DEFAULT_DATE_FORMAT = "yyyy-MM-dd";
 
     public static final String CSV_EXTENSION = "csv";
     public static final String MIME_TYPE = "text/csv";
@@ -176,6 +702,146 @@ public class CSVSerializer implements Serializer<List<?>> {
         this.verbose = verbose;
     }
 
+    /**
+     * Returns the type that the values of a column are decoded to.
+     *
+     * @param key The key of the column.
+     * @return The column type, or <tt>null</tt> if the values are kept as
+     * strings.
+     * @see #setColumnType(String, Class)
+     */
+    public Class<?> getColumnType(final String key) {
+        Utils.checkNull(key, "key");
+
+        return columnTypes.get(key);
+    }
+
+    /**
+     * Sets the type that the values of a column are decoded to as they are
+     * read, so that they are parsed once rather than every time they are used.
+     * Empty values are decoded to <tt>null</tt>. Booleans must be "true" or
+     * "false", in any case, and dates must match the
+     * {@link #setDateFormat(String) date format} strictly and entirely. Enum
+     * constants are found by the upper case form of their name.
+     *
+     * @param key The key of the column.
+     * @param type One of the primitive number or boolean types or their
+     * wrappers, {@link String}, {@link Date}, {@link CalendarDate} or an enum
+     * type; or <tt>null</tt> to keep the values as strings.
+     * @throws IllegalArgumentException if the key is {@code null} or the type
+     * is not supported.
+     */
+    public void setColumnType(final String key, final Class<?> type) {
+        Utils.checkNull(key, "key");
+
+        if (type == null) {
+            columnTypes.remove(key);
+        } else {
+            if (!(type == Boolean.class || type == Boolean.TYPE
+               || type == Integer.class || type == Integer.TYPE
+               || type == Long.class || type == Long.TYPE
+               || type == Float.class || type == Float.TYPE
+               || type == Double.class || type == Double.TYPE
+               || type == String.class
+               || type == Date.class
+               || type == CalendarDate.class
+               || type.isEnum())) {
+                throw new IllegalArgumentException(type.getName() + " is not a supported type.");
+            }
+
+            columnTypes.put(key, type);
+        }
+    }
+
+    /**
+     * Returns the pattern used to read and write {@link Date} columns.
+     * @return The {@link SimpleDateFormat} pattern.
+     */
+    public String getDateFormat() {
+        return dateFormatPattern;
+    }
+
+    /**
+     * Sets the pattern used to read and write {@link Date} columns.
+     *
+     * @param dateFormat A {@link SimpleDateFormat} pattern.
+     * @throws IllegalArgumentException if the pattern is {@code null}, empty or
+     * invalid.
+     */
+    public void setDateFormat(final String dateFormat) {
+        Utils.checkNullOrEmpty(dateFormat, "dateFormat");
+
+        // Validate the pattern
+        new SimpleDateFormat(dateFormat);
+
+        this.dateFormatPattern = dateFormat;
+    }
+
+    /**
+     * Returns the serializer's columnar flag.
+     * @return <tt>true</tt> if values are read into a {@link ColumnarList},
+     * <tt>false</tt> if they are read into a list of items.
+     */
+    public boolean isColumnar() {
+        return columnar;
+    }
+
+    /**
+     * Sets the serializer's columnar flag. When it is set, a read returns a
+     * {@link ColumnarList} with a column per key, of the declared
+     * {@link #setColumnType(String, Class) column type} or {@link String}, and
+     * no items are instantiated; listeners are passed row views of that list.
+     *
+     * @param columnar Whether or not to read values into a columnar list.
+     */
+    public void setColumnar(final boolean columnar) {
+        this.columnar = columnar;
+    }
+
+    /**
+     * Returns the serializer's parallel flag.
+     * @return <tt>true</tt> if the chunks of a file are parsed concurrently,
+     * <tt>false</tt> if they are parsed one after another.
+     * @see #readObject(File)
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Sets the serializer's parallel flag.
+     *
+     * @param parallel Whether or not to parse the chunks of a file concurrently
+     * on the common fork/join pool.
+     * @see #readObject(File)
+     */
+    public void setParallel(final boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Returns the size of the chunks a file is split into when it is read.
+     * @return The approximate chunk size, in bytes.
+     * @see #readObject(File)
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Sets the size of the chunks a file is split into when it is read. Each
+     * chunk is extended to the end of the record it would otherwise split.
+     *
+     * @param chunkSize The approximate chunk size, in bytes.
+     * @throws IllegalArgumentException if the chunk size is not positive.
+     * @see #readObject(File)
+     */
+    public void setChunkSize(final int chunkSize) {
+        Utils.checkPositive(chunkSize, "chunkSize");
+
+        this.chunkSize = chunkSize;
+    }
+
     /**
      * Reads values from a comma-separated value stream.
      *
@@ -215,57 +881,30 @@ public class CSVSerializer implements Serializer<List<?>> {
     public List<?> readObject(final Reader reader) throws IOException, SerializationException {
         Utils.checkNull(reader, "reader");
 
-        LineNumberReader lineNumberReader = new LineNumberReader(reader);
-        lineNumberReader.setLineNumber(1);
+        RecordReader recordReader = new RecordReader(reader);
 
         if (keys.getLength() == 0) {
             // Read keys from first line
-            String line = lineNumberReader.readLine();
+            String line = recordReader.readLine();
             if (line == null) {
                 throw new SerializationException("Could not read keys from input.");
             }
 
-            String[] keysOnLine = line.split(",");
-            this.keys = new ArrayList<>(keysOnLine.length);
-
-            for (String key : keysOnLine) {
-                this.keys.add(key.trim());
-            }
+            readKeys(line);
         }
 
         // Create the list and notify the listeners
-        List<Object> items = new ArrayList<>();
+        List<Object> items = newList();
 
         if (csvSerializerListeners != null) {
             csvSerializerListeners.beginList(this, items);
         }
 
-        // Move to the first character
-        c = lineNumberReader.read();
-
-        // Ignore Byte Order Mark (if present)
-        if (c == Constants.BYTE_ORDER_MARK) {
-            c = lineNumberReader.read();
-        }
-
         try {
-            while (c != -1) {
-                Object item = readItem(lineNumberReader);
-                while (item != null) {
-                    items.add(item);
-
-                    // Move to next line
-                    while (c != -1 && (c == '\r' || c == '\n')) {
-                        c = lineNumberReader.read();
-                    }
-
-                    // Read the next item
-                    item = readItem(lineNumberReader);
-                }
-            }
+            recordReader.readItems(item -> addItem(items, item), false);
         } catch (SerializationException exception) {
             System.err.println("An error occurred while processing input at line number "
-                + lineNumberReader.getLineNumber());
+                + recordReader.getLineNumber());
 
             throw exception;
         }
@@ -278,124 +917,292 @@ public class CSVSerializer implements Serializer<List<?>> {
         return items;
     }
 
-    @SuppressWarnings("unchecked")
-    private Object readItem(final Reader reader) throws IOException, SerializationException {
-        Object item = null;
+    /**
+     * Reads values from a comma-separated value stream, passing each item to
+     * the given consumer as soon as it has been read rather than collecting
+     * the items in a list, so that streams too large to be held in memory can
+     * be processed. <p> The items are the same as those returned by
+     * {@link #readObject(Reader)}, except that a {@link #isColumnar()
+     * columnar} serializer produces each item as an array of values in key
+     * order. The {@link CSVSerializerListener listeners} are not notified.
+     *
+     * @param reader The reader from which data will be read.
+     * @param consumer The consumer to pass the items to.
+     * @throws IOException for any errors during reading.
+     * @throws SerializationException for any formatting errors with the data.
+     * @throws IllegalArgumentException for {@code null} reader or consumer.
+     */
+    public void readItems(final Reader reader, final Consumer<Object> consumer)
+        throws IOException, SerializationException {
+        Utils.checkNull(reader, "reader");
+        Utils.checkNull(consumer, "consumer");
 
-        if (c != -1) {
-            // Instantiate the item
-            Dictionary<String, Object> itemDictionary;
+        RecordReader recordReader = new RecordReader(reader);
 
-            try {
-                if (itemType instanceof ParameterizedType) {
-                    ParameterizedType parameterizedItemType = (ParameterizedType) itemType;
-                    Class<?> rawItemType = (Class<?>) parameterizedItemType.getRawType();
-                    item = rawItemType.getDeclaredConstructor().newInstance();
-                } else {
-                    Class<?> classItemType = (Class<?>) itemType;
-                    item = classItemType.getDeclaredConstructor().newInstance();
-                }
+        if (keys.getLength() == 0) {
+            // Read keys from first line
+            String line = recordReader.readLine();
+            if (line == null) {
+                throw new SerializationException("Could not read keys from input.");
+            }
 
-                if (item instanceof Dictionary<?, ?>) {
-                    itemDictionary = (Dictionary<String, Object>) item;
-                } else {
-                    itemDictionary = new BeanAdapter(item);
-                }
-            } catch (IllegalAccessException | InstantiationException | NoSuchMethodException
-                   | InvocationTargetException exception) {
-                throw new SerializationException(exception);
+            readKeys(line);
+        }
+
+        try {
+            recordReader.readItems(consumer, false);
+        } catch (SerializationException exception) {
+            System.err.println("An error occurred while processing input at line number "
+                + recordReader.getLineNumber());
+
+            throw exception;
+        }
+    }
+
+    /**
+     * Reads values from a comma-separated value file. <p> The file is memory
+     * mapped and split into chunks of {@link #getChunkSize()} bytes at record
+     * boundaries (line breaks that are not part of a quoted value); if the
+     * serializer is {@link #isParallel() parallel}, the chunks are parsed
+     * concurrently on the common fork/join pool. Either way the items are
+     * returned, and reported to the {@link CSVSerializerListener#readItem
+     * readItem} listeners, in file order, on the calling thread. <p> Chunks can
+     * only be located without decoding for single-byte or UTF-8 character
+     * sets; any other character set is read as a stream.
+     *
+     * @param file The file from which data will be read.
+     * @return The list of values read from the file.
+     * @throws IOException for any errors during reading.
+     * @throws SerializationException for any formatting errors with the data.
+     * @throws IllegalArgumentException for {@code null} input file.
+     * @see #readObject(Reader)
+     */
+    public List<?> readObject(final File file) throws IOException, SerializationException {
+        Utils.checkNull(file, "file");
+
+        if (!isSplittable(charset)) {
+            try (InputStream inputStream = new FileInputStream(file)) {
+                return readObject(inputStream);
             }
+        }
 
-            // Add values to the item
-            for (int i = 0, n = keys.getLength(); i < n; i++) {
-                String key = keys.get(i);
-                String value = readValue(reader);
-                if (value == null) {
-                    throw new SerializationException("Error reading value for " + key
-                        + " from input stream.");
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            RecordSplitter splitter = new RecordSplitter(channel, chunkSize);
+
+            // Ignore the UTF-8 encoding of the Byte Order Mark (if present)
+            if (charset.equals(StandardCharsets.UTF_8)) {
+                splitter.skipByteOrderMark();
+            }
+
+            if (keys.getLength() == 0) {
+                // Read keys from first line
+                String line = splitter.readLine(charset);
+                if (line == null) {
+                    throw new SerializationException("Could not read keys from input.");
                 }
 
-                if (c == '\r' || c == '\n') {
-                    if (i < n - 1) {
-                        throw new SerializationException("Line data is incomplete.");
-                    }
+                readKeys(line);
+            }
 
-                    // Move to next char; if LF, move again
-                    c = reader.read();
+            // Create the list and notify the listeners
+            List<Object> items = newList();
 
-                    if (c == '\n') {
-                        c = reader.read();
-                    }
-                }
+            if (csvSerializerListeners != null) {
+                csvSerializerListeners.beginList(this, items);
+            }
+
+            long dataStart = splitter.getPosition();
 
-                itemDictionary.put(key, value);
+            if (parallel) {
+                readChunksInParallel(channel, splitter, items);
+            } else {
+                long start = dataStart;
+                while (start < splitter.getSize()) {
+                    long end = splitter.nextBoundary();
+                    addItems(items, readChunk(channel, start, end, start == dataStart));
+                    start = end;
+                }
             }
 
             // Notify the listeners
             if (csvSerializerListeners != null) {
-                csvSerializerListeners.readItem(this, item);
+                csvSerializerListeners.endList(this);
             }
-        }
 
-        return item;
+            return items;
+        }
     }
 
-    private String readValue(final Reader reader) throws IOException, SerializationException {
-        String value = null;
+    private void readChunksInParallel(final FileChannel channel, final RecordSplitter splitter,
+        final List<Object> items) throws IOException, SerializationException {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        long dataStart = splitter.getPosition();
 
-        // Read the next value from this line, returning null if there are
-        // no more values on the line
-        if (c != -1 && (c != '\r' && c != '\n')) {
-            // Read the value
-            StringBuilder valueBuilder = new StringBuilder();
+        // Limit the number of decoded chunks held in memory at once
+        int maxPending = Math.max(pool.getParallelism(), 1) * 2;
+        ArrayQueue<ForkJoinTask<ArrayList<Object>>> pending = new ArrayQueue<>(maxPending);
 
-            // Values may be bounded in quotes; the double-quote character is
-            // escaped by two successive occurrences
-            boolean quoted = (c == '"');
-            if (quoted) {
-                c = reader.read();
-            }
+        try {
+            long start = dataStart;
+            while (start < splitter.getSize()) {
+                final long chunkStart = start;
+                final long chunkEnd = splitter.nextBoundary();
 
-            while (c != -1 && (quoted || (c != ',' && c != '\r' && c != '\n'))) {
-                if (c == '"') {
-                    if (!quoted) {
-                        throw new SerializationException("Dangling quote.");
-                    }
+                if (pending.getLength() == maxPending) {
+                    addItems(items, join(pending.dequeue()));
+                }
 
-                    c = reader.read();
+                final boolean first = (chunkStart == dataStart);
 
-                    if (c != '"' && (c != ',' && c != '\r' && c != '\n' && c != -1)) {
-                        throw new SerializationException("Prematurely terminated quote.");
-                    }
+                pending.enqueue(pool.submit(() -> readChunk(channel, chunkStart, chunkEnd, first)));
+                start = chunkEnd;
+            }
 
-                    quoted &= (c == '"');
-                }
+            while (!pending.isEmpty()) {
+                addItems(items, join(pending.dequeue()));
+            }
+        } finally {
+            while (!pending.isEmpty()) {
+                pending.dequeue().cancel(true);
+            }
+        }
+    }
 
-                if (c != -1 && (quoted || (c != ',' && c != '\r' && c != '\n'))) {
-                    valueBuilder.append((char) c);
-                    c = reader.read();
-                }
+    private static ArrayList<Object> join(final ForkJoinTask<ArrayList<Object>> task)
+        throws IOException, SerializationException {
+        try {
+            return task.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
             }
 
-            if (quoted) {
-                throw new SerializationException("Unterminated string.");
+            if (cause instanceof SerializationException) {
+                throw (SerializationException) cause;
             }
 
-            value = valueBuilder.toString();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
 
-            // Move to the next character after ',' (don't automatically advance
-            // to the next line)
-            if (c == ',') {
-                c = reader.read();
+            throw new SerializationException(cause);
+        }
+    }
+
+    private ArrayList<Object> readChunk(final FileChannel channel, final long start, final long end,
+        final boolean first) throws IOException, SerializationException {
+        ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        CharBuffer chars = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE)
+            .decode(bytes);
+
+        RecordReader recordReader = new RecordReader(chars.array(),
+            chars.arrayOffset() + chars.position(), chars.remaining());
+
+        ArrayList<Object> items = new ArrayList<>();
+
+        try {
+            recordReader.readItems(items::add, !first);
+        } catch (SerializationException exception) {
+            System.err.println("An error occurred while processing input at line number "
+                + recordReader.getLineNumber() + " of the chunk starting at byte offset " + start);
+
+            throw exception;
+        }
+
+        return items;
+    }
+
+    private void addItems(final List<Object> items, final ArrayList<Object> chunkItems) {
+        for (Object item : chunkItems) {
+            addItem(items, item);
+        }
+    }
+
+    private void addItem(final List<Object> items, final Object item) {
+        Object addedItem = item;
+
+        if (columnar) {
+            ColumnarList columnarList = (ColumnarList) (List<?>) items;
+            int index = columnarList.addRow((Object[]) item);
+
+            if (csvSerializerListeners != null) {
+                addedItem = columnarList.get(index);
             }
+        } else {
+            items.add(item);
+        }
+
+        // Notify the listeners
+        if (csvSerializerListeners != null) {
+            csvSerializerListeners.readItem(this, addedItem);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> newList() {
+        if (!columnar) {
+            return new ArrayList<>();
         }
 
-        // Trim the value
-        if (value != null) {
-            value = value.trim();
+        ColumnarList columnarList = new ColumnarList();
+        for (String key : keys) {
+            Class<?> type = columnTypes.get(key);
+            columnarList.addColumn(key, (type == null) ? String.class : type);
         }
 
-        return value;
+        return (List<Object>) (List<?>) columnarList;
+    }
+
+    private void readKeys(final String line) {
+        String[] keysOnLine = line.split(",");
+        this.keys = new ArrayList<>(keysOnLine.length);
+
+        for (String key : keysOnLine) {
+            this.keys.add(key.trim());
+        }
+    }
+
+    private Constructor<?> getItemConstructor() throws SerializationException {
+        Class<?> itemClass;
+        if (itemType instanceof ParameterizedType) {
+            ParameterizedType parameterizedItemType = (ParameterizedType) itemType;
+            itemClass = (Class<?>) parameterizedItemType.getRawType();
+        } else {
+            itemClass = (Class<?>) itemType;
+        }
+
+        try {
+            return itemClass.getDeclaredConstructor();
+        } catch (NoSuchMethodException exception) {
+            throw new SerializationException(exception);
+        }
+    }
+
+    private static String newTrimmedString(final char[] chars, final int start, final int end) {
+        int from = start;
+        int to = end;
+
+        while (from < to && chars[from] <= ' ') {
+            from++;
+        }
+
+        while (to > from && chars[to - 1] <= ' ') {
+            to--;
+        }
+
+        return new String(chars, from, to - from);
+    }
+
+    private static boolean isSplittable(final Charset charset) {
+        return charset.equals(StandardCharsets.ISO_8859_1)
+            || charset.equals(StandardCharsets.US_ASCII)
+            || charset.equals(StandardCharsets.UTF_8);
     }
 
     /**
@@ -454,6 +1261,8 @@ public class CSVSerializer implements Serializer<List<?>> {
             writer.append("\r\n");
         }
 
+        DateFormat dateFormat = null;
+
         for (Object item : items) {
             Dictionary<String, Object> itemDictionary;
             if (item instanceof Dictionary<?, ?>) {
@@ -472,7 +1281,16 @@ public class CSVSerializer implements Serializer<List<?>> {
                 Object value = itemDictionary.get(key);
 
                 if (value != null) {
-                    String string = value.toString();
+                    String string;
+                    if (value instanceof Date && columnTypes.get(key) == Date.class) {
+                        if (dateFormat == null) {
+                            dateFormat = new SimpleDateFormat(dateFormatPattern);
+                        }
+
+                        string = dateFormat.format((Date) value);
+                    } else {
+                        string = value.toString();
+                    }
 
                     if (string.indexOf(',') >= 0 || string.indexOf('"') >= 0
                         || string.indexOf('\r') >= 0 || string.indexOf('\n') >= 0) {
@@ -0,0 +1,558 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.ListListener;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.sql.ResultList.Field;
+import org.apache.pivot.util.ImmutableIterator;
+import org.apache.pivot.util.ListenerList;
+import org.apache.pivot.util.Utils;
+
+/**
+ * Editable list of rows read from a database table that records the rows that
+ * are inserted, updated and removed, and writes them back to the table as
+ * JDBC batch statements in a single transaction. <p> Changes are written when
+ * {@link #flush()} is called, or automatically once the number of pending
+ * changes reaches the {@link #getBatchSize() batch size}. Changes to the same
+ * row are coalesced, so a row that is inserted and then edited is written
+ * with a single <tt>INSERT</tt>, and a row that is inserted and then removed
+ * is not written at all. <p> Rows are matched by identity. A row that is
+ * edited in place (as <tt>TableViewRowEditor</tt> does) must be passed to
+ * {@link #update(int, Map)} or {@link #markUpdated(Map)} for the edit to be
+ * recorded.
+ */
+public class ChangeTrackingList implements List<Map<String, Object>> {
+    private enum ChangeType {
+        INSERT, UPDATE, DELETE
+    }
+
+    private Connection connection;
+    private String tableName;
+    private ArrayList<Field> fields;
+    private int[] keyFieldIndexes;
+
+    private int batchSize = 0;
+
+    private ArrayList<Map<String, Object>> items = new ArrayList<>();
+
+    // Key values of the rows that exist in the table, as last read or written
+    private IdentityHashMap<Map<String, Object>, Object[]> storedKeys = new IdentityHashMap<>();
+
+    // Pending changes, in the order in which they were first made
+    private IdentityHashMap<Map<String, Object>, ChangeType> changes = new IdentityHashMap<>();
+    private ArrayList<Map<String, Object>> changedRows = new ArrayList<>();
+
+    private ListListenerList<Map<String, Object>> listListeners = new ListListenerList<>();
+
+    /**
+     * Creates an empty list.
+     *
+     * @param connection The connection used to write changes.
+     * @param tableName The table the rows belong to.
+     * @param fields The columns that are written, and the map keys they are
+     * read from.
+     * @param keyColumns The names of the columns that identify a row.
+     * @throws IllegalArgumentException if no key column is given, or a key
+     * column is not one of the fields.
+     */
+    public ChangeTrackingList(Connection connection, String tableName, Sequence<Field> fields,
+        String... keyColumns) {
+        Utils.checkNull(connection, "connection");
+        Utils.checkNullOrEmpty(tableName, "tableName");
+        Utils.checkNull(fields, "fields");
+        Utils.checkNull(keyColumns, "keyColumns");
+
+        if (keyColumns.length == 0) {
+            throw new IllegalArgumentException("At least one key column is required.");
+        }
+
+        this.connection = connection;
+        this.tableName = tableName;
+        this.fields = new ArrayList<>(fields);
+
+        keyFieldIndexes = new int[keyColumns.length];
+        for (int i = 0; i < keyColumns.length; i++) {
+            keyFieldIndexes[i] = -1;
+
+            for (int j = 0, n = fields.getLength(); j < n; j++) {
+                if (fields.get(j).columnName.equalsIgnoreCase(keyColumns[i])) {
+                    keyFieldIndexes[i] = j;
+                    break;
+                }
+            }
+
+            if (keyFieldIndexes[i] == -1) {
+                throw new IllegalArgumentException(keyColumns[i] + " is not a field.");
+            }
+        }
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public Sequence<Field> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return The number of pending changes that triggers a flush, or
+     * <tt>0</tt> if changes are only written when {@link #flush()} is called.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        Utils.checkNonNegative(batchSize, "batchSize");
+
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Appends rows that already exist in the table, without recording them as
+     * changes.
+     *
+     * @param rows The rows to load, typically a {@link ResultList} with the
+     * same fields as this list.
+     */
+    public void load(Iterable<? extends Map<String, Object>> rows) {
+        Utils.checkNull(rows, "rows");
+
+        for (Map<String, Object> row : rows) {
+            storedKeys.put(row, getKeyValues(row));
+            int index = items.add(row);
+            listListeners.itemInserted(this, index);
+        }
+    }
+
+    /**
+     * @return The number of rows with unwritten changes.
+     */
+    public int getPendingChangeCount() {
+        return changes.size();
+    }
+
+    /**
+     * Records that a row has been edited in place.
+     *
+     * @param row A row in this list.
+     * @throws IllegalArgumentException if the row is not in this list.
+     */
+    public void markUpdated(Map<String, Object> row) {
+        Utils.checkNull(row, "row");
+
+        if (indexOfRow(row) == -1) {
+            throw new IllegalArgumentException("Row is not in this list.");
+        }
+
+        recordUpdate(row);
+    }
+
+    private int indexOfRow(Map<String, Object> row) {
+        for (int i = 0, n = items.getLength(); i < n; i++) {
+            if (items.get(i) == row) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private void recordChange(Map<String, Object> row, ChangeType type) {
+        if (changes.put(row, type) == null) {
+            changedRows.add(row);
+        }
+    }
+
+    private void discardChange(Map<String, Object> row) {
+        changes.remove(row);
+
+        for (int i = changedRows.getLength() - 1; i >= 0; i--) {
+            if (changedRows.get(i) == row) {
+                changedRows.remove(i, 1);
+                break;
+            }
+        }
+    }
+
+    private void recordInsert(Map<String, Object> row) {
+        if (storedKeys.containsKey(row)) {
+            // A stored row that was removed and added back, as when a sorted
+            // list repositions an edited row
+            recordChange(row, ChangeType.UPDATE);
+        } else {
+            recordChange(row, ChangeType.INSERT);
+        }
+
+        flushIfFull();
+    }
+
+    private void recordUpdate(Map<String, Object> row) {
+        if (changes.get(row) == null) {
+            recordChange(row, ChangeType.UPDATE);
+            flushIfFull();
+        }
+    }
+
+    private void recordDelete(Map<String, Object> row) {
+        if (storedKeys.containsKey(row)) {
+            recordChange(row, ChangeType.DELETE);
+            flushIfFull();
+        } else {
+            discardChange(row);
+        }
+    }
+
+    private void flushIfFull() {
+        if (batchSize > 0 && changes.size() >= batchSize) {
+            try {
+                flush();
+            } catch (SQLException exception) {
+                throw new RuntimeException(exception);
+            }
+        }
+    }
+
+    /**
+     * Writes the pending changes to the table in a single transaction, with
+     * one batch statement each for deletes, updates and inserts. If the write
+     * fails, the transaction is rolled back and the changes remain pending.
+     *
+     * @return The number of rows written.
+     * @throws SQLException if the changes cannot be written.
+     */
+    public int flush() throws SQLException {
+        if (changes.isEmpty()) {
+            return 0;
+        }
+
+        ArrayList<Map<String, Object>> deletes = new ArrayList<>();
+        ArrayList<Map<String, Object>> updates = new ArrayList<>();
+        ArrayList<Map<String, Object>> inserts = new ArrayList<>();
+
+        for (Map<String, Object> row : changedRows) {
+            switch (changes.get(row)) {
+                case DELETE:
+                    deletes.add(row);
+                    break;
+                case UPDATE:
+                    updates.add(row);
+                    break;
+                case INSERT:
+                    inserts.add(row);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+
+        try {
+            if (deletes.getLength() > 0) {
+                try (PreparedStatement statement = connection.prepareStatement(getDeleteSQL())) {
+                    for (Map<String, Object> row : deletes) {
+                        setParameters(statement, 1, storedKeys.get(row));
+                        statement.addBatch();
+                    }
+
+                    statement.executeBatch();
+                }
+            }
+
+            if (updates.getLength() > 0) {
+                try (PreparedStatement statement = connection.prepareStatement(getUpdateSQL())) {
+                    for (Map<String, Object> row : updates) {
+                        int index = setParameters(statement, 1, getValues(row));
+                        setParameters(statement, index, storedKeys.get(row));
+                        statement.addBatch();
+                    }
+
+                    statement.executeBatch();
+                }
+            }
+
+            if (inserts.getLength() > 0) {
+                try (PreparedStatement statement = connection.prepareStatement(getInsertSQL())) {
+                    for (Map<String, Object> row : inserts) {
+                        setParameters(statement, 1, getValues(row));
+                        statement.addBatch();
+                    }
+
+                    statement.executeBatch();
+                }
+            }
+
+            connection.commit();
+        } catch (SQLException exception) {
+            connection.rollback();
+            throw exception;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+
+        for (Map<String, Object> row : deletes) {
+            storedKeys.remove(row);
+        }
+
+        for (Map<String, Object> row : updates) {
+            storedKeys.put(row, getKeyValues(row));
+        }
+
+        for (Map<String, Object> row : inserts) {
+            storedKeys.put(row, getKeyValues(row));
+        }
+
+        int count = changes.size();
+        changes.clear();
+        changedRows.clear();
+
+        return count;
+    }
+
+    private static int setParameters(PreparedStatement statement, int index, Object[] values)
+        throws SQLException {
+        int parameterIndex = index;
+
+        for (Object value : values) {
+            if (value == null) {
+                statement.setNull(parameterIndex++, Types.NULL);
+            } else {
+                statement.setObject(parameterIndex++, value);
+            }
+        }
+
+        return parameterIndex;
+    }
+
+    private Object[] getValues(Map<String, Object> row) {
+        Object[] values = new Object[fields.getLength()];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = row.get(getKey(fields.get(i)));
+        }
+
+        return values;
+    }
+
+    private Object[] getKeyValues(Map<String, Object> row) {
+        Object[] values = new Object[keyFieldIndexes.length];
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = row.get(getKey(fields.get(keyFieldIndexes[i])));
+        }
+
+        return values;
+    }
+
+    private static String getKey(Field field) {
+        return (field.key == null) ? field.columnName : field.key;
+    }
+
+    private String getWhereClause() {
+        StringBuilder buf = new StringBuilder(" WHERE ");
+
+        for (int i = 0; i < keyFieldIndexes.length; i++) {
+            if (i > 0) {
+                buf.append(" AND ");
+            }
+
+            buf.append(fields.get(keyFieldIndexes[i]).columnName).append(" = ?");
+        }
+
+        return buf.toString();
+    }
+
+    private String getDeleteSQL() {
+        return "DELETE FROM " + tableName + getWhereClause();
+    }
+
+    private String getUpdateSQL() {
+        StringBuilder buf = new StringBuilder("UPDATE ").append(tableName).append(" SET ");
+
+        for (int i = 0, n = fields.getLength(); i < n; i++) {
+            if (i > 0) {
+                buf.append(", ");
+            }
+
+            buf.append(fields.get(i).columnName).append(" = ?");
+        }
+
+        return buf.append(getWhereClause()).toString();
+    }
+
+    private String getInsertSQL() {
+        StringBuilder buf = new StringBuilder("INSERT INTO ").append(tableName).append(" (");
+        StringBuilder values = new StringBuilder(") VALUES (");
+
+        for (int i = 0, n = fields.getLength(); i < n; i++) {
+            if (i > 0) {
+                buf.append(", ");
+                values.append(", ");
+            }
+
+            buf.append(fields.get(i).columnName);
+            values.append('?');
+        }
+
+        return buf.append(values).append(')').toString();
+    }
+
+    @Override
+    public int add(Map<String, Object> item) {
+        Utils.checkNull(item, "item");
+
+        int index = items.add(item);
+        listListeners.itemInserted(this, index);
+        recordInsert(item);
+
+        return index;
+    }
+
+    @Override
+    public void insert(Map<String, Object> item, int index) {
+        Utils.checkNull(item, "item");
+
+        items.insert(item, index);
+        listListeners.itemInserted(this, index);
+        recordInsert(item);
+    }
+
+    /**
+     * Replaces the row at the given index. If the new row is the same object
+     * as the previous one, it is recorded as edited in place; otherwise the
+     * previous row is recorded as removed and the new one as inserted.
+     */
+    @Override
+    public Map<String, Object> update(int index, Map<String, Object> item) {
+        Utils.checkNull(item, "item");
+
+        Map<String, Object> previousItem = items.update(index, item);
+        listListeners.itemUpdated(this, index, previousItem);
+
+        if (previousItem == item) {
+            recordUpdate(item);
+        } else {
+            recordDelete(previousItem);
+            recordInsert(item);
+        }
+
+        return previousItem;
+    }
+
+    @Override
+    public int remove(Map<String, Object> item) {
+        int index = indexOfRow(item);
+
+        if (index != -1) {
+            remove(index, 1);
+        }
+
+        return index;
+    }
+
+    @Override
+    public Sequence<Map<String, Object>> remove(int index, int count) {
+        Sequence<Map<String, Object>> removed = items.remove(index, count);
+
+        if (count > 0) {
+            listListeners.itemsRemoved(this, index, removed);
+
+            for (int i = 0, n = removed.getLength(); i < n; i++) {
+                recordDelete(removed.get(i));
+            }
+        }
+
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        if (items.getLength() > 0) {
+            ArrayList<Map<String, Object>> removed = items;
+            items = new ArrayList<>(removed.getComparator());
+            listListeners.listCleared(this);
+
+            for (Map<String, Object> row : removed) {
+                recordDelete(row);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> get(int index) {
+        return items.get(index);
+    }
+
+    @Override
+    public int indexOf(Map<String, Object> item) {
+        return items.indexOf(item);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    @Override
+    public int getLength() {
+        return items.getLength();
+    }
+
+    @Override
+    public Comparator<Map<String, Object>> getComparator() {
+        return items.getComparator();
+    }
+
+    @Override
+    public void setComparator(Comparator<Map<String, Object>> comparator) {
+        Comparator<Map<String, Object>> previousComparator = items.getComparator();
+
+        if (comparator != previousComparator) {
+            items.setComparator(comparator);
+            listListeners.comparatorChanged(this, previousComparator);
+        }
+    }
+
+    @Override
+    public Iterator<Map<String, Object>> iterator() {
+        return new ImmutableIterator<>(items.iterator());
+    }
+
+    @Override
+    public ListenerList<ListListener<Map<String, Object>>> getListListeners() {
+        return listListeners;
+    }
+}
@@ -16,6 +16,7 @@
  */
 package org.apache.pivot.sql;
 
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Comparator;
@@ -26,6 +27,7 @@ import java.util.NoSuchElementException;
 import org.apache.pivot.annotations.UnsupportedOperation;
 import org.apache.pivot.collections.ArrayAdapter;
 import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.ColumnarList;
 import org.apache.pivot.collections.HashMap;
 import org.apache.pivot.collections.List;
 import org.apache.pivot.collections.ListListener;
@@ -115,42 +117,10 @@ public class ResultList implements List<Map<String, Object>> {
                 throw new NoSuchElementException();
             }
 
-            HashMap<String, Object> item = new HashMap<>();
+            HashMap<String, Object> item;
 
             try {
-                for (Field field : fields) {
-                    Object value;
-
-                    if (field.type == Boolean.class || field.type == Boolean.TYPE) {
-                        value = resultSet.getBoolean(field.columnName);
-                    } else if (field.type == Byte.class || field.type == Byte.TYPE) {
-                        value = resultSet.getByte(field.columnName);
-                    } else if (field.type == Short.class || field.type == Short.TYPE) {
-                        value = resultSet.getShort(field.columnName);
-                    } else if (field.type == Integer.class || field.type == Integer.TYPE) {
-                        value = resultSet.getInt(field.columnName);
-                    } else if (field.type == Long.class || field.type == Long.TYPE) {
-                        value = resultSet.getLong(field.columnName);
-                    } else if (field.type == Float.class || field.type == Float.TYPE) {
-                        value = resultSet.getFloat(field.columnName);
-                    } else if (field.type == Double.class || field.type == Double.TYPE) {
-                        value = resultSet.getDouble(field.columnName);
-                    } else if (field.type == String.class) {
-                        value = resultSet.getString(field.columnName);
-                    } else if (field.type == Date.class) {
-                        value = resultSet.getDate(field.columnName);
-                    } else {
-                        value = resultSet.getObject(field.columnName);
-                    }
-
-                    if (resultSet.wasNull()) {
-                        value = null;
-                    }
-
-                    if (value != null || includeNullValues) {
-                        item.put((field.key == null) ? field.columnName : field.key, value);
-                    }
-                }
+                item = readItem(resultSet, fields, includeNullValues);
             } catch (SQLException exception) {
                 throw new RuntimeException(exception);
             }
@@ -202,6 +172,107 @@ public class ResultList implements List<Map<String, Object>> {
         setFields(new ArrayAdapter<>(fields));
     }
 
+    /**
+     * Reads the remaining rows of the result set into a column-oriented list,
+     * with a column per field, keyed and typed like the map values that the
+     * iterator returns. Numeric fields are stored in primitive arrays rather
+     * than in a map per row.
+     *
+     * @return A new list containing the remaining rows.
+     * @throws SQLException if the result set cannot be read.
+     * @see ColumnarList
+     */
+    public ColumnarList toColumnarList() throws SQLException {
+        ColumnarList columnarList = new ColumnarList();
+
+        for (Field field : fields) {
+            columnarList.addColumn((field.key == null) ? field.columnName : field.key,
+                (field.type == null) ? Object.class : field.type);
+        }
+
+        Object[] values = new Object[fields.getLength()];
+
+        while (resultSet.next()) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = getValue(resultSet, fields.get(i));
+            }
+
+            columnarList.addRow(values);
+        }
+
+        return columnarList;
+    }
+
+    /**
+     * Reads the remaining rows of the result set into an editable list that
+     * writes changes back to a table in batches.
+     *
+     * @param connection The connection used to write changes.
+     * @param tableName The table the rows belong to.
+     * @param keyColumns The names of the columns that identify a row.
+     * @return A new list containing the remaining rows.
+     * @see ChangeTrackingList
+     */
+    public ChangeTrackingList toChangeTrackingList(Connection connection, String tableName,
+        String... keyColumns) {
+        ChangeTrackingList changeTrackingList = new ChangeTrackingList(connection, tableName,
+            fields, keyColumns);
+        changeTrackingList.load(this);
+
+        return changeTrackingList;
+    }
+
+    /**
+     * Reads the fields of the current row of a result set into a map.
+     */
+    static HashMap<String, Object> readItem(ResultSet resultSet, Sequence<Field> fields,
+        boolean includeNullValues) throws SQLException {
+        HashMap<String, Object> item = new HashMap<>();
+
+        for (int i = 0, n = fields.getLength(); i < n; i++) {
+            Field field = fields.get(i);
+            Object value = getValue(resultSet, field);
+
+            if (value != null || includeNullValues) {
+                item.put((field.key == null) ? field.columnName : field.key, value);
+            }
+        }
+
+        return item;
+    }
+
+    static Object getValue(ResultSet resultSet, Field field) throws SQLException {
+        Object value;
+
+        if (field.type == Boolean.class || field.type == Boolean.TYPE) {
+            value = resultSet.getBoolean(field.columnName);
+        } else if (field.type == Byte.class || field.type == Byte.TYPE) {
+            value = resultSet.getByte(field.columnName);
+        } else if (field.type == Short.class || field.type == Short.TYPE) {
+            value = resultSet.getShort(field.columnName);
+        } else if (field.type == Integer.class || field.type == Integer.TYPE) {
+            value = resultSet.getInt(field.columnName);
+        } else if (field.type == Long.class || field.type == Long.TYPE) {
+            value = resultSet.getLong(field.columnName);
+        } else if (field.type == Float.class || field.type == Float.TYPE) {
+            value = resultSet.getFloat(field.columnName);
+        } else if (field.type == Double.class || field.type == Double.TYPE) {
+            value = resultSet.getDouble(field.columnName);
+        } else if (field.type == String.class) {
+            value = resultSet.getString(field.columnName);
+        } else if (field.type == Date.class) {
+            value = resultSet.getDate(field.columnName);
+        } else {
+            value = resultSet.getObject(field.columnName);
+        }
+
+        if (resultSet.wasNull()) {
+            value = null;
+        }
+
+        return value;
+    }
+
     public boolean getIncludeNullValues() {
         return includeNullValues;
     }
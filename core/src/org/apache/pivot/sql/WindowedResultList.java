@@ -0,0 +1,529 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.sql;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.NoSuchElementException;
+
+import org.apache.pivot.annotations.UnsupportedOperation;
+import org.apache.pivot.collections.ArrayAdapter;
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashSet;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.ListListener;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.sql.ResultList.Field;
+import org.apache.pivot.util.ListenerList;
+import org.apache.pivot.util.Utils;
+import org.apache.pivot.util.concurrent.Task;
+import org.apache.pivot.util.concurrent.TaskExecutionException;
+import org.apache.pivot.util.concurrent.TaskListener;
+
+/**
+ * Read-only implementation of the {@link List} interface that provides random
+ * access to the rows of a scrollable {@link java.sql.ResultSet}. <p> Rows are
+ * fetched in blocks of {@link #getBlockSize()} rows when they are first
+ * accessed, and at most {@link #getMaxCachedBlocks()} blocks are kept, the
+ * least recently used being discarded first. When a block is fetched, the
+ * next block in the direction of access is prefetched by a background
+ * {@link Task}, so that a table view bound to the list can be scrolled without
+ * waiting on the database. <p> The result set must not be
+ * {@link ResultSet#TYPE_FORWARD_ONLY forward only}; it is only ever accessed
+ * while holding its lock.
+ */
+public class WindowedResultList implements List<Map<String, Object>> {
+    private class ItemIterator implements Iterator<Map<String, Object>> {
+        private int index = 0;
+
+        @Override
+        public boolean hasNext() {
+            return (index < getLength());
+        }
+
+        @Override
+        public Map<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return get(index++);
+        }
+
+        @Override
+        @UnsupportedOperation
+        public void remove() {
+            throw new UnsupportedOperationException(ERROR_MSG);
+        }
+    }
+
+    /**
+     * Task that fetches a block ahead of its use.
+     */
+    private class PrefetchTask extends Task<Void> {
+        private final int block;
+        private final int blockSize;
+
+        public PrefetchTask(final int block, final int blockSize) {
+            this.block = block;
+            this.blockSize = blockSize;
+        }
+
+        @Override
+        public Void execute() throws TaskExecutionException {
+            try {
+                fetchBlock(block, blockSize);
+            } catch (SQLException exception) {
+                throw new TaskExecutionException(exception);
+            }
+
+            return null;
+        }
+    }
+
+    private ResultSet resultSet;
+
+    // Changed while holding the result set and cache locks, together with
+    // clearing the cache, so that cached rows always match them
+    private volatile ArrayList<Field> fields = new ArrayList<>();
+    private volatile boolean includeNullValues = false;
+    private volatile int blockSize = DEFAULT_BLOCK_SIZE;
+
+    private int maxCachedBlocks = DEFAULT_MAX_CACHED_BLOCKS;
+    private volatile boolean prefetch = true;
+
+    // Guarded by the cache
+    private int length = -1;
+    private int lastBlock = -1;
+
+    // Guarded by the cache itself; iterates from least to most recently used
+    private LinkedHashMap<Integer, Object[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private HashSet<Integer> prefetchBlocks = new HashSet<>();
+
+    private ListListenerList<Map<String, Object>> listListeners = new ListListenerList<>();
+
+    public static final int DEFAULT_BLOCK_SIZE = 100;
+    public static final int DEFAULT_MAX_CACHED_BLOCKS = 20;
+
+    private static final String ERROR_MSG = "Windowed Result List is read-only.";
+
+    public WindowedResultList(ResultSet resultSet) {
+        Utils.checkNull(resultSet, "resultSet");
+
+        try {
+            if (resultSet.getType() == ResultSet.TYPE_FORWARD_ONLY) {
+                throw new IllegalArgumentException("Result set is not scrollable.");
+            }
+        } catch (SQLException exception) {
+            throw new RuntimeException(exception);
+        }
+
+        this.resultSet = resultSet;
+    }
+
+    public ResultSet getResultSet() {
+        return resultSet;
+    }
+
+    public Sequence<Field> getFields() {
+        return fields;
+    }
+
+    public void setFields(Sequence<Field> fields) {
+        Utils.checkNull(fields, "fields");
+
+        ArrayList<Field> fieldsLocal = new ArrayList<>(fields);
+
+        synchronized (resultSet) {
+            synchronized (cache) {
+                this.fields = fieldsLocal;
+                clearCache();
+            }
+        }
+
+        listListeners.listCleared(this);
+    }
+
+    public void setFields(Field... fields) {
+        Utils.checkNull(fields, "fields");
+
+        setFields(new ArrayAdapter<>(fields));
+    }
+
+    public boolean getIncludeNullValues() {
+        return includeNullValues;
+    }
+
+    public void setIncludeNullValues(boolean includeNullValues) {
+        synchronized (resultSet) {
+            synchronized (cache) {
+                this.includeNullValues = includeNullValues;
+                clearCache();
+            }
+        }
+
+        listListeners.listCleared(this);
+    }
+
+    /**
+     * @return The number of rows fetched from the result set at a time.
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Sets the number of rows fetched from the result set at a time, and
+     * discards any cached rows.
+     *
+     * @param blockSize The block size.
+     * @throws IllegalArgumentException if the block size is not positive.
+     */
+    public void setBlockSize(int blockSize) {
+        Utils.checkPositive(blockSize, "blockSize");
+
+        synchronized (resultSet) {
+            synchronized (cache) {
+                this.blockSize = blockSize;
+                clearCache();
+            }
+        }
+
+        listListeners.listCleared(this);
+    }
+
+    /**
+     * @return The maximum number of blocks of rows that are kept.
+     */
+    public int getMaxCachedBlocks() {
+        return maxCachedBlocks;
+    }
+
+    /**
+     * Sets the maximum number of blocks of rows that are kept.
+     *
+     * @param maxCachedBlocks The cache size, in blocks.
+     * @throws IllegalArgumentException if the value is not positive.
+     */
+    public void setMaxCachedBlocks(int maxCachedBlocks) {
+        Utils.checkPositive(maxCachedBlocks, "maxCachedBlocks");
+
+        synchronized (cache) {
+            this.maxCachedBlocks = maxCachedBlocks;
+            trimCache();
+        }
+    }
+
+    /**
+     * @return Whether the next block is fetched in the background.
+     */
+    public boolean getPrefetch() {
+        return prefetch;
+    }
+
+    public void setPrefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+    }
+
+    /**
+     * Returns the JDBC fetch size of the underlying result set.
+     *
+     * @return The number of rows the driver fetches per round trip.
+     */
+    public int getFetchSize() {
+        synchronized (resultSet) {
+            try {
+                return resultSet.getFetchSize();
+            } catch (SQLException exception) {
+                throw new RuntimeException(exception);
+            }
+        }
+    }
+
+    /**
+     * Sets the JDBC fetch size of the underlying result set. It should usually
+     * be at least the block size, so that a block is fetched in one round trip.
+     *
+     * @param fetchSize The number of rows the driver fetches per round trip.
+     */
+    public void setFetchSize(int fetchSize) {
+        Utils.checkNonNegative(fetchSize, "fetchSize");
+
+        synchronized (resultSet) {
+            try {
+                resultSet.setFetchSize(fetchSize);
+            } catch (SQLException exception) {
+                throw new RuntimeException(exception);
+            }
+        }
+    }
+
+    /**
+     * Discards the cached rows and row count, so that they are fetched again
+     * from the result set, and notifies the list listeners that the list has
+     * been cleared.
+     */
+    public void refresh() {
+        // Waits for any fetch in progress, so that it can't cache its rows
+        // once the cache has been cleared
+        synchronized (resultSet) {
+            synchronized (cache) {
+                clearCache();
+            }
+        }
+
+        listListeners.listCleared(this);
+    }
+
+    private void clearCache() {
+        cache.clear();
+        length = -1;
+        lastBlock = -1;
+    }
+
+    private void trimCache() {
+        Iterator<Integer> iterator = cache.keySet().iterator();
+        while (cache.size() > maxCachedBlocks) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private Object[] getCachedBlock(int block) {
+        synchronized (cache) {
+            return cache.get(block);
+        }
+    }
+
+    /**
+     * Fetches a block of rows, unless the block size has changed from the one
+     * given, in which case <tt>null</tt> is returned.
+     */
+    private Object[] fetchBlock(int block, int blockSizeArgument) throws SQLException {
+        synchronized (resultSet) {
+            if (blockSizeArgument != blockSize) {
+                return null;
+            }
+
+            // The block may have been fetched while waiting for the lock
+            Object[] rows = getCachedBlock(block);
+
+            if (rows == null) {
+                int start = block * blockSize;
+                int count = Math.min(blockSize, getLength() - start);
+
+                rows = new Object[Math.max(count, 0)];
+
+                if (count > 0 && resultSet.absolute(start + 1)) {
+                    int i = 0;
+                    do {
+                        rows[i++] = ResultList.readItem(resultSet, fields, includeNullValues);
+                    } while (i < count && resultSet.next());
+                }
+
+                synchronized (cache) {
+                    cache.put(block, rows);
+                    trimCache();
+                }
+            }
+
+            return rows;
+        }
+    }
+
+    private void prefetchBlock(final int block, final int blockSizeArgument) {
+        if (block < 0 || block * (long) blockSizeArgument >= getLength() || getCachedBlock(block) != null) {
+            return;
+        }
+
+        synchronized (prefetchBlocks) {
+            if (prefetchBlocks.contains(block)) {
+                return;
+            }
+
+            prefetchBlocks.add(block);
+        }
+
+        new PrefetchTask(block, blockSizeArgument).execute(new TaskListener<Void>() {
+            @Override
+            public void taskExecuted(Task<Void> task) {
+                synchronized (prefetchBlocks) {
+                    prefetchBlocks.remove(block);
+                }
+            }
+
+            @Override
+            public void executeFailed(Task<Void> task) {
+                // The block will be fetched again when it is accessed
+                synchronized (prefetchBlocks) {
+                    prefetchBlocks.remove(block);
+                }
+            }
+        });
+    }
+
+    @Override
+    @UnsupportedOperation
+    public int add(Map<String, Object> item) {
+        throw new UnsupportedOperationException(ERROR_MSG);
+    }
+
+    @Override
+    @UnsupportedOperation
+    public void insert(Map<String, Object> item, int index) {
+        throw new UnsupportedOperationException(ERROR_MSG);
+    }
+
+    @Override
+    @UnsupportedOperation
+    public Map<String, Object> update(int index, Map<String, Object> item) {
+        throw new UnsupportedOperationException(ERROR_MSG);
+    }
+
+    @Override
+    @UnsupportedOperation
+    public int remove(Map<String, Object> item) {
+        throw new UnsupportedOperationException(ERROR_MSG);
+    }
+
+    @Override
+    @UnsupportedOperation
+    public Sequence<Map<String, Object>> remove(int index, int count) {
+        throw new UnsupportedOperationException(ERROR_MSG);
+    }
+
+    @Override
+    @UnsupportedOperation
+    public void clear() {
+        throw new UnsupportedOperationException(ERROR_MSG);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> get(int index) {
+        Utils.checkIndexBounds(index, 0, getLength() - 1);
+
+        int blockSizeLocal;
+        int block;
+        int previousBlock;
+        Object[] rows;
+
+        do {
+            // Read the block size and the block together, so that they match
+            synchronized (cache) {
+                blockSizeLocal = blockSize;
+                block = index / blockSizeLocal;
+                previousBlock = lastBlock;
+                lastBlock = block;
+                rows = cache.get(block);
+            }
+
+            if (rows == null) {
+                try {
+                    rows = fetchBlock(block, blockSizeLocal);
+                } catch (SQLException exception) {
+                    throw new RuntimeException(exception);
+                }
+            }
+        } while (rows == null);
+
+        if (prefetch && block != previousBlock) {
+            // Fetch ahead in the direction of travel
+            prefetchBlock((block < previousBlock) ? block - 1 : block + 1, blockSizeLocal);
+        }
+
+        return (Map<String, Object>) rows[index % blockSizeLocal];
+    }
+
+    /**
+     * Returns the index of an item. Only the rows that are currently cached are
+     * searched.
+     */
+    @Override
+    public int indexOf(Map<String, Object> item) {
+        synchronized (cache) {
+            for (java.util.Map.Entry<Integer, Object[]> entry : cache.entrySet()) {
+                Object[] rows = entry.getValue();
+
+                for (int i = 0; i < rows.length; i++) {
+                    if (rows[i] == item || (item != null && item.equals(rows[i]))) {
+                        return entry.getKey() * blockSize + i;
+                    }
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (getLength() == 0);
+    }
+
+    /**
+     * Returns the number of rows in the result set, which is determined by
+     * scrolling to its last row the first time it is needed.
+     */
+    @Override
+    public int getLength() {
+        synchronized (cache) {
+            if (length >= 0) {
+                return length;
+            }
+        }
+
+        synchronized (resultSet) {
+            try {
+                int lengthLocal = resultSet.last() ? resultSet.getRow() : 0;
+
+                synchronized (cache) {
+                    length = lengthLocal;
+                }
+
+                return lengthLocal;
+            } catch (SQLException exception) {
+                throw new RuntimeException(exception);
+            }
+        }
+    }
+
+    @Override
+    public Comparator<Map<String, Object>> getComparator() {
+        return null;
+    }
+
+    @Override
+    @UnsupportedOperation
+    public void setComparator(Comparator<Map<String, Object>> comparator) {
+        throw new UnsupportedOperationException(ERROR_MSG);
+    }
+
+    @Override
+    public Iterator<Map<String, Object>> iterator() {
+        return new ItemIterator();
+    }
+
+    @Override
+    public ListenerList<ListListener<Map<String, Object>>> getListListeners() {
+        return listListeners;
+    }
+}
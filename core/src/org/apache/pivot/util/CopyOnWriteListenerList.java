@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.util;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+
+/**
+ * Thread-safe listener list, intended for lists that are fired often or that
+ * may have many listeners. <p> The listeners are kept in an array that is
+ * replaced whenever a listener is added or removed, so firing an event never
+ * takes a lock and always iterates over a consistent snapshot, even when
+ * listeners are added or removed concurrently or by a listener while the event
+ * is being fired. Once the list grows beyond a few listeners, an identity hash
+ * index is maintained so that duplicate detection and {@link #contains} do not
+ * have to scan the array.
+ */
+public abstract class CopyOnWriteListenerList<T> extends ListenerList<T> {
+    /**
+     * Copy-on-write storage.
+     */
+    private static final class CopyOnWriteStore<T> extends Store<T> {
+        // Length beyond which the identity index is maintained
+        private static final int INDEX_THRESHOLD = 8;
+
+        @SuppressWarnings({ "unchecked" })
+        private volatile T[] list = (T[]) new Object[0];
+
+        // Maps each listener to its position in the list, or null while the list is short
+        private IdentityHashMap<T, Integer> index = null;
+
+        private final Object lock = new Object();
+
+        @Override
+        public boolean add(T listener) {
+            synchronized (lock) {
+                if (indexOf(listener) >= 0) {
+                    return false;
+                }
+
+                T[] updatedList = Arrays.copyOf(list, list.length + 1);
+                updatedList[list.length] = listener;
+
+                if (index != null) {
+                    index.put(listener, Integer.valueOf(list.length));
+                } else if (updatedList.length > INDEX_THRESHOLD) {
+                    rebuildIndex(updatedList);
+                }
+
+                list = updatedList;
+                return true;
+            }
+        }
+
+        @Override
+        public boolean remove(T listener) {
+            synchronized (lock) {
+                int i = indexOf(listener);
+
+                if (i < 0) {
+                    return false;
+                }
+
+                @SuppressWarnings({ "unchecked" })
+                T[] updatedList = (T[]) new Object[list.length - 1];
+                System.arraycopy(list, 0, updatedList, 0, i);
+                System.arraycopy(list, i + 1, updatedList, i, updatedList.length - i);
+
+                if (updatedList.length > INDEX_THRESHOLD) {
+                    // Only the positions of the listeners after the removed one change
+                    index.remove(listener);
+                    for (int j = i; j < updatedList.length; j++) {
+                        index.put(updatedList[j], Integer.valueOf(j));
+                    }
+                } else {
+                    index = null;
+                }
+
+                list = updatedList;
+                return true;
+            }
+        }
+
+        private void rebuildIndex(T[] listeners) {
+            index = new IdentityHashMap<>(listeners.length * 2);
+            for (int i = 0; i < listeners.length; i++) {
+                index.put(listeners[i], Integer.valueOf(i));
+            }
+        }
+
+        // Must be called while holding the lock
+        private int indexOf(T listener) {
+            Utils.checkNull(listener, "listener");
+
+            if (index != null) {
+                Integer i = index.get(listener);
+                return (i == null) ? -1 : i.intValue();
+            }
+
+            for (int i = 0; i < list.length; i++) {
+                if (list[i] == listener) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        @Override
+        public boolean contains(T listener) {
+            synchronized (lock) {
+                return indexOf(listener) >= 0;
+            }
+        }
+
+        @Override
+        public int getLength() {
+            return list.length;
+        }
+
+        @Override
+        public T get(int i) {
+            T[] listeners = list;
+            Utils.checkZeroBasedIndex(i, listeners.length);
+            return listeners[i];
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            T[] listeners = list;
+            return new ArrayIterator<>(listeners, listeners.length);
+        }
+    }
+
+    public CopyOnWriteListenerList() {
+        super(new CopyOnWriteStore<T>());
+    }
+}
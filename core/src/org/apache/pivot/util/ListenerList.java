@@ -23,33 +23,40 @@ import java.util.NoSuchElementException;
 import org.apache.pivot.annotations.UnsupportedOperation;
 
 /**
- * Abstract base class for listener lists. <p> NOTE This class is not inherently
- * thread safe. Subclasses that require thread-safe access should synchronize
- * method access appropriately. Callers must manually synchronize on the
- * listener list instance to ensure thread safety during iteration.
+ * Abstract base class for listener lists. <p> Iteration works on a snapshot
+ * of the list taken when the iterator is created, so listeners may add or
+ * remove listeners (including themselves) while an event is being fired.
+ * <p> NOTE This class is not inherently thread safe. Subclasses that require
+ * thread-safe access should synchronize method access appropriately, or
+ * extend {@link CopyOnWriteListenerList} instead, which keeps its listeners
+ * in a different store.
  */
 public abstract class ListenerList<T> implements Iterable<T> {
 
-    // Iterator through the current array of elements
-    private class NodeIterator implements Iterator<T> {
+    // Iterator through a snapshot of the array of elements
+    static class ArrayIterator<T> implements Iterator<T> {
+        private final T[] array;
+        private final int length;
         private int index;
 
-        public NodeIterator() {
+        public ArrayIterator(T[] array, int length) {
+            this.array = array;
+            this.length = length;
             this.index = 0;
         }
 
         @Override
         public boolean hasNext() {
-            return (index < last);
+            return (index < length);
         }
 
         @Override
         public T next() {
-            if (index >= last) {
+            if (index >= length) {
                 throw new NoSuchElementException();
             }
 
-            return list[index++];
+            return array[index++];
         }
 
         @Override
@@ -59,66 +66,141 @@ public abstract class ListenerList<T> implements Iterable<T> {
         }
     }
 
-    private static final int DEFAULT_SIZE = 5;
+    /**
+     * Storage for the listeners of a list, which determines how the list
+     * behaves when it is modified and iterated.
+     */
+    abstract static class Store<T> implements Iterable<T> {
+        /**
+         * @return <tt>false</tt> if the listener had already been added.
+         */
+        public abstract boolean add(T listener);
+
+        /**
+         * @return <tt>false</tt> if the listener had not been added.
+         */
+        public abstract boolean remove(T listener);
+
+        public abstract boolean contains(T listener);
 
-    // The current array of items (some of which are null)
-    // All non-null objects are at the beginning of the array
-    // and the array is reorganized on "remove"
-    @SuppressWarnings({ "unchecked" })
-    private T[] list = (T[]) new Object[DEFAULT_SIZE];
-    // The current length of the active list
-    private int last = 0;
+        public abstract int getLength();
+
+        public abstract T get(int index);
+    }
 
     /**
-     * Adds a listener to the list, if it has not previously been added.
-     *
-     * @param listener New listener to add to the list.
+     * Array storage, which is not thread safe.
      */
-    public void add(T listener) {
-        if (indexOf(listener) >= 0) {
-            System.err.println("Duplicate listener " + listener + " added to " + this);
-            return;
+    private static final class ArrayStore<T> extends Store<T> {
+        private static final int DEFAULT_SIZE = 5;
+
+        // The current array of items (some of which are null)
+        // All non-null objects are at the beginning of the array;
+        // "add" only writes past the end of the active items and
+        // "remove" replaces the array, so that iterators can keep
+        // using the array they were created with
+        @SuppressWarnings({ "unchecked" })
+        private T[] list = (T[]) new Object[0];
+        // The current length of the active list
+        private int last = 0;
+
+        @Override
+        public boolean add(T listener) {
+            if (indexOf(listener) >= 0) {
+                return false;
+            }
+
+            // If no slot is available, double the size of the array
+            if (last >= list.length) {
+                list = Arrays.copyOf(list, Math.max(list.length * 2, DEFAULT_SIZE));
+            }
+
+            list[last++] = listener;
+            return true;
         }
 
-        // If no slot is available, increase the size of the array
-        if (last >= list.length) {
-            list = Arrays.copyOf(list, list.length + DEFAULT_SIZE);
+        @Override
+        public boolean remove(T listener) {
+            int index = indexOf(listener);
+
+            if (index < 0) {
+                return false;
+            }
+
+            // Once we find the entry in the list, copy the entries before and
+            // after it into a new array, leaving the current one untouched for
+            // any iterators that are still using it
+            @SuppressWarnings({ "unchecked" })
+            T[] updatedList = (T[]) new Object[list.length];
+            System.arraycopy(list, 0, updatedList, 0, index);
+            System.arraycopy(list, index + 1, updatedList, index, last - 1 - index);
+
+            list = updatedList;
+            last--;
+            return true;
         }
 
-        list[last++] = listener;
-    }
+        private int indexOf(T listener) {
+            Utils.checkNull(listener, "listener");
 
-    /**
-     * Removes a listener from the list, if it has previously been added.
-     *
-     * @param listener The listener to remove from the list.
-     */
-    public void remove(T listener) {
-        int index = indexOf(listener);
+            for (int i = 0; i < last; i++) {
+                if (list[i] == listener) {
+                    return i;
+                }
+            }
+            return -1;
+        }
 
-        if (index < 0) {
-            System.err.println("Nonexistent listener " + listener + " removed from " + this);
-            return;
+        @Override
+        public boolean contains(T listener) {
+            return indexOf(listener) >= 0;
         }
 
-        // Once we find the entry in the list, copy the rest of the
-        // existing entries down by one position
-        if (index < last - 1) {
-            System.arraycopy(list, index + 1, list, index, last - 1 - index);
+        @Override
+        public int getLength() {
+            return last;
         }
 
-        list[--last] = null;
+        @Override
+        public T get(int index) {
+            Utils.checkZeroBasedIndex(index, last);
+            return list[index];
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new ArrayIterator<>(list, last);
+        }
     }
 
-    private int indexOf(T listener) {
-        Utils.checkNull(listener, "listener");
+    private final Store<T> store;
 
-        for (int i = 0; i < last; i++) {
-            if (list[i] == listener) {
-                return i;
-            }
-        }
-        return -1;
+    public ListenerList() {
+        this(new ArrayStore<T>());
+    }
+
+    ListenerList(Store<T> store) {
+        this.store = store;
+    }
+
+    /**
+     * Adds a listener to the list, if it has not previously been added;
+     * adding a listener again has no effect.
+     *
+     * @param listener New listener to add to the list.
+     */
+    public void add(T listener) {
+        store.add(listener);
+    }
+
+    /**
+     * Removes a listener from the list, if it has previously been added;
+     * removing a listener that is not in the list has no effect.
+     *
+     * @param listener The listener to remove from the list.
+     */
+    public void remove(T listener) {
+        store.remove(listener);
     }
 
     /**
@@ -129,7 +211,7 @@ public abstract class ListenerList<T> implements Iterable<T> {
      * otherwise.
      */
     public boolean contains(T listener) {
-        return indexOf(listener) >= 0;
+        return store.contains(listener);
     }
 
     /**
@@ -139,7 +221,7 @@ public abstract class ListenerList<T> implements Iterable<T> {
      * otherwise.
      */
     public boolean isEmpty() {
-        return last == 0;
+        return store.getLength() == 0;
     }
 
     /**
@@ -148,7 +230,7 @@ public abstract class ListenerList<T> implements Iterable<T> {
      * @return the number of elements.
      */
     public int getLength() {
-        return last;
+        return store.getLength();
     }
 
     /**
@@ -159,13 +241,12 @@ public abstract class ListenerList<T> implements Iterable<T> {
      * @throws IndexOutOfBoundsException if the index is out of range.
      */
     public T get(int index) {
-        Utils.checkZeroBasedIndex(index, last);
-        return list[index];
+        return store.get(index);
     }
 
     @Override
     public Iterator<T> iterator() {
-        return new NodeIterator();
+        return store.iterator();
     }
 
     @Override
@@ -16,12 +16,126 @@
  */
 package org.apache.pivot.util;
 
-import org.apache.pivot.collections.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Provides support for basic intra-application message passing.
+ * Provides support for basic intra-application message passing. <p> A
+ * message is delivered to the listeners of the topics of its class, its
+ * superclasses and the interfaces it implements, in that order. Messages can
+ * be sent from any thread. By default, a listener is called on the sending
+ * thread; a listener subscribed with an executor is called on that
+ * executor instead, such as the UI thread's, and the messages that arrive
+ * while it is busy are delivered together, or only the latest of them if the
+ * subscription coalesces them. An exception thrown by a listener that is
+ * called on an executor is passed to the uncaught exception handler of the
+ * executor's thread; if the executor rejects a delivery, the subscription's
+ * pending messages are dropped and the exception is thrown to the sender.
  */
 public final class MessageBus {
+    /**
+     * A listener of a topic and the way messages are delivered to it.
+     */
+    private static final class Subscription {
+        public final MessageBusListener<Object> listener;
+        public final Executor executor;
+        public final boolean coalesce;
+
+        private final ConcurrentLinkedQueue<Object> pendingMessages = new ConcurrentLinkedQueue<>();
+        private final AtomicReference<Object> latestMessage = new AtomicReference<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        @SuppressWarnings("unchecked")
+        public Subscription(final MessageBusListener<?> listener, final Executor executor, final boolean coalesce) {
+            this.listener = (MessageBusListener<Object>) listener;
+            this.executor = executor;
+            this.coalesce = coalesce;
+        }
+
+        public void deliver(final Object message) {
+            if (executor == null) {
+                listener.messageSent(message);
+            } else {
+                if (coalesce) {
+                    latestMessage.set(message);
+                } else {
+                    pendingMessages.add(message);
+                }
+
+                // Only one delivery is scheduled at a time, which keeps the
+                // messages in order
+                if (scheduled.compareAndSet(false, true)) {
+                    try {
+                        executor.execute(this::deliverPending);
+                    } catch (RejectedExecutionException exception) {
+                        // The messages can't be delivered; drop them rather
+                        // than let them accumulate, and try again on the
+                        // next message
+                        pendingMessages.clear();
+                        latestMessage.set(null);
+                        scheduled.set(false);
+
+                        throw exception;
+                    }
+                }
+            }
+        }
+
+        private boolean hasPendingMessages() {
+            return coalesce ? (latestMessage.get() != null) : !pendingMessages.isEmpty();
+        }
+
+        private void deliverPending() {
+            do {
+                if (coalesce) {
+                    Object message = latestMessage.getAndSet(null);
+                    if (message != null) {
+                        messageSent(message);
+                    }
+                } else {
+                    for (Object message = pendingMessages.poll(); message != null;
+                        message = pendingMessages.poll()) {
+                        messageSent(message);
+                    }
+                }
+
+                scheduled.set(false);
+
+                // Deliver the messages that arrived after the queue was
+                // drained but before the delivery was marked as finished
+            } while (hasPendingMessages() && scheduled.compareAndSet(false, true));
+        }
+
+        /**
+         * Delivers a message on the executor, reporting an exception thrown by
+         * the listener to the thread's uncaught exception handler so that it
+         * doesn't stop the delivery of later messages.
+         */
+        private void messageSent(final Object message) {
+            try {
+                listener.messageSent(message);
+            } catch (RuntimeException | Error throwable) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, throwable);
+            }
+        }
+    }
+
+    /**
+     * The subscriptions of a topic, which are replaced rather than modified
+     * so that messages can be sent without locking.
+     */
+    private static final class Topic {
+        public volatile Subscription[] subscriptions = new Subscription[0];
+    }
+
     /**
      * Private constructor for utility class.
      */
@@ -29,26 +143,62 @@ public final class MessageBus {
     }
 
     /** The master list of topics and their listeners. */
-    private static HashMap<Class<?>, ListenerList<MessageBusListener<?>>> messageTopics = new HashMap<>();
+    private static ConcurrentHashMap<Class<?>, Topic> messageTopics = new ConcurrentHashMap<>();
+
+    /**
+     * The topics that messages of each class are delivered to, which is
+     * replaced whenever a topic is added or removed.
+     */
+    private static volatile ConcurrentHashMap<Class<?>, Topic[]> resolvedTopics = new ConcurrentHashMap<>();
 
     /**
-     * Subscribes a listener to a message topic.
+     * Subscribes a listener to a message topic. The listener is called on the
+     * thread that sends the message.
      *
      * @param <T> The type of the topic.
      * @param topic The topic class to subscribe to.
      * @param messageListener The listener we want to attach.
      */
     public static <T> void subscribe(final Class<? super T> topic, final MessageBusListener<T> messageListener) {
-        ListenerList<MessageBusListener<?>> topicListeners = messageTopics.get(topic);
+        subscribe(topic, messageListener, null, false);
+    }
 
-        if (topicListeners == null) {
-            topicListeners = new ListenerList<MessageBusListener<?>>() {
-                // empty block
-            };
-            messageTopics.put(topic, topicListeners);
-        }
+    /**
+     * Subscribes a listener to a message topic, to be called on an executor.
+     *
+     * @param <T> The type of the topic.
+     * @param topic The topic class to subscribe to.
+     * @param messageListener The listener we want to attach.
+     * @param executor The executor the listener is called on, or
+     * <tt>null</tt> to call it on the thread that sends the message.
+     * @param coalesce If <tt>true</tt>, only the latest of the messages that
+     * arrive before the listener can be called is delivered; otherwise, all of
+     * them are delivered in order. <p> Subscribing a listener that is already
+     * subscribed to the topic has no effect.
+     */
+    public static <T> void subscribe(final Class<? super T> topic, final MessageBusListener<T> messageListener,
+        final Executor executor, final boolean coalesce) {
+        Utils.checkNull(topic, "topic");
+        Utils.checkNull(messageListener, "messageListener");
+
+        synchronized (messageTopics) {
+            Topic topicLocal = messageTopics.get(topic);
+
+            if (topicLocal == null) {
+                topicLocal = new Topic();
+                messageTopics.put(topic, topicLocal);
+                resolvedTopics = new ConcurrentHashMap<>();
+            }
+
+            Subscription[] subscriptions = topicLocal.subscriptions;
+            if (indexOf(subscriptions, messageListener) != -1) {
+                return;
+            }
 
-        topicListeners.add(messageListener);
+            Subscription[] subscriptionsUpdated = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+            subscriptionsUpdated[subscriptions.length] = new Subscription(messageListener, executor, coalesce);
+            topicLocal.subscriptions = subscriptionsUpdated;
+        }
     }
 
     /**
@@ -60,16 +210,39 @@ public final class MessageBus {
      * @throws IllegalArgumentException if there are no listeners subscribed.
      */
     public static <T> void unsubscribe(final Class<? super T> topic, final MessageBusListener<T> messageListener) {
-        ListenerList<MessageBusListener<?>> topicListeners = messageTopics.get(topic);
+        synchronized (messageTopics) {
+            Topic topicLocal = messageTopics.get(topic);
+
+            if (topicLocal == null) {
+                throw new IllegalArgumentException(topic.getName() + " does not exist.");
+            }
 
-        if (topicListeners == null) {
-            throw new IllegalArgumentException(topic.getName() + " does not exist.");
+            Subscription[] subscriptions = topicLocal.subscriptions;
+            int index = indexOf(subscriptions, messageListener);
+
+            if (index != -1) {
+                Subscription[] subscriptionsUpdated = new Subscription[subscriptions.length - 1];
+                System.arraycopy(subscriptions, 0, subscriptionsUpdated, 0, index);
+                System.arraycopy(subscriptions, index + 1, subscriptionsUpdated, index,
+                    subscriptionsUpdated.length - index);
+                topicLocal.subscriptions = subscriptionsUpdated;
+
+                if (subscriptionsUpdated.length == 0) {
+                    messageTopics.remove(topic);
+                    resolvedTopics = new ConcurrentHashMap<>();
+                }
+            }
         }
+    }
 
-        topicListeners.remove(messageListener);
-        if (topicListeners.isEmpty()) {
-            messageTopics.remove(topic);
+    private static int indexOf(final Subscription[] subscriptions, final MessageBusListener<?> messageListener) {
+        for (int i = 0; i < subscriptions.length; i++) {
+            if (subscriptions[i].listener == messageListener) {
+                return i;
+            }
         }
+
+        return -1;
     }
 
     /**
@@ -78,15 +251,45 @@ public final class MessageBus {
      * @param <T> The type of the topic.
      * @param message The message to send to all subscribed listeners.
      */
-    @SuppressWarnings("unchecked")
     public static <T> void sendMessage(final T message) {
-        Class<?> topic = message.getClass();
-        ListenerList<MessageBusListener<?>> topicListeners = messageTopics.get(topic);
+        Utils.checkNull(message, "message");
 
-        if (topicListeners != null) {
-            for (MessageBusListener<?> listener : topicListeners) {
-                ((MessageBusListener<T>) listener).messageSent(message);
+        Topic[] topics = resolvedTopics.computeIfAbsent(message.getClass(), MessageBus::resolveTopics);
+
+        for (Topic topic : topics) {
+            for (Subscription subscription : topic.subscriptions) {
+                subscription.deliver(message);
             }
         }
     }
+
+    /**
+     * Returns the topics of a message class: those of the class itself, its
+     * superclasses and its interfaces.
+     */
+    private static Topic[] resolveTopics(final Class<?> messageClass) {
+        LinkedHashSet<Class<?>> types = new LinkedHashSet<>();
+        for (Class<?> type = messageClass; type != null; type = type.getSuperclass()) {
+            types.add(type);
+        }
+
+        ArrayList<Class<?>> classes = new ArrayList<>(types);
+        for (int i = 0; i < classes.size(); i++) {
+            for (Class<?> type : classes.get(i).getInterfaces()) {
+                if (types.add(type)) {
+                    classes.add(type);
+                }
+            }
+        }
+
+        ArrayList<Topic> topics = new ArrayList<>();
+        for (Class<?> type : types) {
+            Topic topic = messageTopics.get(type);
+            if (topic != null) {
+                topics.add(topic);
+            }
+        }
+
+        return topics.toArray(new Topic[topics.size()]);
+    }
 }
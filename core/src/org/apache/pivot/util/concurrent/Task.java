@@ -17,14 +17,38 @@
 package org.apache.pivot.util.concurrent;
 
 import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.pivot.util.Utils;
 
 /**
  * Abstract base class for "tasks". A task is an asynchronous operation that may
- * optionally return a value.
+ * optionally return a value. <p> Tasks that are not given an executor service
+ * are submitted to {@link #DEFAULT_EXECUTOR_SERVICE}, which forwards them to
+ * the service set by {@link #setDefaultExecutorService}; a cached thread pool
+ * by default. On a runtime that supports virtual threads, applications that
+ * run many concurrent I/O-bound tasks can run each one on a virtual thread of
+ * its own, either globally, by setting the
+ * <tt>org.apache.pivot.util.concurrent.virtualthreads</tt> system property to
+ * <tt>true</tt> or by passing {@link #getVirtualThreadExecutorService()} to
+ * {@link #setDefaultExecutorService}, or per task, by passing it to the
+ * task's constructor or to {@link #execute(TaskListener, ExecutorService)}.
+ * <p> Tasks can be chained, combined and timed out by way of the future
+ * returned by {@link #toCompletableFuture()}. <p> When a task is executed
+ * asynchronously with a {@link #setTimeout timeout}, it is aborted, and its
+ * worker thread interrupted, once the timeout has elapsed, and it fails with
+ * a {@link TimeoutException}. A {@link TaskGroup} or {@link TaskSequence}
+ * passes its deadline on to its tasks, and aborts them when it is aborted.
+ * Subclasses that wait on resources that do not respond to interrupts, such
+ * as connections, can override {@link #abort()} to release them.
  *
  * @param <V> The type of the value returned by the operation. May be
  * {@link Void} to indicate that the task does not return a value.
@@ -41,6 +65,7 @@ public abstract class Task<V> {
 
             synchronized (Task.this) {
                 Task.this.taskThread = new WeakReference<Thread>(Thread.currentThread());
+                Task.this.executingThread = Thread.currentThread();
             }
 
             try {
@@ -49,22 +74,52 @@ public abstract class Task<V> {
                 faultLocal = throwable;
             }
 
-            TaskListener<V> taskListenerLocal;
             synchronized (Task.this) {
-                Task.this.result = resultLocal;
-                Task.this.fault = faultLocal;
+                Task.this.executingThread = null;
 
-                abort = false;
-
-                taskListenerLocal = Task.this.taskListener;
-                Task.this.taskListener = null;
+                // Do not leave an interrupt from a timeout to the next
+                // command that the thread runs
+                if (timedOut) {
+                    Thread.interrupted();
+                }
             }
 
-            if (faultLocal == null) {
-                taskListenerLocal.taskExecuted(Task.this);
-            } else {
-                taskListenerLocal.executeFailed(Task.this);
-            }
+            executed(resultLocal, faultLocal);
+        }
+    }
+
+    /**
+     * Executor service that forwards to the current default executor service.
+     */
+    private static class DefaultExecutorService extends AbstractExecutorService {
+        @Override
+        public void execute(Runnable command) {
+            defaultExecutorService.execute(command);
+        }
+
+        @Override
+        public void shutdown() {
+            defaultExecutorService.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return defaultExecutorService.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return defaultExecutorService.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return defaultExecutorService.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return defaultExecutorService.awaitTermination(timeout, unit);
         }
     }
 
@@ -74,11 +129,39 @@ public abstract class Task<V> {
     private Throwable fault = null;
     private TaskListener<V> taskListener = null;
     private WeakReference<Thread> taskThread = null;
+    private Thread executingThread = null;
+
+    private long deadline = Long.MAX_VALUE;
+    private long parentDeadline = Long.MAX_VALUE;
+    private ScheduledFuture<?> timeoutFuture = null;
+    private boolean timedOut = false;
 
     protected volatile long timeout = Long.MAX_VALUE;
     protected volatile boolean abort = false;
 
-    public static final ExecutorService DEFAULT_EXECUTOR_SERVICE = Executors.newCachedThreadPool();
+    private static final ExecutorService THREAD_POOL_EXECUTOR_SERVICE = Executors.newCachedThreadPool();
+
+    private static ExecutorService virtualThreadExecutorService = null;
+    private static ScheduledThreadPoolExecutor timeoutScheduler = null;
+    private static volatile ExecutorService defaultExecutorService = THREAD_POOL_EXECUTOR_SERVICE;
+
+    /**
+     * The executor service of tasks that are not given one, which submits
+     * them to the {@link #getDefaultExecutorService() current default}.
+     */
+    public static final ExecutorService DEFAULT_EXECUTOR_SERVICE = new DefaultExecutorService();
+
+    /**
+     * The system property that runs tasks on virtual threads by default, if
+     * the runtime supports them.
+     */
+    public static final String VIRTUAL_THREADS_PROPERTY = "org.apache.pivot.util.concurrent.virtualthreads";
+
+    static {
+        if (Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY) && isVirtualThreadSupported()) {
+            defaultExecutorService = getVirtualThreadExecutorService();
+        }
+    }
 
     public Task() {
         this(DEFAULT_EXECUTOR_SERVICE);
@@ -138,12 +221,187 @@ public abstract class Task<V> {
         fault = null;
         taskThread = null;
         abort = false;
+        timedOut = false;
+
+        // The task must complete by the deadline of the group or sequence
+        // that executes it, if it is earlier than its own
+        deadline = parentDeadline;
+        parentDeadline = Long.MAX_VALUE;
 
+        long now = System.nanoTime();
+        if (timeout != Long.MAX_VALUE) {
+            long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+
+            // Timeouts too long to be represented are treated as no timeout
+            if (timeoutNanos < Long.MAX_VALUE - Math.max(now, 0)) {
+                deadline = Math.min(deadline, now + timeoutNanos);
+            }
+        }
+
+        if (deadline != Long.MAX_VALUE) {
+            scheduleTimeout(deadline - now);
+        }
+
+        executeAsynchronously(executorServiceArgument);
+    }
+
+    private static synchronized ScheduledThreadPoolExecutor getTimeoutScheduler() {
+        if (timeoutScheduler == null) {
+            timeoutScheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, Task.class.getName() + " timeout");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            // Most timeouts are cancelled, as their tasks complete in time
+            timeoutScheduler.setRemoveOnCancelPolicy(true);
+        }
+
+        return timeoutScheduler;
+    }
+
+    /**
+     * Schedules {@link #timeoutElapsed} to run after the given delay. This is
+     * called with the task's monitor held.
+     */
+    private void scheduleTimeout(long delay) {
+        timeoutFuture = getTimeoutScheduler().schedule(this::timeoutElapsed, Math.max(delay, 0),
+            TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Aborts the task when its deadline has passed.
+     */
+    private void timeoutElapsed() {
+        synchronized (this) {
+            // The task may have completed, or been executed again since
+            if (!isPending() || timedOut || deadline == Long.MAX_VALUE) {
+                return;
+            }
+
+            // If the timer fired early, wait for the rest of the time
+            long remaining = deadline - System.nanoTime();
+            if (remaining > 0) {
+                scheduleTimeout(remaining);
+                return;
+            }
+
+            timedOut = true;
+
+            if (executingThread != null) {
+                executingThread.interrupt();
+            }
+        }
+
+        abort();
+    }
+
+    /**
+     * Starts the asynchronous execution of the task, which must end with a
+     * call to {@link #executed}. The default implementation submits a callback
+     * that calls {@link #execute()} to the executor service. Subclasses that
+     * can wait for their work without holding a thread, such as
+     * {@link TaskGroup}, may start it themselves instead. <p> This method is
+     * called with the task's monitor held.
+     *
+     * @param executorServiceArgument The service to submit the task to.
+     */
+    protected void executeAsynchronously(ExecutorService executorServiceArgument) {
         // Create a new execute callback and post it to the executor service
         ExecuteCallback executeCallback = new ExecuteCallback();
         executorServiceArgument.submit(executeCallback);
     }
 
+    /**
+     * Records the outcome of an asynchronous execution and notifies the task
+     * listener, on the calling thread.
+     *
+     * @param resultArgument The result of the task, if it succeeded.
+     * @param faultArgument The fault that occurred, or <tt>null</tt> if the
+     * task succeeded.
+     */
+    protected final void executed(V resultArgument, Throwable faultArgument) {
+        TaskListener<V> taskListenerLocal;
+        Throwable faultLocal = faultArgument;
+
+        synchronized (this) {
+            if (timeoutFuture != null) {
+                timeoutFuture.cancel(false);
+                timeoutFuture = null;
+            }
+
+            // However the task ended, it did not complete in time; the
+            // deadline may have passed before the timeout was handled
+            if (!timedOut && deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0) {
+                timedOut = true;
+            }
+
+            if (timedOut) {
+                faultLocal = new TimeoutException("Task did not complete within its timeout.");
+            }
+
+            this.result = (faultLocal == null) ? resultArgument : null;
+            this.fault = faultLocal;
+
+            abort = false;
+            deadline = Long.MAX_VALUE;
+
+            taskListenerLocal = this.taskListener;
+            this.taskListener = null;
+        }
+
+        if (faultLocal == null) {
+            taskListenerLocal.taskExecuted(this);
+        } else {
+            taskListenerLocal.executeFailed(this);
+        }
+    }
+
+    /**
+     * Asynchronously executes the task, returning a future that completes
+     * with its result or fault. Cancelling the future aborts the task.
+     *
+     * @return The future of the task's execution.
+     * @see #toCompletableFuture(ExecutorService)
+     */
+    public CompletableFuture<V> toCompletableFuture() {
+        return toCompletableFuture(executorService);
+    }
+
+    /**
+     * Asynchronously executes the task, returning a future that completes
+     * with its result or fault. The future is completed on the task's worker
+     * thread, so dependent stages that are not asynchronous run on that
+     * thread. Cancelling the future aborts the task.
+     *
+     * @param executorServiceArgument The service to submit the task to,
+     * overriding the Task's own ExecutorService.
+     * @return The future of the task's execution.
+     */
+    public CompletableFuture<V> toCompletableFuture(ExecutorService executorServiceArgument) {
+        CompletableFuture<V> future = new CompletableFuture<V>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                abort();
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+
+        execute(new TaskListener<V>() {
+            @Override
+            public void taskExecuted(Task<V> task) {
+                future.complete(task.getResult());
+            }
+
+            @Override
+            public void executeFailed(Task<V> task) {
+                future.completeExceptionally(task.getFault());
+            }
+        }, executorServiceArgument);
+
+        return future;
+    }
+
     /**
      * @return The executor service used to execute this task.
      */
@@ -205,20 +463,129 @@ public abstract class Task<V> {
     }
 
     /**
-     * Sets the timeout value for this task. It is the responsibility of the
-     * implementing class to respect this value.
+     * Sets the timeout value for this task. It is enforced when the task is
+     * executed asynchronously; implementing classes may also respect it, or
+     * the {@link #getRemainingTime() remaining time}, when they are executed
+     * synchronously, and pass it on to the operations they wait for.
      *
-     * @param timeout The time by which the task must complete execution. If the
-     * timeout is exceeded, a {@link TimeoutException} will be thrown.
+     * @param timeout The time in milliseconds within which the task must
+     * complete execution, or <tt>Long.MAX_VALUE</tt> for no timeout. If the
+     * timeout is exceeded, the task is aborted and fails with a
+     * {@link TimeoutException}.
      */
     public synchronized void setTimeout(long timeout) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout must be positive.");
+        }
+
         this.timeout = timeout;
     }
 
+    /**
+     * Returns the time left until the task's deadline, which is set by its
+     * own timeout or by the group or sequence that is executing it, whichever
+     * is earlier.
+     *
+     * @return The remaining time in milliseconds, which is <tt>0</tt> once the
+     * deadline has passed, or <tt>Long.MAX_VALUE</tt> if the task is not
+     * executing asynchronously with a deadline.
+     */
+    public synchronized long getRemainingTime() {
+        if (deadline == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+
+        // Round up, so that the time is 0 only once the deadline has passed
+        long remaining = deadline - System.nanoTime();
+        return (remaining <= 0) ? 0 : TimeUnit.NANOSECONDS.toMillis(remaining + 999999);
+    }
+
+    /**
+     * Sets the deadline of the next asynchronous execution of a task that a
+     * group or sequence executes, from the group or sequence's own.
+     */
+    synchronized void setParentDeadline(long parentDeadlineArgument) {
+        this.parentDeadline = parentDeadlineArgument;
+    }
+
+    /**
+     * @return The deadline of the current execution, as a
+     * {@link System#nanoTime()} value, or <tt>Long.MAX_VALUE</tt> if there
+     * is none.
+     */
+    synchronized long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * @return The executor service that {@link #DEFAULT_EXECUTOR_SERVICE}
+     * currently submits tasks to.
+     */
+    public static ExecutorService getDefaultExecutorService() {
+        return defaultExecutorService;
+    }
+
+    /**
+     * Sets the executor service that {@link #DEFAULT_EXECUTOR_SERVICE}
+     * submits tasks to, including those of tasks that have already been
+     * created.
+     *
+     * @param executorService The new default executor service.
+     */
+    public static void setDefaultExecutorService(ExecutorService executorService) {
+        Utils.checkNull(executorService, "executorService");
+
+        if (executorService == DEFAULT_EXECUTOR_SERVICE) {
+            throw new IllegalArgumentException("executorService is the default executor service.");
+        }
+
+        defaultExecutorService = executorService;
+    }
+
+    /**
+     * @return Whether the runtime supports virtual threads.
+     */
+    public static boolean isVirtualThreadSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns an executor service that runs each task on a new virtual
+     * thread. Tasks that spend most of their time waiting for I/O, such as
+     * web queries, can then be executed by the thousands without a platform
+     * thread each.
+     *
+     * @return The shared virtual thread executor service.
+     * @throws UnsupportedOperationException if the runtime does not support
+     * virtual threads.
+     * @see #isVirtualThreadSupported()
+     */
+    public static synchronized ExecutorService getVirtualThreadExecutorService() {
+        if (virtualThreadExecutorService == null) {
+            try {
+                // Looked up at run time, as virtual threads are not available
+                // on all of the platforms that are supported
+                virtualThreadExecutorService = (ExecutorService)
+                    Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException exception) {
+                throw new UnsupportedOperationException("Virtual threads are not supported.", exception);
+            }
+        }
+
+        return virtualThreadExecutorService;
+    }
+
     /**
      * Sets the abort flag for this task to <tt>true</tt>. It is the
      * responsibility of the implementing class to respect this value and throw
-     * a {@link AbortException}.
+     * a {@link AbortException}. Subclasses that can release what the task is
+     * waiting on, so that it stops promptly, override this method to do so;
+     * it is also called when the task times out.
      */
     public synchronized void abort() {
         abort = true;
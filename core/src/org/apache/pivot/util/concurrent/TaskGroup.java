@@ -17,19 +17,112 @@
 package org.apache.pivot.util.concurrent;
 
 import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 
+import org.apache.pivot.collections.ArrayList;
 import org.apache.pivot.collections.Group;
-import org.apache.pivot.collections.HashSet;
+import org.apache.pivot.collections.HashMap;
 import org.apache.pivot.util.ImmutableIterator;
+import org.apache.pivot.util.ListenerList;
+import org.apache.pivot.util.Utils;
 
 /**
  * {@link Task} that runs a group of tasks in parallel and notifies listeners
- * when all tasks are complete.
+ * when all tasks are complete. <p> When the group is executed
+ * asynchronously, it does not hold a thread of its own while its tasks run;
+ * its listener is notified on the thread of the last task to complete. When
+ * it is executed synchronously, it waits for its tasks without holding its
+ * monitor, so that it does not pin the carrier thread of a virtual thread.
+ * <p> By default, all of the tasks are started at once. A
+ * {@link #setMaximumParallelism maximum parallelism} limits the number that
+ * run at the same time, the others being queued in order of
+ * {@link #setPriority priority}, and in the order they were added for equal
+ * priorities, so that, for example, the images in view
+ * are loaded ahead of those being prefetched. The tasks can also be run on
+ * an executor service of the group's, such as a work-stealing
+ * {@link java.util.concurrent.ForkJoinPool}, rather than on their own. The
+ * progress of an execution is reported to {@link TaskGroupListener}s and by
+ * the queued, running and completed counts and latency histogram of the
+ * group.
  */
 public class TaskGroup extends Task<Void> implements Group<Task<?>>, Iterable<Task<?>> {
-    private HashSet<Task<?>> tasks = new HashSet<>();
-    private int complete = 0;
+    /**
+     * A task waiting to be started.
+     */
+    private static class QueuedTask implements Comparable<QueuedTask> {
+        public final Task<?> task;
+        public final long sequenceNumber;
+        public int priority;
+
+        public QueuedTask(Task<?> task, long sequenceNumber, int priority) {
+            this.task = task;
+            this.sequenceNumber = sequenceNumber;
+            this.priority = priority;
+        }
+
+        @Override
+        public int compareTo(QueuedTask queuedTask) {
+            // Higher priorities first, then in the order the tasks were added
+            int result = Integer.compare(queuedTask.priority, priority);
+            return (result == 0) ? Long.compare(sequenceNumber, queuedTask.sequenceNumber) : result;
+        }
+    }
+
+    /**
+     * The state of an execution of the group.
+     */
+    private class Execution {
+        public final PriorityQueue<QueuedTask> queue = new PriorityQueue<>();
+        public final int count;
+        public final long deadline;
+        public final long startTime = System.currentTimeMillis();
+        public final ExecutorService executorService;
+        public final Runnable completion;
+
+        public int runningCount = 0;
+        public int completedCount = 0;
+        public int droppedCount = 0;
+        public final long[] latencyHistogram = new long[LATENCY_BUCKET_COUNT];
+
+        public Execution(Runnable completion) {
+            for (Task<?> task : tasks) {
+                queue.add(new QueuedTask(task, sequenceNumbers.get(task).longValue(), getPriority(task)));
+            }
+
+            this.count = tasks.getLength();
+            this.deadline = getDeadline();
+            this.executorService = taskExecutorService;
+            this.completion = completion;
+        }
+
+        public boolean isComplete() {
+            return (completedCount + droppedCount == count);
+        }
+    }
+
+    // The tasks in the order they were added, and the sequence number each
+    // was added with, which orders queued tasks of equal priority
+    private ArrayList<Task<?>> tasks = new ArrayList<>();
+    private HashMap<Task<?>, Long> sequenceNumbers = new HashMap<>();
+    private long nextSequenceNumber = 0;
+
+    private HashMap<Task<?>, Integer> priorities = new HashMap<>();
+
+    private int maximumParallelism = Integer.MAX_VALUE;
+    private ExecutorService taskExecutorService = null;
+
+    private Execution execution = null;
+
+    private TaskGroupListener.Listeners taskGroupListeners = new TaskGroupListener.Listeners();
+
+    public static final int DEFAULT_PRIORITY = 0;
+
+    /**
+     * The number of buckets of the latency histogram.
+     */
+    public static final int LATENCY_BUCKET_COUNT = 32;
 
     public TaskGroup() {
         this(DEFAULT_EXECUTOR_SERVICE);
@@ -40,56 +133,148 @@ public class TaskGroup extends Task<Void> implements Group<Task<?>>, Iterable<Ta
     }
 
     @Override
+    public Void execute() throws TaskExecutionException {
+        CountDownLatch complete = new CountDownLatch(1);
+
+        synchronized (this) {
+            execution = new Execution(complete::countDown);
+            if (execution.count == 0 || startTasks(execution)) {
+                return null;
+            }
+        }
+
+        try {
+            complete.await();
+        } catch (InterruptedException exception) {
+            throw new TaskExecutionException(exception);
+        }
+
+        return null;
+    }
+
+    @Override
+    protected void executeAsynchronously(ExecutorService executorService) {
+        if (tasks.getLength() == 0) {
+            // Notify the listener on a worker thread, as for any other task
+            super.executeAsynchronously(executorService);
+            return;
+        }
+
+        // The group succeeds whether or not its tasks do
+        execution = new Execution(() -> executed(null, null));
+        if (startTasks(execution)) {
+            execution.completion.run();
+        }
+    }
+
+    /**
+     * Starts queued tasks, up to the maximum parallelism. This is called
+     * with the group's monitor held.
+     *
+     * @return Whether all of the tasks of the execution have completed.
+     */
     @SuppressWarnings("unchecked")
-    public synchronized Void execute() throws TaskExecutionException {
-        TaskListener<Object> taskListener = new TaskListener<Object>() {
-            @Override
-            public void taskExecuted(Task<Object> task) {
-                synchronized (TaskGroup.this) {
-                    complete++;
-                    TaskGroup.this.notify();
+    private boolean startTasks(Execution executionArgument) {
+        while (executionArgument.runningCount < maximumParallelism && !executionArgument.queue.isEmpty()) {
+            QueuedTask queuedTask = executionArgument.queue.poll();
+            Task<Object> task = (Task<Object>) queuedTask.task;
+
+            TaskListener<Object> taskListener = new TaskListener<Object>() {
+                @Override
+                public void taskExecuted(Task<Object> taskArgument) {
+                    taskCompleted(executionArgument, taskArgument);
                 }
-            }
 
-            @Override
-            public void executeFailed(Task<Object> task) {
-                synchronized (TaskGroup.this) {
-                    complete++;
-                    TaskGroup.this.notify();
+                @Override
+                public void executeFailed(Task<Object> taskArgument) {
+                    taskCompleted(executionArgument, taskArgument);
                 }
-            }
-        };
+            };
 
-        complete = 0;
-        for (Task<?> task : tasks) {
-            ((Task<Object>) task).execute(taskListener);
-        }
+            executionArgument.runningCount++;
+            taskGroupListeners.taskStarted(this, task);
 
-        while (complete < getCount()) {
             try {
-                wait();
-            } catch (InterruptedException exception) {
-                throw new TaskExecutionException(exception);
+                task.setParentDeadline(executionArgument.deadline);
+
+                if (executionArgument.executorService == null) {
+                    task.execute(taskListener);
+                } else {
+                    task.execute(taskListener, executionArgument.executorService);
+                }
+            } catch (IllegalThreadStateException exception) {
+                // The task is already pending on its own
+                executionArgument.runningCount--;
+                if (recordCompletion(executionArgument, task)) {
+                    return true;
+                }
             }
         }
 
-        return null;
+        return false;
     }
 
     /**
-     * Aborts all tasks in this group.
+     * Records the completion of a task, returning whether it was the last one.
+     */
+    private boolean recordCompletion(Execution executionArgument, Task<?> task) {
+        long latency = System.currentTimeMillis() - executionArgument.startTime;
+
+        int bucket = (latency <= 0) ? 0
+            : Math.min(Long.SIZE - Long.numberOfLeadingZeros(latency), LATENCY_BUCKET_COUNT - 1);
+        executionArgument.latencyHistogram[bucket]++;
+        executionArgument.completedCount++;
+
+        taskGroupListeners.taskCompleted(this, task, latency);
+
+        return executionArgument.isComplete();
+    }
+
+    private void taskCompleted(Execution executionArgument, Task<?> task) {
+        boolean complete;
+
+        synchronized (this) {
+            executionArgument.runningCount--;
+
+            complete = recordCompletion(executionArgument, task) || startTasks(executionArgument);
+        }
+
+        if (complete) {
+            executionArgument.completion.run();
+        }
+    }
+
+    /**
+     * Aborts all tasks in this group. Tasks that have not been started yet
+     * are dropped; they are not started, and are not reported as completed.
      */
     @Override
-    public synchronized void abort() {
-        for (Task<?> task : this) {
-            synchronized (task) {
-                if (task.isPending()) {
-                    task.abort();
+    public void abort() {
+        Execution executionLocal;
+        boolean complete = false;
+
+        synchronized (this) {
+            for (Task<?> task : this) {
+                synchronized (task) {
+                    if (task.isPending()) {
+                        task.abort();
+                    }
                 }
             }
+
+            executionLocal = execution;
+            if (executionLocal != null && !executionLocal.isComplete() && !executionLocal.queue.isEmpty()) {
+                executionLocal.droppedCount += executionLocal.queue.size();
+                executionLocal.queue.clear();
+                complete = executionLocal.isComplete();
+            }
+
+            super.abort();
         }
 
-        super.abort();
+        if (complete) {
+            executionLocal.completion.run();
+        }
     }
 
     @Override
@@ -98,7 +283,14 @@ public class TaskGroup extends Task<Void> implements Group<Task<?>>, Iterable<Ta
             throw new IllegalStateException();
         }
 
-        return tasks.add(element);
+        if (sequenceNumbers.containsKey(element)) {
+            return false;
+        }
+
+        tasks.add(element);
+        sequenceNumbers.put(element, Long.valueOf(nextSequenceNumber++));
+
+        return true;
     }
 
     @Override
@@ -107,20 +299,173 @@ public class TaskGroup extends Task<Void> implements Group<Task<?>>, Iterable<Ta
             throw new IllegalStateException();
         }
 
-        return tasks.remove(element);
+        if (sequenceNumbers.remove(element) == null) {
+            return false;
+        }
+
+        tasks.remove(element);
+        priorities.remove(element);
+
+        return true;
     }
 
     @Override
     public synchronized boolean contains(Task<?> element) {
-        return tasks.contains(element);
+        return sequenceNumbers.containsKey(element);
     }
 
     public synchronized int getCount() {
-        return tasks.getCount();
+        return tasks.getLength();
+    }
+
+    /**
+     * Returns the priority of a task of the group.
+     *
+     * @param task The task.
+     * @return The task's priority, which is {@link #DEFAULT_PRIORITY} unless
+     * it has been set.
+     */
+    public synchronized int getPriority(Task<?> task) {
+        Integer priority = priorities.get(task);
+        return (priority == null) ? DEFAULT_PRIORITY : priority.intValue();
+    }
+
+    /**
+     * Sets the priority of a task of the group. Queued tasks with higher
+     * priorities are started first. The priority can be changed while the
+     * group is executing, to move a task that has not been started yet ahead
+     * of others or behind them.
+     *
+     * @param task The task.
+     * @param priority The task's new priority.
+     */
+    public synchronized void setPriority(Task<?> task, int priority) {
+        Utils.checkNull(task, "task");
+
+        if (!sequenceNumbers.containsKey(task)) {
+            throw new IllegalArgumentException("task is not in the group.");
+        }
+
+        priorities.put(task, Integer.valueOf(priority));
+
+        if (execution != null && !execution.isComplete()) {
+            for (QueuedTask queuedTask : execution.queue) {
+                if (queuedTask.task == task) {
+                    execution.queue.remove(queuedTask);
+                    queuedTask.priority = priority;
+                    execution.queue.add(queuedTask);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The maximum number of tasks of the group that run at the same
+     * time, which is <tt>Integer.MAX_VALUE</tt> by default.
+     */
+    public synchronized int getMaximumParallelism() {
+        return maximumParallelism;
+    }
+
+    /**
+     * Sets the maximum number of tasks of the group that run at the same
+     * time. It can be changed while the group is executing.
+     *
+     * @param maximumParallelism The maximum number of running tasks.
+     */
+    public void setMaximumParallelism(int maximumParallelism) {
+        if (maximumParallelism < 1) {
+            throw new IllegalArgumentException("maximumParallelism must be positive.");
+        }
+
+        Execution executionLocal;
+        boolean complete = false;
+
+        synchronized (this) {
+            this.maximumParallelism = maximumParallelism;
+
+            executionLocal = execution;
+            if (executionLocal != null && !executionLocal.isComplete()) {
+                complete = startTasks(executionLocal);
+            }
+        }
+
+        if (complete) {
+            executionLocal.completion.run();
+        }
+    }
+
+    /**
+     * @return The executor service that the group's tasks are executed with,
+     * or <tt>null</tt> if each task is executed with its own.
+     */
+    public synchronized ExecutorService getTaskExecutorService() {
+        return taskExecutorService;
+    }
+
+    /**
+     * Sets the executor service that the group's tasks are executed with,
+     * overriding their own, from the next execution of the group. A
+     * work-stealing pool suits groups of many short tasks that are not
+     * blocked on I/O.
+     *
+     * @param taskExecutorService The executor service, or <tt>null</tt> to
+     * execute each task with its own.
+     * @see java.util.concurrent.Executors#newWorkStealingPool()
+     */
+    public synchronized void setTaskExecutorService(ExecutorService taskExecutorService) {
+        this.taskExecutorService = taskExecutorService;
+    }
+
+    /**
+     * @return The number of tasks of the current or last execution that have
+     * not been started.
+     */
+    public synchronized int getQueuedCount() {
+        return (execution == null) ? 0 : execution.queue.size();
+    }
+
+    /**
+     * @return The number of tasks of the current or last execution that are
+     * running.
+     */
+    public synchronized int getRunningCount() {
+        return (execution == null) ? 0 : execution.runningCount;
+    }
+
+    /**
+     * @return The number of tasks of the current or last execution that have
+     * completed.
+     */
+    public synchronized int getCompletedCount() {
+        return (execution == null) ? 0 : execution.completedCount;
+    }
+
+    /**
+     * Returns the histogram of the latencies of the tasks of the current or
+     * last execution, from the start of the execution to the completion of
+     * each task. Bucket <tt>0</tt> counts latencies under one millisecond,
+     * and bucket <i>i</i> those from <tt>2<sup>i-1</sup></tt> up to
+     * <tt>2<sup>i</sup></tt> milliseconds; the last bucket also counts all
+     * longer latencies.
+     *
+     * @return A copy of the histogram, with {@link #LATENCY_BUCKET_COUNT}
+     * buckets.
+     */
+    public synchronized long[] getLatencyHistogram() {
+        return (execution == null) ? new long[LATENCY_BUCKET_COUNT] : execution.latencyHistogram.clone();
     }
 
     @Override
     public Iterator<Task<?>> iterator() {
         return new ImmutableIterator<>(tasks.iterator());
     }
+
+    /**
+     * @return The task group listener list.
+     */
+    public ListenerList<TaskGroupListener> getTaskGroupListeners() {
+        return taskGroupListeners;
+    }
 }
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.util.concurrent;
+
+import org.apache.pivot.util.ListenerList;
+
+/**
+ * Task group listener interface, which reports the progress of the tasks of
+ * a group while it executes. Listeners are notified on the threads of the
+ * tasks.
+ */
+public interface TaskGroupListener {
+    /**
+     * Task group listener listeners list.
+     */
+    public static class Listeners extends ListenerList<TaskGroupListener>
+        implements TaskGroupListener {
+        @Override
+        public synchronized void taskStarted(TaskGroup taskGroup, Task<?> task) {
+            forEach(listener -> listener.taskStarted(taskGroup, task));
+        }
+
+        @Override
+        public synchronized void taskCompleted(TaskGroup taskGroup, Task<?> task, long latency) {
+            forEach(listener -> listener.taskCompleted(taskGroup, task, latency));
+        }
+    }
+
+    /**
+     * Called when a task of the group has been started.
+     *
+     * @param taskGroup The group that started the task.
+     * @param task The task that has been started.
+     */
+    default void taskStarted(TaskGroup taskGroup, Task<?> task) {
+    }
+
+    /**
+     * Called when a task of the group has completed, whether it succeeded or
+     * failed. Tasks that are dropped from the queue because the group was
+     * aborted never start, and are not reported.
+     *
+     * @param taskGroup The group of the task.
+     * @param task The task that has completed.
+     * @param latency The time in milliseconds from the start of the group's
+     * execution to the completion of the task, including the time the task
+     * was queued.
+     */
+    default void taskCompleted(TaskGroup taskGroup, Task<?> task, long latency) {
+    }
+}
@@ -17,7 +17,10 @@
 package org.apache.pivot.util.concurrent;
 
 import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
 
 import org.apache.pivot.collections.ArrayList;
 import org.apache.pivot.collections.Sequence;
@@ -25,7 +28,12 @@ import org.apache.pivot.util.ImmutableIterator;
 
 /**
  * {@link Task} that runs a sequence of tasks in series and notifies listeners
- * when all tasks are complete.
+ * when all tasks are complete. <p> When the sequence is executed
+ * asynchronously, it does not hold a thread of its own while its tasks run;
+ * each task is started on the thread of the one before it, and the listener
+ * is notified on the thread of the last one. When it is executed
+ * synchronously, it waits for its tasks without holding its monitor, so that
+ * it does not pin the carrier thread of a virtual thread.
  */
 public class TaskSequence extends Task<Void> implements Sequence<Task<?>>, Iterable<Task<?>> {
     private ArrayList<Task<?>> tasks = new ArrayList<>();
@@ -40,32 +48,36 @@ public class TaskSequence extends Task<Void> implements Sequence<Task<?>>, Itera
 
     @Override
     @SuppressWarnings("unchecked")
-    public synchronized Void execute() throws TaskExecutionException {
+    public Void execute() throws TaskExecutionException {
+        ArrayList<Task<?>> tasksLocal;
+        synchronized (this) {
+            tasksLocal = new ArrayList<>(tasks);
+        }
+
+        Semaphore complete = new Semaphore(0);
+
         TaskListener<Object> taskListener = new TaskListener<Object>() {
             @Override
             public void taskExecuted(Task<Object> task) {
-                synchronized (TaskSequence.this) {
-                    TaskSequence.this.notify();
-                }
+                complete.release();
             }
 
             @Override
             public void executeFailed(Task<Object> task) {
-                synchronized (TaskSequence.this) {
-                    TaskSequence.this.notify();
-                }
+                complete.release();
             }
         };
 
-        for (Task<?> task : tasks) {
+        for (Task<?> task : tasksLocal) {
             if (abort) {
                 throw new AbortException();
             }
 
+            task.setParentDeadline(getDeadline());
             ((Task<Object>) task).execute(taskListener);
 
             try {
-                wait();
+                complete.acquire();
             } catch (InterruptedException exception) {
                 throw new TaskExecutionException(exception);
             }
@@ -74,6 +86,50 @@ public class TaskSequence extends Task<Void> implements Sequence<Task<?>>, Itera
         return null;
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void executeAsynchronously(ExecutorService executorService) {
+        if (tasks.getLength() == 0) {
+            // Notify the listener on a worker thread, as for any other task
+            super.executeAsynchronously(executorService);
+            return;
+        }
+
+        CompletableFuture<Object> future = CompletableFuture.completedFuture(null);
+
+        for (Task<?> task : tasks) {
+            future = future.thenCompose(value -> {
+                if (abort) {
+                    throw new AbortException();
+                }
+
+                // The sequence continues whether or not the task succeeds
+                task.setParentDeadline(getDeadline());
+                return ((Task<Object>) task).toCompletableFuture().handle((result, fault) -> null);
+            });
+        }
+
+        future.whenComplete((value, throwable) -> {
+            executed(null, (throwable instanceof CompletionException) ? throwable.getCause() : throwable);
+        });
+    }
+
+    /**
+     * Aborts the sequence and the task that it is executing.
+     */
+    @Override
+    public synchronized void abort() {
+        for (Task<?> task : this) {
+            synchronized (task) {
+                if (task.isPending()) {
+                    task.abort();
+                }
+            }
+        }
+
+        super.abort();
+    }
+
     @Override
     public synchronized int add(Task<?> task) {
         int index = tasks.getLength();
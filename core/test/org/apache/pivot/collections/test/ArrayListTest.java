@@ -20,9 +20,11 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import org.apache.pivot.collections.ArrayList;
 import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.ListListener;
 import org.apache.pivot.collections.Sequence;
 import org.junit.Test;
 
@@ -133,4 +135,83 @@ public class ArrayListTest {
 
         assertEquals(list.toString(), "ArrayList [45, 12, 5, -3]");
     }
+
+    @Test
+    public void bulkTest() {
+        ArrayList<Integer> list = new ArrayList<>(0, 1, 2);
+        int[] inserted = new int[2];
+        int[] updated = new int[2];
+        int[] events = new int[1];
+
+        list.getListListeners().add(new ListListener<Integer>() {
+            @Override
+            public void itemsInserted(List<Integer> listArgument, int index, int count) {
+                inserted[0] = index;
+                inserted[1] = count;
+                events[0]++;
+            }
+
+            @Override
+            public void itemsUpdated(List<Integer> listArgument, int index, Sequence<Integer> previousItems) {
+                updated[0] = index;
+                updated[1] = previousItems.getLength();
+                events[0]++;
+            }
+        });
+
+        // A range is inserted with a single event
+        list.insertAll(new ArrayList<>(10, 11, 12), 1);
+        assertEquals("ArrayList [0, 10, 11, 12, 1, 2]", list.toString());
+        assertEquals(1, inserted[0]);
+        assertEquals(3, inserted[1]);
+        assertEquals(1, events[0]);
+
+        list.addAll(list);
+        assertEquals(12, list.getLength());
+        assertEquals(6, inserted[0]);
+        assertEquals(6, inserted[1]);
+        assertEquals(2, events[0]);
+
+        Sequence<Integer> previousItems = list.updateAll(10, new ArrayList<>(20, 21));
+        assertEquals(Integer.valueOf(1), previousItems.get(0));
+        assertEquals(Integer.valueOf(2), previousItems.get(1));
+        assertEquals(Integer.valueOf(21), list.get(11));
+        assertEquals(10, updated[0]);
+        assertEquals(2, updated[1]);
+        assertEquals(3, events[0]);
+
+        // Listeners that only handle single items still see every item
+        int[] singleInserts = new int[1];
+        list.getListListeners().add(new ListListener<Integer>() {
+            @Override
+            public void itemInserted(List<Integer> listArgument, int index) {
+                singleInserts[0]++;
+            }
+        });
+
+        list.insertAll(new ArrayList<>(30, 31, 32, 33), 0);
+        assertEquals(4, singleInserts[0]);
+
+        // Sorted lists only accept ranges that keep the list in order
+        ArrayList<Integer> sortedList = new ArrayList<>((i1, i2) -> i1.compareTo(i2));
+        sortedList.addAll(new ArrayList<>(5, 1, 3));
+        assertEquals("ArrayList [1, 3, 5]", sortedList.toString());
+
+        sortedList.insertAll(new ArrayList<>(3, 4), 2);
+        assertEquals("ArrayList [1, 3, 3, 4, 5]", sortedList.toString());
+
+        try {
+            sortedList.insertAll(new ArrayList<>(6, 2), 1);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException exception) {
+            assertEquals(5, sortedList.getLength());
+        }
+
+        try {
+            sortedList.updateAll(0, new ArrayList<>(4, 4));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException exception) {
+            assertEquals(Integer.valueOf(1), sortedList.get(0));
+        }
+    }
 }
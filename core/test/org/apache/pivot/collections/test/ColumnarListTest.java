@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Comparator;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.ColumnarList;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.ListListener;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.collections.Sequence;
+import org.junit.Test;
+
+public class ColumnarListTest {
+    private static ColumnarList newList() {
+        ColumnarList list = new ColumnarList();
+        list.addColumn("id", Integer.TYPE);
+        list.addColumn("size", Long.class);
+        list.addColumn("price", Double.class);
+        list.addColumn("name", String.class);
+
+        return list;
+    }
+
+    @Test
+    public void basicTest() {
+        ColumnarList list = newList();
+        list.addRow(3, 30L, 3.5, "c");
+        list.addRow(1, null, 1.5, "a");
+        list.addRow(2, 20L, null, "b");
+
+        assertEquals(3, list.getLength());
+        assertEquals(Integer.valueOf(3), list.get(0).get("id"));
+        assertNull(list.get(1).get("size"));
+        assertTrue(list.isNull(2, "price"));
+        assertEquals(20L, list.getLong(2, "size"));
+        assertEquals(1.5, list.getDouble(1, "price"), 0);
+        assertEquals("b", list.get(2).get("name"));
+
+        HashMap<String, Object> row = new HashMap<>();
+        row.put("id", 0);
+        row.put("name", "z");
+        list.insert(row, 0);
+        assertEquals(4, list.getLength());
+        assertEquals(0, list.getInt(0, "id"));
+        assertNull(list.get(0).get("price"));
+        assertEquals("c", list.get(1).get("name"));
+        assertEquals(1, list.indexOf(list.get(1)));
+        assertEquals(1, list.indexOf(new HashMap<>(new Map.Pair<String, Object>("id", 3),
+            new Map.Pair<String, Object>("size", 30L), new Map.Pair<String, Object>("price", 3.5),
+            new Map.Pair<String, Object>("name", "c"))));
+
+        Map<String, Object> view = list.get(2);
+        view.put("name", "x");
+        view.put("id", "11");
+        assertEquals("x", list.get(2).get("name"));
+        assertEquals(11, list.getInt(2, "id"));
+
+        Sequence<Map<String, Object>> removed = list.remove(0, 2);
+        assertEquals(2, removed.getLength());
+        assertEquals("z", removed.get(0).get("name"));
+        assertEquals(2, list.getLength());
+        assertEquals(11, list.getInt(0, "id"));
+        assertTrue(list.isNull(0, "size"));
+        assertEquals("b", list.get(1).get("name"));
+
+        list.clear();
+        assertTrue(list.isEmpty());
+    }
+
+    @Test
+    public void sortTest() {
+        final int count = 10000;
+        ColumnarList list = newList();
+        for (int i = 0; i < count; i++) {
+            int value = (i * 7919) % count;
+            list.addRow(value, (i % 10 == 0) ? null : Long.valueOf(-value),
+                value / 2.0, "name" + (value % 100));
+        }
+
+        list.sort("id", true);
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, list.getInt(i, "id"));
+            assertEquals(i / 2.0, list.getDouble(i, "price"), 0);
+        }
+
+        list.sort("size", false);
+        assertTrue(list.isNull(count - 1, "size"));
+        assertEquals(-1L, list.getLong(0, "size"));
+
+        // Dictionary encoded strings sort by value; the sort is stable
+        list.sort("name", true);
+        for (int i = 1; i < count; i++) {
+            String name1 = (String) list.get(i - 1).get("name");
+            String name2 = (String) list.get(i).get("name");
+            assertTrue(name1.compareTo(name2) <= 0);
+        }
+
+        assertEquals(100, list.getDictionarySize("name"));
+
+        // Rows added to a sorted list are inserted in order
+        HashMap<String, Object> row = new HashMap<>();
+        row.put("name", "name10a");
+        int index = list.add(row);
+        assertEquals("name10a", list.get(index).get("name"));
+        assertEquals("name10", list.get(index - 1).get("name"));
+        assertEquals("name11", list.get(index + 1).get("name"));
+        list.remove(index, 1);
+
+        // Arbitrary comparators are applied to row views
+        list.setComparator(new Comparator<Map<String, Object>>() {
+            @Override
+            public int compare(Map<String, Object> row1, Map<String, Object> row2) {
+                return Double.compare((Double) row2.get("price"), (Double) row1.get("price"));
+            }
+        });
+        assertEquals((count - 1) / 2.0, list.getDouble(0, "price"), 0);
+    }
+
+    @Test
+    public void filterTest() {
+        ColumnarList list = newList();
+        for (int i = 0; i < 1000; i++) {
+            list.addRow(i, Long.valueOf(i), (i % 2 == 0) ? null : Double.valueOf(i), "n" + i % 3);
+        }
+
+        ColumnarList filtered = list.filter("price", value -> value < 100);
+        assertEquals(50, filtered.getLength());
+        assertEquals(1, filtered.getInt(0, "id"));
+        assertEquals(99, filtered.getInt(49, "id"));
+        assertEquals("n0", filtered.get(1).get("name"));
+        assertEquals(list.getColumnKeys(), filtered.getColumnKeys());
+    }
+
+    @Test
+    public void dictionaryOverflowTest() {
+        ColumnarList list = new ColumnarList();
+        list.addColumn("name", String.class);
+
+        int count = ColumnarList.MAX_DICTIONARY_SIZE + 10;
+        for (int i = 0; i < count; i++) {
+            list.addRow("name" + i);
+        }
+
+        assertEquals(-1, list.getDictionarySize("name"));
+        for (int i = 0; i < count; i += 1000) {
+            assertEquals("name" + i, list.get(i).get("name"));
+        }
+    }
+
+    @Test
+    public void addColumnTest() {
+        ColumnarList list = newList();
+        list.addRow(1, 1L, 1.0, "a");
+        list.addRow(2, 2L, 2.0, "b");
+
+        list.addColumn("count", Integer.class);
+        list.addColumn("total", Long.class);
+        list.addColumn("rate", Double.class);
+        list.addColumn("label", String.class);
+
+        for (int i = 0; i < 2; i++) {
+            assertNull(list.get(i).get("count"));
+            assertNull(list.get(i).get("total"));
+            assertNull(list.get(i).get("rate"));
+            assertNull(list.get(i).get("label"));
+        }
+
+        list.get(1).put("count", 5);
+        assertEquals(5, list.get(1).get("count"));
+        assertNull(list.get(0).get("count"));
+
+        // Rows added later have values in the new columns
+        list.addRow(3, 3L, 3.0, "c", 0, 0L, 0.0, "x");
+        assertEquals(0, list.get(2).get("count"));
+        assertEquals(0L, list.get(2).get("total"));
+    }
+
+    @Test
+    public void listenerTest() {
+        final int[] counts = new int[3];
+        final ArrayList<String> previousNames = new ArrayList<>();
+
+        ColumnarList list = newList();
+        list.getListListeners().add(new ListListener<Map<String, Object>>() {
+            @Override
+            public void itemInserted(List<Map<String, Object>> listArgument, int index) {
+                counts[0]++;
+            }
+
+            @Override
+            public void itemUpdated(List<Map<String, Object>> listArgument, int index,
+                Map<String, Object> previousItem) {
+                counts[1]++;
+                previousNames.add((String) previousItem.get("name"));
+            }
+
+            @Override
+            public void itemsRemoved(List<Map<String, Object>> listArgument, int index,
+                Sequence<Map<String, Object>> items) {
+                counts[2] += items.getLength();
+            }
+        });
+
+        list.addRow(1, 1L, 1.0, "a");
+        list.add(list.get(0));
+        list.get(1).put("name", "b");
+        list.remove(list.get(0));
+
+        assertEquals(2, counts[0]);
+        assertEquals(1, counts[1]);
+        assertEquals("a", previousNames.get(0));
+        assertEquals(1, counts[2]);
+        assertFalse(list.isEmpty());
+        assertEquals("b", list.get(0).get("name"));
+    }
+}
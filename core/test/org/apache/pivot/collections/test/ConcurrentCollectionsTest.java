@@ -0,0 +1,368 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.ArrayQueue;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.ListListener;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.collections.MapListener;
+import org.apache.pivot.collections.Queue;
+import org.apache.pivot.collections.QueueListener;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.collections.concurrent.ConcurrentHashMap;
+import org.apache.pivot.collections.concurrent.ConcurrentQueue;
+import org.apache.pivot.collections.concurrent.CopyOnWriteList;
+import org.apache.pivot.collections.concurrent.SynchronizedList;
+import org.apache.pivot.collections.concurrent.SynchronizedMap;
+import org.apache.pivot.collections.concurrent.SynchronizedQueue;
+import org.junit.Test;
+
+public class ConcurrentCollectionsTest {
+    private interface Operation {
+        void run(int thread, int i);
+    }
+
+    private static final int[] THREAD_COUNTS = {1, 4, 16};
+
+    /**
+     * Runs an operation on the given number of threads at once, and returns
+     * the elapsed time in nanoseconds.
+     */
+    private static long run(int threadCount, int count, Operation operation) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            Future<?>[] futures = new Future<?>[threadCount];
+            for (int i = 0; i < threadCount; i++) {
+                final int thread = i;
+                futures[i] = executorService.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < count; j++) {
+                        operation.run(thread, j);
+                    }
+
+                    return null;
+                });
+            }
+
+            long startTime = System.nanoTime();
+            start.countDown();
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            return System.nanoTime() - startTime;
+        } finally {
+            executorService.shutdown();
+            executorService.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testConcurrentHashMap() throws Exception {
+        ConcurrentHashMap<String, Integer> map = new ConcurrentHashMap<>();
+
+        AtomicInteger added = new AtomicInteger();
+        AtomicInteger updated = new AtomicInteger();
+        map.getMapListeners().add(new MapListener<String, Integer>() {
+            @Override
+            public void valueAdded(Map<String, Integer> mapArgument, String key) {
+                added.incrementAndGet();
+            }
+
+            @Override
+            public void valueUpdated(Map<String, Integer> mapArgument, String key, Integer previousValue) {
+                updated.incrementAndGet();
+            }
+        });
+
+        // Every thread puts the same keys, so each key is added exactly once
+        final int threadCount = 4;
+        final int count = 10000;
+        run(threadCount, count, (thread, i) -> map.put("key" + i, Integer.valueOf(thread)));
+
+        assertEquals(count, map.getCount());
+        assertEquals(count, added.get());
+        assertEquals((threadCount - 1) * count, updated.get());
+
+        // Null values are distinct from missing keys
+        assertNull(map.put("null", null));
+        assertTrue(map.containsKey("null"));
+        assertNull(map.get("null"));
+        assertFalse(map.putIfAbsent("null", Integer.valueOf(1)));
+        assertNull(map.remove("null"));
+        assertFalse(map.containsKey("null"));
+
+        int keys = 0;
+        for (String key : map) {
+            assertTrue(key.startsWith("key"));
+            keys++;
+        }
+
+        assertEquals(count, keys);
+
+        try {
+            map.setComparator(String::compareTo);
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException exception) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testConcurrentQueue() throws Exception {
+        ConcurrentQueue<Integer> queue = new ConcurrentQueue<>();
+
+        AtomicInteger enqueued = new AtomicInteger();
+        AtomicInteger dequeued = new AtomicInteger();
+        queue.getQueueListeners().add(new QueueListener<Integer>() {
+            @Override
+            public void itemEnqueued(Queue<Integer> queueArgument, Integer item) {
+                enqueued.incrementAndGet();
+            }
+
+            @Override
+            public void itemDequeued(Queue<Integer> queueArgument, Integer item) {
+                dequeued.incrementAndGet();
+            }
+        });
+
+        // Half the threads produce and half consume, and every item is
+        // dequeued exactly once
+        final int threadCount = 8;
+        final int count = 20000;
+        AtomicLong sum = new AtomicLong();
+        run(threadCount, count, (thread, i) -> {
+            if (thread % 2 == 0) {
+                queue.enqueue(Integer.valueOf(i));
+            } else {
+                Integer item;
+                while ((item = queue.poll()) == null) {
+                    Thread.yield();
+                }
+
+                sum.addAndGet(item.intValue());
+            }
+        });
+
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.getLength());
+        assertEquals(threadCount / 2 * ((long) count * (count - 1) / 2), sum.get());
+        assertEquals(threadCount / 2 * count, enqueued.get());
+        assertEquals(threadCount / 2 * count, dequeued.get());
+
+        // Items are dequeued in order, and the maximum length is enforced
+        queue.setMaxLength(2);
+        queue.enqueue(Integer.valueOf(1));
+        queue.enqueue(null);
+        queue.enqueue(Integer.valueOf(3));
+        assertEquals(2, queue.getLength());
+        assertEquals(Integer.valueOf(1), queue.dequeue());
+        assertNull(queue.dequeue());
+
+        try {
+            queue.dequeue();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException exception) {
+            assertNull(queue.poll());
+        }
+    }
+
+    @Test
+    public void testCopyOnWriteList() throws Exception {
+        CopyOnWriteList<Integer> list = new CopyOnWriteList<>();
+
+        ArrayList<String> events = new ArrayList<>();
+        list.getListListeners().add(new ListListener<Integer>() {
+            @Override
+            public void itemInserted(List<Integer> listArgument, int index) {
+                events.add("inserted " + index);
+            }
+
+            @Override
+            public void itemsInserted(List<Integer> listArgument, int index, int count) {
+                events.add("inserted " + index + " " + count);
+            }
+
+            @Override
+            public void itemsRemoved(List<Integer> listArgument, int index, Sequence<Integer> items) {
+                events.add("removed " + index + " " + items.getLength());
+            }
+        });
+
+        list.add(Integer.valueOf(1));
+        list.addAll(new ArrayList<>(2, 3, 4));
+        list.insert(Integer.valueOf(0), 0);
+        assertEquals("CopyOnWriteList [0, 1, 2, 3, 4]", list.toString());
+
+        // Iterators keep working on the snapshot they were created with
+        List.ItemIterator<Integer> iterator = list.iterator();
+        list.remove(1, 3);
+        assertEquals("CopyOnWriteList [0, 4]", list.toString());
+
+        int n = 0;
+        while (iterator.hasNext()) {
+            assertEquals(n, iterator.next().intValue());
+            n++;
+        }
+
+        assertEquals(5, n);
+        assertEquals("ArrayList [inserted 0, inserted 1 3, inserted 0, removed 1 3]", events.toString());
+
+        // Sorted lists keep their order
+        list.setComparator((i1, i2) -> i2.compareTo(i1));
+        list.add(Integer.valueOf(2));
+        assertEquals("CopyOnWriteList [4, 2, 0]", list.toString());
+        assertEquals(1, list.indexOf(Integer.valueOf(2)));
+
+        try {
+            list.insert(Integer.valueOf(5), 2);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException exception) {
+            assertEquals(3, list.getLength());
+        }
+
+        // Concurrent writers don't lose items, and readers never fail
+        CopyOnWriteList<Integer> concurrentList = new CopyOnWriteList<>();
+        final int threadCount = 4;
+        final int count = 1000;
+        run(threadCount, count, (thread, i) -> {
+            if (thread == 0) {
+                int length = 0;
+                for (Integer item : concurrentList) {
+                    assertTrue(item.intValue() >= 0);
+                    length++;
+                }
+
+                assertTrue(length <= (threadCount - 1) * count);
+            } else {
+                concurrentList.add(Integer.valueOf(i));
+            }
+        });
+
+        assertEquals((threadCount - 1) * count, concurrentList.getLength());
+    }
+
+    @Test
+    public void testContention() throws Exception {
+        final int totalCount = 200000;
+        final int keyCount = 1024;
+
+        System.out.println("Operations/s       threads: 1          4          16");
+
+        // Maps: 80% reads and 20% writes on a fixed set of keys
+        Map<Integer, Integer> synchronizedMap = new SynchronizedMap<>(new HashMap<Integer, Integer>());
+        Map<Integer, Integer> concurrentMap = new ConcurrentHashMap<>();
+        benchmark("SynchronizedMap", totalCount, mapOperation(synchronizedMap, keyCount));
+        benchmark("ConcurrentHashMap", totalCount, mapOperation(concurrentMap, keyCount));
+
+        // Queues: each operation enqueues an item and dequeues one
+        SynchronizedQueue<Integer> synchronizedQueue = new SynchronizedQueue<>(new ArrayQueue<Integer>());
+        ConcurrentQueue<Integer> concurrentQueue = new ConcurrentQueue<>();
+        synchronizedQueue.getQueueListeners().add(new QueueListener<Integer>() {
+            // No-op
+        });
+        concurrentQueue.getQueueListeners().add(new QueueListener<Integer>() {
+            // No-op
+        });
+        benchmark("SynchronizedQueue", totalCount, (thread, i) -> {
+            synchronizedQueue.enqueue(Integer.valueOf(i));
+            synchronizedQueue.dequeue();
+        });
+        benchmark("ConcurrentQueue", totalCount, (thread, i) -> {
+            concurrentQueue.enqueue(Integer.valueOf(i));
+            concurrentQueue.poll();
+        });
+
+        // Lists: 95% reads and 5% updates
+        List<Integer> synchronizedList = new SynchronizedList<>(new ArrayList<Integer>());
+        List<Integer> copyOnWriteList = new CopyOnWriteList<>();
+        for (int i = 0; i < keyCount; i++) {
+            synchronizedList.add(Integer.valueOf(i));
+            copyOnWriteList.add(Integer.valueOf(i));
+        }
+
+        benchmark("SynchronizedList", totalCount, listOperation(synchronizedList, keyCount));
+        benchmark("CopyOnWriteList", totalCount, listOperation(copyOnWriteList, keyCount));
+
+        assertTrue(synchronizedQueue.isEmpty());
+        assertTrue(concurrentQueue.isEmpty());
+    }
+
+    private static Operation mapOperation(Map<Integer, Integer> map, int keyCount) {
+        map.getMapListeners().add(new MapListener<Integer, Integer>() {
+            // No-op
+        });
+
+        return (thread, i) -> {
+            Integer key = Integer.valueOf(ThreadLocalRandom.current().nextInt(keyCount));
+            if (i % 5 == 0) {
+                map.put(key, Integer.valueOf(i));
+            } else {
+                map.get(key);
+            }
+        };
+    }
+
+    private static Operation listOperation(List<Integer> list, int length) {
+        list.getListListeners().add(new ListListener<Integer>() {
+            // No-op
+        });
+
+        return (thread, i) -> {
+            int index = ThreadLocalRandom.current().nextInt(length);
+            if (i % 20 == 0) {
+                list.update(index, Integer.valueOf(i));
+            } else {
+                list.get(index);
+            }
+        };
+    }
+
+    private static void benchmark(String name, int totalCount, Operation operation) throws Exception {
+        // Warm up
+        run(1, totalCount / 10, operation);
+
+        StringBuilder sb = new StringBuilder(String.format("%-18s", name));
+        for (int threadCount : THREAD_COUNTS) {
+            long time = run(threadCount, totalCount / threadCount, operation);
+            sb.append(String.format(" %10.0f", totalCount / (time / 1e9)));
+        }
+
+        System.out.println(sb);
+    }
+}
@@ -31,6 +31,8 @@ import java.util.Iterator;
 // import org.apache.pivot.collections.ArrayList;
 import org.apache.pivot.collections.HashMap;
 import org.apache.pivot.collections.Map;
+import org.apache.pivot.collections.MapListener;
+import org.apache.pivot.collections.Sequence;
 import org.junit.Test;
 
 public class HashMapTest {
@@ -222,4 +224,42 @@ public class HashMapTest {
         map2.put("d", "four");
         assertFalse(map1.equals(map2));
     }
+
+    @Test
+    public void putAllTest() {
+        HashMap<String, Integer> map = new HashMap<>();
+        map.put("a", 1);
+
+        int[] added = new int[2];
+        int[] updated = new int[1];
+        map.getMapListeners().add(new MapListener<String, Integer>() {
+            @Override
+            public void valuesAdded(Map<String, Integer> mapArgument, Sequence<String> keys) {
+                added[0]++;
+                added[1] += keys.getLength();
+            }
+
+            @Override
+            public void valueUpdated(Map<String, Integer> mapArgument, String key, Integer previousValue) {
+                assertEquals("a", key);
+                assertEquals(Integer.valueOf(1), previousValue);
+                updated[0]++;
+            }
+        });
+
+        HashMap<String, Integer> entries = new HashMap<>();
+        entries.put("a", 10);
+        for (int i = 0; i < 100; i++) {
+            entries.put("key" + i, i);
+        }
+
+        // New keys are reported with a single event
+        map.putAll(entries);
+        assertEquals(101, map.getCount());
+        assertEquals(Integer.valueOf(10), map.get("a"));
+        assertEquals(Integer.valueOf(99), map.get("key99"));
+        assertEquals(1, added[0]);
+        assertEquals(100, added[1]);
+        assertEquals(1, updated[0]);
+    }
 }
@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.util.Random;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.collections.mapped.MappedList;
+import org.apache.pivot.collections.mapped.MappedListWriter;
+import org.apache.pivot.serialization.CSVSerializer;
+import org.apache.pivot.serialization.SerializationException;
+import org.junit.Test;
+
+public class MappedListTest {
+    private static File createTempFile() throws IOException {
+        File file = File.createTempFile("MappedListTest", ".dat");
+        file.deleteOnExit();
+
+        return file;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWriteAndRead() throws IOException, SerializationException {
+        File file = createTempFile();
+
+        HashMap<String, Object> nested = new HashMap<>();
+        nested.put("x", 1);
+
+        // A small segment size forces records to be moved to the next segment
+        try (MappedListWriter writer = new MappedListWriter(file, new ArrayList<>("a", "b", "c"), 64)) {
+            for (int i = 0; i < 100; i++) {
+                writer.add("item " + i, i, (i % 2 == 0) ? Boolean.TRUE : null);
+            }
+
+            HashMap<String, Object> values = new HashMap<>();
+            values.put("a", "été");
+            values.put("b", 12345678901L);
+            values.put("c", nested);
+            writer.add(values);
+
+            writer.add(2.5d, 1.5f, new ArrayList<>("x", "y"));
+
+            try {
+                writer.add("a", "b");
+                fail("Expected IllegalArgumentException");
+            } catch (IllegalArgumentException exception) {
+                // expected
+            }
+
+            try {
+                writer.add(new String(new char[100]), null, null);
+                fail("Expected IllegalArgumentException");
+            } catch (IllegalArgumentException exception) {
+                // expected
+            }
+
+            assertEquals(102, writer.getLength());
+        }
+
+        // The index is deleted once it has been appended
+        assertEquals(0, file.getAbsoluteFile().getParentFile().list((dir, name) -> name.startsWith(file.getName())
+            && name.endsWith(".index")).length);
+
+        MappedList list = new MappedList(file);
+        assertEquals(102, list.getLength());
+        assertEquals(3, list.getKeys().getLength());
+        assertEquals("c", list.getKeys().get(2));
+
+        for (int i = 0; i < 100; i++) {
+            MappedList.Row row = list.get(i);
+            assertEquals("item " + i, row.get("a"));
+            assertEquals(Integer.valueOf(i), row.get("b"));
+            assertEquals((i % 2 == 0) ? Boolean.TRUE : null, row.get("c"));
+            assertEquals(i, list.indexOf(row));
+        }
+
+        MappedList.Row row = list.get(100);
+        assertEquals("été", row.get("a"));
+        assertEquals(Long.valueOf(12345678901L), row.get("b"));
+        assertEquals(Integer.valueOf(1), ((Map<String, ?>) row.get("c")).get("x"));
+        assertTrue(row.containsKey("a"));
+        assertFalse(row.containsKey("d"));
+        assertNull(row.get("d"));
+
+        row = list.get(101);
+        assertEquals(Double.valueOf(2.5d), row.get(0));
+        assertEquals(Float.valueOf(1.5f), row.get(1));
+        assertEquals("y", ((List<?>) row.get(2)).get(1));
+
+        // Views are reused while they are cached
+        assertSame(list.get(5), list.get(5));
+
+        int count = 0;
+        for (MappedList.Row r : list) {
+            assertEquals(count++, r.getIndex());
+        }
+        assertEquals(102, count);
+
+        try {
+            row.put("a", "b");
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException exception) {
+            // expected
+        }
+
+        try {
+            list.remove(0, 1);
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException exception) {
+            // expected
+        }
+
+        try (ObjectOutputStream outputStream = new ObjectOutputStream(new ByteArrayOutputStream())) {
+            outputStream.writeObject(list);
+            fail("Expected NotSerializableException");
+        } catch (NotSerializableException exception) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testInvalidFile() throws IOException {
+        File file = createTempFile();
+
+        try {
+            new MappedList(file);
+            fail("Expected IOException");
+        } catch (IOException exception) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testWriteCSV() throws IOException, SerializationException {
+        File file = createTempFile();
+
+        String csv = "name,count\r\n\"Smith, J\",3\r\nJones,4\r\n";
+        CSVSerializer csvSerializer = new CSVSerializer();
+        csvSerializer.setColumnType("count", Integer.class);
+
+        assertEquals(2, MappedListWriter.writeCSV(new StringReader(csv), csvSerializer, file));
+
+        MappedList list = new MappedList(file);
+        assertEquals("name", list.getKeys().get(0));
+        assertEquals("Smith, J", list.get(0).get("name"));
+        assertEquals(Integer.valueOf(3), list.get(0).get("count"));
+        assertEquals("Jones", list.get(1).get("name"));
+        assertEquals(Integer.valueOf(4), list.get(1).get("count"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWriteJSON() throws IOException, SerializationException {
+        File file = createTempFile();
+
+        String json = "[{\"z\": 1, \"a\": \"one\", \"m\": {\"n\": [1, 2]}},"
+            + " {\"a\": \"two\", \"z\": 2.5}, {\"z\": true}]";
+
+        assertEquals(3, MappedListWriter.writeJSON(new StringReader(json), null, file));
+
+        MappedList list = new MappedList(file);
+        assertEquals(3, list.getKeys().getLength());
+        assertEquals("z", list.getKeys().get(0));
+        assertEquals("a", list.getKeys().get(1));
+        assertEquals("m", list.getKeys().get(2));
+
+        assertEquals(Integer.valueOf(1), list.get(0).get("z"));
+        assertEquals(Integer.valueOf(2), ((List<?>) ((Map<String, ?>) list.get(0).get("m")).get("n")).get(1));
+        assertEquals("two", list.get(1).get("a"));
+        assertNull(list.get(1).get("m"));
+        assertEquals(Boolean.TRUE, list.get(2).get("z"));
+
+        try {
+            MappedListWriter.writeJSON(new StringReader("{\"a\": 1}"), null, file);
+            fail("Expected SerializationException");
+        } catch (SerializationException exception) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testWriteFailure() throws IOException {
+        File file = createTempFile();
+        File directory = file.getAbsoluteFile().getParentFile();
+
+        // The partly written file and its index are deleted
+        String[] inputs = {"[{\"a\": 1}, {\"a\": 2}, {\"a\": ", "a,b\r\n1,2\r\n3,\"4"};
+        for (int i = 0; i < inputs.length; i++) {
+            try {
+                if (i == 0) {
+                    MappedListWriter.writeJSON(new StringReader(inputs[i]), null, file);
+                } else {
+                    MappedListWriter.writeCSV(new StringReader(inputs[i]), new CSVSerializer(), file);
+                }
+
+                fail("Expected SerializationException");
+            } catch (SerializationException exception) {
+                // expected
+            }
+
+            assertFalse(file.exists());
+            assertEquals(0, directory.list((dir, name) -> name.startsWith(file.getName())
+                && name.endsWith(".index")).length);
+        }
+    }
+
+    @Test
+    public void testLargeList() throws IOException, SerializationException {
+        File file = createTempFile();
+        int count = 1000000;
+
+        long start = System.currentTimeMillis();
+        try (MappedListWriter writer = new MappedListWriter(file, new ArrayList<>("id", "name", "value"))) {
+            for (int i = 0; i < count; i++) {
+                writer.add(i, "Row " + i, i * 0.5d);
+            }
+        }
+        long writeTime = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        MappedList list = new MappedList(file);
+        long openTime = System.currentTimeMillis() - start;
+
+        // Read rows at random, as a scrolling table would read pages of them
+        Random random = new Random(42);
+        start = System.currentTimeMillis();
+        for (int i = 0; i < 10000; i++) {
+            int first = random.nextInt(count - 50);
+            for (int j = first; j < first + 50; j++) {
+                MappedList.Row row = list.get(j);
+                assertEquals(Integer.valueOf(j), row.get("id"));
+                assertEquals("Row " + j, row.get("name"));
+            }
+        }
+        long readTime = System.currentTimeMillis() - start;
+
+        System.out.println("MappedList: " + count + " rows (" + (file.length() >> 20) + "MB) written in "
+            + writeTime + "ms, opened in " + openTime + "ms, 500000 random reads in " + readTime + "ms");
+
+        file.delete();
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.collections.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.immutable.PersistentHashMap;
+import org.apache.pivot.collections.immutable.PersistentHashSet;
+import org.apache.pivot.collections.immutable.PersistentList;
+import org.junit.Test;
+
+public class PersistentCollectionsTest {
+    /**
+     * Key whose hash code is chosen by the test, to force collisions.
+     */
+    private static final class Key {
+        private final String name;
+        private final int hashCode;
+
+        Key(final String name, final int hashCode) {
+            this.name = name;
+            this.hashCode = hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return (o instanceof Key) && name.equals(((Key) o).name);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static <T> void assertSameItems(final ArrayList<T> expected, final PersistentList<T> list) {
+        assertEquals(expected.getLength(), list.getLength());
+
+        int i = 0;
+        for (T item : list) {
+            assertEquals(expected.get(i), list.get(i));
+            assertEquals(expected.get(i), item);
+            i++;
+        }
+
+        assertEquals(expected.getLength(), i);
+    }
+
+    @Test
+    public void persistentListTest() {
+        PersistentList<String> empty = PersistentList.empty();
+        assertTrue(empty.isEmpty());
+        assertEquals(0, empty.getLength());
+
+        PersistentList<String> list = empty.with("a").with("c").withInserted("b", 1);
+        assertEquals("PersistentList [a, b, c]", list.toString());
+        assertEquals(1, list.indexOf("b"));
+        assertEquals(-1, list.indexOf("d"));
+        assertTrue(empty.isEmpty());
+
+        PersistentList<String> updated = list.withUpdated(1, "B");
+        assertEquals("PersistentList [a, B, c]", updated.toString());
+        assertEquals("PersistentList [a, b, c]", list.toString());
+
+        PersistentList<String> removed = list.without(0);
+        assertEquals("PersistentList [b, c]", removed.toString());
+        assertEquals(PersistentList.of("a", "b", "c"), list);
+        assertEquals(PersistentList.of("a", "b", "c").hashCode(), list.hashCode());
+        assertSame(empty, PersistentList.of("a").without(0));
+
+        try {
+            list.get(3);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException exception) {
+            // expected
+        }
+
+        try {
+            list.add("d");
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException exception) {
+            // expected
+        }
+    }
+
+    @Test
+    public void persistentListRandomTest() {
+        Random random = new Random(1234);
+        ArrayList<Integer> expected = new ArrayList<>();
+        PersistentList<Integer> list = PersistentList.empty();
+
+        ArrayList<PersistentList<Integer>> versions = new ArrayList<>();
+        ArrayList<String> snapshots = new ArrayList<>();
+
+        for (int i = 0; i < 5000; i++) {
+            int length = expected.getLength();
+            int operation = random.nextInt(4);
+
+            if (length == 0 || operation < 2) {
+                int index = random.nextInt(length + 1);
+                expected.insert(i, index);
+                list = list.withInserted(i, index);
+            } else if (operation == 2) {
+                int index = random.nextInt(length);
+                expected.update(index, -i);
+                list = list.withUpdated(index, -i);
+            } else {
+                int index = random.nextInt(length);
+                expected.remove(index, 1);
+                list = list.without(index);
+            }
+
+            if (i % 500 == 0) {
+                versions.add(list);
+                snapshots.add(list.toString());
+            }
+        }
+
+        assertSameItems(expected, list);
+        assertEquals(list, PersistentList.of(expected));
+
+        // Earlier versions are unaffected by later changes
+        for (int i = 0; i < versions.getLength(); i++) {
+            assertEquals(snapshots.get(i), versions.get(i).toString());
+        }
+    }
+
+    @Test
+    public void persistentListBalanceTest() {
+        // Appending in order is the worst case for an unbalanced tree; with
+        // a balanced one this is quick and doesn't overflow the stack
+        PersistentList<Integer> list = PersistentList.empty();
+        int count = 100000;
+        for (int i = 0; i < count; i++) {
+            list = list.with(i);
+        }
+
+        for (int i = 0; i < count; i += 997) {
+            assertEquals(Integer.valueOf(i), list.get(i));
+        }
+
+        while (!list.isEmpty()) {
+            list = list.without(0);
+        }
+    }
+
+    @Test
+    public void persistentHashMapTest() {
+        PersistentHashMap<String, Integer> empty = PersistentHashMap.empty();
+        PersistentHashMap<String, Integer> map = empty.with("a", 1).with("b", 2).with("c", 3);
+
+        assertEquals(3, map.getCount());
+        assertEquals(Integer.valueOf(2), map.get("b"));
+        assertNull(map.get("d"));
+        assertTrue(map.containsKey("c"));
+        assertTrue(empty.isEmpty());
+
+        PersistentHashMap<String, Integer> updated = map.with("b", 20);
+        assertEquals(Integer.valueOf(20), updated.get("b"));
+        assertEquals(Integer.valueOf(2), map.get("b"));
+        assertSame(map, map.with("b", 2));
+
+        PersistentHashMap<String, Integer> removed = map.without("a");
+        assertEquals(2, removed.getCount());
+        assertFalse(removed.containsKey("a"));
+        assertTrue(map.containsKey("a"));
+        assertSame(map, map.without("d"));
+
+        HashMap<String, Integer> hashMap = new HashMap<>();
+        hashMap.put("c", 3);
+        hashMap.put("b", 2);
+        hashMap.put("a", 1);
+        assertEquals(map, PersistentHashMap.of(hashMap));
+        assertEquals(map.hashCode(), PersistentHashMap.of(hashMap).hashCode());
+
+        try {
+            map.put("d", 4);
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException exception) {
+            // expected
+        }
+    }
+
+    @Test
+    public void persistentHashMapRandomTest() {
+        Random random = new Random(5678);
+        HashMap<Key, Integer> expected = new HashMap<>();
+        PersistentHashMap<Key, Integer> map = PersistentHashMap.empty();
+
+        // A small hash range makes for many collisions and deep tries
+        Key[] keys = new Key[2000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new Key("k" + i, (i % 3 == 0) ? random.nextInt(16) : random.nextInt());
+        }
+
+        PersistentHashMap<Key, Integer> version = null;
+        HashMap<Key, Integer> snapshot = null;
+
+        for (int i = 0; i < 20000; i++) {
+            Key key = keys[random.nextInt(keys.length)];
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.without(key);
+            } else {
+                expected.put(key, i);
+                map = map.with(key, i);
+            }
+
+            if (i == 10000) {
+                version = map;
+                snapshot = new HashMap<>();
+                for (Key k : expected) {
+                    snapshot.put(k, expected.get(k));
+                }
+            }
+        }
+
+        assertEquals(expected.getCount(), map.getCount());
+        for (Key key : keys) {
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+
+        int count = 0;
+        for (Key key : map) {
+            assertTrue(expected.containsKey(key));
+            count++;
+        }
+        assertEquals(expected.getCount(), count);
+
+        assertEquals(snapshot.getCount(), version.getCount());
+        for (Key key : keys) {
+            assertEquals(snapshot.get(key), version.get(key));
+        }
+
+        // Removing everything leaves an empty map
+        for (Key key : keys) {
+            map = map.without(key);
+        }
+        assertTrue(map.isEmpty());
+        assertFalse(map.iterator().hasNext());
+    }
+
+    @Test
+    public void persistentHashSetTest() {
+        PersistentHashSet<String> set = PersistentHashSet.of("a", "b", "c");
+        assertEquals(3, set.getCount());
+        assertTrue(set.contains("b"));
+        assertSame(set, set.with("a"));
+
+        PersistentHashSet<String> removed = set.without("b");
+        assertFalse(removed.contains("b"));
+        assertTrue(set.contains("b"));
+        assertEquals(PersistentHashSet.of("c", "a"), removed);
+        assertSame(PersistentHashSet.empty(), removed.without("a").without("c"));
+
+        int count = 0;
+        for (String element : set) {
+            assertTrue(set.contains(element));
+            count++;
+        }
+        assertEquals(3, count);
+    }
+}
@@ -111,6 +111,12 @@ public class JSONSerializerTest {
                 System.out.println("End sequence");
             }
 
+            @Override
+            public void readItem(final JSONSerializer jsonSerializerArgument, final Sequence<?> sequence,
+                final Object item) {
+                System.out.println("Read item: " + item);
+            }
+
             @Override
             public void readString(final JSONSerializer jsonSerializerArgument, final String value) {
                 System.out.println("Read string: " + value);
@@ -17,12 +17,21 @@
 package org.apache.pivot.serialization.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 
 import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.ColumnarList;
 import org.apache.pivot.collections.Dictionary;
 import org.apache.pivot.collections.HashMap;
 import org.apache.pivot.collections.List;
@@ -32,6 +41,10 @@ import org.apache.pivot.serialization.SerializationException;
 import org.junit.Test;
 
 public class CSVSerializerTest {
+    public enum Side {
+        BUY, SELL
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     public void testBasicReadObject() throws IOException, SerializationException {
@@ -249,4 +262,206 @@ public class CSVSerializerTest {
         assertEquals(row.get("B"), "b1");
         assertEquals(row.get("C"), "c1");
     }
+
+    private static File writeTempFile(String text) throws IOException {
+        File file = File.createTempFile("CSVSerializerTest", ".csv");
+        file.deleteOnExit();
+
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        return file;
+    }
+
+    @Test
+    public void testReadFile() throws IOException, SerializationException {
+        StringBuilder buf = new StringBuilder();
+        buf.append("\uFEFFA,B,C\r\n");
+        for (int i = 0; i < 1000; i++) {
+            buf.append("a" + i + ",\"b\n\"\"" + i + "\"\"\",c" + i);
+            buf.append((i % 3 == 0) ? "\r\n" : (i % 3 == 1) ? "\n" : "\r");
+        }
+
+        File file = writeTempFile(buf.toString());
+
+        CSVSerializer serializer = new CSVSerializer(StandardCharsets.UTF_8);
+        List<?> expected = serializer.readObject(new StringReader(buf.toString().substring(1)));
+        assertEquals(1000, expected.getLength());
+
+        // Use small chunks so that many boundaries fall inside quoted values
+        for (boolean parallel : new boolean[] {false, true}) {
+            final List<Object> readItems = new ArrayList<>();
+
+            serializer = new CSVSerializer(StandardCharsets.UTF_8);
+            serializer.setParallel(parallel);
+            serializer.setChunkSize(64);
+            serializer.getCSVSerializerListeners().add(new CSVSerializerListener() {
+                @Override
+                public void readItem(CSVSerializer csvSerializer, Object item) {
+                    readItems.add(item);
+                }
+            });
+
+            List<?> result = serializer.readObject(file);
+            assertEquals("A", serializer.getKeys().get(0));
+            assertEquals(expected, result);
+            assertEquals(result, readItems);
+        }
+    }
+
+    @Test
+    public void testReadSpeed() throws IOException, SerializationException {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 200000; i++) {
+            buf.append(i + ",\"item " + i + "\"," + (i * 0.5) + ",some text for row " + i + "\r\n");
+        }
+
+        String text = buf.toString();
+        double megabytes = text.length() / (1024.0 * 1024.0);
+        File file = writeTempFile(text);
+
+        CSVSerializer serializer = new CSVSerializer();
+        serializer.setKeys("A", "B", "C", "D");
+
+        long t0 = System.currentTimeMillis();
+        serializer.readObject(new StringReader(text));
+        long t1 = System.currentTimeMillis();
+        System.out.println("CSVSerializer reader: " + megabytes / Math.max(t1 - t0, 1) * 1000 + " MB/s");
+
+        serializer.setChunkSize(1024 * 1024);
+        t0 = System.currentTimeMillis();
+        serializer.readObject(file);
+        t1 = System.currentTimeMillis();
+        System.out.println("CSVSerializer file: " + megabytes / Math.max(t1 - t0, 1) * 1000 + " MB/s");
+
+        serializer.setParallel(true);
+        t0 = System.currentTimeMillis();
+        List<?> result = serializer.readObject(file);
+        t1 = System.currentTimeMillis();
+        System.out.println("CSVSerializer parallel file: " + megabytes / Math.max(t1 - t0, 1) * 1000 + " MB/s");
+
+        assertEquals(200000, result.getLength());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testColumnTypes() throws Exception {
+        StringBuilder buf = new StringBuilder();
+        buf.append("id,count,price,date,side,name\n");
+        buf.append("1,10000000000,1.5,2020-02-29,buy,\"a\"\n");
+        buf.append("2,,-2.25,2021-12-31,SELL, 7 \n");
+
+        CSVSerializer serializer = new CSVSerializer();
+        serializer.setColumnType("id", Integer.TYPE);
+        serializer.setColumnType("count", Long.class);
+        serializer.setColumnType("price", Double.class);
+        serializer.setColumnType("date", Date.class);
+        serializer.setColumnType("side", Side.class);
+
+        List<?> result = serializer.readObject(new StringReader(buf.toString()));
+        SimpleDateFormat dateFormat = new SimpleDateFormat(CSVSerializer.DEFAULT_DATE_FORMAT);
+
+        Dictionary<String, Object> row = (Dictionary<String, Object>) result.get(0);
+        assertEquals(Integer.valueOf(1), row.get("id"));
+        assertEquals(Long.valueOf(10000000000L), row.get("count"));
+        assertEquals(Double.valueOf(1.5), row.get("price"));
+        assertEquals(dateFormat.parse("2020-02-29"), row.get("date"));
+        assertEquals(Side.BUY, row.get("side"));
+        assertEquals("a", row.get("name"));
+
+        row = (Dictionary<String, Object>) result.get(1);
+        assertEquals(Integer.valueOf(2), row.get("id"));
+        assertNull(row.get("count"));
+        assertEquals(Double.valueOf(-2.25), row.get("price"));
+        assertEquals(Side.SELL, row.get("side"));
+        assertEquals("7", row.get("name"));
+
+        // Dates are written back in the same format
+        StringWriter writer = new StringWriter();
+        serializer.writeObject(result, writer);
+        assertEquals("1,10000000000,1.5,2020-02-29,BUY,a\r\n2,,-2.25,2021-12-31,SELL,7\r\n",
+            writer.toString());
+
+        try {
+            serializer.readObject(new StringReader("x,1,1,2020-01-01,BUY,a\n"));
+            fail("Expected a SerializationException");
+        } catch (SerializationException exception) {
+            System.out.println(exception.getMessage());
+        }
+
+        try {
+            serializer.setColumnType("name", Object.class);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException exception) {
+            // expected
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testInvalidValues() throws Exception {
+        CSVSerializer serializer = new CSVSerializer();
+        serializer.setKeys("flag", "date");
+        serializer.setColumnType("flag", Boolean.class);
+        serializer.setColumnType("date", Date.class);
+
+        List<?> result = serializer.readObject(new StringReader("TRUE,2020-01-01\nfalse,2020-02-29\n"));
+        assertEquals(Boolean.TRUE, ((Dictionary<String, Object>) result.get(0)).get("flag"));
+        assertEquals(Boolean.FALSE, ((Dictionary<String, Object>) result.get(1)).get("flag"));
+
+        String[] lines = {"yes,2020-01-01", "1,2020-01-01", "true,2024-13-45", "true,2020-01-01xyz",
+            "true,2024-13-45xyz"};
+
+        for (String line : lines) {
+            try {
+                serializer.readObject(new StringReader(line + "\n"));
+                fail("Expected a SerializationException for " + line);
+            } catch (SerializationException exception) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testColumnarReadObject() throws IOException, SerializationException {
+        StringBuilder buf = new StringBuilder();
+        buf.append("id,price,side\n");
+        for (int i = 0; i < 100; i++) {
+            buf.append(i + "," + (i * 0.25) + "," + ((i % 2 == 0) ? "buy" : "sell") + "\n");
+        }
+
+        File file = writeTempFile(buf.toString());
+
+        for (boolean parallel : new boolean[] {false, true}) {
+            CSVSerializer serializer = new CSVSerializer();
+            serializer.setColumnar(true);
+            serializer.setParallel(parallel);
+            serializer.setChunkSize(128);
+            serializer.setColumnType("id", Integer.class);
+            serializer.setColumnType("price", Double.class);
+            serializer.setColumnType("side", Side.class);
+
+            final List<Object> readItems = new ArrayList<>();
+            serializer.getCSVSerializerListeners().add(new CSVSerializerListener() {
+                @Override
+                public void readItem(CSVSerializer csvSerializer, Object item) {
+                    readItems.add(item);
+                }
+            });
+
+            ColumnarList result = (ColumnarList) serializer.readObject(file);
+            assertEquals(100, result.getLength());
+            assertEquals(100, readItems.getLength());
+            assertEquals(42, result.getInt(42, "id"));
+            assertEquals(10.5, result.getDouble(42, "price"), 0);
+            assertEquals(Side.SELL, result.get(43).get("side"));
+            assertEquals(2, result.getDictionarySize("side"));
+
+            // The keys have been read from the first line
+            result = (ColumnarList) serializer.readObject(new StringReader(buf.substring(buf.indexOf("\n") + 1)));
+            assertEquals(Side.BUY, result.get(98).get("side"));
+            assertEquals(99, result.getInt(99, "id"));
+        }
+    }
 }
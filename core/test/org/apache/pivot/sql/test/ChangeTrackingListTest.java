@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.sql.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.sql.ChangeTrackingList;
+import org.apache.pivot.sql.ResultList;
+import org.junit.Test;
+
+public class ChangeTrackingListTest {
+    /**
+     * Connection that records the batches executed through its statements as
+     * "SQL: parameters" strings.
+     */
+    private static class TestConnection implements InvocationHandler {
+        public ArrayList<String> executed = new ArrayList<>();
+        public int executeBatchCount = 0;
+        public int commitCount = 0;
+        public int rollbackCount = 0;
+        public boolean autoCommit = true;
+        public boolean fail = false;
+
+        public Connection newProxy() {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getAutoCommit":
+                    return autoCommit;
+                case "setAutoCommit":
+                    autoCommit = (Boolean) args[0];
+                    return null;
+                case "commit":
+                    commitCount++;
+                    return null;
+                case "rollback":
+                    rollbackCount++;
+                    return null;
+                case "prepareStatement":
+                    return newStatement((String) args[0]);
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+
+        private PreparedStatement newStatement(final String sql) {
+            final ArrayList<String> batch = new ArrayList<>();
+            final StringBuilder parameters = new StringBuilder();
+
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {PreparedStatement.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                        switch (method.getName()) {
+                            case "setObject":
+                            case "setNull":
+                                parameters.append(parameters.length() == 0 ? "" : ",")
+                                    .append(method.getName().equals("setNull") ? "null" : args[1]);
+                                return null;
+                            case "addBatch":
+                                batch.add(sql + ": " + parameters);
+                                parameters.setLength(0);
+                                return null;
+                            case "executeBatch":
+                                if (fail) {
+                                    throw new SQLException("Failed");
+                                }
+                                executeBatchCount++;
+                                for (String statement : batch) {
+                                    executed.add(statement);
+                                }
+                                return new int[batch.getLength()];
+                            case "close":
+                                return null;
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    }
+                });
+        }
+    }
+
+    private static HashMap<String, Object> newRow(int id, String name) {
+        HashMap<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("name", name);
+
+        return row;
+    }
+
+    private static ChangeTrackingList newList(TestConnection testConnection) {
+        ArrayList<ResultList.Field> fields = new ArrayList<>(new ResultList.Field("ID", "id"),
+            new ResultList.Field("NAME", "name"));
+        ChangeTrackingList list = new ChangeTrackingList(testConnection.newProxy(), "PEOPLE", fields, "ID");
+
+        ArrayList<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            rows.add(newRow(i, "name" + i));
+        }
+        list.load(rows);
+
+        return list;
+    }
+
+    @Test
+    public void testFlush() throws SQLException {
+        TestConnection testConnection = new TestConnection();
+        ChangeTrackingList list = newList(testConnection);
+        assertEquals(5, list.getLength());
+        assertEquals(0, list.getPendingChangeCount());
+
+        // Edit in place, including the key
+        Map<String, Object> row = list.get(1);
+        row.put("name", "one");
+        row.put("id", 11);
+        list.update(1, row);
+        list.update(1, row);
+
+        list.get(2).put("name", null);
+        list.markUpdated(list.get(2));
+
+        list.remove(0, 1);
+
+        // Inserted then edited is a single insert; inserted then removed is nothing
+        HashMap<String, Object> inserted = newRow(5, "five");
+        list.add(inserted);
+        inserted.put("name", "FIVE");
+        list.update(list.getLength() - 1, inserted);
+        list.add(newRow(6, "six"));
+        list.remove(list.getLength() - 1, 1);
+
+        assertEquals(4, list.getPendingChangeCount());
+        assertEquals(4, list.flush());
+        assertEquals(0, list.getPendingChangeCount());
+
+        assertEquals(3, testConnection.executeBatchCount);
+        assertEquals(1, testConnection.commitCount);
+        assertTrue(testConnection.autoCommit);
+
+        assertEquals(4, testConnection.executed.getLength());
+        assertEquals("DELETE FROM PEOPLE WHERE ID = ?: 0", testConnection.executed.get(0));
+        assertEquals("UPDATE PEOPLE SET ID = ?, NAME = ? WHERE ID = ?: 11,one,1",
+            testConnection.executed.get(1));
+        assertEquals("UPDATE PEOPLE SET ID = ?, NAME = ? WHERE ID = ?: 2,null,2",
+            testConnection.executed.get(2));
+        assertEquals("INSERT INTO PEOPLE (ID, NAME) VALUES (?, ?): 5,FIVE",
+            testConnection.executed.get(3));
+
+        // Written rows are keyed by their new values
+        row.put("name", "uno");
+        list.markUpdated(row);
+        list.flush();
+        assertEquals("UPDATE PEOPLE SET ID = ?, NAME = ? WHERE ID = ?: 11,uno,11",
+            testConnection.executed.get(4));
+
+        assertEquals(0, list.flush());
+    }
+
+    @Test
+    public void testBatchSize() {
+        TestConnection testConnection = new TestConnection();
+        ChangeTrackingList list = newList(testConnection);
+        list.setBatchSize(3);
+
+        for (int i = 0; i < 4; i++) {
+            list.markUpdated(list.get(i));
+        }
+
+        assertEquals(1, testConnection.commitCount);
+        assertEquals(3, testConnection.executed.getLength());
+        assertEquals(1, list.getPendingChangeCount());
+    }
+
+    @Test
+    public void testRollback() {
+        TestConnection testConnection = new TestConnection();
+        ChangeTrackingList list = newList(testConnection);
+        list.clear();
+        assertEquals(5, list.getPendingChangeCount());
+
+        testConnection.fail = true;
+        try {
+            list.flush();
+            fail("Expected SQLException");
+        } catch (SQLException exception) {
+            // Expected
+        }
+
+        assertEquals(1, testConnection.rollbackCount);
+        assertEquals(5, list.getPendingChangeCount());
+        assertTrue(testConnection.autoCommit);
+
+        // The pending changes are written once the failure clears
+        testConnection.fail = false;
+        list.add(newRow(7, "seven"));
+        try {
+            assertEquals(6, list.flush());
+        } catch (SQLException exception) {
+            fail(exception.getMessage());
+        }
+        assertEquals(6, testConnection.executed.getLength());
+    }
+
+    @Test
+    public void testSortedUpdate() throws SQLException {
+        TestConnection testConnection = new TestConnection();
+        ChangeTrackingList list = newList(testConnection);
+        list.setComparator((row1, row2) -> ((String) row1.get("name")).compareTo((String) row2.get("name")));
+
+        // Sorted table data repositions an edited row by removing and adding it
+        Map<String, Object> row = list.get(0);
+        row.put("name", "zero");
+        list.remove(0, 1);
+        list.add(row);
+
+        assertEquals(1, list.flush());
+        assertEquals("UPDATE PEOPLE SET ID = ?, NAME = ? WHERE ID = ?: 0,zero,0",
+            testConnection.executed.get(0));
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.sql.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.sql.ResultList;
+import org.apache.pivot.sql.WindowedResultList;
+import org.junit.Test;
+
+public class WindowedResultListTest {
+    /**
+     * Minimal scrollable result set with "id" and "name" columns, which
+     * counts the number of times it is positioned.
+     */
+    private static class TestResultSet implements InvocationHandler {
+        private final int rowCount;
+        private final int type;
+        private int row = 0;
+        private int fetchSize = 0;
+        private int absoluteCount = 0;
+
+        // If set, positioning past the first row waits until it is released
+        private CountDownLatch positioned = null;
+        private CountDownLatch release = null;
+
+        public TestResultSet(int rowCount, int type) {
+            this.rowCount = rowCount;
+            this.type = type;
+        }
+
+        public ResultSet newProxy() {
+            return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {ResultSet.class}, this);
+        }
+
+        public synchronized int getAbsoluteCount() {
+            return absoluteCount;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "getType":
+                    return type;
+                case "absolute":
+                    absoluteCount++;
+                    row = (Integer) args[0];
+                    if (release != null && row > 1) {
+                        positioned.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException exception) {
+                            throw new RuntimeException(exception);
+                        }
+                    }
+                    return (row >= 1 && row <= rowCount);
+                case "next":
+                    row++;
+                    return (row <= rowCount);
+                case "last":
+                    row = rowCount;
+                    return (rowCount > 0);
+                case "getRow":
+                    return row;
+                case "getFetchSize":
+                    return fetchSize;
+                case "setFetchSize":
+                    fetchSize = (Integer) args[0];
+                    return null;
+                case "getInt":
+                    return row;
+                case "getString":
+                    return "row" + row;
+                case "wasNull":
+                    return false;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return (proxy == args[0]);
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+    }
+
+    private static WindowedResultList newList(TestResultSet testResultSet) {
+        WindowedResultList list = new WindowedResultList(testResultSet.newProxy());
+        list.setFields(new ResultList.Field("id", "id", Integer.class),
+            new ResultList.Field("name", "name", String.class));
+
+        return list;
+    }
+
+    @Test
+    public void testRandomAccess() {
+        TestResultSet testResultSet = new TestResultSet(1050, ResultSet.TYPE_SCROLL_INSENSITIVE);
+        WindowedResultList list = newList(testResultSet);
+        list.setPrefetch(false);
+        list.setBlockSize(100);
+        list.setMaxCachedBlocks(2);
+        list.setFetchSize(100);
+
+        assertEquals(1050, list.getLength());
+        assertEquals(100, list.getFetchSize());
+
+        Map<String, Object> item = list.get(1049);
+        assertEquals(1050, item.get("id"));
+        assertEquals("row1050", item.get("name"));
+        assertEquals(1, testResultSet.getAbsoluteCount());
+
+        // Rows in a cached block do not touch the result set
+        assertEquals(1001, list.get(1000).get("id"));
+        assertEquals(1, testResultSet.getAbsoluteCount());
+        assertEquals(1000, list.indexOf(list.get(1000)));
+
+        assertEquals(1, list.get(0).get("id"));
+        assertEquals(2, testResultSet.getAbsoluteCount());
+
+        // Least recently used block is discarded
+        assertEquals(501, list.get(500).get("id"));
+        assertEquals(3, testResultSet.getAbsoluteCount());
+        assertEquals(1050, list.get(1049).get("id"));
+        assertEquals(4, testResultSet.getAbsoluteCount());
+        assertEquals(501, list.get(500).get("id"));
+        assertEquals(4, testResultSet.getAbsoluteCount());
+        assertEquals(1, list.get(0).get("id"));
+        assertEquals(5, testResultSet.getAbsoluteCount());
+
+        int count = 0;
+        for (Map<String, Object> row : list) {
+            assertEquals(++count, row.get("id"));
+        }
+        assertEquals(1050, count);
+
+        try {
+            list.get(1050);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException exception) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testPrefetch() throws InterruptedException {
+        TestResultSet testResultSet = new TestResultSet(1000, ResultSet.TYPE_SCROLL_INSENSITIVE);
+        WindowedResultList list = newList(testResultSet);
+        list.setBlockSize(50);
+
+        assertEquals(1, list.get(0).get("id"));
+
+        // The next block is fetched in the background
+        long timeout = System.currentTimeMillis() + 5000;
+        while (testResultSet.getAbsoluteCount() < 2 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, testResultSet.getAbsoluteCount());
+
+        assertEquals(51, list.get(50).get("id"));
+        assertTrue(testResultSet.getAbsoluteCount() <= 3);
+    }
+
+    @Test
+    public void testRefreshDuringPrefetch() throws InterruptedException {
+        TestResultSet testResultSet = new TestResultSet(1000, ResultSet.TYPE_SCROLL_INSENSITIVE);
+        testResultSet.positioned = new CountDownLatch(1);
+        testResultSet.release = new CountDownLatch(1);
+
+        WindowedResultList list = newList(testResultSet);
+        list.setBlockSize(50);
+
+        // Rows 51-100 are being prefetched when the block size changes
+        assertEquals(1, list.get(0).get("id"));
+        assertTrue(testResultSet.positioned.await(5, TimeUnit.SECONDS));
+
+        Thread thread = new Thread(() -> list.setBlockSize(100));
+        thread.start();
+        Thread.sleep(100);
+        testResultSet.release.countDown();
+        thread.join();
+
+        // The prefetched rows are not kept
+        assertEquals(151, list.get(150).get("id"));
+        assertEquals(51, list.get(50).get("id"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testForwardOnly() {
+        newList(new TestResultSet(10, ResultSet.TYPE_FORWARD_ONLY));
+    }
+}
@@ -16,7 +16,25 @@
  */
 package org.apache.pivot.util.concurrent.test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.util.concurrent.AbortException;
 import org.apache.pivot.util.concurrent.Task;
+import org.apache.pivot.util.concurrent.TaskExecutionException;
+import org.apache.pivot.util.concurrent.TaskGroupListener;
+import org.apache.pivot.util.concurrent.TimeoutException;
 import org.apache.pivot.util.concurrent.TaskGroup;
 import org.apache.pivot.util.concurrent.TaskListener;
 import org.apache.pivot.util.concurrent.TaskSequence;
@@ -126,4 +144,598 @@ public class TaskTest {
             }
         }
     }
+
+    /**
+     * Waits for a while without printing, so that many can be executed.
+     */
+    public static class WaitTask extends Task<Void> {
+        public static final AtomicInteger executeCount = new AtomicInteger();
+
+        public WaitTask() {
+            super();
+        }
+
+        public WaitTask(ExecutorService executorService) {
+            super(executorService);
+        }
+
+        @Override
+        public Void execute() throws TaskExecutionException {
+            try {
+                Thread.sleep(WAIT_TIME);
+            } catch (InterruptedException exception) {
+                throw new TaskExecutionException(exception);
+            }
+
+            executeCount.incrementAndGet();
+
+            return null;
+        }
+    }
+
+    private static final int WAIT_TIME = 100;
+    private static final int WAIT_TASK_COUNT = 500;
+
+    private static void executeGroup(ExecutorService executorService, String name) throws Exception {
+        TaskGroup taskGroup = new TaskGroup(executorService);
+        for (int i = 0; i < WAIT_TASK_COUNT; i++) {
+            taskGroup.add(new WaitTask(executorService));
+        }
+
+        WaitTask.executeCount.set(0);
+
+        long start = System.nanoTime();
+        taskGroup.execute();
+        long time = System.nanoTime() - start;
+
+        assertEquals(WAIT_TASK_COUNT, WaitTask.executeCount.get());
+
+        System.out.format("%s: %d tasks of %d ms in %.1f ms%n", name, WAIT_TASK_COUNT, WAIT_TIME, time / 1e6);
+    }
+
+    @Test
+    public void testDefaultExecutorService() throws Exception {
+        // Tasks that have already been created use the new default
+        WaitTask task = new WaitTask();
+        assertSame(Task.DEFAULT_EXECUTOR_SERVICE, task.getExecutorService());
+
+        AtomicInteger submitCount = new AtomicInteger();
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        ExecutorService previousExecutorService = Task.getDefaultExecutorService();
+
+        Task.setDefaultExecutorService(new java.util.concurrent.AbstractExecutorService() {
+            @Override
+            public void execute(Runnable command) {
+                submitCount.incrementAndGet();
+                executorService.execute(command);
+            }
+
+            @Override
+            public void shutdown() {
+                executorService.shutdown();
+            }
+
+            @Override
+            public java.util.List<Runnable> shutdownNow() {
+                return executorService.shutdownNow();
+            }
+
+            @Override
+            public boolean isShutdown() {
+                return executorService.isShutdown();
+            }
+
+            @Override
+            public boolean isTerminated() {
+                return executorService.isTerminated();
+            }
+
+            @Override
+            public boolean awaitTermination(long timeout, TimeUnit unit)
+                throws InterruptedException {
+                return executorService.awaitTermination(timeout, unit);
+            }
+        });
+
+        try {
+            TaskGroup taskGroup = new TaskGroup();
+            taskGroup.add(task);
+            taskGroup.execute();
+
+            assertEquals(1, submitCount.get());
+        } finally {
+            Task.setDefaultExecutorService(previousExecutorService);
+            executorService.shutdown();
+        }
+
+        try {
+            Task.setDefaultExecutorService(Task.DEFAULT_EXECUTOR_SERVICE);
+            fail();
+        } catch (IllegalArgumentException exception) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        executeGroup(Task.DEFAULT_EXECUTOR_SERVICE, "Thread pool");
+
+        if (Task.isVirtualThreadSupported()) {
+            executeGroup(Task.getVirtualThreadExecutorService(), "Virtual threads");
+        } else {
+            try {
+                Task.getVirtualThreadExecutorService();
+                fail();
+            } catch (UnsupportedOperationException exception) {
+                System.out.println("Virtual threads are not supported by this runtime.");
+            }
+        }
+    }
+
+    @Test
+    public void testNestedSequences() throws Exception {
+        // A sequence of groups waits for each group in turn
+        TaskSequence taskSequence = new TaskSequence();
+        for (int i = 0; i < 3; i++) {
+            TaskGroup taskGroup = new TaskGroup();
+            for (int j = 0; j < 10; j++) {
+                taskGroup.add(new WaitTask());
+            }
+
+            taskSequence.add(taskGroup);
+        }
+
+        WaitTask.executeCount.set(0);
+
+        long start = System.nanoTime();
+        taskSequence.execute();
+        long time = System.nanoTime() - start;
+
+        assertEquals(30, WaitTask.executeCount.get());
+        assertTrue(time >= 3 * WAIT_TIME * 1000000L);
+    }
+
+    /**
+     * Returns its value, or fails if it is <tt>null</tt>.
+     */
+    public static class ValueTask extends Task<String> {
+        private String value;
+
+        public ValueTask(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+
+        @Override
+        public String execute() throws TaskExecutionException {
+            if (value == null) {
+                throw new TaskExecutionException("No value.");
+            }
+
+            return value;
+        }
+    }
+
+    @Test
+    public void testCompletableFuture() throws Exception {
+        CompletableFuture<String> future = new ValueTask("a").toCompletableFuture()
+            .thenCombine(new ValueTask("b").toCompletableFuture(), (a, b) -> a + b)
+            .thenApply(String::toUpperCase);
+        assertEquals("AB", future.get(10, TimeUnit.SECONDS));
+
+        try {
+            new ValueTask(null).toCompletableFuture().get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException exception) {
+            assertTrue(exception.getCause() instanceof TaskExecutionException);
+        }
+
+        // Cancelling the future aborts the task
+        WaitTask task = new WaitTask();
+        CompletableFuture<Void> waitFuture = task.toCompletableFuture();
+        assertTrue(waitFuture.cancel(false));
+        assertTrue(waitFuture.isCancelled());
+    }
+
+    @Test
+    public void testAsynchronousGroup() throws Exception {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executorService = Executors.newCachedThreadPool(runnable -> {
+            threadCount.incrementAndGet();
+            return new Thread(runnable);
+        });
+
+        try {
+            int count = 100;
+            TaskGroup taskGroup = new TaskGroup(executorService);
+            for (int i = 0; i < count; i++) {
+                taskGroup.add(new WaitTask(executorService));
+            }
+
+            WaitTask.executeCount.set(0);
+            taskGroup.toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+            // The group itself does not hold a thread while its tasks run
+            assertEquals(count, WaitTask.executeCount.get());
+            assertTrue(threadCount.get() <= count);
+            assertTrue(!taskGroup.isPending());
+
+            System.out.format("Group of %d tasks executed on %d threads%n", count, threadCount.get());
+
+            // An empty group completes as well
+            new TaskGroup(executorService).toCompletableFuture().get(10, TimeUnit.SECONDS);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testAsynchronousSequence() throws Exception {
+        TaskSequence taskSequence = new TaskSequence();
+        taskSequence.add(new ValueTask(null));
+        taskSequence.add(new WaitTask());
+        taskSequence.add(new WaitTask());
+
+        // A task that fails does not stop the sequence
+        WaitTask.executeCount.set(0);
+        taskSequence.toCompletableFuture().get(10, TimeUnit.SECONDS);
+        assertEquals(2, WaitTask.executeCount.get());
+
+        // Aborting it stops it before the next task
+        CountDownLatch done = new CountDownLatch(1);
+        Throwable[] fault = new Throwable[1];
+
+        WaitTask.executeCount.set(0);
+        taskSequence.execute(new TaskListener<Void>() {
+            @Override
+            public void taskExecuted(Task<Void> task) {
+                done.countDown();
+            }
+
+            @Override
+            public void executeFailed(Task<Void> task) {
+                fault[0] = task.getFault();
+                done.countDown();
+            }
+        });
+
+        taskSequence.abort();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(fault[0] instanceof AbortException);
+        assertTrue(WaitTask.executeCount.get() < 2);
+    }
+
+    /**
+     * Waits until it is interrupted, recording the time it had left.
+     */
+    public static class BlockTask extends Task<Void> {
+        public volatile long remainingTime = -1;
+
+        @Override
+        public Void execute() throws TaskExecutionException {
+            remainingTime = getRemainingTime();
+
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException exception) {
+                throw new TaskExecutionException(exception);
+            }
+
+            return null;
+        }
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        BlockTask task = new BlockTask();
+        task.setTimeout(200);
+
+        long start = System.nanoTime();
+        try {
+            task.toCompletableFuture().get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException exception) {
+            assertTrue(exception.getCause() instanceof TimeoutException);
+        }
+
+        long time = (System.nanoTime() - start) / 1000000;
+        assertTrue(time >= 200 && time < 5000);
+        assertTrue(task.remainingTime > 0 && task.remainingTime <= 200);
+
+        // Without a deadline, there is no limit
+        assertEquals(Long.MAX_VALUE, task.getRemainingTime());
+    }
+
+    @Test
+    public void testCompletedAfterDeadline() throws Exception {
+        // A task that completes after its deadline fails, even if the timeout
+        // has not been handled yet (here it can't be, as the task's monitor
+        // is held until the task has completed)
+        Task<Void> task = new Task<Void>() {
+            @Override
+            public Void execute() {
+                return null;
+            }
+
+            @Override
+            protected void executeAsynchronously(ExecutorService executorService) {
+                try {
+                    Thread.sleep(150);
+                } catch (InterruptedException exception) {
+                    throw new RuntimeException(exception);
+                }
+
+                executed(null, null);
+            }
+        };
+        task.setTimeout(50);
+
+        try {
+            task.toCompletableFuture().get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException exception) {
+            assertTrue(exception.getCause() instanceof TimeoutException);
+        }
+    }
+
+    @Test
+    public void testGroupDeadline() throws Exception {
+        // The tasks of a group share its deadline, and are aborted with it
+        TaskGroup taskGroup = new TaskGroup();
+        taskGroup.setTimeout(200);
+
+        BlockTask task1 = new BlockTask();
+        BlockTask task2 = new BlockTask();
+        task2.setTimeout(100);
+
+        TaskSequence taskSequence = new TaskSequence();
+        BlockTask task3 = new BlockTask();
+        taskSequence.add(task3);
+
+        taskGroup.add(task1);
+        taskGroup.add(task2);
+        taskGroup.add(taskSequence);
+
+        try {
+            taskGroup.toCompletableFuture().get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException exception) {
+            assertTrue(exception.getCause() instanceof TimeoutException);
+        }
+
+        assertTrue(task1.getFault() instanceof TimeoutException);
+        assertTrue(task2.getFault() instanceof TimeoutException);
+        assertTrue(task3.getFault() instanceof TimeoutException);
+
+        // A task's own timeout applies if it is earlier
+        assertTrue(task1.remainingTime <= 200);
+        assertTrue(task2.remainingTime <= 100);
+        assertTrue(task3.remainingTime <= 200);
+
+        // Aborting a sequence aborts the task it is executing
+        TaskSequence abortedSequence = new TaskSequence();
+        BlockTask task4 = new BlockTask();
+        abortedSequence.add(task4);
+        abortedSequence.add(new WaitTask());
+
+        CompletableFuture<Void> future = abortedSequence.toCompletableFuture();
+        while (task4.remainingTime == -1) {
+            Thread.sleep(10);
+        }
+
+        abortedSequence.abort();
+        task4.getBackgroundThread().interrupt();
+
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException exception) {
+            assertTrue(exception.getCause() instanceof AbortException);
+        }
+    }
+
+    @Test
+    public void testMaximumParallelism() throws Exception {
+        ExecutorService executorService = Executors.newWorkStealingPool(4);
+
+        try {
+            TaskGroup taskGroup = new TaskGroup();
+            taskGroup.setTaskExecutorService(executorService);
+            taskGroup.setMaximumParallelism(4);
+
+            for (int i = 0; i < 40; i++) {
+                taskGroup.add(new WaitTask());
+            }
+
+            AtomicInteger runningCount = new AtomicInteger();
+            AtomicInteger maximumRunningCount = new AtomicInteger();
+            AtomicInteger completedCount = new AtomicInteger();
+
+            taskGroup.getTaskGroupListeners().add(new TaskGroupListener() {
+                @Override
+                public void taskStarted(TaskGroup taskGroupArgument, Task<?> task) {
+                    maximumRunningCount.accumulateAndGet(runningCount.incrementAndGet(), Math::max);
+                }
+
+                @Override
+                public void taskCompleted(TaskGroup taskGroupArgument, Task<?> task, long latency) {
+                    runningCount.decrementAndGet();
+                    completedCount.incrementAndGet();
+                }
+            });
+
+            long start = System.nanoTime();
+            taskGroup.toCompletableFuture().get(30, TimeUnit.SECONDS);
+            long time = System.nanoTime() - start;
+
+            assertEquals(4, maximumRunningCount.get());
+            assertEquals(40, completedCount.get());
+            assertEquals(0, taskGroup.getQueuedCount());
+            assertEquals(0, taskGroup.getRunningCount());
+            assertEquals(40, taskGroup.getCompletedCount());
+
+            // Ten rounds of four tasks
+            assertTrue(time >= 10 * WAIT_TIME * 1000000L);
+
+            long latencyCount = 0;
+            for (long count : taskGroup.getLatencyHistogram()) {
+                latencyCount += count;
+            }
+
+            assertEquals(40, latencyCount);
+
+            System.out.format("40 tasks of %d ms, 4 at a time, in %.1f ms%n", WAIT_TIME, time / 1e6);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testPriorities() throws Exception {
+        ArrayList<String> order = new ArrayList<>();
+
+        TaskGroup taskGroup = new TaskGroup();
+        taskGroup.setMaximumParallelism(1);
+
+        for (String value : new String[] {"prefetch1", "prefetch2", "visible1", "visible2", "block"}) {
+            Task<String> task = new ValueTask(value) {
+                @Override
+                public String execute() throws TaskExecutionException {
+                    synchronized (order) {
+                        order.add(super.execute());
+                    }
+
+                    return null;
+                }
+            };
+
+            taskGroup.add(task);
+            taskGroup.setPriority(task, value.startsWith("visible") ? 1 : (value.equals("block") ? 2 : 0));
+        }
+
+        // The highest priority task is started first; the others are queued
+        // in order of priority, which can change while they wait
+        CountDownLatch done = new CountDownLatch(1);
+        taskGroup.getTaskGroupListeners().add(new TaskGroupListener() {
+            @Override
+            public void taskCompleted(TaskGroup taskGroupArgument, Task<?> task, long latency) {
+                if (taskGroupArgument.getCompletedCount() == taskGroupArgument.getCount()) {
+                    done.countDown();
+                }
+            }
+        });
+
+        synchronized (taskGroup) {
+            taskGroup.execute(new TaskListener<Void>() {
+                @Override
+                public void taskExecuted(Task<Void> task) {
+                    // No-op
+                }
+
+                @Override
+                public void executeFailed(Task<Void> task) {
+                    // No-op
+                }
+            });
+
+            for (Task<?> task : taskGroup) {
+                if (((ValueTask) task).toString().equals("prefetch2")) {
+                    taskGroup.setPriority(task, 5);
+                }
+            }
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        assertEquals("block", order.get(0));
+        assertEquals("prefetch2", order.get(1));
+        assertTrue(order.get(2).startsWith("visible"));
+        assertTrue(order.get(3).startsWith("visible"));
+        assertEquals("prefetch1", order.get(4));
+    }
+
+    @Test
+    public void testEqualPriorities() throws Exception {
+        ArrayList<String> order = new ArrayList<>();
+
+        TaskGroup taskGroup = new TaskGroup();
+        taskGroup.setMaximumParallelism(1);
+
+        // Tasks of equal priority are started in the order they were added
+        for (int i = 0; i < 50; i++) {
+            taskGroup.add(new ValueTask("task" + i) {
+                @Override
+                public String execute() throws TaskExecutionException {
+                    synchronized (order) {
+                        order.add(super.execute());
+                    }
+
+                    return null;
+                }
+            });
+        }
+
+        taskGroup.execute();
+
+        assertEquals(50, order.getLength());
+        int i = 0;
+        for (Task<?> task : taskGroup) {
+            assertEquals("task" + i, task.toString());
+            assertEquals("task" + i, order.get(i));
+            i++;
+        }
+    }
+
+    @Test
+    public void testAbortQueued() throws Exception {
+        TaskGroup taskGroup = new TaskGroup();
+        taskGroup.setMaximumParallelism(1);
+        for (int i = 0; i < 4; i++) {
+            taskGroup.add(new WaitTask());
+        }
+
+        AtomicInteger completedCount = new AtomicInteger();
+        taskGroup.getTaskGroupListeners().add(new TaskGroupListener() {
+            @Override
+            public void taskCompleted(TaskGroup taskGroupArgument, Task<?> task, long latency) {
+                completedCount.incrementAndGet();
+            }
+        });
+
+        CountDownLatch done = new CountDownLatch(1);
+        int executeCount = WaitTask.executeCount.get();
+
+        taskGroup.execute(new TaskListener<Void>() {
+            @Override
+            public void taskExecuted(Task<Void> task) {
+                done.countDown();
+            }
+
+            @Override
+            public void executeFailed(Task<Void> task) {
+                done.countDown();
+            }
+        });
+
+        // The queued tasks are dropped without being reported as completed
+        assertEquals(1, taskGroup.getRunningCount());
+        taskGroup.abort();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        assertEquals(1, completedCount.get());
+        assertEquals(1, taskGroup.getCompletedCount());
+        assertEquals(0, taskGroup.getQueuedCount());
+
+        long latencyCount = 0;
+        for (long count : taskGroup.getLatencyHistogram()) {
+            latencyCount += count;
+        }
+
+        assertEquals(1, latencyCount);
+        assertTrue(WaitTask.executeCount.get() - executeCount <= 1);
+    }
 }
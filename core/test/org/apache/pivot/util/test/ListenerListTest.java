@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.util.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pivot.util.CopyOnWriteListenerList;
+import org.apache.pivot.util.ListenerList;
+import org.junit.Test;
+
+public class ListenerListTest {
+    private interface TestListener {
+        void fired(ListenerList<TestListener> listeners);
+    }
+
+    private static class TestListenerList extends ListenerList<TestListener> implements TestListener {
+        @Override
+        public void fired(ListenerList<TestListener> listeners) {
+            forEach(listener -> listener.fired(listeners));
+        }
+    }
+
+    private static class CopyOnWriteTestListenerList extends CopyOnWriteListenerList<TestListener>
+        implements TestListener {
+        @Override
+        public void fired(ListenerList<TestListener> listeners) {
+            forEach(listener -> listener.fired(listeners));
+        }
+    }
+
+    private static class CountingListener implements TestListener {
+        public int count = 0;
+
+        @Override
+        public void fired(ListenerList<TestListener> listeners) {
+            count++;
+        }
+    }
+
+    private static class RemovingListener extends CountingListener {
+        @Override
+        public void fired(ListenerList<TestListener> listeners) {
+            super.fired(listeners);
+            listeners.remove(this);
+        }
+    }
+
+    private static void testList(ListenerList<TestListener> listeners, TestListener fire) {
+        CountingListener[] counting = new CountingListener[20];
+        for (int i = 0; i < counting.length; i++) {
+            counting[i] = (i % 2 == 0) ? new RemovingListener() : new CountingListener();
+            listeners.add(counting[i]);
+        }
+
+        // Duplicates are ignored
+        listeners.add(counting[3]);
+        assertEquals(20, listeners.getLength());
+        assertTrue(listeners.contains(counting[3]));
+
+        // Listeners removing themselves while the event is fired don't
+        // cause any other listener to be skipped
+        fire.fired(listeners);
+        for (CountingListener listener : counting) {
+            assertEquals(1, listener.count);
+        }
+
+        assertEquals(10, listeners.getLength());
+        for (int i = 0; i < counting.length; i++) {
+            assertEquals(i % 2 == 1, listeners.contains(counting[i]));
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertSame(counting[i * 2 + 1], listeners.get(i));
+        }
+
+        fire.fired(listeners);
+        assertEquals(1, counting[0].count);
+        assertEquals(2, counting[1].count);
+
+        for (int i = 1; i < counting.length; i += 2) {
+            listeners.remove(counting[i]);
+        }
+
+        assertTrue(listeners.isEmpty());
+
+        // So are listeners that aren't in the list
+        listeners.remove(counting[1]);
+        assertTrue(listeners.isEmpty());
+    }
+
+    @Test
+    public void testListenerList() {
+        TestListenerList listeners = new TestListenerList();
+        testList(listeners, listeners);
+    }
+
+    @Test
+    public void testCopyOnWriteListenerList() {
+        CopyOnWriteTestListenerList listeners = new CopyOnWriteTestListenerList();
+        testList(listeners, listeners);
+    }
+
+    @Test
+    public void testConcurrentCopyOnWrite() throws Exception {
+        final int threadCount = 4;
+        final int count = 2000;
+
+        CopyOnWriteTestListenerList listeners = new CopyOnWriteTestListenerList();
+        AtomicInteger fired = new AtomicInteger();
+        listeners.add(list -> fired.incrementAndGet());
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount + 1);
+        try {
+            // Fire continuously while other threads add and remove listeners
+            Future<?> firing = executorService.submit(() -> {
+                while (listeners.getLength() < threadCount * count + 1) {
+                    listeners.fired(listeners);
+                }
+            });
+
+            Future<?>[] adding = new Future<?>[threadCount];
+            CountingListener[][] added = new CountingListener[threadCount][count];
+            for (int i = 0; i < threadCount; i++) {
+                final CountingListener[] threadAdded = added[i];
+                adding[i] = executorService.submit(() -> {
+                    for (int j = 0; j < count; j++) {
+                        threadAdded[j] = new CountingListener();
+                        listeners.add(threadAdded[j]);
+
+                        CountingListener transientListener = new CountingListener();
+                        listeners.add(transientListener);
+                        listeners.remove(transientListener);
+                        assertFalse(listeners.contains(transientListener));
+                    }
+                });
+            }
+
+            for (Future<?> future : adding) {
+                future.get();
+            }
+
+            firing.get();
+
+            assertEquals(threadCount * count + 1, listeners.getLength());
+            for (CountingListener[] threadAdded : added) {
+                for (CountingListener listener : threadAdded) {
+                    assertTrue(listeners.contains(listener));
+                }
+            }
+
+            assertTrue(fired.get() > 0);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+}
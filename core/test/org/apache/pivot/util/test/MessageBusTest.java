@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.util.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.util.MessageBus;
+import org.apache.pivot.util.MessageBusListener;
+import org.junit.Test;
+
+public class MessageBusTest {
+    private interface Quote {
+        String getSymbol();
+    }
+
+    private static class Trade implements Quote {
+        public final String symbol;
+        public final long sequence;
+
+        public Trade(String symbol, long sequence) {
+            this.symbol = symbol;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public String getSymbol() {
+            return symbol;
+        }
+    }
+
+    private static class BlockTrade extends Trade {
+        public BlockTrade(String symbol, long sequence) {
+            super(symbol, sequence);
+        }
+    }
+
+    private enum Signal {
+        START {
+            @Override
+            public String toString() {
+                return "start";
+            }
+        }
+    }
+
+    @Test
+    public void testTypeHierarchy() {
+        ArrayList<String> received = new ArrayList<>();
+
+        MessageBusListener<Trade> tradeListener = message -> received.add("trade");
+        MessageBusListener<Quote> quoteListener = message -> received.add("quote");
+        MessageBusListener<Object> objectListener = message -> received.add("object");
+        MessageBusListener<Signal> signalListener = message -> received.add(message.toString());
+
+        MessageBus.subscribe(Trade.class, tradeListener);
+        MessageBus.subscribe(Quote.class, quoteListener);
+        MessageBus.subscribe(Signal.class, signalListener);
+
+        // Subclasses are delivered to the topics of their supertypes, classes
+        // first
+        MessageBus.sendMessage(new BlockTrade("A", 1));
+        assertEquals(2, received.getLength());
+        assertEquals("trade", received.get(0));
+        assertEquals("quote", received.get(1));
+
+        // Including enum constants with bodies
+        MessageBus.sendMessage(Signal.START);
+        assertEquals("start", received.get(2));
+
+        // Topics added later are resolved as well; superclasses come before
+        // interfaces
+        MessageBus.subscribe(Object.class, objectListener);
+        MessageBus.sendMessage(new Trade("B", 2));
+        assertEquals(6, received.getLength());
+        assertEquals("object", received.get(4));
+        assertEquals("quote", received.get(5));
+
+        MessageBus.unsubscribe(Trade.class, tradeListener);
+        MessageBus.unsubscribe(Quote.class, quoteListener);
+        MessageBus.unsubscribe(Object.class, objectListener);
+        MessageBus.unsubscribe(Signal.class, signalListener);
+
+        MessageBus.sendMessage(new Trade("C", 3));
+        assertEquals(6, received.getLength());
+    }
+
+    @Test
+    public void testAsynchronousDelivery() throws Exception {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        final int count = 10000;
+
+        try {
+            // All messages are delivered in order on the executor
+            ArrayList<Long> sequences = new ArrayList<>();
+            CountDownLatch allDelivered = new CountDownLatch(1);
+            MessageBusListener<Trade> allListener = message -> {
+                sequences.add(Long.valueOf(message.sequence));
+                if (message.sequence == count - 1) {
+                    allDelivered.countDown();
+                }
+            };
+
+            // Only the latest of the pending messages are delivered when coalescing
+            AtomicInteger latestCount = new AtomicInteger();
+            AtomicLong latestSequence = new AtomicLong(-1);
+            MessageBusListener<Trade> latestListener = message -> {
+                latestCount.incrementAndGet();
+                latestSequence.set(message.sequence);
+            };
+
+            MessageBus.subscribe(Trade.class, allListener, executorService, false);
+            MessageBus.subscribe(Trade.class, latestListener, executorService, true);
+
+            for (int i = 0; i < count; i++) {
+                MessageBus.sendMessage(new Trade("A", i));
+            }
+
+            assertTrue(allDelivered.await(10, TimeUnit.SECONDS));
+            executorService.submit(() -> null).get();
+
+            assertEquals(count, sequences.getLength());
+            for (int i = 0; i < count; i++) {
+                assertEquals(i, sequences.get(i).longValue());
+            }
+
+            assertEquals(count - 1, latestSequence.get());
+            assertTrue(latestCount.get() <= count);
+
+            System.out.format("%d messages coalesced into %d deliveries%n", count, latestCount.get());
+
+            MessageBus.unsubscribe(Trade.class, allListener);
+            MessageBus.unsubscribe(Trade.class, latestListener);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailedDelivery() throws Exception {
+        AtomicInteger uncaughtCount = new AtomicInteger();
+        ExecutorService executorService = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setUncaughtExceptionHandler((t, exception) -> uncaughtCount.incrementAndGet());
+            return thread;
+        });
+
+        try {
+            // A listener that throws still receives later messages
+            ArrayList<Long> sequences = new ArrayList<>();
+            MessageBusListener<Trade> listener = message -> {
+                sequences.add(Long.valueOf(message.sequence));
+                if (message.sequence % 2 == 0) {
+                    throw new IllegalStateException();
+                }
+            };
+
+            MessageBus.subscribe(Trade.class, listener, executorService, false);
+
+            for (int i = 0; i < 4; i++) {
+                MessageBus.sendMessage(new Trade("A", i));
+                executorService.submit(() -> null).get();
+            }
+
+            assertEquals(4, sequences.getLength());
+            assertEquals(2, uncaughtCount.get());
+
+            MessageBus.unsubscribe(Trade.class, listener);
+        } finally {
+            executorService.shutdown();
+        }
+
+        // A rejected delivery doesn't stop later ones
+        AtomicInteger rejectCount = new AtomicInteger(1);
+        Executor executor = command -> {
+            if (rejectCount.getAndDecrement() > 0) {
+                throw new RejectedExecutionException();
+            }
+
+            command.run();
+        };
+
+        ArrayList<Long> sequences = new ArrayList<>();
+        MessageBusListener<Trade> listener = message -> sequences.add(Long.valueOf(message.sequence));
+        MessageBus.subscribe(Trade.class, listener, executor, false);
+
+        try {
+            MessageBus.sendMessage(new Trade("A", 0));
+            fail("Expected RejectedExecutionException");
+        } catch (RejectedExecutionException exception) {
+            // expected
+        }
+
+        MessageBus.sendMessage(new Trade("A", 1));
+        assertEquals(1, sequences.getLength());
+        assertEquals(1, sequences.get(0).longValue());
+
+        MessageBus.unsubscribe(Trade.class, listener);
+    }
+
+    @Test
+    public void testConcurrentSenders() throws Exception {
+        final int threadCount = 4;
+        final int count = 250000;
+
+        AtomicLong received = new AtomicLong();
+        MessageBusListener<Quote> listener = message -> received.incrementAndGet();
+        MessageBus.subscribe(Quote.class, listener);
+
+        // Subscribing and unsubscribing while messages are being sent is safe
+        MessageBusListener<Trade> churnListener = message -> {
+            // No-op
+        };
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount + 1);
+        try {
+            CountDownLatch done = new CountDownLatch(threadCount);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < threadCount; i++) {
+                executorService.execute(() -> {
+                    for (int j = 0; j < count; j++) {
+                        MessageBus.sendMessage(new Trade("A", j));
+                    }
+
+                    done.countDown();
+                });
+            }
+
+            executorService.execute(() -> {
+                while (done.getCount() > 0) {
+                    MessageBus.subscribe(Trade.class, churnListener);
+                    MessageBus.unsubscribe(Trade.class, churnListener);
+                }
+            });
+
+            assertTrue(done.await(60, TimeUnit.SECONDS));
+            long time = System.nanoTime() - start;
+
+            assertEquals((long) threadCount * count, received.get());
+
+            System.out.format("%d messages from %d threads in %.1f ms (%.0f messages/s)%n",
+                threadCount * count, threadCount, time / 1e6, threadCount * count / (time / 1e9));
+        } finally {
+            executorService.shutdown();
+            MessageBus.unsubscribe(Quote.class, listener);
+        }
+    }
+}
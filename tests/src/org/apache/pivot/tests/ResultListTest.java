@@ -74,6 +74,14 @@ public final class ResultListTest {
             while (iterator.hasNext()) {
                 out.println(JSONSerializer.toString(iterator.next()));
             }
+
+            // Test reading into columns
+            resultSet = statement.executeQuery("SELECT * FROM result_list_test");
+            resultList = new ResultList(resultSet);
+            resultList.setFields(new ResultList.Field("i", "integer", Integer.class),
+                new ResultList.Field("f", "float", Float.class), new ResultList.Field("s",
+                    "string", String.class), new ResultList.Field("b", "boolean", Boolean.class));
+            out.println(JSONSerializer.toString(resultList.toColumnarList()));
         } finally {
             if (resultSet != null) {
                 resultSet.close();
@@ -0,0 +1,550 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.util.Utils;
+import org.apache.pivot.web.EventQuery;
+import org.apache.pivot.web.Query;
+
+/**
+ * Pushes events to the clients subscribed to it, as a
+ * <tt>text/event-stream</tt> (server-sent events) that an {@link EventQuery}
+ * reads. A {@link QueryServlet} subscribes the clients that GET a path for
+ * which its {@link QueryServlet#getEventChannel getEventChannel()} method
+ * returns the channel. <p> Each event is serialized once, as JSON, and
+ * queued for every subscriber; publishing never waits for a connection.
+ * Each subscriber's queue is written by a request thread, and a subscriber
+ * whose queue fills up because its client has fallen behind, or whose
+ * connection fails, is dropped. The most recent events are kept, so that a
+ * client that reconnects with the ID of the last event it received is sent
+ * the ones it missed; if they have not all been kept, it is sent a
+ * {@link EventQuery#RESET_EVENT reset} event instead, and should load the
+ * model again. <p> If the servlet is deployed with asynchronous support,
+ * subscribers only hold a request thread while their queues are written;
+ * otherwise, each one holds a thread until the channel is closed or its
+ * connection fails.
+ */
+public class EventChannel {
+    /**
+     * A client connection that events are written to.
+     */
+    private final class Subscriber implements AsyncListener {
+        private final OutputStream outputStream;
+        private final AsyncContext asyncContext;
+
+        // The queue is also the lock for the state that follows it
+        private final ArrayDeque<byte[]> queue = new ArrayDeque<>();
+        private boolean draining = false;
+        private boolean ending = false;
+        private boolean closed = false;
+
+        public Subscriber(final OutputStream outputStream, final AsyncContext asyncContext) {
+            this.outputStream = outputStream;
+            this.asyncContext = asyncContext;
+        }
+
+        /**
+         * Queues a frame without waiting for the connection.
+         *
+         * @return <tt>false</tt> if the queue is full or the subscriber has
+         * been closed.
+         */
+        public boolean offer(final byte[] frame) {
+            synchronized (queue) {
+                if (closed || ending || queue.size() == queueSize) {
+                    return false;
+                }
+
+                queue.addLast(frame);
+                queue.notifyAll();
+
+                if (asyncContext == null || draining) {
+                    return true;
+                }
+
+                draining = true;
+            }
+
+            try {
+                asyncContext.start(this::drain);
+            } catch (IllegalStateException exception) {
+                // The request has already been completed
+                return false;
+            }
+
+            return true;
+        }
+
+        /**
+         * Writes the queued frames. If the request is asynchronous, this
+         * returns once the queue is empty; otherwise, it waits for more
+         * frames until the subscriber is closed.
+         */
+        public void drain() {
+            boolean end = false;
+
+            try {
+                while (true) {
+                    byte[][] frames;
+                    synchronized (queue) {
+                        while (queue.isEmpty() && asyncContext == null && !ending && !closed) {
+                            queue.wait();
+                        }
+
+                        if (closed || queue.isEmpty()) {
+                            draining = false;
+                            end = ending && !closed;
+                            break;
+                        }
+
+                        frames = queue.toArray(new byte[queue.size()][]);
+                        queue.clear();
+                    }
+
+                    for (byte[] frame : frames) {
+                        outputStream.write(frame);
+                    }
+
+                    outputStream.flush();
+                }
+            } catch (IOException | InterruptedException exception) {
+                unsubscribe(this);
+            }
+
+            if (end) {
+                close();
+            }
+        }
+
+        /**
+         * Ends the stream once the queued frames have been written.
+         */
+        public void end() {
+            boolean closeNow;
+            synchronized (queue) {
+                ending = true;
+                queue.notifyAll();
+                closeNow = (asyncContext != null && !draining);
+            }
+
+            if (closeNow) {
+                close();
+            }
+        }
+
+        /**
+         * Ends the stream, discarding the queued frames.
+         */
+        public void close() {
+            synchronized (queue) {
+                if (closed) {
+                    return;
+                }
+
+                closed = true;
+                queue.clear();
+                queue.notifyAll();
+            }
+
+            if (asyncContext != null) {
+                try {
+                    asyncContext.complete();
+                } catch (IllegalStateException exception) {
+                    // The request has already been completed
+                }
+            }
+        }
+
+        @Override
+        public void onComplete(final AsyncEvent event) {
+            unsubscribe(this);
+        }
+
+        @Override
+        public void onTimeout(final AsyncEvent event) {
+            unsubscribe(this);
+        }
+
+        @Override
+        public void onError(final AsyncEvent event) {
+            unsubscribe(this);
+        }
+
+        @Override
+        public void onStartAsync(final AsyncEvent event) {
+            // No-op
+        }
+    }
+
+    /**
+     * A published event, kept so that it can be sent again.
+     */
+    private static final class Frame {
+        public final long id;
+        public final byte[] content;
+
+        public Frame(final long id, final byte[] content) {
+            this.id = id;
+            this.content = content;
+        }
+    }
+
+    private final int historySize;
+    private final int queueSize;
+
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ArrayDeque<Frame> history = new ArrayDeque<>();
+    private long lastEventID = 0;
+    private boolean closed = false;
+
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * The default number of events that are kept for clients that reconnect.
+     */
+    public static final int DEFAULT_HISTORY_SIZE = 256;
+
+    /**
+     * The default number of events that can be queued for a subscriber
+     * before it is dropped.
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    public EventChannel() {
+        this(DEFAULT_HISTORY_SIZE);
+    }
+
+    /**
+     * @param historySize The number of events that are kept for clients that
+     * reconnect.
+     */
+    public EventChannel(final int historySize) {
+        this(historySize, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * @param historySize The number of events that are kept for clients that
+     * reconnect.
+     * @param queueSize The number of events that can be queued for a
+     * subscriber before it is dropped.
+     */
+    public EventChannel(final int historySize, final int queueSize) {
+        if (historySize < 0) {
+            throw new IllegalArgumentException("historySize is negative.");
+        }
+
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("queueSize must be positive.");
+        }
+
+        this.historySize = historySize;
+        this.queueSize = queueSize;
+    }
+
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * @return The number of clients that are subscribed.
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Sends an event to the subscribers.
+     *
+     * @param type The type of the event.
+     * @param data The data of the event, which is serialized as JSON, or
+     * <tt>null</tt> for none.
+     * @return The ID of the event.
+     * @throws SerializationException if the data cannot be serialized.
+     */
+    public synchronized long publish(final String type, final Object data) throws SerializationException {
+        Utils.checkNullOrEmpty(type, "type");
+
+        if (closed) {
+            throw new IllegalStateException("Channel is closed.");
+        }
+
+        long id = ++lastEventID;
+        Frame frame = new Frame(id, encode(id, type, data));
+
+        if (historySize > 0) {
+            if (history.size() == historySize) {
+                history.removeFirst();
+            }
+
+            history.addLast(frame);
+        }
+
+        send(frame.content);
+
+        return id;
+    }
+
+    /**
+     * Publishes an {@link EventQuery#ADD_EVENT add} event.
+     *
+     * @param value The item to append.
+     * @return The ID of the event.
+     * @throws SerializationException if the value cannot be serialized.
+     */
+    public long add(final Object value) throws SerializationException {
+        return publish(EventQuery.ADD_EVENT, value);
+    }
+
+    /**
+     * Publishes an {@link EventQuery#INSERT_EVENT insert} event.
+     *
+     * @param value The item to insert.
+     * @param index The index at which to insert it.
+     * @return The ID of the event.
+     * @throws SerializationException if the value cannot be serialized.
+     */
+    public long insert(final Object value, final int index) throws SerializationException {
+        HashMap<String, Object> data = new HashMap<>();
+        data.put(EventQuery.INDEX_KEY, Integer.valueOf(index));
+        data.put(EventQuery.VALUE_KEY, value);
+
+        return publish(EventQuery.INSERT_EVENT, data);
+    }
+
+    /**
+     * Publishes an {@link EventQuery#UPDATE_EVENT update} event.
+     *
+     * @param index The index of the item to replace.
+     * @param value The new item.
+     * @return The ID of the event.
+     * @throws SerializationException if the value cannot be serialized.
+     */
+    public long update(final int index, final Object value) throws SerializationException {
+        HashMap<String, Object> data = new HashMap<>();
+        data.put(EventQuery.INDEX_KEY, Integer.valueOf(index));
+        data.put(EventQuery.VALUE_KEY, value);
+
+        return publish(EventQuery.UPDATE_EVENT, data);
+    }
+
+    /**
+     * Publishes a {@link EventQuery#REMOVE_EVENT remove} event for list items.
+     *
+     * @param index The index of the first item to remove.
+     * @param count The number of items to remove.
+     * @return The ID of the event.
+     * @throws SerializationException if the event cannot be serialized.
+     */
+    public long remove(final int index, final int count) throws SerializationException {
+        HashMap<String, Object> data = new HashMap<>();
+        data.put(EventQuery.INDEX_KEY, Integer.valueOf(index));
+        data.put(EventQuery.COUNT_KEY, Integer.valueOf(count));
+
+        return publish(EventQuery.REMOVE_EVENT, data);
+    }
+
+    /**
+     * Publishes a {@link EventQuery#PUT_EVENT put} event.
+     *
+     * @param key The key of the entry.
+     * @param value The new value.
+     * @return The ID of the event.
+     * @throws SerializationException if the value cannot be serialized.
+     */
+    public long put(final String key, final Object value) throws SerializationException {
+        HashMap<String, Object> data = new HashMap<>();
+        data.put(EventQuery.KEY_KEY, key);
+        data.put(EventQuery.VALUE_KEY, value);
+
+        return publish(EventQuery.PUT_EVENT, data);
+    }
+
+    /**
+     * Publishes a {@link EventQuery#REMOVE_EVENT remove} event for a map
+     * entry.
+     *
+     * @param key The key of the entry to remove.
+     * @return The ID of the event.
+     * @throws SerializationException if the event cannot be serialized.
+     */
+    public long remove(final String key) throws SerializationException {
+        HashMap<String, Object> data = new HashMap<>();
+        data.put(EventQuery.KEY_KEY, key);
+
+        return publish(EventQuery.REMOVE_EVENT, data);
+    }
+
+    /**
+     * Publishes a {@link EventQuery#CLEAR_EVENT clear} event.
+     *
+     * @return The ID of the event.
+     * @throws SerializationException if the event cannot be serialized.
+     */
+    public long clear() throws SerializationException {
+        return publish(EventQuery.CLEAR_EVENT, null);
+    }
+
+    /**
+     * Sends a comment to the subscribers, which keeps idle connections open
+     * and drops the subscribers whose connections have failed.
+     */
+    public synchronized void sendHeartbeat() {
+        send(HEARTBEAT);
+    }
+
+    /**
+     * Ends the streams of all subscribers, once the events that are queued
+     * for them have been sent. Clients that subscribe later are answered with
+     * <tt>404 Not Found</tt>.
+     */
+    public synchronized void close() {
+        closed = true;
+
+        for (Subscriber subscriber : subscribers) {
+            subscriber.end();
+        }
+
+        subscribers.clear();
+        history.clear();
+    }
+
+    private static byte[] encode(final long id, final String type, final Object data)
+        throws SerializationException {
+        StringBuilder buf = new StringBuilder();
+        buf.append("id: ").append(id).append('\n');
+        buf.append("event: ").append(type).append('\n');
+
+        // Lines are sent as separate data fields, which the client joins
+        String json = (data == null) ? "" : JSONSerializer.toString(data);
+        for (String line : json.split("\n", -1)) {
+            buf.append("data: ").append(line).append('\n');
+        }
+
+        buf.append('\n');
+
+        return buf.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void send(final byte[] content) {
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.offer(content)) {
+                // The client has fallen behind, or has gone
+                unsubscribe(subscriber);
+            }
+        }
+    }
+
+    private void unsubscribe(final Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        subscriber.close();
+    }
+
+    /**
+     * Starts the event stream of a request, sending the events that followed
+     * the one whose ID the client sent if they have been kept, or a reset
+     * event if they have not. If the request cannot be completed
+     * asynchronously, this method returns when the stream ends.
+     */
+    void subscribe(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        if (isClosed()) {
+            response.setStatus(Query.Status.NOT_FOUND);
+            response.flushBuffer();
+            return;
+        }
+
+        response.setStatus(Query.Status.OK);
+        response.setContentType(EventQuery.MIME_TYPE + ";charset=UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.flushBuffer();
+
+        AsyncContext asyncContext = null;
+        if (request.isAsyncSupported()) {
+            asyncContext = request.startAsync();
+            asyncContext.setTimeout(0);
+        }
+
+        Subscriber subscriber = new Subscriber(response.getOutputStream(), asyncContext);
+        if (asyncContext != null) {
+            asyncContext.addListener(subscriber);
+        }
+
+        synchronized (this) {
+            if (closed) {
+                subscriber.close();
+                return;
+            }
+
+            String lastEventIDHeader = request.getHeader(EventQuery.LAST_EVENT_ID_HEADER);
+            if (lastEventIDHeader != null) {
+                long clientEventID;
+                try {
+                    clientEventID = Long.parseLong(lastEventIDHeader.trim());
+                } catch (NumberFormatException exception) {
+                    clientEventID = -1;
+                }
+
+                if (clientEventID != lastEventID) {
+                    Frame first = history.peekFirst();
+                    if (clientEventID >= 0 && clientEventID < lastEventID
+                        && first != null && first.id <= clientEventID + 1
+                        && lastEventID - clientEventID <= queueSize) {
+                        for (Frame frame : history) {
+                            if (frame.id > clientEventID) {
+                                subscriber.offer(frame.content);
+                            }
+                        }
+                    } else {
+                        try {
+                            subscriber.offer(encode(lastEventID, EventQuery.RESET_EVENT, null));
+                        } catch (SerializationException exception) {
+                            throw new IOException(exception);
+                        }
+                    }
+                }
+            }
+
+            subscribers.add(subscriber);
+        }
+
+        if (asyncContext == null) {
+            subscriber.drain();
+        }
+    }
+}
@@ -16,18 +16,27 @@
  */
 package org.apache.pivot.web.server;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
 import java.util.Enumeration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -36,13 +45,17 @@ import org.apache.pivot.collections.HashSet;
 
 /**
  * HTTP proxy that allows an unsigned applet to issue web queries to services
- * outside of its origin server.
+ * outside of its origin server. <p> Connections to the server are pooled and
+ * reused across requests, and bodies are relayed in large blocks. If the
+ * servlet is deployed with asynchronous support, a request is relayed on a
+ * thread of the proxy's own, and the container's thread is released as soon
+ * as the request has been started.
  */
 public class ProxyServlet extends HttpServlet {
     /**
-     * A set of HTTP response header names, stored in a case-insensitive manner.
+     * A set of HTTP header names, stored in a case-insensitive manner.
      */
-    private static class ResponseHeaderSet extends HashSet<String> {
+    private static class HeaderSet extends HashSet<String> {
         private static final long serialVersionUID = 3055851700567335445L;
 
         @Override
@@ -65,7 +78,13 @@ public class ProxyServlet extends HttpServlet {
     private int port = -1;
     private String path = null;
 
-    private static ResponseHeaderSet ignoreResponseHeaders = new ResponseHeaderSet();
+    private transient HttpClient client = null;
+    private transient ExecutorService executorService = null;
+
+    private static HeaderSet ignoreRequestHeaders = new HeaderSet();
+    private static HeaderSet ignoreResponseHeaders = new HeaderSet();
+
+    private static ArrayBlockingQueue<byte[]> buffers;
 
     private static final long serialVersionUID = -1794977331184160392L;
 
@@ -78,15 +97,41 @@ public class ProxyServlet extends HttpServlet {
     public static final String PORT_PARAM = "port";
     public static final String PATH_PARAM = "path";
 
-    public static final int BUFFER_SIZE = 1024;
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The number of relay buffers that are kept for reuse.
+     */
+    public static final int MAX_POOLED_BUFFERS = 64;
 
     static {
+        // Hop-by-hop headers, and the headers that the HTTP client sets itself
+        ignoreRequestHeaders.add("Connection");
+        ignoreRequestHeaders.add("Content-Length");
+        ignoreRequestHeaders.add("Date");
+        ignoreRequestHeaders.add("Expect");
+        ignoreRequestHeaders.add("From");
+        ignoreRequestHeaders.add("Host");
+        ignoreRequestHeaders.add("Keep-Alive");
+        ignoreRequestHeaders.add("Proxy-Authorization");
+        ignoreRequestHeaders.add("Proxy-Connection");
+        ignoreRequestHeaders.add("TE");
+        ignoreRequestHeaders.add("Trailer");
+        ignoreRequestHeaders.add("Transfer-Encoding");
+        ignoreRequestHeaders.add("Upgrade");
+        ignoreRequestHeaders.add("Via");
+        ignoreRequestHeaders.add("Warning");
+
+        ignoreResponseHeaders.add("Connection");
+        ignoreResponseHeaders.add("Keep-Alive");
         ignoreResponseHeaders.add("Transfer-Encoding");
+
+        buffers = new ArrayBlockingQueue<>(MAX_POOLED_BUFFERS);
     }
 
     @Override
     public void init(ServletConfig config) throws ServletException {
-        super.init();
+        super.init(config);
 
         hostname = config.getInitParameter(HOSTNAME_PARAM);
         if (hostname == null) {
@@ -100,140 +145,199 @@ public class ProxyServlet extends HttpServlet {
         if (path == null) {
             throw new ServletException("Path is required.");
         }
+
+        executorService = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, getClass().getSimpleName() + " relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .executor(executorService)
+            .build();
     }
 
     @Override
     public void destroy() {
-        // empty block
+        client = null;
+
+        if (executorService != null) {
+            executorService.shutdown();
+            executorService = null;
+        }
     }
 
     @Override
-    @SuppressWarnings({ "resource" })
     protected void service(HttpServletRequest request, HttpServletResponse response)
         throws IOException, ServletException {
-        // Construct the URL
+        // Construct the URI
         String pathLocal = this.path;
 
         String pathInfo = request.getPathInfo();
         if (pathInfo != null) {
-            pathLocal += "/" + pathInfo;
-        }
-
-        String queryString = request.getQueryString();
-        if (queryString != null) {
-            pathLocal += "?" + queryString;
+            pathLocal += pathInfo;
         }
 
-        URL url = null;
+        URI uri;
         try {
-            url = new URL(request.getScheme(), hostname, port, pathLocal);
-        } catch (MalformedURLException exception) {
+            // The path info is decoded, but the query string is not
+            String location = new URI(request.getScheme(), null, hostname, port, pathLocal, null, null)
+                .toASCIIString();
+
+            String queryString = request.getQueryString();
+            if (queryString != null) {
+                location += "?" + queryString;
+            }
+
+            uri = new URI(location);
+        } catch (URISyntaxException exception) {
             throw new ServletException("Unable to construct URL.", exception);
         }
 
         String method = request.getMethod();
 
-        // Open a connection to the URL
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod(method);
-        connection.setAllowUserInteraction(false);
-        connection.setInstanceFollowRedirects(false);
-        connection.setUseCaches(false);
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(uri);
 
-        // Write request headers to connection
+        // Write request headers
         @SuppressWarnings("unchecked")
         Enumeration<String> headerNames = request.getHeaderNames();
 
         if (headerNames != null) {
             while (headerNames.hasMoreElements()) {
                 String headerName = headerNames.nextElement();
-                @SuppressWarnings("unchecked")
-                Enumeration<String> headerValues = request.getHeaders(headerName);
 
-                while (headerValues.hasMoreElements()) {
-                    String headerValue = headerValues.nextElement();
+                if (!ignoreRequestHeaders.contains(headerName)) {
+                    @SuppressWarnings("unchecked")
+                    Enumeration<String> headerValues = request.getHeaders(headerName);
 
-                    if (connection.getRequestProperty(headerName) == null) {
-                        connection.setRequestProperty(headerName, headerValue);
-                    } else {
-                        connection.addRequestProperty(headerName, headerValue);
+                    while (headerValues.hasMoreElements()) {
+                        requestBuilder.header(headerName, headerValues.nextElement());
                     }
                 }
             }
         }
 
-        // Set the input/output state
-        connection.setDoInput(true);
-        connection.setDoOutput(method.equalsIgnoreCase(METHOD_POST)
-            || method.equalsIgnoreCase(METHOD_PUT));
-
-        // Connect to the server
-        connection.connect();
-
-        // Write the request body
-        if (connection.getDoOutput()) {
-            try (OutputStream outputStream = new BufferedOutputStream(connection.getOutputStream(), BUFFER_SIZE)) {
-                InputStream inputStream = request.getInputStream();
-
-                for (int data = inputStream.read(); data != -1; data = inputStream.read()) {
-                    outputStream.write((byte) data);
-                }
+        // Stream the request body, if any
+        BodyPublisher bodyPublisher;
+        if (method.equalsIgnoreCase(METHOD_POST) || method.equalsIgnoreCase(METHOD_PUT)) {
+            ServletInputStream inputStream = request.getInputStream();
+            bodyPublisher = BodyPublishers.ofInputStream(() -> inputStream);
+
+            int contentLength = request.getContentLength();
+            if (contentLength == 0) {
+                bodyPublisher = BodyPublishers.noBody();
+            } else if (contentLength > 0) {
+                bodyPublisher = BodyPublishers.fromPublisher(bodyPublisher, contentLength);
             }
+        } else {
+            bodyPublisher = BodyPublishers.noBody();
         }
 
-        // Set the response status
-        int status = connection.getResponseCode();
-        int statusPrefix = status / 100;
-
-        if (statusPrefix == 1 || statusPrefix == 3) {
-            throw new ServletException("Unexpected server response: " + status);
+        HttpRequest upstreamRequest;
+        try {
+            upstreamRequest = requestBuilder.method(method, bodyPublisher).build();
+        } catch (IllegalArgumentException exception) {
+            throw new ServletException("Unable to construct request.", exception);
         }
 
-        response.setStatus(status);
-
-        // Write response headers
-        // NOTE Header indexes start at 1, not 0
-        int i = 1;
-        for (String key = connection.getHeaderFieldKey(i); key != null; key = connection.getHeaderFieldKey(++i)) {
-            if (!ignoreResponseHeaders.contains(key)) {
-                String value = connection.getHeaderField(i);
-
-                if (response.containsHeader(key)) {
-                    response.addHeader(key, value);
-                } else {
-                    response.setHeader(key, value);
-                }
+        if (request.isAsyncSupported()) {
+            // Release the container's thread; the response is relayed by the
+            // client's executor once its headers have been received
+            AsyncContext asyncContext = request.startAsync();
+            asyncContext.setTimeout(0);
+
+            client.sendAsync(upstreamRequest, BodyHandlers.ofInputStream())
+                .whenComplete((upstreamResponse, throwable) -> {
+                    try {
+                        if (throwable == null) {
+                            relay(method, upstreamResponse, response);
+                        } else {
+                            throw throwable;
+                        }
+                    } catch (Throwable exception) {
+                        try {
+                            if (!response.isCommitted()) {
+                                response.sendError(HttpServletResponse.SC_BAD_GATEWAY);
+                            }
+                        } catch (IOException exception2) {
+                            // No-op
+                        }
+
+                        log("Unable to relay " + method + " " + uri + ".", exception);
+                    } finally {
+                        asyncContext.complete();
+                    }
+                });
+        } else {
+            HttpResponse<InputStream> upstreamResponse;
+            try {
+                upstreamResponse = client.send(upstreamRequest, BodyHandlers.ofInputStream());
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new ServletException("Interrupted while waiting for server response.", exception);
             }
-        }
-
-        // Read the response body
-        if (method.equalsIgnoreCase(METHOD_GET)) {
-            InputStream inputStream = null;
 
-            try {
-                try {
-                    // Response returned on input stream
-                    inputStream = connection.getInputStream();
-                } catch (Exception exception) {
-                    // Response returned on error stream
-                    inputStream = connection.getErrorStream();
-                }
+            relay(method, upstreamResponse, response);
+        }
+    }
 
-                if (inputStream != null) {
-                    inputStream = new BufferedInputStream(inputStream, BUFFER_SIZE);
+    /**
+     * Copies the status, headers and body of the server's response to the
+     * servlet response.
+     */
+    private static void relay(String method, HttpResponse<InputStream> upstreamResponse,
+        HttpServletResponse response) throws IOException, ServletException {
+        try (InputStream inputStream = upstreamResponse.body()) {
+            // Set the response status
+            int status = upstreamResponse.statusCode();
+            int statusPrefix = status / 100;
+
+            if (statusPrefix == 1 || statusPrefix == 3) {
+                throw new ServletException("Unexpected server response: " + status);
+            }
 
-                    OutputStream outputStream = response.getOutputStream();
-                    for (int data = inputStream.read(); data != -1; data = inputStream.read()) {
-                        outputStream.write((byte) data);
+            response.setStatus(status);
+
+            // Write response headers
+            HttpHeaders headers = upstreamResponse.headers();
+            for (String key : headers.map().keySet()) {
+                // Skip pseudo-headers such as ":status"
+                if (!key.startsWith(":") && !ignoreResponseHeaders.contains(key)) {
+                    for (String value : headers.allValues(key)) {
+                        if (response.containsHeader(key)) {
+                            response.addHeader(key, value);
+                        } else {
+                            response.setHeader(key, value);
+                        }
                     }
                 }
+            }
 
+            // Read the response body; it is drained even when it is not
+            // relayed, so that the connection can be reused
+            if (method.equalsIgnoreCase(METHOD_GET)) {
+                copy(inputStream, response.getOutputStream());
                 response.flushBuffer();
-            } finally {
-                if (inputStream != null) {
-                    inputStream.close();
-                }
+            } else {
+                copy(inputStream, OutputStream.nullOutputStream());
+            }
+        }
+    }
+
+    private static void copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+        byte[] buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = new byte[BUFFER_SIZE];
+        }
+
+        try {
+            for (int count = inputStream.read(buffer); count != -1; count = inputStream.read(buffer)) {
+                outputStream.write(buffer, 0, count);
             }
+        } finally {
+            buffers.offer(buffer);
         }
     }
 }
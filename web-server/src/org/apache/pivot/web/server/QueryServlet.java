@@ -16,17 +16,44 @@
  */
 package org.apache.pivot.web.server;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLDecoder;
-import java.nio.file.Files;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Enumeration;
 import java.util.Iterator;
-
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -34,12 +61,21 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.pivot.annotations.UnsupportedOperation;
 import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.HashSet;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
 import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.json.JSONSerializer;
 import org.apache.pivot.serialization.SerializationException;
 import org.apache.pivot.serialization.Serializer;
 import org.apache.pivot.util.Constants;
 import org.apache.pivot.util.ImmutableIterator;
+import org.apache.pivot.util.Utils;
+import org.apache.pivot.web.BatchQuery;
+import org.apache.pivot.web.ContentEncoding;
 import org.apache.pivot.web.Query;
+import org.apache.pivot.web.QueryCache;
 import org.apache.pivot.web.QueryDictionary;
 import org.apache.pivot.web.QueryException;
 
@@ -125,9 +161,316 @@ public abstract class QueryServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Output stream that holds back the first bytes written to it, and
+     * compresses the response once more than the compression threshold has
+     * been written. Closing the stream does not close the underlying stream.
+     */
+    private class CompressingOutputStream extends OutputStream {
+        private final OutputStream outputStream;
+        private final HttpServletResponse response;
+        private final ContentEncoding encoding;
+
+        private byte[] buffer;
+        private int count = 0;
+        private OutputStream compressedOutputStream = null;
+
+        public CompressingOutputStream(final OutputStream outputStream, final HttpServletResponse response,
+            final ContentEncoding encoding) {
+            this.outputStream = outputStream;
+            this.response = response;
+            this.encoding = encoding;
+
+            buffer = (encoding == ContentEncoding.IDENTITY) ? null : new byte[compressionThreshold];
+        }
+
+        private void startCompression() throws IOException {
+            response.setHeader(ContentEncoding.CONTENT_ENCODING_HEADER, encoding.getName());
+
+            compressedOutputStream = encoding.getOutputStream(new OutputStream() {
+                @Override
+                public void write(final int b) throws IOException {
+                    outputStream.write(b);
+                }
+
+                @Override
+                public void write(final byte[] b, final int off, final int len) throws IOException {
+                    outputStream.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    outputStream.flush();
+                }
+            }, compressionLevel);
+
+            compressedOutputStream.write(buffer, 0, count);
+            buffer = null;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            if (compressedOutputStream != null) {
+                compressedOutputStream.write(b, off, len);
+            } else if (buffer == null) {
+                outputStream.write(b, off, len);
+            } else if (count + len > buffer.length) {
+                startCompression();
+                compressedOutputStream.write(b, off, len);
+            } else {
+                System.arraycopy(b, off, buffer, count, len);
+                count += len;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (compressedOutputStream != null) {
+                compressedOutputStream.close();
+            } else {
+                if (buffer != null) {
+                    outputStream.write(buffer, 0, count);
+                    count = 0;
+                }
+
+                outputStream.flush();
+            }
+        }
+    }
+
+    /**
+     * Output stream that holds a response in memory until it is complete, so
+     * that its length can be sent in a <tt>Content-Length</tt> header. Once
+     * more than the buffer size has been written, the response is either
+     * spooled to a temporary file or, if spilling is disabled, sent as it is
+     * written without a length. Closing the stream sends the response but
+     * does not close the underlying stream.
+     */
+    private class ContentLengthOutputStream extends OutputStream {
+        private final OutputStream outputStream;
+        private final HttpServletResponse response;
+
+        private byte[] buffer = new byte[Math.min(INITIAL_BUFFER_SIZE, contentLengthBufferSize)];
+        private int count = 0;
+
+        private File spillFile = null;
+        private FileChannel spillChannel = null;
+        private OutputStream spillOutputStream = null;
+        private boolean streaming = false;
+
+        public ContentLengthOutputStream(final OutputStream outputStream, final HttpServletResponse response) {
+            this.outputStream = outputStream;
+            this.response = response;
+        }
+
+        private void overflow() throws IOException {
+            if (spillToDisk) {
+                spillFile = File.createTempFile(QueryServlet.class.getName(), null);
+                spillChannel = FileChannel.open(spillFile.toPath(), StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+                spillOutputStream = new BufferedOutputStream(Channels.newOutputStream(spillChannel),
+                    Constants.BUFFER_SIZE);
+                spillOutputStream.write(buffer, 0, count);
+            } else {
+                // Give up on the length; the container sends the response
+                // with chunked transfer coding
+                streaming = true;
+                outputStream.write(buffer, 0, count);
+            }
+
+            buffer = null;
+            count = 0;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            if (buffer != null && count + len > buffer.length) {
+                if (count + len <= contentLengthBufferSize) {
+                    buffer = Arrays.copyOf(buffer, Math.min(Math.max(buffer.length * 2, count + len),
+                        contentLengthBufferSize));
+                } else {
+                    overflow();
+                }
+            }
+
+            if (buffer != null) {
+                System.arraycopy(b, off, buffer, count, len);
+                count += len;
+            } else if (spillOutputStream != null) {
+                spillOutputStream.write(b, off, len);
+            } else {
+                outputStream.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (buffer != null) {
+                response.setContentLength(count);
+                outputStream.write(buffer, 0, count);
+                buffer = null;
+            } else if (spillOutputStream != null) {
+                try {
+                    spillOutputStream.flush();
+
+                    long length = spillChannel.size();
+                    response.setHeader(Constants.CONTENT_LENGTH_HEADER, String.valueOf(length));
+
+                    // Let the channel copy the file, which avoids copying
+                    // it through the heap where the platform allows
+                    WritableByteChannel channel = Channels.newChannel(outputStream);
+                    for (long position = 0; position < length;) {
+                        position += spillChannel.transferTo(position, length - position, channel);
+                    }
+                } finally {
+                    discard();
+                }
+            }
+
+            outputStream.flush();
+        }
+
+        /**
+         * Releases the buffer and any temporary file without sending them.
+         */
+        public void discard() throws IOException {
+            buffer = null;
+
+            if (spillChannel != null) {
+                try {
+                    spillChannel.close();
+                } finally {
+                    spillChannel = null;
+                    spillOutputStream = null;
+                    spillFile.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Output stream that counts the bytes written to a response.
+     */
+    private class CountingOutputStream extends FilterOutputStream {
+        public CountingOutputStream(final OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            bytesServed.incrementAndGet();
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+            bytesServed.addAndGet(len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * The request properties that the queries of a batch share.
+     */
+    private static class BatchContext {
+        public final String hostname;
+        public final Integer port;
+        public final String contextPath;
+        public final String servletPath;
+        public final Boolean secure;
+        public final QueryDictionary requestHeaders;
+
+        public BatchContext(final String hostname, final Integer port, final String contextPath,
+            final String servletPath, final Boolean secure, final QueryDictionary requestHeaders) {
+            this.hostname = hostname;
+            this.port = port;
+            this.contextPath = contextPath;
+            this.servletPath = servletPath;
+            this.secure = secure;
+            this.requestHeaders = requestHeaders;
+        }
+    }
+
+    /**
+     * The thread local request properties of a request that is completed
+     * asynchronously, so that they can be set on the completing thread.
+     */
+    private class AsyncRequest {
+        private final String hostnameValue = hostname.get();
+        private final Integer portValue = port.get();
+        private final String contextPathValue = contextPath.get();
+        private final String servletPathValue = servletPath.get();
+        private final Boolean secureValue = secure.get();
+        private final QueryDictionary parametersValue = parameters.get();
+        private final QueryDictionary requestHeadersValue = requestHeaders.get();
+        private final QueryDictionary responseHeadersValue = responseHeaders.get();
+
+        public void install() {
+            hostname.set(hostnameValue);
+            port.set(portValue);
+            contextPath.set(contextPathValue);
+            servletPath.set(servletPathValue);
+            secure.set(secureValue);
+            parameters.set(parametersValue);
+            requestHeaders.set(requestHeadersValue);
+            responseHeaders.set(responseHeadersValue);
+        }
+
+        public void uninstall() {
+            hostname.remove();
+            port.remove();
+            contextPath.remove();
+            servletPath.remove();
+            secure.remove();
+            parameters.remove();
+            requestHeaders.remove();
+            responseHeaders.remove();
+        }
+    }
+
+    /**
+     * Writes the response for the result of an HTTP handler method.
+     */
+    private interface Responder<T> {
+        void respond(T result) throws IOException, ServletException;
+    }
+
     private static final long serialVersionUID = 4881638232902478092L;
 
     private boolean determineContentLength = false;
+    private int contentLengthBufferSize = DEFAULT_CONTENT_LENGTH_BUFFER_SIZE;
+    private boolean spillToDisk = true;
+
+    private final AtomicLong responseCount = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+    private final AtomicLong serializationTime = new AtomicLong();
+
+    private int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    private boolean generateETags = false;
+
+    private boolean batchEnabled = false;
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private transient ExecutorService batchExecutorService = null;
+    private transient boolean defaultBatchExecutorService = false;
+
+    private long asyncTimeout = DEFAULT_ASYNC_TIMEOUT;
 
     private transient ThreadLocal<String> hostname = new ThreadLocal<>();
     private transient ThreadLocal<Integer> port = new ThreadLocal<>();
@@ -139,6 +482,176 @@ public abstract class QueryServlet extends HttpServlet {
     private transient ThreadLocal<QueryDictionary> requestHeaders = new ThreadLocal<>();
     private transient ThreadLocal<QueryDictionary> responseHeaders = new ThreadLocal<>();
 
+    private transient ThreadLocal<Boolean> completingAsynchronously = new ThreadLocal<>();
+
+    /**
+     * The default compression threshold, in bytes.
+     */
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+
+    /**
+     * The default size up to which responses are held in memory to determine
+     * their length, in bytes.
+     */
+    public static final int DEFAULT_CONTENT_LENGTH_BUFFER_SIZE = 1024 * 1024;
+
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+    // Headers of a batch request that describe its body, so are not passed
+    // on to the queries in it; in lower case
+    private static final HashSet<String> BATCH_ENTITY_HEADERS = new HashSet<>("content-encoding",
+        "content-language", "content-length", "content-location", "content-md5", "content-range",
+        "content-type", "transfer-encoding");
+
+    /**
+     * The default maximum number of queries in a batch.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+    /**
+     * The default time after which a request that is completed
+     * asynchronously times out, in milliseconds.
+     */
+    public static final long DEFAULT_ASYNC_TIMEOUT = 30000;
+
+    /**
+     * @return {@code true} if GET responses are sent with a
+     * <tt>Content-Length</tt> header.
+     * @see #setDetermineContentLength(boolean)
+     */
+    public boolean getDetermineContentLength() {
+        return determineContentLength;
+    }
+
+    /**
+     * Sets whether GET responses are sent with a <tt>Content-Length</tt>
+     * header, which lets clients report the progress of a download. The
+     * length is only known once the result has been serialized, so responses
+     * are held in memory up to the {@link #getContentLengthBufferSize() buffer
+     * size}, and beyond that either spooled to a temporary file or sent
+     * without a length, depending on {@link #getSpillToDisk()}.
+     *
+     * @param determineContentLength Whether to send the content length.
+     */
+    public void setDetermineContentLength(final boolean determineContentLength) {
+        this.determineContentLength = determineContentLength;
+    }
+
+    /**
+     * @return The size up to which responses are held in memory to determine
+     * their length, in bytes.
+     */
+    public int getContentLengthBufferSize() {
+        return contentLengthBufferSize;
+    }
+
+    public void setContentLengthBufferSize(final int contentLengthBufferSize) {
+        Utils.checkPositive(contentLengthBufferSize, "contentLengthBufferSize");
+
+        this.contentLengthBufferSize = contentLengthBufferSize;
+    }
+
+    /**
+     * @return {@code true} if responses that are larger than the buffer size
+     * are spooled to a temporary file to determine their length (the
+     * default); {@code false} if they are sent without a length, using
+     * chunked transfer coding.
+     */
+    public boolean getSpillToDisk() {
+        return spillToDisk;
+    }
+
+    public void setSpillToDisk(final boolean spillToDisk) {
+        this.spillToDisk = spillToDisk;
+    }
+
+    /**
+     * @return The number of GET responses with a body that have been sent.
+     */
+    public long getResponseCount() {
+        return responseCount.get();
+    }
+
+    /**
+     * @return The number of bytes of GET response bodies that have been
+     * sent, after compression.
+     */
+    public long getBytesServed() {
+        return bytesServed.get();
+    }
+
+    /**
+     * Returns the total time spent serializing GET responses. When responses
+     * are not buffered, this includes the time spent waiting for the client
+     * to receive them.
+     *
+     * @return The serialization time, in nanoseconds.
+     */
+    public long getSerializationTime() {
+        return serializationTime.get();
+    }
+
+    /**
+     * Resets the response metrics to zero.
+     */
+    public void resetMetrics() {
+        responseCount.set(0);
+        bytesServed.set(0);
+        serializationTime.set(0);
+    }
+
+    /**
+     * Returns the size above which GET responses are compressed, for clients
+     * that accept a compressed response.
+     *
+     * @return The compression threshold in bytes, or <tt>-1</tt> if responses
+     * are never compressed.
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Sets the size above which GET responses are compressed. Responses
+     * smaller than this are sent as they are, since the compression
+     * headers would outweigh the savings.
+     *
+     * @param compressionThreshold The compression threshold in bytes, or
+     * <tt>-1</tt> to disable compression.
+     */
+    public void setCompressionThreshold(final int compressionThreshold) {
+        if (compressionThreshold < -1) {
+            throw new IllegalArgumentException("Invalid compression threshold " + compressionThreshold + ".");
+        }
+
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * @return The compression level used for responses.
+     * @see #setCompressionLevel(int)
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the compression level used for responses. Lower levels use less
+     * CPU time per response at the cost of larger responses.
+     *
+     * @param compressionLevel A level from {@link Deflater#NO_COMPRESSION} to
+     * {@link Deflater#BEST_COMPRESSION}, or {@link Deflater#DEFAULT_COMPRESSION}.
+     * @throws IllegalArgumentException if the level is out of range.
+     */
+    public void setCompressionLevel(final int compressionLevel) {
+        if (compressionLevel != Deflater.DEFAULT_COMPRESSION
+            && (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Invalid compression level " + compressionLevel + ".");
+        }
+
+        this.compressionLevel = compressionLevel;
+    }
+
     /**
      * Gets the host name that was requested.
      * @return The host name from the request.
@@ -147,6 +660,142 @@ public abstract class QueryServlet extends HttpServlet {
         return hostname.get();
     }
 
+    /**
+     * Tells whether GET responses are given an entity tag computed from their
+     * content, when {@link #getETag(Path)} does not supply one.
+     *
+     * @return {@code true} if entity tags are generated.
+     */
+    public boolean getGenerateETags() {
+        return generateETags;
+    }
+
+    /**
+     * Sets whether GET responses are given an entity tag computed from their
+     * content. Each response is then serialized in memory before it is sent,
+     * and a conditional request whose <tt>If-None-Match</tt> header matches
+     * is answered with <tt>304 Not Modified</tt> and no body. This saves
+     * bandwidth, but not the cost of producing the response; override
+     * {@link #getETag(Path)} to avoid that as well.
+     *
+     * @param generateETags Whether to generate entity tags.
+     */
+    public void setGenerateETags(final boolean generateETags) {
+        this.generateETags = generateETags;
+    }
+
+    /**
+     * @return {@code true} if the servlet executes batches of queries sent
+     * by a {@link BatchQuery}.
+     */
+    public boolean isBatchEnabled() {
+        return batchEnabled;
+    }
+
+    /**
+     * Sets whether the servlet executes batches of queries sent by a
+     * {@link BatchQuery}. A batch is a POST whose content type is
+     * {@link BatchQuery#MIME_TYPE}; each query in it is dispatched to
+     * {@link #doGetAsync(Path)}, {@link #doPostAsync(Path, Object)},
+     * {@link #doPutAsync(Path, Object)} or {@link #doDeleteAsync(Path)} as if
+     * it had been sent on its own, except that entity tags are not checked,
+     * and the batch thread waits for the returned future.
+     * Consecutive GET queries are executed in parallel; other queries are
+     * executed one at a time, in order, so that later queries see their
+     * effects. The responses are written in order as they become available.
+     * <p> Since the queries of a batch may run on other threads than the
+     * request thread, {@link #prepare()} and {@link #dispose()} are called
+     * around each of them, in addition to the batch request itself.
+     *
+     * @param batchEnabled Whether batches are executed.
+     */
+    public void setBatchEnabled(final boolean batchEnabled) {
+        this.batchEnabled = batchEnabled;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of queries in a batch. Larger batches are
+     * rejected with <tt>413 Request Entity Too Large</tt>.
+     *
+     * @param maxBatchSize The maximum number of queries.
+     */
+    public void setMaxBatchSize(final int maxBatchSize) {
+        Utils.checkPositive(maxBatchSize, "maxBatchSize");
+
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Returns the executor that the queries of batches are executed on. By
+     * default, a pool with one thread per processor is created when it is
+     * first needed, and shut down when the servlet is destroyed.
+     *
+     * @return The executor for batch queries.
+     */
+    public synchronized ExecutorService getBatchExecutorService() {
+        if (batchExecutorService == null) {
+            batchExecutorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, getClass().getName() + " batch");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            defaultBatchExecutorService = true;
+        }
+
+        return batchExecutorService;
+    }
+
+    /**
+     * Sets the executor that the queries of batches are executed on. The
+     * servlet does not shut it down.
+     *
+     * @param batchExecutorService The executor for batch queries.
+     */
+    public synchronized void setBatchExecutorService(final ExecutorService batchExecutorService) {
+        Utils.checkNull(batchExecutorService, "batchExecutorService");
+
+        if (defaultBatchExecutorService) {
+            this.batchExecutorService.shutdown();
+            defaultBatchExecutorService = false;
+        }
+
+        this.batchExecutorService = batchExecutorService;
+    }
+
+    public long getAsyncTimeout() {
+        return asyncTimeout;
+    }
+
+    /**
+     * Sets the time after which a request whose handler has not completed its
+     * future is answered with <tt>503 Service Unavailable</tt>. This only
+     * applies to requests that are completed asynchronously.
+     *
+     * @param asyncTimeout The timeout in milliseconds, or zero or less for no
+     * timeout.
+     */
+    public void setAsyncTimeout(final long asyncTimeout) {
+        this.asyncTimeout = asyncTimeout;
+    }
+
+    @Override
+    public void destroy() {
+        synchronized (this) {
+            if (defaultBatchExecutorService) {
+                batchExecutorService.shutdown();
+                batchExecutorService = null;
+                defaultBatchExecutorService = false;
+            }
+        }
+
+        super.destroy();
+    }
+
     /**
      * Returns the Internet Protocol (IP) port number of the interface on which
      * the request was received.
@@ -268,6 +917,39 @@ public abstract class QueryServlet extends HttpServlet {
         // No-op
     }
 
+    /**
+     * Returns the entity tag of the resource at a path, such as a version
+     * number or a hash of its content. This method is called before
+     * {@link #doGet(Path)}, which is not called at all if the tag matches the
+     * request's <tt>If-None-Match</tt> header. <p> The default implementation
+     * returns <tt>null</tt>.
+     *
+     * @param path The request path.
+     * @return The entity tag, including its quotes and any <tt>W/</tt>
+     * prefix, or <tt>null</tt> if the resource has none.
+     * @throws QueryException on any error.
+     */
+    protected String getETag(final Path path) throws QueryException {
+        return null;
+    }
+
+    /**
+     * Returns the channel that pushes events to the clients that GET a path,
+     * if any. This method is called after {@link #validate(Query.Method, Path)};
+     * if it returns a channel, the client is subscribed to it, and
+     * {@link #getETag(Path)} and {@link #doGet(Path)} are not called. <p> The
+     * default implementation returns <tt>null</tt>.
+     *
+     * @param path The request path.
+     * @return The event channel for the path, or <tt>null</tt> if the path is
+     * not an event stream.
+     * @throws QueryException on any error.
+     * @see org.apache.pivot.web.EventQuery
+     */
+    protected EventChannel getEventChannel(final Path path) throws QueryException {
+        return null;
+    }
+
     /**
      * Handles an HTTP GET request. The default implementation throws an HTTP
      * 405 query exception.
@@ -319,6 +1001,79 @@ public abstract class QueryServlet extends HttpServlet {
         throw new QueryException(Query.Status.METHOD_NOT_ALLOWED);
     }
 
+    /**
+     * Handles an HTTP GET request without blocking the request thread. The
+     * request thread is released as soon as this method returns, and the
+     * response is sent when the returned future completes, by the thread
+     * that completes it; a future that completes with a
+     * {@link QueryException} sends its status. <p> The thread local request
+     * properties, such as {@link #getParameters()} and
+     * {@link #getResponseHeaders()}, are only available to the code that runs
+     * before this method returns, and while the response is being sent; code
+     * that runs in between must use the values it read beforehand. <p> The
+     * request is only completed asynchronously if the servlet is deployed
+     * with asynchronous support and the future is not already done;
+     * otherwise, the request thread waits for it. The default
+     * implementation calls {@link #doGet(Path)} and returns its result as a
+     * completed future.
+     *
+     * @param path The request path.
+     * @return A future for the result of the GET.
+     * @throws QueryException on any error.
+     * @see #setAsyncTimeout(long)
+     */
+    protected CompletableFuture<Object> doGetAsync(final Path path) throws QueryException {
+        return CompletableFuture.completedFuture(doGet(path));
+    }
+
+    /**
+     * Handles an HTTP POST request without blocking the request thread, as
+     * described for {@link #doGetAsync(Path)}. The request data has already
+     * been read. The default implementation calls
+     * {@link #doPost(Path, Object)} and returns its result as a completed
+     * future.
+     *
+     * @param path The path of this request.
+     * @param value The value parsed from the POST request data.
+     * @return A future for the location of the created resource, or for
+     * <tt>null</tt> if the operation did not result in the creation of a
+     * resource.
+     * @throws QueryException on errors.
+     */
+    protected CompletableFuture<URL> doPostAsync(final Path path, final Object value) throws QueryException {
+        return CompletableFuture.completedFuture(doPost(path, value));
+    }
+
+    /**
+     * Handles an HTTP PUT request without blocking the request thread, as
+     * described for {@link #doGetAsync(Path)}. The default implementation
+     * calls {@link #doPut(Path, Object)} and returns its result as a
+     * completed future.
+     *
+     * @param path The server path for this request.
+     * @param value The value parsed from the PUT request data.
+     * @return A future for whether the operation resulted in the creation of
+     * a resource.
+     * @throws QueryException on any error.
+     */
+    protected CompletableFuture<Boolean> doPutAsync(final Path path, final Object value) throws QueryException {
+        return CompletableFuture.completedFuture(Boolean.valueOf(doPut(path, value)));
+    }
+
+    /**
+     * Handles an HTTP DELETE request without blocking the request thread, as
+     * described for {@link #doGetAsync(Path)}. The default implementation
+     * calls {@link #doDelete(Path)} and returns a completed future.
+     *
+     * @param path The server path for this request.
+     * @return A future that completes when the resource has been deleted.
+     * @throws QueryException if there was a problem.
+     */
+    protected CompletableFuture<Void> doDeleteAsync(final Path path) throws QueryException {
+        doDelete(path);
+        return CompletableFuture.completedFuture(null);
+    }
+
     /**
      * Creates a serializer that will be used to serialize the current request
      * data.
@@ -399,23 +1154,58 @@ public abstract class QueryServlet extends HttpServlet {
             requestHeaders.remove();
             responseHeaders.remove();
 
-            // Clean up any allocated resources
-            dispose();
+            // Clean up any allocated resources, unless the response is
+            // sent asynchronously, in which case this happens once it has
+            // been sent
+            if (completingAsynchronously.get() == null) {
+                dispose();
+            }
+
+            completingAsynchronously.remove();
         }
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     protected final void doGet(final HttpServletRequest request, final HttpServletResponse response)
         throws IOException, ServletException {
         Path path = getPath(request);
 
-        Object result = null;
-        Serializer<Object> serializer = null;
+        String eTag;
+        CompletableFuture<Object> future;
 
         try {
             validate(Query.Method.GET, path);
-            result = doGet(path);
+
+            EventChannel eventChannel = getEventChannel(path);
+            if (eventChannel != null) {
+                setResponseHeaders(response);
+                eventChannel.subscribe(request, response);
+                return;
+            }
+
+            eTag = getETag(path);
+            if (eTag != null && isNotModified(request, eTag)) {
+                sendNotModified(response, eTag);
+                return;
+            }
+
+            future = doGetAsync(path);
+        } catch (QueryException exception) {
+            response.setStatus(exception.getStatus());
+            response.flushBuffer();
+            return;
+        }
+
+        respond(request, response, future, result -> respondToGet(request, response, path, eTag, result));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void respondToGet(final HttpServletRequest request, final HttpServletResponse response,
+        final Path path, final String eTagArgument, final Object result) throws IOException, ServletException {
+        String eTag = eTagArgument;
+
+        Serializer<Object> serializer = null;
+        try {
             serializer = (Serializer<Object>) createSerializer(Query.Method.GET, path);
         } catch (QueryException exception) {
             response.setStatus(exception.getStatus());
@@ -423,42 +1213,78 @@ public abstract class QueryServlet extends HttpServlet {
         }
 
         if (!response.isCommitted() && serializer != null) {
+            responseCount.incrementAndGet();
+
+            // Serialize the result up front to compute its entity tag
+            byte[] content = null;
+            if (eTag == null && generateETags) {
+                long start = System.nanoTime();
+
+                ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+                try {
+                    serializer.writeObject(result, byteArrayOutputStream);
+                } catch (SerializationException exception) {
+                    throw new ServletException(exception);
+                } finally {
+                    serializationTime.addAndGet(System.nanoTime() - start);
+                }
+
+                content = byteArrayOutputStream.toByteArray();
+                eTag = computeETag(content);
+
+                if (isNotModified(request, eTag)) {
+                    sendNotModified(response, eTag);
+                    return;
+                }
+            }
+
             response.setStatus(Query.Status.OK);
             setResponseHeaders(response);
 
+            if (eTag != null) {
+                response.setHeader(QueryCache.ETAG_HEADER, eTag);
+            }
+
             response.setContentType(serializer.getMIMEType(result));
 
-            OutputStream responseOutputStream = response.getOutputStream();
+            // Choose a content coding that the client accepts
+            ContentEncoding encoding = ContentEncoding.IDENTITY;
+            if (compressionThreshold >= 0) {
+                response.addHeader("Vary", ContentEncoding.ACCEPT_ENCODING_HEADER);
+                encoding = ContentEncoding.negotiate(request.getHeader(ContentEncoding.ACCEPT_ENCODING_HEADER));
+            }
 
-            if (determineContentLength) {
-                File tempFile = File.createTempFile(getClass().getName(), null);
+            OutputStream responseOutputStream = new CountingOutputStream(response.getOutputStream());
 
-                // Serialize the result to an intermediary file
-                try (OutputStream fileOutputStream = Files.newOutputStream(tempFile.toPath())) {
-                    serializer.writeObject(result, fileOutputStream);
-                } catch (SerializationException exception) {
-                    throw new ServletException(exception);
+            if (content != null && (encoding == ContentEncoding.IDENTITY || content.length <= compressionThreshold)) {
+                // The content is already serialized and will be sent as it is
+                response.setContentLength(content.length);
+                responseOutputStream.write(content);
+            } else {
+                ContentLengthOutputStream lengthOutputStream = null;
+                if (determineContentLength) {
+                    lengthOutputStream = new ContentLengthOutputStream(responseOutputStream, response);
                 }
 
-                // Set the content length header
-                response.setHeader(Constants.CONTENT_LENGTH_HEADER, String.valueOf(tempFile.length()));
-
-                // Write the contents of the file out to the response
-                try (InputStream fileInputStream = Files.newInputStream(tempFile.toPath())) {
-                    byte[] buffer = new byte[1024];
-                    int nBytes;
-                    do {
-                        nBytes = fileInputStream.read(buffer);
-                        if (nBytes > 0) {
-                            responseOutputStream.write(buffer, 0, nBytes);
-                        }
-                    } while (nBytes != -1);
-                }
-            } else {
+                long start = System.nanoTime();
+
                 try {
-                    serializer.writeObject(result, responseOutputStream);
+                    try (OutputStream outputStream = new CompressingOutputStream((lengthOutputStream == null)
+                        ? responseOutputStream : lengthOutputStream, response, encoding)) {
+                        writeResult(serializer, result, content, outputStream);
+                    }
+
+                    if (lengthOutputStream != null) {
+                        lengthOutputStream.close();
+                    }
                 } catch (SerializationException exception) {
                     throw new ServletException(exception);
+                } finally {
+                    if (lengthOutputStream != null) {
+                        lengthOutputStream.discard();
+                    }
+
+                    serializationTime.addAndGet(System.nanoTime() - start);
                 }
             }
 
@@ -469,27 +1295,36 @@ public abstract class QueryServlet extends HttpServlet {
     @Override
     protected final void doPost(final HttpServletRequest request, final HttpServletResponse response)
         throws IOException, ServletException {
+        String contentType = request.getContentType();
+        if (batchEnabled && contentType != null && contentType.startsWith(BatchQuery.MIME_TYPE)) {
+            doBatch(request, response);
+            return;
+        }
+
         Path path = getPath(request);
 
-        URL location = null;
+        CompletableFuture<URL> future;
         try {
             validate(Query.Method.POST, path);
 
             Object value = null;
             if (request.getContentLength() > 0) {
                 Serializer<?> serializer = createSerializer(Query.Method.POST, path);
-                value = serializer.readObject(request.getInputStream());
+                try (InputStream inputStream = getInputStream(request)) {
+                    value = serializer.readObject(inputStream);
+                }
             }
 
-            location = doPost(path, value);
+            future = doPostAsync(path, value);
         } catch (SerializationException exception) {
             throw new ServletException(exception);
         } catch (QueryException exception) {
             response.setStatus(exception.getStatus());
             response.flushBuffer();
+            return;
         }
 
-        if (!response.isCommitted()) {
+        respond(request, response, future, location -> {
             if (location == null) {
                 response.setStatus(Query.Status.NO_CONTENT);
             } else {
@@ -499,7 +1334,7 @@ public abstract class QueryServlet extends HttpServlet {
 
             setResponseHeaders(response);
             response.setContentLength(0);
-        }
+        });
     }
 
     @Override
@@ -507,50 +1342,55 @@ public abstract class QueryServlet extends HttpServlet {
         throws IOException, ServletException {
         Path path = getPath(request);
 
-        boolean created = false;
+        CompletableFuture<Boolean> future;
         try {
             validate(Query.Method.PUT, path);
 
             Object value = null;
             if (request.getContentLength() > 0) {
                 Serializer<?> serializer = createSerializer(Query.Method.PUT, path);
-                value = serializer.readObject(request.getInputStream());
+                try (InputStream inputStream = getInputStream(request)) {
+                    value = serializer.readObject(inputStream);
+                }
             }
 
-            created = doPut(path, value);
+            future = doPutAsync(path, value);
         } catch (SerializationException exception) {
             throw new ServletException(exception);
         } catch (QueryException exception) {
             response.setStatus(exception.getStatus());
             response.flushBuffer();
+            return;
         }
 
-        if (!response.isCommitted()) {
-            response.setStatus(created ? Query.Status.CREATED : Query.Status.NO_CONTENT);
+        respond(request, response, future, created -> {
+            response.setStatus(created.booleanValue() ? Query.Status.CREATED : Query.Status.NO_CONTENT);
             setResponseHeaders(response);
             response.setContentLength(0);
             response.flushBuffer();
-        }
+        });
     }
 
     @Override
     protected final void doDelete(final HttpServletRequest request, final HttpServletResponse response)
         throws IOException, ServletException {
+        CompletableFuture<Void> future;
         try {
             Path path = getPath(request);
             validate(Query.Method.DELETE, path);
-            doDelete(path);
+            future = doDeleteAsync(path);
         } catch (QueryException exception) {
             response.setStatus(exception.getStatus());
             response.flushBuffer();
+            return;
         }
 
-        if (!response.isCommitted()) {
+        respond(request, response, future, result -> {
             response.setStatus(204);
             setResponseHeaders(response);
             response.setContentLength(0);
             response.flushBuffer();
-        }
+        });
     }
 
     @Override
@@ -574,6 +1414,401 @@ public abstract class QueryServlet extends HttpServlet {
         response.flushBuffer();
     }
 
+    @SuppressWarnings("unchecked")
+    private void doBatch(final HttpServletRequest request, final HttpServletResponse response)
+        throws IOException, ServletException {
+        List<Object> items;
+
+        try (InputStream inputStream = getInputStream(request)) {
+            items = (List<Object>) new JSONSerializer().readObject(inputStream);
+        } catch (QueryException exception) {
+            response.setStatus(exception.getStatus());
+            response.flushBuffer();
+            return;
+        } catch (SerializationException | ClassCastException exception) {
+            response.setStatus(Query.Status.BAD_REQUEST);
+            response.flushBuffer();
+            return;
+        }
+
+        if (items.getLength() > maxBatchSize) {
+            response.setStatus(Query.Status.REQUEST_ENTITY_TOO_LARGE);
+            response.flushBuffer();
+            return;
+        }
+
+        BatchContext context = new BatchContext(hostname.get(), port.get(), contextPath.get(),
+            servletPath.get(), secure.get(), requestHeaders.get());
+        ExecutorService executorService = getBatchExecutorService();
+
+        response.setStatus(Query.Status.OK);
+        setResponseHeaders(response);
+        response.setContentType(BatchQuery.MIME_TYPE);
+
+        ContentEncoding encoding = ContentEncoding.IDENTITY;
+        if (compressionThreshold >= 0) {
+            response.addHeader("Vary", ContentEncoding.ACCEPT_ENCODING_HEADER);
+            encoding = ContentEncoding.negotiate(request.getHeader(ContentEncoding.ACCEPT_ENCODING_HEADER));
+        }
+
+        JSONSerializer serializer = new JSONSerializer();
+        serializer.setAlwaysDelimitMapKeys(true);
+
+        try (OutputStream outputStream = new CompressingOutputStream(response.getOutputStream(), response,
+            encoding); Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)) {
+            writer.write('[');
+
+            int i = 0;
+            int n = items.getLength();
+            while (i < n) {
+                // Execute a run of GET queries in parallel, and any other
+                // query on its own
+                int end = i + 1;
+                if (Query.Method.GET.toString().equals(getItemMethod(items.get(i)))) {
+                    while (end < n && Query.Method.GET.toString().equals(getItemMethod(items.get(end)))) {
+                        end++;
+                    }
+                }
+
+                ArrayList<Future<Map<String, Object>>> futures = new ArrayList<>(end - i);
+                for (int j = i; j < end; j++) {
+                    Object item = items.get(j);
+                    futures.add(executorService.submit(() -> executeBatchItem(context, item)));
+                }
+
+                for (int j = 0; j < futures.getLength(); j++) {
+                    Map<String, Object> itemResponse;
+                    try {
+                        itemResponse = futures.get(j).get();
+                    } catch (InterruptedException | ExecutionException exception) {
+                        throw new ServletException(exception);
+                    }
+
+                    if (i + j > 0) {
+                        writer.write(',');
+                    }
+
+                    serializer.writeObject(itemResponse, writer);
+                    writer.flush();
+                }
+
+                i = end;
+            }
+
+            writer.write(']');
+        } catch (SerializationException exception) {
+            throw new ServletException(exception);
+        }
+
+        response.flushBuffer();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String getItemMethod(final Object item) {
+        Object method = (item instanceof Map<?, ?>) ? ((Map<String, Object>) item).get(BatchQuery.METHOD_KEY) : null;
+        return (method instanceof String) ? (String) method : null;
+    }
+
+    /**
+     * Executes one query of a batch, with the thread local request
+     * properties set as for a query sent on its own.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> executeBatchItem(final BatchContext context, final Object item) {
+        HashMap<String, Object> itemResponse = new HashMap<>();
+        QueryDictionary itemResponseHeaders = new QueryDictionary(false);
+        int status;
+
+        hostname.set(context.hostname);
+        port.set(context.port);
+        contextPath.set(context.contextPath);
+        servletPath.set(context.servletPath);
+        secure.set(context.secure);
+        parameters.set(new QueryDictionary(true));
+        requestHeaders.set(new QueryDictionary(false));
+        responseHeaders.set(itemResponseHeaders);
+
+        try {
+            prepare();
+
+            try {
+                Map<String, Object> itemRequest = (Map<String, Object>) item;
+                Query.Method method;
+                try {
+                    method = Query.Method.valueOf((String) itemRequest.get(BatchQuery.METHOD_KEY));
+                } catch (IllegalArgumentException | NullPointerException exception) {
+                    throw new QueryException(Query.Status.METHOD_NOT_ALLOWED);
+                }
+
+                copyItemValues(context.requestHeaders, itemRequest.get(BatchQuery.HEADERS_KEY),
+                    requestHeaders.get());
+                copyItemValues(null, itemRequest.get(BatchQuery.PARAMETERS_KEY), parameters.get());
+
+                Path path = getItemPath(context, (String) itemRequest.get(BatchQuery.PATH_KEY));
+                validate(method, path);
+
+                switch (method) {
+                    case GET:
+                        Object result = await(doGetAsync(path));
+                        Serializer<Object> serializer = (Serializer<Object>) createSerializer(method, path);
+
+                        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                        serializer.writeObject(result, outputStream);
+
+                        itemResponseHeaders.put(Constants.CONTENT_TYPE_HEADER, serializer.getMIMEType(result));
+                        itemResponse.put(BatchQuery.BODY_KEY,
+                            Base64.getEncoder().encodeToString(outputStream.toByteArray()));
+                        status = Query.Status.OK;
+                        break;
+
+                    case POST:
+                        URL location = await(doPostAsync(path, readItemValue(method, path, itemRequest)));
+                        if (location == null) {
+                            status = Query.Status.NO_CONTENT;
+                        } else {
+                            itemResponseHeaders.put(Constants.LOCATION_HEADER, location.toString());
+                            status = Query.Status.CREATED;
+                        }
+                        break;
+
+                    case PUT:
+                        boolean created = await(doPutAsync(path, readItemValue(method, path, itemRequest)))
+                            .booleanValue();
+                        status = created ? Query.Status.CREATED : Query.Status.NO_CONTENT;
+                        break;
+
+                    case DELETE:
+                        await(doDeleteAsync(path));
+                        status = Query.Status.NO_CONTENT;
+                        break;
+
+                    default:
+                        throw new QueryException(Query.Status.METHOD_NOT_ALLOWED);
+                }
+            } catch (QueryException exception) {
+                status = exception.getStatus();
+                itemResponse.remove(BatchQuery.BODY_KEY);
+            } catch (SerializationException | ClassCastException | IllegalArgumentException exception) {
+                status = Query.Status.BAD_REQUEST;
+                itemResponse.remove(BatchQuery.BODY_KEY);
+            } catch (IOException | RuntimeException exception) {
+                System.err.println(exception);
+                status = Query.Status.INTERNAL_SERVER_ERROR;
+                itemResponse.remove(BatchQuery.BODY_KEY);
+            } finally {
+                dispose();
+            }
+        } catch (ServletException exception) {
+            System.err.println(exception);
+            status = Query.Status.INTERNAL_SERVER_ERROR;
+            itemResponse.remove(BatchQuery.BODY_KEY);
+        } finally {
+            hostname.remove();
+            port.remove();
+            contextPath.remove();
+            servletPath.remove();
+            secure.remove();
+            parameters.remove();
+            requestHeaders.remove();
+            responseHeaders.remove();
+        }
+
+        HashMap<String, Object> headers = new HashMap<>();
+        for (String key : itemResponseHeaders) {
+            ArrayList<Object> values = new ArrayList<>();
+            for (int i = 0, n = itemResponseHeaders.getLength(key); i < n; i++) {
+                values.add(itemResponseHeaders.get(key, i));
+            }
+
+            headers.put(key, values);
+        }
+
+        itemResponse.put(BatchQuery.STATUS_KEY, Integer.valueOf(status));
+        itemResponse.put(BatchQuery.HEADERS_KEY, headers);
+
+        return itemResponse;
+    }
+
+    /**
+     * Copies the names and value lists of a batch item into a dictionary,
+     * after the values of a base dictionary, other than the headers that
+     * describe the body of the batch request.
+     */
+    @SuppressWarnings("unchecked")
+    private static void copyItemValues(final QueryDictionary base, final Object values,
+        final QueryDictionary dictionary) {
+        if (base != null) {
+            for (String key : base) {
+                if (BATCH_ENTITY_HEADERS.contains(key.toLowerCase())) {
+                    continue;
+                }
+
+                for (int i = 0, n = base.getLength(key); i < n; i++) {
+                    dictionary.add(key, base.get(key, i));
+                }
+            }
+        }
+
+        if (values != null) {
+            Map<String, Object> map = (Map<String, Object>) values;
+            for (String key : map) {
+                // The item's own values replace those of the batch request
+                dictionary.remove(key);
+
+                for (Object value : (List<Object>) map.get(key)) {
+                    dictionary.add(key, (String) value);
+                }
+            }
+        }
+    }
+
+    private static Path getItemPath(final BatchContext context, final String itemPath) throws QueryException {
+        if (itemPath == null) {
+            throw new QueryException(Query.Status.BAD_REQUEST);
+        }
+
+        String decodedPath = URI.create(itemPath).getPath();
+        String prefix = context.contextPath + context.servletPath;
+
+        if (decodedPath == null || !decodedPath.startsWith(prefix)) {
+            throw new QueryException(Query.Status.NOT_FOUND);
+        }
+
+        String pathInfo = decodedPath.substring(prefix.length());
+        if (pathInfo.length() > 0 && pathInfo.charAt(0) != '/') {
+            throw new QueryException(Query.Status.NOT_FOUND);
+        }
+
+        return (pathInfo.length() <= 1) ? new Path() : new Path(pathInfo.substring(1).split("/"));
+    }
+
+    private Object readItemValue(final Query.Method method, final Path path, final Map<String, Object> itemRequest)
+        throws QueryException, IOException, SerializationException {
+        String body = (String) itemRequest.get(BatchQuery.BODY_KEY);
+        if (body == null) {
+            return null;
+        }
+
+        Serializer<?> serializer = createSerializer(method, path);
+        return serializer.readObject(new ByteArrayInputStream(Base64.getDecoder().decode(body)));
+    }
+
+    /**
+     * Sends the response for the future result of an HTTP handler method. A
+     * result that is already available is sent right away; otherwise, if the
+     * container supports it, the request is completed asynchronously by the
+     * thread that completes the future, and the request thread is released.
+     */
+    private <T> void respond(final HttpServletRequest request, final HttpServletResponse response,
+        final CompletableFuture<T> future, final Responder<T> responder) throws IOException, ServletException {
+        if (future.isDone() || !request.isAsyncSupported()) {
+            T result;
+            try {
+                result = await(future);
+            } catch (QueryException exception) {
+                response.setStatus(exception.getStatus());
+                response.flushBuffer();
+                return;
+            }
+
+            responder.respond(result);
+            return;
+        }
+
+        AsyncRequest asyncRequest = new AsyncRequest();
+        completingAsynchronously.set(Boolean.TRUE);
+
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(asyncTimeout);
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(final AsyncEvent event) {
+                // Completes the future with a CancellationException, which
+                // sends a 503 response
+                future.cancel(false);
+            }
+
+            @Override
+            public void onError(final AsyncEvent event) {
+                future.cancel(false);
+            }
+
+            @Override
+            public void onComplete(final AsyncEvent event) {
+                // No-op
+            }
+
+            @Override
+            public void onStartAsync(final AsyncEvent event) {
+                // No-op
+            }
+        });
+
+        future.whenComplete((result, throwable) -> {
+            asyncRequest.install();
+
+            try {
+                try {
+                    if (throwable == null) {
+                        responder.respond(result);
+                    } else {
+                        Throwable cause = (throwable instanceof CompletionException && throwable.getCause() != null)
+                            ? throwable.getCause() : throwable;
+
+                        int status;
+                        if (cause instanceof QueryException) {
+                            status = ((QueryException) cause).getStatus();
+                        } else if (cause instanceof CancellationException) {
+                            status = Query.Status.SERVICE_UNAVAILABLE;
+                        } else {
+                            System.err.println(cause);
+                            status = Query.Status.INTERNAL_SERVER_ERROR;
+                        }
+
+                        response.setStatus(status);
+                        response.flushBuffer();
+                    }
+                } finally {
+                    asyncRequest.uninstall();
+                    dispose();
+                }
+            } catch (IOException | ServletException | RuntimeException exception) {
+                System.err.println(exception);
+
+                if (!response.isCommitted()) {
+                    response.setStatus(Query.Status.INTERNAL_SERVER_ERROR);
+                }
+            } finally {
+                asyncContext.complete();
+            }
+        });
+    }
+
+    /**
+     * Waits for the future result of an HTTP handler method.
+     */
+    private static <T> T await(final CompletableFuture<T> future) throws QueryException, ServletException {
+        try {
+            return future.get();
+        } catch (CancellationException exception) {
+            throw new QueryException(Query.Status.SERVICE_UNAVAILABLE);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new ServletException(exception);
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof QueryException) {
+                throw (QueryException) cause;
+            }
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            throw new ServletException(cause);
+        }
+    }
+
     private static Path getPath(final HttpServletRequest request) {
         String pathInfo = request.getPathInfo();
         Path path;
@@ -586,6 +1821,74 @@ public abstract class QueryServlet extends HttpServlet {
         return path;
     }
 
+    private static void writeResult(final Serializer<Object> serializer, final Object result,
+        final byte[] content, final OutputStream outputStream) throws IOException, SerializationException {
+        if (content == null) {
+            serializer.writeObject(result, outputStream);
+        } else {
+            outputStream.write(content);
+        }
+    }
+
+    private static String computeETag(final byte[] content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content);
+
+            // Weak, since the tag is shared by the compressed and uncompressed forms
+            StringBuilder buf = new StringBuilder("W/\"");
+            for (int i = 0; i < 16; i++) {
+                buf.append(Character.forDigit((hash[i] >> 4) & 0xF, 16)).append(Character.forDigit(hash[i] & 0xF, 16));
+            }
+
+            return buf.append('"').toString();
+        } catch (NoSuchAlgorithmException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /**
+     * Tells whether a request's <tt>If-None-Match</tt> header matches an
+     * entity tag, using the weak comparison that conditional GETs call for.
+     */
+    private static boolean isNotModified(final HttpServletRequest request, final String eTag) {
+        String ifNoneMatch = request.getHeader(QueryCache.IF_NONE_MATCH_HEADER);
+
+        if (ifNoneMatch != null) {
+            String opaqueTag = eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+
+            for (String element : ifNoneMatch.split(",")) {
+                String tag = element.trim();
+
+                if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(opaqueTag)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private void sendNotModified(final HttpServletResponse response, final String eTag) throws IOException {
+        response.setStatus(Query.Status.NOT_MODIFIED);
+        setResponseHeaders(response);
+        response.setHeader(QueryCache.ETAG_HEADER, eTag);
+        response.flushBuffer();
+    }
+
+    /**
+     * Returns the request body, decoded according to its content coding.
+     */
+    private static InputStream getInputStream(final HttpServletRequest request)
+        throws IOException, QueryException {
+        ContentEncoding encoding = ContentEncoding.decode(
+            request.getHeader(ContentEncoding.CONTENT_ENCODING_HEADER));
+        if (encoding == null) {
+            throw new QueryException(Query.Status.UNSUPPORTED_MEDIA_TYPE);
+        }
+
+        return encoding.getInputStream(request.getInputStream());
+    }
+
     private void setResponseHeaders(final HttpServletResponse response) {
         QueryDictionary responseHeaderDictionary = responseHeaders.get();
 
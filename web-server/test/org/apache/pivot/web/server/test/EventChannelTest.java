@@ -0,0 +1,441 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.server.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.serialization.Serializer;
+import org.apache.pivot.util.MessageBus;
+import org.apache.pivot.util.MessageBusListener;
+import org.apache.pivot.util.concurrent.AbortException;
+import org.apache.pivot.util.concurrent.Task;
+import org.apache.pivot.util.concurrent.TaskListener;
+import org.apache.pivot.web.EventQuery;
+import org.apache.pivot.web.Query;
+import org.apache.pivot.web.QueryException;
+import org.apache.pivot.web.server.EventChannel;
+import org.apache.pivot.web.server.QueryServlet;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Pushes events from a query servlet to event queries. The servlet is served
+ * by a minimal bridge from an embedded HTTP server, which does not support
+ * asynchronous requests.
+ */
+public class EventChannelTest {
+    /**
+     * Serves the event channel named by the first element of the path.
+     */
+    private static class EventServlet extends QueryServlet {
+        private static final long serialVersionUID = 0;
+
+        @Override
+        protected EventChannel getEventChannel(final Path path) throws QueryException {
+            EventChannel channel = channels.get(path.get(0));
+            if (channel == null) {
+                throw new QueryException(Query.Status.NOT_FOUND);
+            }
+
+            return channel;
+        }
+
+        @Override
+        protected Serializer<?> createSerializer(final Query.Method method, final Path path) {
+            return new JSONSerializer();
+        }
+    }
+
+    private interface Handler {
+        Object invoke(String name, Object[] args) throws Exception;
+    }
+
+    private static HttpServer server = null;
+    private static EventServlet servlet = new EventServlet();
+    private static HashMap<String, EventChannel> channels = new HashMap<>();
+
+    @SuppressWarnings("unchecked")
+    private static <T> T newProxy(final Class<T> type, final Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            Object value = handler.invoke(method.getName(), args);
+
+            Class<?> returnType = method.getReturnType();
+            if (value == null && returnType.isPrimitive()) {
+                if (returnType == boolean.class) {
+                    value = Boolean.FALSE;
+                } else if (returnType != void.class) {
+                    value = Integer.valueOf(0);
+                }
+            }
+
+            return value;
+        });
+    }
+
+    /**
+     * Passes an exchange to the servlet.
+     */
+    private static void service(final HttpExchange exchange) throws IOException {
+        String requestPath = exchange.getRequestURI().getPath();
+        int[] status = {200};
+        boolean[] committed = {false};
+        OutputStream responseBody = exchange.getResponseBody();
+
+        HttpServletRequest request = newProxy(HttpServletRequest.class, (name, args) -> {
+            switch (name) {
+                case "getMethod":
+                    return exchange.getRequestMethod();
+                case "getProtocol":
+                    return "HTTP/1.1";
+                case "getRequestURL":
+                    return new StringBuffer("http://localhost:" + server.getAddress().getPort() + requestPath);
+                case "getLocalPort":
+                    return server.getAddress().getPort();
+                case "getContextPath":
+                    return "";
+                case "getServletPath":
+                    return "/events";
+                case "getPathInfo":
+                    return requestPath.substring("/events".length());
+                case "getHeaderNames":
+                    return Collections.enumeration(exchange.getRequestHeaders().keySet());
+                case "getHeader":
+                    return exchange.getRequestHeaders().getFirst((String) args[0]);
+                default:
+                    return null;
+            }
+        });
+
+        Runnable commit = () -> {
+            if (!committed[0]) {
+                committed[0] = true;
+
+                try {
+                    exchange.sendResponseHeaders(status[0], 0);
+                } catch (IOException exception) {
+                    throw new RuntimeException(exception);
+                }
+            }
+        };
+
+        ServletOutputStream outputStream = new ServletOutputStream() {
+            @Override
+            public void write(final int b) throws IOException {
+                commit.run();
+                responseBody.write(b);
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException {
+                commit.run();
+                responseBody.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                commit.run();
+                responseBody.flush();
+            }
+        };
+
+        HttpServletResponse response = newProxy(HttpServletResponse.class, (name, args) -> {
+            switch (name) {
+                case "setStatus":
+                    status[0] = ((Integer) args[0]).intValue();
+                    return null;
+                case "setContentType":
+                    exchange.getResponseHeaders().set("Content-Type", (String) args[0]);
+                    return null;
+                case "setHeader":
+                case "addHeader":
+                    exchange.getResponseHeaders().add((String) args[0], (String) args[1]);
+                    return null;
+                case "getOutputStream":
+                    return outputStream;
+                case "flushBuffer":
+                    outputStream.flush();
+                    return null;
+                case "isCommitted":
+                    return committed[0];
+                default:
+                    return null;
+            }
+        });
+
+        try {
+            servlet.service(request, response);
+            commit.run();
+        } catch (Exception exception) {
+            throw new IOException(exception);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/events", EventChannelTest::service);
+        server.start();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.stop(0);
+    }
+
+    private static EventQuery newQuery(final String name) {
+        return new EventQuery("localhost", server.getAddress().getPort(), "/events/" + name, false);
+    }
+
+    /**
+     * Executes a query in the background, returning a latch that is released
+     * when it returns.
+     */
+    private static CountDownLatch executeInBackground(final EventQuery query, final EventChannel channel,
+        final Throwable[] fault) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+
+        int subscriberCount = channel.getSubscriberCount();
+        query.execute(new TaskListener<Void>() {
+            @Override
+            public void taskExecuted(final Task<Void> task) {
+                done.countDown();
+            }
+
+            @Override
+            public void executeFailed(final Task<Void> task) {
+                fault[0] = task.getFault();
+                done.countDown();
+            }
+        });
+
+        // Wait until the client is subscribed
+        for (int i = 0; i < 500 && channel.getSubscriberCount() == subscriberCount; i++) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(subscriberCount + 1, channel.getSubscriberCount());
+
+        return done;
+    }
+
+    @Test
+    public void testListTarget() throws Exception {
+        EventChannel channel = new EventChannel();
+        channels.put("list", channel);
+
+        EventQuery query = newQuery("list");
+        List<Object> target = new ArrayList<>();
+        query.setListTarget(target);
+        query.setSendMessages(true);
+
+        ArrayList<String> messages = new ArrayList<>();
+        MessageBusListener<EventQuery.Event> messageListener = event -> messages.add(event.getType());
+        MessageBus.subscribe(EventQuery.Event.class, messageListener);
+
+        Throwable[] fault = new Throwable[1];
+        CountDownLatch done = executeInBackground(query, channel, fault);
+
+        HashMap<String, Object> item = new HashMap<>();
+        item.put("name", "b\nc");
+
+        channel.add("a");
+        channel.add(item);
+        channel.insert(Integer.valueOf(0), 0);
+        channel.update(2, "d");
+        channel.add("e");
+        channel.remove(1, 2);
+        channel.publish("status", "up");
+
+        // Ends the stream, which ends the query
+        channel.close();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        MessageBus.unsubscribe(EventQuery.Event.class, messageListener);
+
+        assertEquals(null, fault[0]);
+        assertEquals(2, target.getLength());
+        assertEquals(0, target.get(0));
+        assertEquals("e", target.get(1));
+        assertEquals("7", query.getLastEventID());
+
+        assertEquals(7, messages.getLength());
+        assertEquals("status", messages.get(6));
+    }
+
+    @Test
+    public void testReconnect() throws Exception {
+        EventChannel channel = new EventChannel(2);
+        channels.put("map", channel);
+
+        channel.put("a", 1);
+        channel.put("b", 2);
+        channel.put("c", 3);
+
+        // Only the events after the last one received are sent, as far as
+        // they have been kept
+        EventQuery query = newQuery("map");
+        HashMap<String, Object> target = new HashMap<>();
+        query.setMapTarget(target);
+        query.setLastEventID("1");
+
+        Throwable[] fault = new Throwable[1];
+        CountDownLatch done = executeInBackground(query, channel, fault);
+
+        channel.remove("b");
+        channel.close();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        assertEquals(null, fault[0]);
+        assertEquals(1, target.getCount());
+        assertEquals(3, target.get("c"));
+        assertEquals("4", query.getLastEventID());
+
+        // A closed channel is not found
+        try {
+            query.execute();
+            fail();
+        } catch (QueryException exception) {
+            assertEquals(Query.Status.NOT_FOUND, exception.getStatus());
+        }
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        EventChannel channel = new EventChannel(2);
+        channels.put("reset", channel);
+
+        channel.put("a", 1);
+        channel.put("b", 2);
+        channel.put("c", 3);
+
+        // The second event is no longer kept, so the client is told to reload
+        EventQuery query = newQuery("reset");
+        HashMap<String, Object> target = new HashMap<>();
+        target.put("stale", 0);
+        query.setMapTarget(target);
+        query.setLastEventID("0");
+
+        ArrayList<String> types = new ArrayList<>();
+        query.setSendMessages(true);
+        MessageBusListener<EventQuery.Event> messageListener = event -> types.add(event.getType());
+        MessageBus.subscribe(EventQuery.Event.class, messageListener);
+
+        Throwable[] fault = new Throwable[1];
+        CountDownLatch done = executeInBackground(query, channel, fault);
+
+        channel.put("d", 4);
+        channel.close();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        MessageBus.unsubscribe(EventQuery.Event.class, messageListener);
+
+        assertEquals(null, fault[0]);
+        assertEquals(2, types.getLength());
+        assertEquals(EventQuery.RESET_EVENT, types.get(0));
+        assertEquals(1, target.getCount());
+        assertEquals(4, target.get("d"));
+        assertEquals("4", query.getLastEventID());
+    }
+
+    @Test
+    public void testSlowSubscriber() throws Exception {
+        EventChannel channel = new EventChannel(0, 4);
+        channels.put("slow", channel);
+
+        // The client stops reading while its first event is dispatched
+        CountDownLatch blocked = new CountDownLatch(1);
+        EventQuery query = newQuery("slow");
+        query.setDispatchExecutor(runnable -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException exception) {
+                throw new RuntimeException(exception);
+            }
+
+            runnable.run();
+        });
+
+        Throwable[] fault = new Throwable[1];
+        CountDownLatch done = executeInBackground(query, channel, fault);
+
+        // Publishing does not wait for the client; once the connection and
+        // the subscriber's queue are full, it is dropped
+        char[] chars = new char[65536];
+        Arrays.fill(chars, 'x');
+        String value = new String(chars);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 200 && channel.getSubscriberCount() > 0; i++) {
+            channel.add(value);
+        }
+
+        assertEquals(0, channel.getSubscriberCount());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+
+        blocked.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        channel.close();
+    }
+
+    @Test
+    public void testAbort() throws Exception {
+        EventChannel channel = new EventChannel();
+        channels.put("abort", channel);
+
+        EventQuery query = newQuery("abort");
+        Throwable[] fault = new Throwable[1];
+        CountDownLatch done = executeInBackground(query, channel, fault);
+
+        // The query returns once it reads the next heartbeat, and the
+        // subscriber is dropped once one fails to be sent
+        query.abort();
+        for (int i = 0; i < 500 && channel.getSubscriberCount() > 0; i++) {
+            channel.sendHeartbeat();
+            Thread.sleep(10);
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(fault[0] instanceof AbortException);
+        assertEquals(0, channel.getSubscriberCount());
+        channel.close();
+    }
+}
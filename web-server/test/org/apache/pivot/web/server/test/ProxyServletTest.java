@@ -0,0 +1,361 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.server.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.web.server.ProxyServlet;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Relays large payloads through a proxy servlet to a local stub server. The
+ * servlet is driven directly, with minimal request and response objects in
+ * place of a servlet container.
+ */
+public class ProxyServletTest {
+    /**
+     * A proxied call: the request that is relayed and the response that is
+     * received from the servlet.
+     */
+    private static class Exchange {
+        public final String method;
+        public final String pathInfo;
+        public final String queryString;
+        public final byte[] body;
+        public final boolean async;
+
+        public int status = 0;
+        public final HashMap<String, String> responseHeaders = new HashMap<>();
+        public final AtomicLong bytesReceived = new AtomicLong();
+        public final CountDownLatch completed = new CountDownLatch(1);
+
+        public Exchange(final String method, final String pathInfo, final String queryString, final byte[] body,
+            final boolean async) {
+            this.method = method;
+            this.pathInfo = pathInfo;
+            this.queryString = queryString;
+            this.body = body;
+            this.async = async;
+        }
+
+        public HttpServletRequest getRequest() {
+            InputStream inputStream = new ByteArrayInputStream((body == null) ? new byte[0] : body);
+            ServletInputStream servletInputStream = new ServletInputStream() {
+                @Override
+                public int read() throws IOException {
+                    return inputStream.read();
+                }
+
+                @Override
+                public int read(final byte[] b, final int off, final int len) throws IOException {
+                    return inputStream.read(b, off, len);
+                }
+            };
+
+            AsyncContext asyncContext = newProxy(AsyncContext.class, (name, args) -> {
+                if (name.equals("complete")) {
+                    completed.countDown();
+                }
+
+                return null;
+            });
+
+            return newProxy(HttpServletRequest.class, (name, args) -> {
+                switch (name) {
+                    case "getMethod":
+                        return method;
+                    case "getScheme":
+                        return "http";
+                    case "getPathInfo":
+                        return pathInfo;
+                    case "getQueryString":
+                        return queryString;
+                    case "getHeaderNames":
+                        return Collections.enumeration(Collections.singletonList("Accept"));
+                    case "getHeaders":
+                        return Collections.enumeration(Collections.singletonList("*/*"));
+                    case "getContentLength":
+                        return (body == null) ? -1 : body.length;
+                    case "getInputStream":
+                        return servletInputStream;
+                    case "isAsyncSupported":
+                        return async;
+                    case "startAsync":
+                        return asyncContext;
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        public HttpServletResponse getResponse() {
+            ServletOutputStream outputStream = new ServletOutputStream() {
+                @Override
+                public void write(final int b) {
+                    bytesReceived.incrementAndGet();
+                }
+
+                @Override
+                public void write(final byte[] b, final int off, final int len) {
+                    bytesReceived.addAndGet(len);
+                }
+            };
+
+            return newProxy(HttpServletResponse.class, (name, args) -> {
+                switch (name) {
+                    case "setStatus":
+                    case "sendError":
+                        status = ((Integer) args[0]).intValue();
+                        return null;
+                    case "setHeader":
+                    case "addHeader":
+                        responseHeaders.put(((String) args[0]).toLowerCase(), (String) args[1]);
+                        return null;
+                    case "containsHeader":
+                        return responseHeaders.containsKey(((String) args[0]).toLowerCase());
+                    case "isCommitted":
+                        return bytesReceived.get() > 0;
+                    case "getOutputStream":
+                        return outputStream;
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        public void execute() throws Exception {
+            servlet.service(getRequest(), getResponse());
+
+            if (!async) {
+                completed.countDown();
+            }
+        }
+    }
+
+    private interface Handler {
+        Object invoke(String name, Object[] args) throws Exception;
+    }
+
+    private static HttpServer server = null;
+    private static ProxyServlet servlet = null;
+
+    private static final int PAYLOAD_SIZE = 32 * 1024 * 1024;
+    private static final int DOWNLOAD_COUNT = 8;
+    private static final int CONCURRENT_COUNT = 4;
+
+    @SuppressWarnings("unchecked")
+    private static <T> T newProxy(final Class<T> type, final Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            Object value = handler.invoke(method.getName(), args);
+
+            Class<?> returnType = method.getReturnType();
+            if (value == null && returnType.isPrimitive()) {
+                if (returnType == boolean.class) {
+                    value = Boolean.FALSE;
+                } else if (returnType != void.class) {
+                    value = Integer.valueOf(0);
+                }
+            }
+
+            return value;
+        });
+    }
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+
+        // Streams the number of bytes given by the query string
+        server.createContext("/upstream/data", exchange -> {
+            int size = Integer.parseInt(exchange.getRequestURI().getQuery());
+            byte[] chunk = new byte[64 * 1024];
+
+            exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+            exchange.sendResponseHeaders(200, size);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                for (int remaining = size; remaining > 0; remaining -= chunk.length) {
+                    outputStream.write(chunk, 0, Math.min(remaining, chunk.length));
+                }
+            }
+        });
+
+        // Reports the number of bytes it received
+        server.createContext("/upstream/upload", exchange -> {
+            long count = 0;
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream inputStream = exchange.getRequestBody()) {
+                for (int n = inputStream.read(buffer); n != -1; n = inputStream.read(buffer)) {
+                    count += n;
+                }
+            }
+
+            exchange.getResponseHeaders().add("X-Received", Long.toString(count));
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+
+        server.createContext("/upstream/redirect", exchange -> {
+            exchange.getResponseHeaders().add("Location", "/upstream/data?1");
+            exchange.sendResponseHeaders(302, -1);
+            exchange.close();
+        });
+
+        server.start();
+
+        String port = Integer.toString(server.getAddress().getPort());
+        ServletContext context = newProxy(ServletContext.class, (name, args) -> null);
+        ServletConfig config = newProxy(ServletConfig.class, (name, args) -> {
+            if (name.equals("getServletContext")) {
+                return context;
+            }
+
+            if (name.equals("getInitParameterNames")) {
+                return Collections.emptyEnumeration();
+            }
+
+            if (name.equals("getInitParameter")) {
+                switch ((String) args[0]) {
+                    case ProxyServlet.HOSTNAME_PARAM:
+                        return "localhost";
+                    case ProxyServlet.PORT_PARAM:
+                        return port;
+                    case ProxyServlet.PATH_PARAM:
+                        return "/upstream";
+                    default:
+                        return null;
+                }
+            }
+
+            return null;
+        });
+
+        servlet = new ProxyServlet();
+        servlet.init(config);
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        servlet.destroy();
+        server.stop(0);
+    }
+
+    private static void download(final boolean async, final String name) throws Exception {
+        // Warm up
+        Exchange exchange = new Exchange("GET", "/data", Integer.toString(PAYLOAD_SIZE), null, async);
+        exchange.execute();
+        assertTrue(exchange.completed.await(60, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        long serviceTime = 0;
+
+        for (int i = 0; i < DOWNLOAD_COUNT; i++) {
+            exchange = new Exchange("GET", "/data", Integer.toString(PAYLOAD_SIZE), null, async);
+
+            long serviceStart = System.nanoTime();
+            exchange.execute();
+            serviceTime += System.nanoTime() - serviceStart;
+
+            assertTrue(exchange.completed.await(60, TimeUnit.SECONDS));
+            assertEquals(200, exchange.status);
+            assertEquals(PAYLOAD_SIZE, exchange.bytesReceived.get());
+            assertEquals(Integer.toString(PAYLOAD_SIZE), exchange.responseHeaders.get("content-length"));
+        }
+
+        long time = System.nanoTime() - start;
+        System.out.format("%s: %d x %d MB in %.1f ms (%.0f MB/s), container thread held %.1f ms%n", name,
+            DOWNLOAD_COUNT, PAYLOAD_SIZE >> 20, time / 1e6,
+            (double) DOWNLOAD_COUNT * (PAYLOAD_SIZE >> 20) / (time / 1e9), serviceTime / 1e6);
+    }
+
+    @Test
+    public void testDownload() throws Exception {
+        download(false, "Blocking");
+    }
+
+    @Test
+    public void testAsyncDownload() throws Exception {
+        download(true, "Async");
+    }
+
+    @Test
+    public void testConcurrentDownloads() throws Exception {
+        Exchange[] exchanges = new Exchange[CONCURRENT_COUNT];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < CONCURRENT_COUNT; i++) {
+            exchanges[i] = new Exchange("GET", "/data", Integer.toString(PAYLOAD_SIZE), null, true);
+            exchanges[i].execute();
+        }
+
+        for (Exchange exchange : exchanges) {
+            assertTrue(exchange.completed.await(60, TimeUnit.SECONDS));
+            assertEquals(PAYLOAD_SIZE, exchange.bytesReceived.get());
+        }
+
+        long time = System.nanoTime() - start;
+        System.out.format("Concurrent: %d x %d MB in %.1f ms (%.0f MB/s)%n", CONCURRENT_COUNT, PAYLOAD_SIZE >> 20,
+            time / 1e6, (double) CONCURRENT_COUNT * (PAYLOAD_SIZE >> 20) / (time / 1e9));
+    }
+
+    @Test
+    public void testUpload() throws Exception {
+        byte[] body = new byte[PAYLOAD_SIZE / 4];
+
+        Exchange exchange = new Exchange("POST", "/upload", null, body, false);
+        exchange.execute();
+
+        assertEquals(204, exchange.status);
+        assertEquals(Integer.toString(body.length), exchange.responseHeaders.get("x-received"));
+    }
+
+    @Test
+    public void testRedirect() throws Exception {
+        Exchange exchange = new Exchange("GET", "/redirect", null, null, true);
+        exchange.execute();
+
+        // Redirects are not followed, and are reported as a bad gateway
+        assertTrue(exchange.completed.await(10, TimeUnit.SECONDS));
+        assertEquals(HttpServletResponse.SC_BAD_GATEWAY, exchange.status);
+    }
+}
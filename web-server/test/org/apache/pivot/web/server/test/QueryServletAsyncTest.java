@@ -0,0 +1,361 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.server.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.serialization.Serializer;
+import org.apache.pivot.web.Query;
+import org.apache.pivot.web.QueryDictionary;
+import org.apache.pivot.web.QueryException;
+import org.apache.pivot.web.server.QueryServlet;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * Serves requests whose handlers wait on a slow backend with a small pool of
+ * request threads. The servlet is driven directly, with minimal request and
+ * response objects in place of a servlet container.
+ */
+public class QueryServletAsyncTest {
+    /**
+     * A servlet whose GET results are produced by a backend that takes
+     * {@link #BACKEND_TIME} milliseconds to respond.
+     */
+    private static class SlowServlet extends QueryServlet {
+        private static final long serialVersionUID = 0;
+
+        public final AtomicInteger prepareCount = new AtomicInteger();
+        public final AtomicInteger disposeCount = new AtomicInteger();
+
+        @Override
+        protected void prepare() {
+            prepareCount.incrementAndGet();
+        }
+
+        @Override
+        protected void dispose() {
+            disposeCount.incrementAndGet();
+        }
+
+        @Override
+        protected Object doGet(final Path path) throws QueryException {
+            try {
+                Thread.sleep(BACKEND_TIME);
+            } catch (InterruptedException exception) {
+                throw new QueryException(exception);
+            }
+
+            return path.toString();
+        }
+
+        @Override
+        protected CompletableFuture<Object> doGetAsync(final Path path) throws QueryException {
+            String name = path.get(0);
+            if (name.startsWith("sync")) {
+                return super.doGetAsync(path);
+            }
+
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            if (name.equals("never")) {
+                return future;
+            }
+
+            QueryDictionary responseHeaders = getResponseHeaders();
+            backend.schedule(() -> {
+                if (name.startsWith("missing")) {
+                    future.completeExceptionally(new QueryException(Query.Status.NOT_FOUND));
+                } else {
+                    HashMap<String, Object> result = new HashMap<>();
+                    result.put("name", name);
+
+                    responseHeaders.put("X-Backend", "async");
+                    future.complete(result);
+                }
+            }, BACKEND_TIME, TimeUnit.MILLISECONDS);
+
+            return future;
+        }
+
+        @Override
+        protected Serializer<?> createSerializer(final Query.Method method, final Path path) {
+            return new JSONSerializer();
+        }
+    }
+
+    /**
+     * A request sent to the servlet and the response it received.
+     */
+    private static class Exchange {
+        public final String path;
+        public final boolean async;
+
+        public int status = 0;
+        public final HashMap<String, String> responseHeaders = new HashMap<>();
+        public final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        public final CountDownLatch completed = new CountDownLatch(1);
+        public AsyncListener listener = null;
+        public boolean committed = false;
+
+        public Exchange(final String path, final boolean async) {
+            this.path = path;
+            this.async = async;
+        }
+
+        public void execute(final QueryServlet servlet) throws Exception {
+            Object asyncContext = newProxy(javax.servlet.AsyncContext.class, (name, args) -> {
+                if (name.equals("complete")) {
+                    completed.countDown();
+                } else if (name.equals("addListener")) {
+                    listener = (AsyncListener) args[0];
+                }
+
+                return null;
+            });
+
+            HttpServletRequest request = newProxy(HttpServletRequest.class, (name, args) -> {
+                switch (name) {
+                    case "getMethod":
+                        return "GET";
+                    case "getProtocol":
+                        return "HTTP/1.1";
+                    case "getRequestURL":
+                        return new StringBuffer("http://localhost/app/query" + path);
+                    case "getLocalPort":
+                        return 80;
+                    case "getContextPath":
+                        return "/app";
+                    case "getServletPath":
+                        return "/query";
+                    case "getPathInfo":
+                        return path;
+                    case "getHeaderNames":
+                        return Collections.emptyEnumeration();
+                    case "isAsyncSupported":
+                        return async;
+                    case "startAsync":
+                        return asyncContext;
+                    default:
+                        return null;
+                }
+            });
+
+            ServletOutputStream outputStream = new ServletOutputStream() {
+                @Override
+                public void write(final int b) {
+                    committed = true;
+                    body.write(b);
+                }
+
+                @Override
+                public void write(final byte[] b, final int off, final int len) {
+                    committed = true;
+                    body.write(b, off, len);
+                }
+            };
+
+            HttpServletResponse response = newProxy(HttpServletResponse.class, (name, args) -> {
+                switch (name) {
+                    case "setStatus":
+                        status = ((Integer) args[0]).intValue();
+                        return null;
+                    case "setHeader":
+                    case "addHeader":
+                        responseHeaders.put((String) args[0], (String) args[1]);
+                        return null;
+                    case "getOutputStream":
+                        return outputStream;
+                    case "flushBuffer":
+                        committed = true;
+                        return null;
+                    case "isCommitted":
+                        return committed;
+                    default:
+                        return null;
+                }
+            });
+
+            servlet.service(request, response);
+
+            if (listener == null) {
+                completed.countDown();
+            }
+        }
+
+        public String getBody() {
+            return new String(body.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private interface Handler {
+        Object invoke(String name, Object[] args) throws Exception;
+    }
+
+    private static ScheduledExecutorService backend = Executors.newScheduledThreadPool(1);
+
+    private static final int BACKEND_TIME = 100;
+    private static final int REQUEST_THREAD_COUNT = 4;
+    private static final int REQUEST_COUNT = 2000;
+
+    @SuppressWarnings("unchecked")
+    private static <T> T newProxy(final Class<T> type, final Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            Object value = handler.invoke(method.getName(), args);
+
+            Class<?> returnType = method.getReturnType();
+            if (value == null && returnType.isPrimitive()) {
+                if (returnType == boolean.class) {
+                    value = Boolean.FALSE;
+                } else if (returnType != void.class) {
+                    value = Integer.valueOf(0);
+                }
+            }
+
+            return value;
+        });
+    }
+
+    @AfterClass
+    public static void stopBackend() {
+        backend.shutdown();
+    }
+
+    /**
+     * Sends requests from a small pool of request threads and waits for all
+     * of their responses.
+     */
+    private static Exchange[] executeAll(final SlowServlet servlet, final String path, final boolean async,
+        final int count) throws Exception {
+        Exchange[] exchanges = new Exchange[count];
+        ExecutorService requestThreads = Executors.newFixedThreadPool(REQUEST_THREAD_COUNT);
+
+        for (int i = 0; i < count; i++) {
+            Exchange exchange = new Exchange(path + i, async);
+            exchanges[i] = exchange;
+
+            requestThreads.execute(() -> {
+                try {
+                    exchange.execute(servlet);
+                } catch (Exception exception) {
+                    throw new RuntimeException(exception);
+                }
+            });
+        }
+
+        for (Exchange exchange : exchanges) {
+            assertTrue(exchange.completed.await(60, TimeUnit.SECONDS));
+        }
+
+        requestThreads.shutdown();
+
+        return exchanges;
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        SlowServlet servlet = new SlowServlet();
+
+        long start = System.nanoTime();
+        Exchange[] exchanges = executeAll(servlet, "/item", true, REQUEST_COUNT);
+        long time = System.nanoTime() - start;
+
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            Exchange exchange = exchanges[i];
+            assertEquals(200, exchange.status);
+            assertEquals("{name: \"item" + i + "\"}", exchange.getBody());
+            assertEquals("async", exchange.responseHeaders.get("x-backend"));
+        }
+
+        // Resources are released once per request, after it has completed
+        assertEquals(REQUEST_COUNT, servlet.prepareCount.get());
+        assertEquals(REQUEST_COUNT, servlet.disposeCount.get());
+
+        System.out.format("Async: %d requests of %d ms on %d request threads in %.1f ms%n", REQUEST_COUNT,
+            BACKEND_TIME, REQUEST_THREAD_COUNT, time / 1e6);
+
+        // A request thread is held for the whole backend call otherwise
+        int syncCount = REQUEST_THREAD_COUNT * 4;
+
+        start = System.nanoTime();
+        exchanges = executeAll(servlet, "/sync", true, syncCount);
+        time = System.nanoTime() - start;
+
+        assertEquals("\"/sync" + (syncCount - 1) + "\"", exchanges[syncCount - 1].getBody());
+
+        System.out.format("Blocking: %d requests of %d ms on %d request threads in %.1f ms%n", syncCount,
+            BACKEND_TIME, REQUEST_THREAD_COUNT, time / 1e6);
+    }
+
+    @Test
+    public void testAsyncNotSupported() throws Exception {
+        // Without container support, the request thread waits for the future
+        Exchange exchange = new Exchange("/item", false);
+        exchange.execute(new SlowServlet());
+
+        assertEquals(0, exchange.completed.getCount());
+        assertEquals(200, exchange.status);
+        assertEquals("{name: \"item\"}", exchange.getBody());
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        SlowServlet servlet = new SlowServlet();
+        Exchange exchange = executeAll(servlet, "/missing", true, 1)[0];
+
+        assertEquals(404, exchange.status);
+        assertEquals(0, exchange.body.size());
+        assertEquals(1, servlet.disposeCount.get());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        SlowServlet servlet = new SlowServlet();
+        Exchange exchange = new Exchange("/never", true);
+        exchange.execute(servlet);
+
+        assertEquals(1, exchange.completed.getCount());
+        assertEquals(0, servlet.disposeCount.get());
+
+        // As the container would once the timeout has elapsed
+        exchange.listener.onTimeout(new AsyncEvent(null));
+
+        assertEquals(0, exchange.completed.getCount());
+        assertEquals(503, exchange.status);
+        assertEquals(1, servlet.disposeCount.get());
+    }
+}
@@ -0,0 +1,408 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.server.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.serialization.Serializer;
+import org.apache.pivot.web.BatchQuery;
+import org.apache.pivot.web.Query;
+import org.apache.pivot.web.QueryException;
+import org.apache.pivot.web.server.QueryServlet;
+import org.junit.Test;
+
+/**
+ * Checks the <tt>Content-Length</tt> of GET responses, as they are held in
+ * memory, spooled to disk or streamed, and the headers of queries in a batch.
+ * The servlet is driven directly, with minimal request and response objects in
+ * place of a servlet container.
+ */
+public class QueryServletTest {
+    /**
+     * A servlet whose GET results are text of the length given by the first
+     * element of the path; if the second element is "fail", serialization
+     * fails once the text has been written. If the first element is
+     * "headers", the result lists the values of {@link #HEADERS}.
+     */
+    private static class TextServlet extends QueryServlet {
+        private static final long serialVersionUID = 0;
+
+        @Override
+        protected Object doGet(final Path path) throws QueryException {
+            if (path.get(0).equals("headers")) {
+                StringBuilder buf = new StringBuilder();
+                for (String header : HEADERS) {
+                    buf.append(header).append('=').append(getRequestHeaders().get(header)).append(';');
+                }
+
+                return buf.toString();
+            }
+
+            return getText(Integer.parseInt(path.get(0)));
+        }
+
+        @Override
+        protected Serializer<?> createSerializer(final Query.Method method, final Path path) {
+            return new TextSerializer(path.getLength() > 1 && path.get(1).equals("fail"));
+        }
+    }
+
+    private static class TextSerializer implements Serializer<Object> {
+        private final boolean fail;
+
+        public TextSerializer(final boolean fail) {
+            this.fail = fail;
+        }
+
+        @Override
+        public Object readObject(final InputStream inputStream) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void writeObject(final Object object, final OutputStream outputStream)
+            throws IOException, SerializationException {
+            outputStream.write(((String) object).getBytes(StandardCharsets.UTF_8));
+
+            if (fail) {
+                throw new SerializationException("Serialization failed.");
+            }
+        }
+
+        @Override
+        public String getMIMEType(final Object object) {
+            return "text/plain";
+        }
+    }
+
+    /**
+     * The response to a request sent to the servlet.
+     */
+    private static class Response {
+        public int status = 0;
+        public int contentLength = -1;
+        public final HashMap<String, String> headers = new HashMap<>();
+        public final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        public long getContentLength() {
+            String header = headers.get("Content-Length");
+            return (header == null) ? contentLength : Long.parseLong(header);
+        }
+    }
+
+    private interface Handler {
+        Object invoke(String name, Object[] args) throws Exception;
+    }
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private static final String[] HEADERS = {"X-Batch", "X-Item", "Content-Type", "Content-Encoding",
+        "Content-Length"};
+
+    @SuppressWarnings("unchecked")
+    private static <T> T newProxy(final Class<T> type, final Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            Object value = handler.invoke(method.getName(), args);
+
+            Class<?> returnType = method.getReturnType();
+            if (value == null && returnType.isPrimitive()) {
+                if (returnType == boolean.class) {
+                    value = Boolean.FALSE;
+                } else if (returnType != void.class) {
+                    value = Integer.valueOf(0);
+                }
+            }
+
+            return value;
+        });
+    }
+
+    private static String getText(final int length) {
+        StringBuilder buf = new StringBuilder(length);
+        for (int i = 0; buf.length() < length; i++) {
+            buf.append(i).append(' ');
+        }
+
+        buf.setLength(length);
+        return buf.toString();
+    }
+
+    private static TextServlet newServlet(final boolean spillToDisk) {
+        TextServlet servlet = new TextServlet();
+        servlet.setDetermineContentLength(true);
+        servlet.setContentLengthBufferSize(BUFFER_SIZE);
+        servlet.setSpillToDisk(spillToDisk);
+
+        return servlet;
+    }
+
+    private static Response get(final QueryServlet servlet, final String path, final String acceptEncoding)
+        throws IOException, ServletException {
+        Response response = new Response();
+        get(servlet, path, acceptEncoding, response);
+
+        return response;
+    }
+
+    private static void get(final QueryServlet servlet, final String path, final String acceptEncoding,
+        final Response response) throws IOException, ServletException {
+        HashMap<String, String> headers = new HashMap<>();
+        if (acceptEncoding != null) {
+            headers.put("Accept-Encoding", acceptEncoding);
+        }
+
+        send(servlet, "GET", path, headers, null, response);
+    }
+
+    private static void send(final QueryServlet servlet, final String method, final String path,
+        final HashMap<String, String> headers, final byte[] body, final Response response)
+        throws IOException, ServletException {
+        boolean[] committed = {false};
+
+        // Header names are matched ignoring case
+        HashMap<String, String> headerNames = new HashMap<>();
+        for (String header : headers) {
+            headerNames.put(header.toLowerCase(), header);
+        }
+
+        ByteArrayInputStream bodyInputStream = new ByteArrayInputStream((body == null) ? new byte[0] : body);
+        ServletInputStream inputStream = new ServletInputStream() {
+            @Override
+            public int read() {
+                return bodyInputStream.read();
+            }
+        };
+
+        HttpServletRequest request = newProxy(HttpServletRequest.class, (name, args) -> {
+            switch (name) {
+                case "getMethod":
+                    return method;
+                case "getProtocol":
+                    return "HTTP/1.1";
+                case "getRequestURL":
+                    return new StringBuffer("http://localhost/app/query" + path);
+                case "getLocalPort":
+                    return 80;
+                case "getContextPath":
+                    return "/app";
+                case "getServletPath":
+                    return "/query";
+                case "getPathInfo":
+                    return path;
+                case "getHeaderNames":
+                    ArrayList<String> names = new ArrayList<>();
+                    for (String header : headers) {
+                        names.add(header);
+                    }
+                    return Collections.enumeration(names);
+                case "getHeader":
+                    String header = headerNames.get(((String) args[0]).toLowerCase());
+                    return (header == null) ? null : headers.get(header);
+                case "getContentType":
+                    return headers.get("Content-Type");
+                case "getInputStream":
+                    return inputStream;
+                default:
+                    return null;
+            }
+        });
+
+        ServletOutputStream outputStream = new ServletOutputStream() {
+            @Override
+            public void write(final int b) {
+                committed[0] = true;
+                response.body.write(b);
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) {
+                committed[0] = true;
+                response.body.write(b, off, len);
+            }
+        };
+
+        HttpServletResponse servletResponse = newProxy(HttpServletResponse.class, (name, args) -> {
+            switch (name) {
+                case "setStatus":
+                    response.status = ((Integer) args[0]).intValue();
+                    return null;
+                case "setContentLength":
+                    response.contentLength = ((Integer) args[0]).intValue();
+                    return null;
+                case "setHeader":
+                case "addHeader":
+                    response.headers.put((String) args[0], (String) args[1]);
+                    return null;
+                case "getOutputStream":
+                    return outputStream;
+                case "flushBuffer":
+                    committed[0] = true;
+                    return null;
+                case "isCommitted":
+                    return committed[0];
+                default:
+                    return null;
+            }
+        });
+
+        servlet.service(request, servletResponse);
+    }
+
+    private static byte[] decode(final Response response) throws IOException {
+        byte[] body = response.body.toByteArray();
+        if (!"gzip".equals(response.headers.get("Content-Encoding"))) {
+            return body;
+        }
+
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    private static int countSpillFiles() {
+        String[] names = new File(System.getProperty("java.io.tmpdir"))
+            .list((directory, name) -> name.startsWith(QueryServlet.class.getName()));
+
+        return (names == null) ? 0 : names.length;
+    }
+
+    @Test
+    public void testContentLength() throws Exception {
+        TextServlet servlet = newServlet(true);
+        int spillFileCount = countSpillFiles();
+
+        // Held in memory, and spooled to disk, with and without compression
+        int[] lengths = {100, BUFFER_SIZE * 2, BUFFER_SIZE * 50};
+        String[] acceptEncodings = {null, "gzip"};
+
+        for (int length : lengths) {
+            for (String acceptEncoding : acceptEncodings) {
+                Response response = get(servlet, "/" + length, acceptEncoding);
+
+                assertEquals(Query.Status.OK, response.status);
+                assertEquals(response.body.size(), response.getContentLength());
+                assertArrayEquals(getText(length).getBytes(StandardCharsets.UTF_8), decode(response));
+            }
+        }
+
+        assertEquals(spillFileCount, countSpillFiles());
+    }
+
+    @Test
+    public void testStreaming() throws Exception {
+        TextServlet servlet = newServlet(false);
+
+        // Responses that don't fit in the buffer are sent without a length,
+        // which the container sends with chunked transfer coding
+        Response response = get(servlet, "/" + (BUFFER_SIZE * 2), null);
+        assertEquals(Query.Status.OK, response.status);
+        assertEquals(-1, response.getContentLength());
+        assertEquals(BUFFER_SIZE * 2, response.body.size());
+
+        // Responses that do are still sent with one
+        response = get(servlet, "/100", "gzip");
+        assertEquals(response.body.size(), response.getContentLength());
+        assertArrayEquals(getText(100).getBytes(StandardCharsets.UTF_8), decode(response));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBatchHeaders() throws Exception {
+        TextServlet servlet = newServlet(true);
+        servlet.setBatchEnabled(true);
+
+        try {
+            byte[] items = ("[{method: \"GET\", path: \"/app/query/headers\", "
+                + "headers: {\"X-Item\": [\"item\"]}}]").getBytes(StandardCharsets.UTF_8);
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (OutputStream outputStream = new GZIPOutputStream(body)) {
+                outputStream.write(items);
+            }
+
+            HashMap<String, String> headers = new HashMap<>();
+            headers.put("Content-Type", BatchQuery.MIME_TYPE);
+            headers.put("Content-Encoding", "gzip");
+            headers.put("Content-Length", Integer.toString(body.size()));
+            headers.put("X-Batch", "batch");
+
+            Response response = new Response();
+            send(servlet, "POST", "", headers, body.toByteArray(), response);
+            assertEquals(Query.Status.OK, response.status);
+
+            // Queries get the batch's headers, other than those of its body
+            List<Map<String, Object>> itemResponses = (List<Map<String, Object>>) new JSONSerializer()
+                .readObject(new ByteArrayInputStream(decode(response)));
+            Map<String, Object> itemResponse = itemResponses.get(0);
+            assertEquals(Integer.valueOf(Query.Status.OK), itemResponse.get(BatchQuery.STATUS_KEY));
+            assertEquals("X-Batch=batch;X-Item=item;Content-Type=null;Content-Encoding=null;Content-Length=null;",
+                new String(Base64.getDecoder().decode((String) itemResponse.get(BatchQuery.BODY_KEY)),
+                    StandardCharsets.UTF_8));
+        } finally {
+            servlet.destroy();
+        }
+    }
+
+    @Test
+    public void testSerializationFailure() throws Exception {
+        TextServlet servlet = newServlet(true);
+        int spillFileCount = countSpillFiles();
+
+        // Nothing is sent, and the temporary file is deleted
+        for (String acceptEncoding : new String[] {null, "gzip"}) {
+            Response response = new Response();
+            try {
+                get(servlet, "/" + (BUFFER_SIZE * 50) + "/fail", acceptEncoding, response);
+                fail("Expected ServletException");
+            } catch (ServletException exception) {
+                // expected
+            }
+
+            assertEquals(0, response.body.size());
+            assertEquals(-1, response.getContentLength());
+        }
+
+        assertEquals(spillFileCount, countSpillFiles());
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Base64;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.pivot.annotations.UnsupportedOperation;
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.serialization.Serializer;
+
+/**
+ * Sends several queries to a server in a single HTTP request. The queries are
+ * posted as a JSON array to a <tt>QueryServlet</tt> that has batching
+ * enabled, which executes them and returns their responses as a JSON array in
+ * the same order. <p> Each query is described by an object with its
+ * {@link #METHOD_KEY method}, {@link #PATH_KEY path},
+ * {@link #PARAMETERS_KEY parameters}, {@link #HEADERS_KEY request headers}
+ * and, for POST and PUT queries, its {@link #BODY_KEY body}; each response,
+ * by an object with its {@link #STATUS_KEY status}, response headers and
+ * body. Parameters and headers map names to lists of values; bodies are the
+ * output of the query's serializer, Base64 encoded. <p> Once the batch has
+ * been executed, each query's status and response headers are set as if it
+ * had been executed on its own, and its listeners are notified.
+ */
+public class BatchQuery extends Query<Sequence<Object>> {
+    /**
+     * Serializer for the batch, which identifies it by its MIME type.
+     */
+    private static class BatchSerializer extends JSONSerializer {
+        public BatchSerializer() {
+            setAlwaysDelimitMapKeys(true);
+        }
+
+        @Override
+        public String getMIMEType(final Object object) {
+            return BatchQuery.MIME_TYPE;
+        }
+    }
+
+    private ArrayList<Query<?>> queries = new ArrayList<>();
+
+    public static final Method METHOD = Method.POST;
+
+    public static final String MIME_TYPE = "application/x-pivot-batch+json";
+
+    public static final String METHOD_KEY = "method";
+    public static final String PATH_KEY = "path";
+    public static final String PARAMETERS_KEY = "parameters";
+    public static final String HEADERS_KEY = "headers";
+    public static final String BODY_KEY = "body";
+    public static final String STATUS_KEY = "status";
+
+    public BatchQuery(String hostname, String path) {
+        this(hostname, DEFAULT_PORT, path, false);
+    }
+
+    public BatchQuery(String hostname, int port, String path, boolean secure) {
+        this(hostname, port, path, secure, DEFAULT_EXECUTOR_SERVICE);
+    }
+
+    public BatchQuery(String hostname, int port, String path, boolean secure,
+        ExecutorService executorService) {
+        super(hostname, port, path, secure, executorService);
+
+        super.setSerializer(new BatchSerializer());
+    }
+
+    @Override
+    public Method getMethod() {
+        return METHOD;
+    }
+
+    /**
+     * Returns the queries in the batch. The queries' paths must be within the
+     * path of the servlet that the batch is sent to; their hosts, ports,
+     * transports and caches are not used.
+     *
+     * @return The list of queries, to which queries can be added.
+     */
+    public List<Query<?>> getQueries() {
+        return queries;
+    }
+
+    /**
+     * The serializer of a batch query cannot be changed.
+     */
+    @Override
+    @UnsupportedOperation
+    public void setSerializer(final Serializer<?> serializer) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    boolean hasResponseBody(final Method method) {
+        return true;
+    }
+
+    /**
+     * Synchronously executes the queries.
+     *
+     * @return The result of each query, as it would be returned by the
+     * query's own <tt>execute()</tt> method, or the {@link QueryException} it
+     * failed with.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Sequence<Object> execute() throws QueryException {
+        ArrayList<Object> request = new ArrayList<>(queries.getLength());
+
+        try {
+            for (Query<?> query : queries) {
+                request.add(getRequest(query));
+            }
+        } catch (IOException | SerializationException exception) {
+            throw new QueryException(exception);
+        }
+
+        Sequence<Object> responses = (Sequence<Object>) execute(METHOD, request);
+
+        if (responses.getLength() != queries.getLength()) {
+            throw new QueryException(new SerializationException("Expected " + queries.getLength()
+                + " responses, received " + responses.getLength() + "."));
+        }
+
+        ArrayList<Object> results = new ArrayList<>(queries.getLength());
+        for (int i = 0, n = queries.getLength(); i < n; i++) {
+            results.add(getResult(queries.get(i), (Map<String, Object>) responses.get(i)));
+        }
+
+        return results;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getRequest(final Query<?> query) throws IOException, SerializationException {
+        HashMap<String, Object> request = new HashMap<>();
+        request.put(METHOD_KEY, query.getMethod().toString());
+        request.put(PATH_KEY, query.getPath());
+        request.put(PARAMETERS_KEY, toMap(query.getParameters()));
+        request.put(HEADERS_KEY, toMap(query.getRequestHeaders()));
+
+        Object value = null;
+        if (query instanceof PostQuery) {
+            value = ((PostQuery) query).getValue();
+        } else if (query instanceof PutQuery) {
+            value = ((PutQuery) query).getValue();
+        }
+
+        if (value != null) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            ((Serializer<Object>) query.getSerializer()).writeObject(value, outputStream);
+            request.put(BODY_KEY, Base64.getEncoder().encodeToString(outputStream.toByteArray()));
+        }
+
+        return request;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object getResult(final Query<?> query, final Map<String, Object> response) {
+        int status = ((Number) response.get(STATUS_KEY)).intValue();
+
+        QueryDictionary responseHeaders = new QueryDictionary(false);
+        Map<String, Object> headers = (Map<String, Object>) response.get(HEADERS_KEY);
+        if (headers != null) {
+            for (String key : headers) {
+                for (Object value : (List<Object>) headers.get(key)) {
+                    responseHeaders.add(key, (String) value);
+                }
+            }
+        }
+
+        if (status / 100 != 2) {
+            query.batchResponseReceived(status, responseHeaders, true);
+            return new QueryException(status);
+        }
+
+        Object result = null;
+
+        try {
+            switch (query.getMethod()) {
+                case GET:
+                    String body = (String) response.get(BODY_KEY);
+                    if (body != null) {
+                        result = query.getSerializer().readObject(
+                            new ByteArrayInputStream(Base64.getDecoder().decode(body)));
+                    }
+                    break;
+
+                case POST:
+                    String location = responseHeaders.get("Location");
+                    if (status == Status.CREATED && location != null) {
+                        result = new URL(query.getLocation(), location);
+                    }
+                    break;
+
+                case PUT:
+                    result = Boolean.valueOf(status == Status.CREATED);
+                    break;
+
+                default:
+                    break;
+            }
+        } catch (IOException | SerializationException | IllegalArgumentException exception) {
+            query.batchResponseReceived(status, responseHeaders, true);
+            return new QueryException(exception);
+        }
+
+        query.batchResponseReceived(status, responseHeaders, false);
+
+        return result;
+    }
+
+    private static Map<String, Object> toMap(final QueryDictionary dictionary) {
+        HashMap<String, Object> map = new HashMap<>();
+
+        for (String key : dictionary) {
+            ArrayList<Object> values = new ArrayList<>();
+            for (int i = 0, n = dictionary.getLength(key); i < n; i++) {
+                values.add(dictionary.get(key, i));
+            }
+
+            map.put(key, values);
+        }
+
+        return map;
+    }
+}
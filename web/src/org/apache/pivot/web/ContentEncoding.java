@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.pivot.util.Constants;
+
+/**
+ * HTTP content codings supported by web queries and query servlets.
+ */
+public enum ContentEncoding {
+    IDENTITY("identity") {
+        @Override
+        public InputStream getInputStream(final InputStream inputStream) {
+            return inputStream;
+        }
+
+        @Override
+        public OutputStream getOutputStream(final OutputStream outputStream, final int level) {
+            return outputStream;
+        }
+    },
+
+    GZIP("gzip") {
+        @Override
+        public InputStream getInputStream(final InputStream inputStream) throws IOException {
+            return new GZIPInputStream(inputStream, Constants.BUFFER_SIZE);
+        }
+
+        @Override
+        public OutputStream getOutputStream(final OutputStream outputStream, final int level)
+            throws IOException {
+            return new GZIPOutputStream(outputStream, Constants.BUFFER_SIZE) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+    },
+
+    DEFLATE("deflate") {
+        @Override
+        public InputStream getInputStream(final InputStream inputStream) {
+            return new InflaterInputStream(inputStream);
+        }
+
+        @Override
+        public OutputStream getOutputStream(final OutputStream outputStream, final int level) {
+            return new DeflaterOutputStream(outputStream, new Deflater(level), Constants.BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        def.end();
+                    }
+                }
+            };
+        }
+    };
+
+    private final String name;
+
+    /**
+     * The value of an <tt>Accept-Encoding</tt> header listing the supported
+     * compressed codings.
+     */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    public static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+    public static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+
+    private ContentEncoding(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return The name of the coding, as used in HTTP headers.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Wraps a stream of encoded content in a stream that decodes it.
+     *
+     * @param inputStream The encoded stream.
+     * @return The decoded stream.
+     * @throws IOException if the stream header cannot be read.
+     */
+    public abstract InputStream getInputStream(InputStream inputStream) throws IOException;
+
+    /**
+     * Wraps a stream in a stream that encodes the content written to it.
+     * Closing the returned stream finishes the encoding and closes the
+     * underlying stream.
+     *
+     * @param outputStream The stream the encoded content is written to.
+     * @param level The compression level, from {@link Deflater#NO_COMPRESSION}
+     * to {@link Deflater#BEST_COMPRESSION}, or
+     * {@link Deflater#DEFAULT_COMPRESSION}.
+     * @return The encoding stream.
+     * @throws IOException if the stream header cannot be written.
+     */
+    public abstract OutputStream getOutputStream(OutputStream outputStream, int level)
+        throws IOException;
+
+    /**
+     * Returns the coding named by a <tt>Content-Encoding</tt> header.
+     *
+     * @param value The header value, or <tt>null</tt> if there is none.
+     * @return The coding, or <tt>null</tt> if it is not supported.
+     */
+    public static ContentEncoding decode(final String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return IDENTITY;
+        }
+
+        String name = value.trim().toLowerCase(Locale.ENGLISH);
+        if (name.equals("x-gzip")) {
+            return GZIP;
+        }
+
+        for (ContentEncoding encoding : values()) {
+            if (encoding.name.equals(name)) {
+                return encoding;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Chooses the preferred compressed coding that an <tt>Accept-Encoding</tt>
+     * header allows, taking quality values into account. <tt>gzip</tt> is
+     * preferred over <tt>deflate</tt> when they are equally acceptable.
+     *
+     * @param acceptEncoding The header value, or <tt>null</tt> if there is none.
+     * @return The coding to use, or {@link #IDENTITY} if no compressed coding is
+     * acceptable.
+     */
+    public static ContentEncoding negotiate(final String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return IDENTITY;
+        }
+
+        float gzipQuality = -1;
+        float deflateQuality = -1;
+        float anyQuality = -1;
+
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ENGLISH);
+            float quality = 1;
+
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Float.parseFloat(parameter.substring(2));
+                    } catch (NumberFormatException exception) {
+                        quality = 0;
+                    }
+                }
+            }
+
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                gzipQuality = quality;
+            } else if (name.equals("deflate")) {
+                deflateQuality = quality;
+            } else if (name.equals("*")) {
+                anyQuality = quality;
+            }
+        }
+
+        if (gzipQuality < 0) {
+            gzipQuality = Math.max(anyQuality, 0);
+        }
+
+        if (deflateQuality < 0) {
+            deflateQuality = Math.max(anyQuality, 0);
+        }
+
+        ContentEncoding encoding;
+        if (gzipQuality > 0 && gzipQuality >= deflateQuality) {
+            encoding = GZIP;
+        } else if (deflateQuality > 0) {
+            encoding = DEFLATE;
+        } else {
+            encoding = IDENTITY;
+        }
+
+        return encoding;
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.apache.pivot.util.Utils;
+
+/**
+ * Query cache that stores responses as files in a directory, so that they
+ * survive restarts of the application. Deserialized values are not stored.
+ * Unreadable or corrupt files are treated as missing entries, and deleted.
+ * Once the files exceed a size limit, the least recently used ones are
+ * deleted.
+ */
+public class DiskQueryCache implements QueryCache {
+    private final File directory;
+    private final long maxSize;
+
+    /**
+     * The default size limit, in bytes of cache files.
+     */
+    public static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".cache";
+
+    /**
+     * @param directory The directory the responses are stored in; it is
+     * created if it does not exist.
+     */
+    public DiskQueryCache(final File directory) {
+        this(directory, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param directory The directory the responses are stored in; it is
+     * created if it does not exist.
+     * @param maxSize The size limit, in bytes of cache files.
+     */
+    public DiskQueryCache(final File directory, final long maxSize) {
+        Utils.checkNull(directory, "directory");
+
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive.");
+        }
+
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    private File getFile(final String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder buf = new StringBuilder(hash.length * 2 + SUFFIX.length());
+            for (byte b : hash) {
+                buf.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+
+            return new File(directory, buf.append(SUFFIX).toString());
+        } catch (NoSuchAlgorithmException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    @Override
+    public Entry get(final String key) {
+        File file = getFile(key);
+
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(
+            Files.newInputStream(file.toPath())))) {
+            // Check the key as well as the version, in case of a hash collision
+            if (inputStream.readInt() != VERSION || !inputStream.readUTF().equals(key)) {
+                return null;
+            }
+
+            long expirationTime = inputStream.readLong();
+
+            QueryDictionary responseHeaders = new QueryDictionary(false);
+            for (int i = 0, n = inputStream.readInt(); i < n; i++) {
+                responseHeaders.add(inputStream.readUTF(), inputStream.readUTF());
+            }
+
+            // Don't trust the length to allocate more than the file holds
+            int contentLength = inputStream.readInt();
+            if (contentLength < 0 || contentLength > file.length()) {
+                throw new IOException("Invalid content length " + contentLength + " in " + file + ".");
+            }
+
+            byte[] content = new byte[contentLength];
+            inputStream.readFully(content);
+
+            // The modification time records when the entry was last used
+            file.setLastModified(System.currentTimeMillis());
+
+            return new Entry(content, responseHeaders, expirationTime, null);
+        } catch (NoSuchFileException exception) {
+            return null;
+        } catch (IOException | RuntimeException exception) {
+            file.delete();
+            return null;
+        }
+    }
+
+    @Override
+    public void put(final String key, final Entry entry) {
+        Utils.checkNull(entry, "entry");
+
+        File file = getFile(key);
+
+        try {
+            Files.createDirectories(directory.toPath());
+
+            // Write to a temporary file and move it into place, so that
+            // readers never see a partial entry
+            File tempFile = File.createTempFile("query", null, directory);
+
+            try {
+                try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(tempFile.toPath())))) {
+                    outputStream.writeInt(VERSION);
+                    outputStream.writeUTF(key);
+                    outputStream.writeLong(entry.getExpirationTime());
+
+                    QueryDictionary responseHeaders = entry.getResponseHeaders();
+                    int count = 0;
+                    for (String headerKey : responseHeaders) {
+                        count += responseHeaders.getLength(headerKey);
+                    }
+
+                    outputStream.writeInt(count);
+                    for (String headerKey : responseHeaders) {
+                        for (int i = 0, n = responseHeaders.getLength(headerKey); i < n; i++) {
+                            outputStream.writeUTF(headerKey);
+                            outputStream.writeUTF(responseHeaders.get(headerKey, i));
+                        }
+                    }
+
+                    outputStream.writeInt(entry.getContent().length);
+                    outputStream.write(entry.getContent());
+                }
+
+                if (tempFile.length() > maxSize) {
+                    return;
+                }
+
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                tempFile.delete();
+            }
+        } catch (IOException exception) {
+            // The response is simply not cached
+            file.delete();
+            return;
+        }
+
+        trim(file);
+    }
+
+    /**
+     * Deletes the least recently used files, other than the one just written,
+     * until the files fit within the size limit.
+     */
+    private synchronized void trim(final File file) {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+
+        long size = 0;
+        long[] lengths = new long[files.length];
+        long[] lastModifiedTimes = new long[files.length];
+        Integer[] order = new Integer[files.length];
+
+        // Read the times once, as they change when entries are used
+        for (int i = 0; i < files.length; i++) {
+            lengths[i] = files[i].length();
+            lastModifiedTimes[i] = files[i].lastModified();
+            order[i] = i;
+            size += lengths[i];
+        }
+
+        if (size > maxSize) {
+            Arrays.sort(order, Comparator.comparingLong(i -> lastModifiedTimes[i]));
+
+            for (int j = 0; j < order.length && size > maxSize; j++) {
+                int i = order[j];
+                if (!files[i].equals(file) && files[i].delete()) {
+                    size -= lengths[i];
+                }
+            }
+        }
+    }
+
+    @Override
+    public void remove(final String key) {
+        getFile(key).delete();
+    }
+
+    @Override
+    public void clear() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,454 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.pivot.annotations.UnsupportedOperation;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.serialization.Serializer;
+import org.apache.pivot.util.MessageBus;
+import org.apache.pivot.util.Utils;
+
+/**
+ * Keeps a connection open to a server that pushes events as a
+ * <tt>text/event-stream</tt> (server-sent events), such as a
+ * <tt>QueryServlet</tt> that returns an event channel for the query's path.
+ * <p> Each event has a type and JSON data. Events of the types defined by
+ * this class are applied to the {@link #setListTarget list target} or the
+ * {@link #setMapTarget map target}, if any, so that the target mirrors a
+ * model on the server; all events are also sent on the {@link MessageBus} as
+ * {@link Event} messages if {@link #setSendMessages message sending} is on.
+ * Events are dispatched by the dispatch executor, which in a Pivot
+ * application is normally <tt>ApplicationContext::queueCallback</tt>, so
+ * that the targets can be the data of components. <p> Executing the query
+ * blocks until the server ends the stream, or until the next event or
+ * heartbeat once the query has been {@link #abort() aborted}; servers
+ * normally send heartbeats for that reason, and to keep idle connections
+ * open. The ID of the last event received is sent when
+ * the query is executed again, so that a server that keeps a history of its
+ * events can send the ones that were missed; a server that no longer has
+ * them sends a {@link #RESET_EVENT reset} event instead, after which the
+ * targets must be loaded again.
+ */
+public class EventQuery extends Query<Void> {
+    /**
+     * An event received from the server.
+     */
+    public static final class Event {
+        private final EventQuery query;
+        private final String id;
+        private final String type;
+        private final Object data;
+
+        private Event(final EventQuery query, final String id, final String type, final Object data) {
+            this.query = query;
+            this.id = id;
+            this.type = type;
+            this.data = data;
+        }
+
+        /**
+         * @return The query that received the event.
+         */
+        public EventQuery getQuery() {
+            return query;
+        }
+
+        /**
+         * @return The ID of the event, or <tt>null</tt> if it has none.
+         */
+        public String getID() {
+            return id;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * @return The data of the event, parsed from JSON, or <tt>null</tt> if
+         * it has none.
+         */
+        public Object getData() {
+            return data;
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + " " + type + " " + data;
+        }
+    }
+
+    /**
+     * Reads the event stream, dispatching each event as soon as it has been
+     * read.
+     */
+    private class EventStreamSerializer implements Serializer<Object> {
+        @Override
+        public Object readObject(final InputStream inputStream) throws IOException, SerializationException {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+
+            String id = null;
+            String type = null;
+            StringBuilder data = null;
+
+            for (String line = reader.readLine(); line != null && !abort; line = reader.readLine()) {
+                if (line.isEmpty()) {
+                    // A blank line ends an event
+                    if (data != null) {
+                        if (id != null) {
+                            lastEventID = id;
+                        }
+
+                        dispatch(new Event(EventQuery.this, id, (type == null) ? MESSAGE_EVENT : type,
+                            (data.length() == 0) ? null : JSONSerializer.parse(data.toString())));
+                    }
+
+                    id = null;
+                    type = null;
+                    data = null;
+                } else if (!line.startsWith(":")) {
+                    int i = line.indexOf(':');
+                    String field = (i == -1) ? line : line.substring(0, i);
+                    String value = (i == -1) ? "" : line.substring(line.startsWith(": ", i) ? i + 2 : i + 1);
+
+                    switch (field) {
+                        case "id":
+                            id = value;
+                            break;
+
+                        case "event":
+                            type = value;
+                            break;
+
+                        case "data":
+                            if (data == null) {
+                                data = new StringBuilder(value);
+                            } else {
+                                data.append('\n').append(value);
+                            }
+                            break;
+
+                        default:
+                            // Other fields, such as retry, are ignored
+                            break;
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        @UnsupportedOperation
+        public void writeObject(final Object object, final OutputStream outputStream) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getMIMEType(final Object object) {
+            return MIME_TYPE;
+        }
+    }
+
+    private List<Object> listTarget = null;
+    private Map<String, Object> mapTarget = null;
+    private boolean sendMessages = false;
+    private Executor dispatchExecutor = Runnable::run;
+
+    private volatile String lastEventID = null;
+
+    public static final Method METHOD = Method.GET;
+
+    public static final String MIME_TYPE = "text/event-stream";
+
+    public static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
+    /**
+     * The type of events that do not specify one.
+     */
+    public static final String MESSAGE_EVENT = "message";
+
+    /**
+     * Appends the event data to the list target.
+     */
+    public static final String ADD_EVENT = "add";
+
+    /**
+     * Inserts the {@link #VALUE_KEY value} of the event data into the list
+     * target at its {@link #INDEX_KEY index}.
+     */
+    public static final String INSERT_EVENT = "insert";
+
+    /**
+     * Replaces the item of the list target at the {@link #INDEX_KEY index} of
+     * the event data with its {@link #VALUE_KEY value}.
+     */
+    public static final String UPDATE_EVENT = "update";
+
+    /**
+     * Puts the {@link #VALUE_KEY value} of the event data into the map target
+     * with its {@link #KEY_KEY key}.
+     */
+    public static final String PUT_EVENT = "put";
+
+    /**
+     * Removes the {@link #COUNT_KEY count} items of the list target at the
+     * {@link #INDEX_KEY index} of the event data, or the entry of the map
+     * target with its {@link #KEY_KEY key}.
+     */
+    public static final String REMOVE_EVENT = "remove";
+
+    /**
+     * Removes all of the items of the targets.
+     */
+    public static final String CLEAR_EVENT = "clear";
+
+    /**
+     * Sent instead of the events that a reconnecting client missed, when the
+     * server no longer has all of them. The targets are cleared, as for a
+     * {@link #CLEAR_EVENT clear} event, and should be loaded again, for
+     * instance by a listener to the event message.
+     */
+    public static final String RESET_EVENT = "reset";
+
+    public static final String INDEX_KEY = "index";
+    public static final String COUNT_KEY = "count";
+    public static final String KEY_KEY = "key";
+    public static final String VALUE_KEY = "value";
+
+    public EventQuery(String hostname, String path) {
+        this(hostname, DEFAULT_PORT, path, false);
+    }
+
+    public EventQuery(String hostname, int port, String path, boolean secure) {
+        this(hostname, port, path, secure, DEFAULT_EXECUTOR_SERVICE);
+    }
+
+    public EventQuery(String hostname, int port, String path, boolean secure,
+        ExecutorService executorService) {
+        super(hostname, port, path, secure, executorService);
+
+        super.setSerializer(new EventStreamSerializer());
+        getRequestHeaders().put("Accept", MIME_TYPE);
+    }
+
+    @Override
+    public Method getMethod() {
+        return METHOD;
+    }
+
+    public List<Object> getListTarget() {
+        return listTarget;
+    }
+
+    /**
+     * Sets the list that {@link #ADD_EVENT add}, {@link #INSERT_EVENT insert},
+     * {@link #UPDATE_EVENT update}, {@link #REMOVE_EVENT remove} and
+     * {@link #CLEAR_EVENT clear} events are applied to.
+     *
+     * @param listTarget The list target, or <tt>null</tt> for none.
+     */
+    public void setListTarget(final List<Object> listTarget) {
+        this.listTarget = listTarget;
+    }
+
+    public Map<String, Object> getMapTarget() {
+        return mapTarget;
+    }
+
+    /**
+     * Sets the map that {@link #PUT_EVENT put}, {@link #REMOVE_EVENT remove}
+     * and {@link #CLEAR_EVENT clear} events are applied to.
+     *
+     * @param mapTarget The map target, or <tt>null</tt> for none.
+     */
+    public void setMapTarget(final Map<String, Object> mapTarget) {
+        this.mapTarget = mapTarget;
+    }
+
+    public boolean getSendMessages() {
+        return sendMessages;
+    }
+
+    /**
+     * Sets whether each event is sent on the {@link MessageBus}, to the
+     * listeners subscribed to the {@link Event} topic, after it has been
+     * applied to the targets.
+     *
+     * @param sendMessages Whether events are sent as messages.
+     */
+    public void setSendMessages(final boolean sendMessages) {
+        this.sendMessages = sendMessages;
+    }
+
+    public Executor getDispatchExecutor() {
+        return dispatchExecutor;
+    }
+
+    /**
+     * Sets the executor that events are dispatched by. By default, they are
+     * dispatched by the thread that executes the query.
+     *
+     * @param dispatchExecutor The dispatch executor.
+     */
+    public void setDispatchExecutor(final Executor dispatchExecutor) {
+        Utils.checkNull(dispatchExecutor, "dispatchExecutor");
+
+        this.dispatchExecutor = dispatchExecutor;
+    }
+
+    /**
+     * @return The ID of the last event received, which is sent in the
+     * <tt>Last-Event-ID</tt> header when the query is executed again, or
+     * <tt>null</tt> if none has been received.
+     */
+    public String getLastEventID() {
+        return lastEventID;
+    }
+
+    public void setLastEventID(final String lastEventID) {
+        this.lastEventID = lastEventID;
+    }
+
+    /**
+     * The serializer of an event query cannot be changed.
+     */
+    @Override
+    @UnsupportedOperation
+    public void setSerializer(final Serializer<?> serializer) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Event streams cannot be cached.
+     */
+    @Override
+    @UnsupportedOperation
+    public void setCache(final QueryCache cache) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Event streams cannot be shared.
+     */
+    @Override
+    @UnsupportedOperation
+    public void setCoalescer(final QueryCoalescer coalescer) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Synchronously executes the query, dispatching events until the server
+     * ends the stream or the query is aborted.
+     */
+    @Override
+    public Void execute() throws QueryException {
+        if (lastEventID == null) {
+            getRequestHeaders().remove(LAST_EVENT_ID_HEADER);
+        } else {
+            getRequestHeaders().put(LAST_EVENT_ID_HEADER, lastEventID);
+        }
+
+        execute(METHOD, null);
+        return null;
+    }
+
+    private void dispatch(final Event event) {
+        dispatchExecutor.execute(() -> {
+            apply(event);
+
+            if (sendMessages) {
+                MessageBus.sendMessage(event);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void apply(final Event event) {
+        Object data = event.getData();
+        Map<String, Object> map = (data instanceof Map<?, ?>) ? (Map<String, Object>) data : null;
+
+        switch (event.getType()) {
+            case ADD_EVENT:
+                if (listTarget != null) {
+                    listTarget.add(data);
+                }
+                break;
+
+            case INSERT_EVENT:
+                if (listTarget != null && map != null) {
+                    listTarget.insert(map.get(VALUE_KEY), getInt(map, INDEX_KEY));
+                }
+                break;
+
+            case UPDATE_EVENT:
+                if (listTarget != null && map != null) {
+                    listTarget.update(getInt(map, INDEX_KEY), map.get(VALUE_KEY));
+                }
+                break;
+
+            case PUT_EVENT:
+                if (mapTarget != null && map != null) {
+                    mapTarget.put((String) map.get(KEY_KEY), map.get(VALUE_KEY));
+                }
+                break;
+
+            case REMOVE_EVENT:
+                if (map != null) {
+                    if (map.containsKey(KEY_KEY)) {
+                        if (mapTarget != null) {
+                            mapTarget.remove((String) map.get(KEY_KEY));
+                        }
+                    } else if (listTarget != null) {
+                        listTarget.remove(getInt(map, INDEX_KEY),
+                            map.containsKey(COUNT_KEY) ? getInt(map, COUNT_KEY) : 1);
+                    }
+                }
+                break;
+
+            case CLEAR_EVENT:
+            case RESET_EVENT:
+                if (listTarget != null) {
+                    listTarget.clear();
+                }
+
+                if (mapTarget != null) {
+                    mapTarget.clear();
+                }
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    private static int getInt(final Map<String, Object> map, final String key) {
+        return ((Number) map.get(key)).intValue();
+    }
+}
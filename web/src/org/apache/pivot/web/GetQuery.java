@@ -16,14 +16,170 @@
  */
 package org.apache.pivot.web;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.Dictionary;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.json.JSONSerializerListener;
+import org.apache.pivot.serialization.CSVSerializer;
+import org.apache.pivot.serialization.CSVSerializerListener;
+import org.apache.pivot.serialization.Serializer;
+import org.apache.pivot.util.Utils;
 
 /**
  * Executes an HTTP GET operation.
+ * <p> If a {@link #setStreamTarget stream target} is set, the items of a
+ * top-level JSON array or CSV list are appended to it in batches as they are
+ * parsed, rather than all at once when the whole response has been read. The
+ * batches are added by the stream executor, which in a Pivot application is
+ * normally <tt>ApplicationContext::queueCallback</tt>, so that the target can
+ * be the data of a component such as a <tt>TableView</tt>. At most
+ * {@link #getMaxPendingBatches()} batches wait for the executor at any time;
+ * beyond that, parsing pauses until the executor catches up.
  */
 public class GetQuery extends Query<Object> {
+    /**
+     * Collects the items of the root sequence into batches and hands them to
+     * the stream executor.
+     */
+    private class ItemStream implements JSONSerializerListener, CSVSerializerListener {
+        private final List<Object> target;
+        private final Executor executor;
+        private final int maxPending;
+        private final Semaphore pendingBatches;
+
+        private Object root = null;
+        private boolean started = false;
+        private int batchLength;
+        private ArrayList<Object> batch;
+
+        public ItemStream(final List<Object> target, final Executor executor) {
+            this.target = target;
+            this.executor = executor;
+            this.maxPending = maxPendingBatches;
+            this.pendingBatches = new Semaphore(maxPending);
+
+            batchLength = Math.min(FIRST_BATCH_SIZE, batchSize);
+            batch = new ArrayList<>(batchLength);
+        }
+
+        private void begin(final Object value) {
+            if (!started) {
+                root = value;
+                started = true;
+            }
+        }
+
+        private void add(final Object item) {
+            batch.add(item);
+
+            if (batch.getLength() == batchLength) {
+                flush();
+
+                // Start with small batches so that the first items appear
+                // quickly, then grow them to reduce the per-batch overhead
+                batchLength = Math.min(batchLength * 2, batchSize);
+                batch = new ArrayList<>(batchLength);
+            }
+        }
+
+        private void flush() {
+            if (batch.getLength() > 0) {
+                ArrayList<Object> items = batch;
+
+                pendingBatches.acquireUninterruptibly();
+
+                try {
+                    executor.execute(() -> {
+                        try {
+                            for (Object item : items) {
+                                target.add(item);
+                            }
+                        } finally {
+                            pendingBatches.release();
+                        }
+                    });
+                } catch (RuntimeException exception) {
+                    pendingBatches.release();
+                    throw exception;
+                }
+            }
+        }
+
+        /**
+         * Delivers the remaining items and waits until the executor has added
+         * all of them to the target.
+         */
+        public void finish(final Object result) {
+            // The result was not parsed, as when it comes from the cache, or the
+            // serializer does not report its items
+            if (!started && result instanceof Sequence<?>) {
+                Sequence<?> sequence = (Sequence<?>) result;
+                for (int i = 0, n = sequence.getLength(); i < n; i++) {
+                    add(sequence.get(i));
+                }
+            }
+
+            flush();
+            batch = new ArrayList<>();
+
+            pendingBatches.acquireUninterruptibly(maxPending);
+            pendingBatches.release(maxPending);
+        }
+
+        @Override
+        public void beginDictionary(final JSONSerializer jsonSerializer,
+            final Dictionary<String, ?> value) {
+            begin(value);
+        }
+
+        @Override
+        public void beginSequence(final JSONSerializer jsonSerializer, final Sequence<?> value) {
+            begin(value);
+        }
+
+        @Override
+        public void readItem(final JSONSerializer jsonSerializer, final Sequence<?> sequence, final Object item) {
+            if (sequence == root) {
+                add(item);
+            }
+        }
+
+        @Override
+        public void beginList(final CSVSerializer csvSerializer, final List<?> list) {
+            begin(list);
+        }
+
+        @Override
+        public void readItem(final CSVSerializer csvSerializer, final Object item) {
+            add(item);
+        }
+    }
+
+    private List<Object> streamTarget = null;
+    private Executor streamExecutor = null;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int maxPendingBatches = DEFAULT_MAX_PENDING_BATCHES;
+
     public static final Method METHOD = Method.GET;
 
+    /**
+     * The default maximum number of items added to the stream target at a time.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    /**
+     * The default number of batches that may wait for the stream executor.
+     */
+    public static final int DEFAULT_MAX_PENDING_BATCHES = 4;
+
+    private static final int FIRST_BATCH_SIZE = 32;
+
     public GetQuery(String hostname, String path) {
         this(hostname, DEFAULT_PORT, path, false);
     }
@@ -42,14 +198,105 @@ public class GetQuery extends Query<Object> {
         return METHOD;
     }
 
+    /**
+     * @return The list the result items are streamed to, or <tt>null</tt> if
+     * the result is not streamed.
+     */
+    public List<Object> getStreamTarget() {
+        return streamTarget;
+    }
+
+    /**
+     * @return The executor that adds the streamed items to the target.
+     */
+    public Executor getStreamExecutor() {
+        return streamExecutor;
+    }
+
+    /**
+     * Streams the items of the result to a list. The items are appended to
+     * the list; it is not cleared first. If the query fails, the batches that
+     * were delivered before the failure remain in the list. <p> The query must not
+     * be executed synchronously on the executor's own thread, as it waits
+     * for the executor to add the items.
+     *
+     * @param streamTarget The list the items are added to, or <tt>null</tt> to
+     * turn streaming off.
+     * @param streamExecutor The executor that adds the items to the list, such
+     * as <tt>ApplicationContext::queueCallback</tt>; it may be <tt>null</tt>
+     * only if the target is.
+     */
+    public void setStreamTarget(final List<Object> streamTarget, final Executor streamExecutor) {
+        if (streamTarget != null) {
+            Utils.checkNull(streamExecutor, "streamExecutor");
+        }
+
+        this.streamTarget = streamTarget;
+        this.streamExecutor = streamExecutor;
+    }
+
+    /**
+     * @return The maximum number of items added to the stream target at a time.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(final int batchSize) {
+        Utils.checkPositive(batchSize, "batchSize");
+
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return The number of batches that may wait for the stream executor
+     * before parsing pauses.
+     */
+    public int getMaxPendingBatches() {
+        return maxPendingBatches;
+    }
+
+    public void setMaxPendingBatches(final int maxPendingBatches) {
+        Utils.checkPositive(maxPendingBatches, "maxPendingBatches");
+
+        this.maxPendingBatches = maxPendingBatches;
+    }
+
     /**
      * Synchronously executes the GET operation.
      *
      * @return The result of the operation, deserialized using the query's
-     * serializer.
+     * serializer. If the result is streamed, its items have been added to the
+     * stream target by the time this method returns.
      */
     @Override
     public Object execute() throws QueryException {
-        return execute(METHOD, null);
+        if (streamTarget == null) {
+            return execute(METHOD, null);
+        }
+
+        ItemStream itemStream = new ItemStream(streamTarget, streamExecutor);
+        Serializer<?> serializer = getSerializer();
+
+        if (serializer instanceof JSONSerializer) {
+            ((JSONSerializer) serializer).getJSONSerializerListeners().add(itemStream);
+        } else if (serializer instanceof CSVSerializer) {
+            ((CSVSerializer) serializer).getCSVSerializerListeners().add(itemStream);
+        }
+
+        Object result;
+        try {
+            result = execute(METHOD, null);
+        } finally {
+            if (serializer instanceof JSONSerializer) {
+                ((JSONSerializer) serializer).getJSONSerializerListeners().remove(itemStream);
+            } else if (serializer instanceof CSVSerializer) {
+                ((CSVSerializer) serializer).getCSVSerializerListeners().remove(itemStream);
+            }
+        }
+
+        itemStream.finish(result);
+
+        return result;
     }
 }
@@ -0,0 +1,376 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pivot.collections.HashSet;
+import org.apache.pivot.util.Constants;
+import org.apache.pivot.util.Utils;
+
+/**
+ * Transport that sends requests through a shared {@link HttpClient}. The
+ * client keeps connections alive between requests and, when the server
+ * supports it, multiplexes concurrent requests to the same host over a single
+ * HTTP/2 connection. Requests are sent asynchronously; a request body is
+ * buffered and sent when its stream is closed. If the query has a deadline,
+ * the exchange is aborted when it passes, including while the response body
+ * is being read. <p> <tt>HttpClient</tt> has no
+ * per-request proxy or hostname verifier, so a client is created for each
+ * distinct HTTP proxy, and queries with a SOCKS proxy or a hostname verifier
+ * are sent through a {@link URLConnectionTransport} instead.
+ */
+public class HttpClientTransport implements QueryTransport {
+    private static class HttpClientExchange implements Exchange {
+        private final HttpClient client;
+        private final HttpRequest.Builder requestBuilder;
+        private final String method;
+
+        private ByteArrayOutputStream outputStream = null;
+        private volatile CompletableFuture<HttpResponse<InputStream>> responseFuture = null;
+        private volatile HttpResponse<InputStream> response = null;
+
+        private ScheduledFuture<?> deadlineFuture = null;
+        private volatile boolean expired = false;
+
+        public HttpClientExchange(final HttpClient client, final HttpRequest.Builder requestBuilder,
+            final String method) {
+            this.client = client;
+            this.requestBuilder = requestBuilder;
+            this.method = method;
+        }
+
+        private void send(final HttpRequest.BodyPublisher bodyPublisher) {
+            HttpRequest request = requestBuilder.method(method, bodyPublisher).build();
+            responseFuture = client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+        }
+
+        private HttpResponse<InputStream> getResponse() throws IOException {
+            if (response == null) {
+                if (responseFuture == null) {
+                    send((outputStream == null) ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(outputStream.toByteArray()));
+                }
+
+                try {
+                    response = responseFuture.get();
+                } catch (InterruptedException exception) {
+                    responseFuture.cancel(true);
+                    throw new InterruptedIOException();
+                } catch (CancellationException exception) {
+                    throw new InterruptedIOException("Exchange was aborted.");
+                } catch (ExecutionException exception) {
+                    Throwable cause = exception.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+
+                    throw new IOException(cause);
+                }
+            }
+
+            return response;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            if (outputStream == null) {
+                outputStream = new ByteArrayOutputStream() {
+                    private boolean closed = false;
+
+                    @Override
+                    public void close() {
+                        if (!closed) {
+                            closed = true;
+                            send(HttpRequest.BodyPublishers.ofByteArray(toByteArray()));
+                        }
+                    }
+                };
+            }
+
+            return outputStream;
+        }
+
+        @Override
+        public int getStatus() throws IOException {
+            return getResponse().statusCode();
+        }
+
+        @Override
+        public String getMessage() {
+            // HTTP/2 has no reason phrase, and HttpClient does not expose the
+            // HTTP/1.1 one
+            return null;
+        }
+
+        @Override
+        public long getContentLength() throws IOException {
+            return getResponse().headers().firstValueAsLong(Constants.CONTENT_LENGTH_HEADER).orElse(-1);
+        }
+
+        @Override
+        public void getResponseHeaders(final QueryDictionary responseHeaders) throws IOException {
+            HttpHeaders headers = getResponse().headers();
+
+            for (java.util.Map.Entry<String, java.util.List<String>> entry : headers.map().entrySet()) {
+                String key = entry.getKey();
+
+                if (!key.startsWith(":")) {
+                    for (String value : entry.getValue()) {
+                        responseHeaders.add(key, value);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            InputStream body = getResponse().body();
+            if (deadlineFuture == null) {
+                return body;
+            }
+
+            // The request timeout only covers the response headers; reads of
+            // the body fail once the exchange has been aborted at the deadline
+            return new FilterInputStream(body) {
+                @Override
+                public int read() throws IOException {
+                    try {
+                        return super.read();
+                    } catch (IOException exception) {
+                        throw translate(exception);
+                    }
+                }
+
+                @Override
+                public int read(final byte[] b, final int off, final int len) throws IOException {
+                    try {
+                        return super.read(b, off, len);
+                    } catch (IOException exception) {
+                        throw translate(exception);
+                    }
+                }
+            };
+        }
+
+        private void setDeadline(final long timeout) {
+            deadlineFuture = getDeadlineScheduler().schedule(this::expire, timeout, TimeUnit.MILLISECONDS);
+        }
+
+        private void expire() {
+            expired = true;
+            abort();
+        }
+
+        private IOException translate(final IOException exception) {
+            if (expired) {
+                HttpTimeoutException timeoutException =
+                    new HttpTimeoutException("Response was not received before the deadline.");
+                timeoutException.initCause(exception);
+                return timeoutException;
+            }
+
+            return exception;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (deadlineFuture != null) {
+                deadlineFuture.cancel(false);
+            }
+
+            // Release the connection if the body was not read
+            if (response != null) {
+                response.body().close();
+            } else if (responseFuture != null) {
+                responseFuture.cancel(true);
+            }
+        }
+
+        @Override
+        public void abort() {
+            CompletableFuture<HttpResponse<InputStream>> responseFutureLocal = responseFuture;
+            if (responseFutureLocal != null) {
+                responseFutureLocal.cancel(true);
+            }
+
+            HttpResponse<InputStream> responseLocal = response;
+            if (responseLocal != null) {
+                try {
+                    responseLocal.body().close();
+                } catch (IOException exception) {
+                    // No-op
+                }
+            }
+        }
+    }
+
+    private final HttpClient client;
+    private final ConcurrentHashMap<Proxy, HttpClient> proxyClients = new ConcurrentHashMap<>();
+    private final URLConnectionTransport fallbackTransport = new URLConnectionTransport();
+
+    // Headers that HttpClient sets itself and does not allow to be set
+    private static final HashSet<String> RESTRICTED_HEADERS = new HashSet<>("connection",
+        "content-length", "expect", "host", "upgrade");
+
+    private static HttpClientTransport sharedInstance = null;
+    private static ScheduledThreadPoolExecutor deadlineScheduler = null;
+
+    /**
+     * Creates a transport with a new client that prefers HTTP/2, does not
+     * follow redirects, and uses the default proxy selector.
+     */
+    public HttpClientTransport() {
+        this(newClientBuilder().proxy(getDefaultProxySelector()).build());
+    }
+
+    /**
+     * Creates a transport that sends requests through the given client.
+     *
+     * @param client The client to use.
+     */
+    public HttpClientTransport(final HttpClient client) {
+        Utils.checkNull(client, "client");
+
+        this.client = client;
+    }
+
+    /**
+     * @return A transport with a client that is shared by all the queries
+     * that use it.
+     */
+    public static synchronized HttpClientTransport getSharedInstance() {
+        if (sharedInstance == null) {
+            sharedInstance = new HttpClientTransport();
+        }
+
+        return sharedInstance;
+    }
+
+    public HttpClient getClient() {
+        return client;
+    }
+
+    private static synchronized ScheduledThreadPoolExecutor getDeadlineScheduler() {
+        if (deadlineScheduler == null) {
+            deadlineScheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, HttpClientTransport.class.getName() + " deadline");
+                thread.setDaemon(true);
+                return thread;
+            });
+            deadlineScheduler.setRemoveOnCancelPolicy(true);
+        }
+
+        return deadlineScheduler;
+    }
+
+    private static HttpClient.Builder newClientBuilder() {
+        return HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NEVER);
+    }
+
+    private static ProxySelector getDefaultProxySelector() {
+        ProxySelector proxySelector = ProxySelector.getDefault();
+        return (proxySelector == null) ? HttpClient.Builder.NO_PROXY : proxySelector;
+    }
+
+    private HttpClient getClient(final Proxy proxy) {
+        if (proxy == null) {
+            return client;
+        }
+
+        return proxyClients.computeIfAbsent(proxy, key -> newClientBuilder()
+            .proxy((key.type() == Proxy.Type.DIRECT) ? HttpClient.Builder.NO_PROXY
+                : ProxySelector.of((InetSocketAddress) key.address()))
+            .build());
+    }
+
+    @Override
+    public Exchange open(final Query<?> query, final Query.Method method, final URL location,
+        final QueryDictionary requestHeaders, final String contentType) throws IOException {
+        Proxy proxy = query.getProxy();
+
+        if (query.getHostnameVerifier() != null
+            || (proxy != null && proxy.type() == Proxy.Type.SOCKS)) {
+            return fallbackTransport.open(query, method, location, requestHeaders, contentType);
+        }
+
+        HttpRequest.Builder requestBuilder;
+        try {
+            requestBuilder = HttpRequest.newBuilder(location.toURI());
+        } catch (URISyntaxException exception) {
+            throw new IOException(exception);
+        }
+
+        // Set the request headers
+        if (contentType != null) {
+            requestBuilder.header(Constants.CONTENT_TYPE_HEADER, contentType);
+        }
+
+        for (String key : requestHeaders) {
+            if (!RESTRICTED_HEADERS.contains(key.toLowerCase(Locale.ENGLISH))) {
+                for (int i = 0, n = requestHeaders.getLength(key); i < n; i++) {
+                    requestBuilder.header(key, requestHeaders.get(key, i));
+                }
+            }
+        }
+
+        long remainingTime = query.getRemainingTime();
+        if (remainingTime != Long.MAX_VALUE) {
+            requestBuilder.timeout(Duration.ofMillis(Math.max(remainingTime, 1)));
+        }
+
+        HttpClientExchange exchange = new HttpClientExchange(getClient(proxy), requestBuilder,
+            method.toString());
+
+        if (remainingTime != Long.MAX_VALUE) {
+            exchange.setDeadline(Math.max(remainingTime, 1));
+        }
+
+        // Requests without a body are sent right away
+        if (contentType == null) {
+            exchange.send(HttpRequest.BodyPublishers.noBody());
+        }
+
+        return exchange;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.apache.pivot.util.Utils;
+
+/**
+ * Query cache that keeps responses in memory, discarding the least recently
+ * used ones once their total size exceeds a limit. It may be backed by a
+ * second, larger tier such as a {@link DiskQueryCache}: entries are written
+ * through to it, and entries that are not in memory are looked up in it.
+ */
+public class MemoryQueryCache implements QueryCache {
+    private final long maxSize;
+    private final QueryCache nextTier;
+
+    private long size = 0;
+
+    // Iterates from least to most recently used
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The default size limit, in bytes of response content.
+     */
+    public static final long DEFAULT_MAX_SIZE = 16L * 1024 * 1024;
+
+    public MemoryQueryCache() {
+        this(DEFAULT_MAX_SIZE, null);
+    }
+
+    /**
+     * @param maxSize The size limit, in bytes of response content.
+     * @param nextTier The cache that backs this one, or <tt>null</tt>.
+     */
+    public MemoryQueryCache(final long maxSize, final QueryCache nextTier) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive.");
+        }
+
+        this.maxSize = maxSize;
+        this.nextTier = nextTier;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public QueryCache getNextTier() {
+        return nextTier;
+    }
+
+    /**
+     * @return The total size of the cached content, in bytes.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    @Override
+    public Entry get(final String key) {
+        Entry entry;
+
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+
+        if (entry == null && nextTier != null) {
+            entry = nextTier.get(key);
+
+            if (entry != null) {
+                putEntry(key, entry);
+            }
+        }
+
+        return entry;
+    }
+
+    @Override
+    public void put(final String key, final Entry entry) {
+        Utils.checkNull(entry, "entry");
+
+        putEntry(key, entry);
+
+        if (nextTier != null) {
+            nextTier.put(key, entry.withoutValue());
+        }
+    }
+
+    private synchronized void putEntry(final String key, final Entry entry) {
+        Entry previousEntry = entries.put(key, entry);
+        if (previousEntry != null) {
+            size -= previousEntry.getContent().length;
+        }
+
+        size += entry.getContent().length;
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            size -= iterator.next().getContent().length;
+            iterator.remove();
+        }
+    }
+
+    @Override
+    public void remove(final String key) {
+        synchronized (this) {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                size -= entry.getContent().length;
+            }
+        }
+
+        if (nextTier != null) {
+            nextTier.remove(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (this) {
+            entries.clear();
+            size = 0;
+        }
+
+        if (nextTier != null) {
+            nextTier.clear();
+        }
+    }
+}
@@ -16,20 +16,26 @@
  */
 package org.apache.pivot.web;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.Proxy;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.util.concurrent.ExecutorService;
+import java.util.zip.Deflater;
 
 import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.HttpsURLConnection;
 
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.collections.immutable.ImmutableList;
+import org.apache.pivot.collections.immutable.ImmutableMap;
 import org.apache.pivot.io.IOTask;
 import org.apache.pivot.json.JSONSerializer;
 import org.apache.pivot.serialization.SerializationException;
@@ -37,6 +43,8 @@ import org.apache.pivot.serialization.Serializer;
 import org.apache.pivot.util.Constants;
 import org.apache.pivot.util.ListenerList;
 import org.apache.pivot.util.Utils;
+import org.apache.pivot.util.concurrent.AbortException;
+import org.apache.pivot.util.concurrent.TimeoutException;
 
 /**
  * Abstract base class for web queries. A web query is an asynchronous operation
@@ -63,6 +71,8 @@ public abstract class Query<V> extends IOTask<V> {
         public static final int CREATED = 201;
         public static final int NO_CONTENT = 204;
 
+        public static final int NOT_MODIFIED = 304;
+
         public static final int BAD_REQUEST = 400;
         public static final int UNAUTHORIZED = 401;
         public static final int FORBIDDEN = 403;
@@ -85,6 +95,15 @@ public abstract class Query<V> extends IOTask<V> {
     private URL locationContext = null;
     private HostnameVerifier hostnameVerifier = null;
     private Proxy proxy = null;
+    private QueryTransport transport = defaultTransport;
+
+    private boolean acceptCompression = true;
+    private ContentEncoding requestEncoding = ContentEncoding.IDENTITY;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    private QueryCache cache = null;
+    private boolean cacheValues = false;
+    private QueryCoalescer coalescer = null;
 
     private QueryDictionary parameters = new QueryDictionary(true);
     private QueryDictionary requestHeaders = new QueryDictionary(false);
@@ -92,11 +111,14 @@ public abstract class Query<V> extends IOTask<V> {
     private int status = 0;
 
     private volatile long bytesExpected = -1;
+    private volatile QueryTransport.Exchange activeExchange = null;
 
     private Serializer<?> serializer = new JSONSerializer();
 
     private QueryListener.Listeners<V> queryListeners = new QueryListener.Listeners<>();
 
+    private static QueryTransport defaultTransport = new URLConnectionTransport();
+
     public static final int DEFAULT_PORT = -1;
 
     static {
@@ -178,6 +200,187 @@ public abstract class Query<V> extends IOTask<V> {
         this.proxy = proxy;
     }
 
+    /**
+     * Gets the transport that sends this query's requests.
+     *
+     * @return This query's transport.
+     */
+    public QueryTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Sets the transport that sends this query's requests.
+     *
+     * @param transport The transport to use (must be non-null).
+     * @throws IllegalArgumentException if the transport is {@code null}.
+     * @see HttpClientTransport
+     */
+    public void setTransport(final QueryTransport transport) {
+        Utils.checkNull(transport, "transport");
+
+        this.transport = transport;
+    }
+
+    /**
+     * Gets the transport that new queries use.
+     *
+     * @return The default transport, initially a {@link URLConnectionTransport}.
+     */
+    public static QueryTransport getDefaultTransport() {
+        return defaultTransport;
+    }
+
+    /**
+     * Sets the transport that new queries use, for example
+     * {@link HttpClientTransport#getSharedInstance()} so that all queries share
+     * a pool of connections.
+     *
+     * @param transport The default transport (must be non-null).
+     * @throws IllegalArgumentException if the transport is {@code null}.
+     */
+    public static void setDefaultTransport(final QueryTransport transport) {
+        Utils.checkNull(transport, "transport");
+
+        defaultTransport = transport;
+    }
+
+    /**
+     * Tells whether this query asks the server for a compressed response. If
+     * so, an <tt>Accept-Encoding</tt> header is sent unless the request
+     * headers already contain one, and a response body that the server has
+     * compressed is decompressed as it is read.
+     *
+     * @return {@code true} if compressed responses are accepted (the default).
+     */
+    public boolean getAcceptCompression() {
+        return acceptCompression;
+    }
+
+    public void setAcceptCompression(final boolean acceptCompression) {
+        this.acceptCompression = acceptCompression;
+    }
+
+    /**
+     * Gets the content coding used to compress the body of POST and PUT
+     * requests.
+     *
+     * @return The request coding; {@link ContentEncoding#IDENTITY} (the
+     * default) sends the body uncompressed.
+     */
+    public ContentEncoding getRequestEncoding() {
+        return requestEncoding;
+    }
+
+    /**
+     * Sets the content coding used to compress the body of POST and PUT
+     * requests. The server must support the coding; a <tt>QueryServlet</tt>
+     * does.
+     *
+     * @param requestEncoding The request coding (must be non-null).
+     * @throws IllegalArgumentException if the coding is {@code null}.
+     */
+    public void setRequestEncoding(final ContentEncoding requestEncoding) {
+        Utils.checkNull(requestEncoding, "requestEncoding");
+
+        this.requestEncoding = requestEncoding;
+    }
+
+    /**
+     * @return The compression level used for request bodies.
+     * @see #setCompressionLevel(int)
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the compression level used for request bodies.
+     *
+     * @param compressionLevel A level from {@link Deflater#NO_COMPRESSION} to
+     * {@link Deflater#BEST_COMPRESSION}, or {@link Deflater#DEFAULT_COMPRESSION}.
+     * @throws IllegalArgumentException if the level is out of range.
+     */
+    public void setCompressionLevel(final int compressionLevel) {
+        if (compressionLevel != Deflater.DEFAULT_COMPRESSION
+            && (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Invalid compression level " + compressionLevel + ".");
+        }
+
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Gets the cache that GET responses are stored in and served from.
+     *
+     * @return This query's cache, or <tt>null</tt> if responses are not
+     * cached (the default).
+     */
+    public QueryCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Sets the cache that GET responses are stored in and served from. A
+     * response is cached as its <tt>Cache-Control</tt> and <tt>Expires</tt>
+     * headers allow. Once it has expired, it is revalidated with a
+     * conditional request if the server sent an <tt>ETag</tt> or
+     * <tt>Last-Modified</tt> header, and reused if the server answers
+     * <tt>304 Not Modified</tt>.
+     *
+     * @param cache The cache to use, or <tt>null</tt> to disable caching.
+     */
+    public void setCache(final QueryCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Tells whether the deserialized value of a cached response is cached as
+     * well.
+     *
+     * @return {@code true} if cached values are shared rather than
+     * deserialized again on each use.
+     */
+    public boolean getCacheValues() {
+        return cacheValues;
+    }
+
+    /**
+     * Sets whether the deserialized value of a cached response is cached as
+     * well, so that it need not be parsed again. The same object is then
+     * returned by every query that uses the cached response, so lists and
+     * maps (such as those read by {@link JSONSerializer}) are cached and
+     * returned as read-only copies; other values must not be modified. Values
+     * are only kept by caches that hold entries in memory.
+     *
+     * @param cacheValues Whether to cache deserialized values.
+     */
+    public void setCacheValues(final boolean cacheValues) {
+        this.cacheValues = cacheValues;
+    }
+
+    /**
+     * Gets the coalescer that lets this query share a GET request with
+     * identical queries.
+     *
+     * @return This query's coalescer, or <tt>null</tt> if the query always
+     * sends its own request (the default).
+     */
+    public QueryCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    /**
+     * Sets the coalescer that lets this query share a GET request with
+     * identical queries that use the same coalescer.
+     *
+     * @param coalescer The coalescer to use, or <tt>null</tt> to always send
+     * a request.
+     */
+    public void setCoalescer(final QueryCoalescer coalescer) {
+        this.coalescer = coalescer;
+    }
+
     public URL getLocation() {
         StringBuilder queryStringBuilder = new StringBuilder();
 
@@ -314,11 +517,110 @@ public abstract class Query<V> extends IOTask<V> {
         return bytesExpected;
     }
 
-    @SuppressWarnings("unchecked")
     protected Object execute(final Method method, final Object value) throws QueryException {
+        if (coalescer == null || method != Method.GET) {
+            return executeRequest(method, value);
+        }
+
+        String key = getRequestKey();
+
+        while (true) {
+            QueryCoalescer.Flight flight = new QueryCoalescer.Flight();
+            QueryCoalescer.Flight current = coalescer.join(key, flight);
+
+            if (current == flight) {
+                try {
+                    Object result = executeRequest(method, value);
+                    flight.complete(result, status, responseHeaders, bytesReceived.get());
+
+                    return result;
+                } catch (QueryException exception) {
+                    flight.fail(exception);
+                    throw exception;
+                } catch (AbortException exception) {
+                    // Only this query was aborted; the others send the request again
+                    flight.abandon();
+                    throw exception;
+                } catch (RuntimeException exception) {
+                    flight.fail(new QueryException(exception));
+                    throw exception;
+                } finally {
+                    coalescer.land(key, flight);
+                }
+            }
+
+            bytesSent.set(0);
+            bytesReceived.set(0);
+            bytesExpected = -1;
+            status = 0;
+            responseHeaders.clear();
+
+            try {
+                current.await();
+            } catch (InterruptedException exception) {
+                queryListeners.failed(this);
+                throw new QueryException(exception);
+            }
+
+            if (!current.isAbandoned()) {
+                return getSharedResult(current);
+            }
+        }
+    }
+
+    /**
+     * Returns the key that identifies this query's GET request for
+     * coalescing and caching: its location (including parameters), its
+     * request headers, and the type of its serializer. Requests with
+     * different credentials or <tt>Accept</tt> headers, or whose responses
+     * are parsed differently, therefore never share a response.
+     */
+    private String getRequestKey() {
+        StringBuilder key = new StringBuilder(getLocation().toString());
+
+        for (String header : requestHeaders) {
+            for (int i = 0, n = requestHeaders.getLength(header); i < n; i++) {
+                key.append('\n').append(header).append(": ").append(requestHeaders.get(header, i));
+            }
+        }
+
+        return key.append('\n').append(serializer.getClass().getName()).toString();
+    }
+
+    private Object getSharedResult(final QueryCoalescer.Flight flight) throws QueryException {
+        QueryException exception = flight.getException();
+        if (exception != null) {
+            status = exception.getStatus();
+            queryListeners.failed(this);
+
+            if (exception.getCause() == null) {
+                throw new QueryException(exception.getStatus(), exception.getMessage());
+            }
+
+            throw new QueryException(exception.getCause());
+        }
+
+        QueryDictionary sharedHeaders = flight.getResponseHeaders();
+        for (String key : sharedHeaders) {
+            for (int i = 0, n = sharedHeaders.getLength(key); i < n; i++) {
+                responseHeaders.add(key, sharedHeaders.get(key, i));
+            }
+        }
+
+        status = flight.getStatus();
+        bytesReceived.set(flight.getBytesReceived());
+        bytesExpected = flight.getBytesReceived();
+
+        queryListeners.responseReceived(this);
+
+        return flight.getResult();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object executeRequest(final Method method, final Object value) throws QueryException {
         Object result = value;
         URL location = getLocation();
-        HttpURLConnection connection = null;
+        QueryTransport.Exchange exchange = null;
 
         Serializer<Object> serializerLocal = (Serializer<Object>) this.serializer;
 
@@ -333,50 +635,71 @@ public abstract class Query<V> extends IOTask<V> {
             // Clear any properties from a previous response
             responseHeaders.clear();
 
-            // Open a connection
-            if (proxy == null) {
-                connection = (HttpURLConnection) location.openConnection();
-            } else {
-                connection = (HttpURLConnection) location.openConnection(proxy);
-            }
+            // Use a cached response if it is still fresh
+            String cacheKey = null;
+            QueryCache.Entry cacheEntry = null;
 
-            connection.setRequestMethod(method.toString());
-            connection.setAllowUserInteraction(false);
-            connection.setInstanceFollowRedirects(false);
-            connection.setUseCaches(false);
+            if (cache != null && method == Method.GET) {
+                cacheKey = getRequestKey();
+                cacheEntry = cache.get(cacheKey);
 
-            if (connection instanceof HttpsURLConnection && hostnameVerifier != null) {
-                HttpsURLConnection httpsConnection = (HttpsURLConnection) connection;
-                httpsConnection.setHostnameVerifier(hostnameVerifier);
-            }
+                if (cacheEntry != null) {
+                    if (cacheEntry.isFresh()) {
+                        status = Status.OK;
+                        return getCachedResult(cacheEntry, serializerLocal);
+                    }
 
-            // Set the request headers
-            if (result != null) {
-                connection.setRequestProperty(Constants.CONTENT_TYPE_HEADER, serializerLocal.getMIMEType(result));
+                    if (!cacheEntry.isRevalidatable()) {
+                        cacheEntry = null;
+                    }
+                }
             }
 
+            // Add the content coding headers to the query's request headers
+            QueryDictionary headers = new QueryDictionary(false);
             for (String key : requestHeaders) {
                 for (int i = 0, n = requestHeaders.getLength(key); i < n; i++) {
-                    if (i == 0) {
-                        connection.setRequestProperty(key, requestHeaders.get(key, i));
-                    } else {
-                        connection.addRequestProperty(key, requestHeaders.get(key, i));
-                    }
+                    headers.add(key, requestHeaders.get(key, i));
+                }
+            }
+
+            if (acceptCompression && !headers.containsKey(ContentEncoding.ACCEPT_ENCODING_HEADER)) {
+                headers.put(ContentEncoding.ACCEPT_ENCODING_HEADER, ContentEncoding.ACCEPT_ENCODING);
+            }
+
+            if (result != null && requestEncoding != ContentEncoding.IDENTITY) {
+                headers.put(ContentEncoding.CONTENT_ENCODING_HEADER, requestEncoding.getName());
+            }
+
+            // Ask the server whether a stale cached response is still valid
+            if (cacheEntry != null) {
+                if (cacheEntry.getETag() != null && !headers.containsKey(QueryCache.IF_NONE_MATCH_HEADER)) {
+                    headers.put(QueryCache.IF_NONE_MATCH_HEADER, cacheEntry.getETag());
+                }
+
+                if (cacheEntry.getLastModified() != null
+                    && !headers.containsKey(QueryCache.IF_MODIFIED_SINCE_HEADER)) {
+                    headers.put(QueryCache.IF_MODIFIED_SINCE_HEADER, cacheEntry.getLastModified());
                 }
             }
 
-            // Set the input/output state
-            connection.setDoInput(true);
-            connection.setDoOutput(result != null);
+            // Open a connection
+            exchange = transport.open(this, method, location, headers,
+                (result == null) ? null : serializerLocal.getMIMEType(result));
+            activeExchange = exchange;
+
+            // The query may have been aborted while it was connecting
+            if (abort) {
+                throw new AbortException();
+            }
 
-            // Connect to the server
-            connection.connect();
             queryListeners.connected(this);
 
-            // Write the request body
+            // Write the request body; the bytes sent are counted after encoding
             if (result != null) {
-                try (OutputStream outputStream = connection.getOutputStream()) {
-                    serializerLocal.writeObject(result, new MonitoredOutputStream(outputStream));
+                try (OutputStream outputStream = requestEncoding.getOutputStream(
+                    new MonitoredOutputStream(exchange.getOutputStream()), compressionLevel)) {
+                    serializerLocal.writeObject(result, outputStream);
                 }
             }
 
@@ -384,16 +707,31 @@ public abstract class Query<V> extends IOTask<V> {
             queryListeners.requestSent(this);
 
             // Set the response info
-            status = connection.getResponseCode();
-            message = connection.getResponseMessage();
+            status = exchange.getStatus();
+            message = exchange.getMessage();
 
             // Record the content length
-            bytesExpected = connection.getContentLengthLong();
+            bytesExpected = exchange.getContentLength();
+
+            exchange.getResponseHeaders(responseHeaders);
 
-            // NOTE Header indexes start at 1, not 0
-            int i = 1;
-            for (String key = connection.getHeaderFieldKey(i); key != null; key = connection.getHeaderFieldKey(++i)) {
-                responseHeaders.add(key, connection.getHeaderField(i));
+            // Reuse the cached response if it has not changed
+            if (status == Status.NOT_MODIFIED && cacheEntry != null) {
+                QueryDictionary cacheHeaders = responseHeaders;
+                if (!cacheHeaders.containsKey(QueryCache.CACHE_CONTROL_HEADER)
+                    && !cacheHeaders.containsKey(QueryCache.EXPIRES_HEADER)) {
+                    cacheHeaders = cacheEntry.getResponseHeaders();
+                }
+
+                long expirationTime = QueryCache.getExpirationTime(cacheHeaders, System.currentTimeMillis());
+                if (expirationTime < 0) {
+                    cache.remove(cacheKey);
+                } else {
+                    cache.put(cacheKey, cacheEntry.withExpirationTime(expirationTime));
+                }
+
+                responseHeaders.clear();
+                return getCachedResult(cacheEntry, serializerLocal);
             }
 
             // If the response was anything other than 2xx, throw an exception
@@ -403,10 +741,26 @@ public abstract class Query<V> extends IOTask<V> {
                 throw new QueryException(status, message);
             }
 
-            // Read the response body
-            if (method == Method.GET && status == Query.Status.OK) {
-                try (InputStream inputStream = connection.getInputStream()) {
-                    result = serializerLocal.readObject(new MonitoredInputStream(inputStream));
+            // Read the response body; the bytes received are counted before
+            // decoding, to match the expected content length
+            if (hasResponseBody(method) && status == Query.Status.OK) {
+                ContentEncoding encoding = ContentEncoding.decode(
+                    responseHeaders.get(ContentEncoding.CONTENT_ENCODING_HEADER));
+                if (encoding == null) {
+                    throw new IOException("Unsupported content encoding \""
+                        + responseHeaders.get(ContentEncoding.CONTENT_ENCODING_HEADER) + "\".");
+                }
+
+                try (InputStream inputStream = encoding.getInputStream(
+                    new MonitoredInputStream(exchange.getInputStream()))) {
+                    if (cacheKey == null) {
+                        result = serializerLocal.readObject(inputStream);
+                    } else {
+                        // Keep the content so that it can be cached
+                        byte[] content = inputStream.readAllBytes();
+                        result = cacheResponse(cacheKey, content,
+                            serializerLocal.readObject(new ByteArrayInputStream(content)));
+                    }
                 }
             }
 
@@ -414,6 +768,17 @@ public abstract class Query<V> extends IOTask<V> {
             queryListeners.responseReceived(this);
         } catch (IOException exception) {
             queryListeners.failed(this);
+
+            // The exchange fails when it is abandoned, or when the transport
+            // times out at the deadline
+            if (abort) {
+                throw new AbortException();
+            }
+
+            if (getRemainingTime() == 0) {
+                throw new TimeoutException(exception.getMessage());
+            }
+
             throw new QueryException(exception);
         } catch (SerializationException exception) {
             queryListeners.failed(this);
@@ -421,11 +786,155 @@ public abstract class Query<V> extends IOTask<V> {
         } catch (RuntimeException exception) {
             queryListeners.failed(this);
             throw exception;
+        } finally {
+            activeExchange = null;
+
+            if (exchange != null) {
+                try {
+                    exchange.close();
+                } catch (IOException exception) {
+                    // No-op
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Tells whether a successful response to this query has a body to be
+     * deserialized.
+     */
+    boolean hasResponseBody(final Method method) {
+        return (method == Method.GET);
+    }
+
+    /**
+     * Records the response to this query when it was executed as part of a
+     * {@link BatchQuery}, and notifies the listeners.
+     */
+    void batchResponseReceived(final int statusArgument, final QueryDictionary headers, final boolean failed) {
+        status = statusArgument;
+        bytesSent.set(0);
+        bytesReceived.set(0);
+        bytesExpected = -1;
+
+        responseHeaders.clear();
+        for (String key : headers) {
+            for (int i = 0, n = headers.getLength(key); i < n; i++) {
+                responseHeaders.add(key, headers.get(key, i));
+            }
+        }
+
+        if (failed) {
+            queryListeners.failed(this);
+        } else {
+            queryListeners.responseReceived(this);
+        }
+    }
+
+    /**
+     * Caches a response, returning the value the query is to return.
+     */
+    private Object cacheResponse(final String cacheKey, final byte[] content, final Object result) {
+        long now = System.currentTimeMillis();
+        long expirationTime = QueryCache.getExpirationTime(responseHeaders, now);
+
+        // The key covers all of the request headers, so a response that
+        // varies with them is cached correctly, unless it varies with
+        // something other than request headers
+        String vary = responseHeaders.get(QueryCache.VARY_HEADER);
+        if (vary != null && vary.trim().equals("*")) {
+            cache.remove(cacheKey);
+            return result;
+        }
+
+        // The content is stored decoded, so the coding headers no longer apply
+        QueryDictionary cacheHeaders = new QueryDictionary(false);
+        for (String key : responseHeaders) {
+            if (!key.equalsIgnoreCase(ContentEncoding.CONTENT_ENCODING_HEADER)
+                && !key.equalsIgnoreCase(Constants.CONTENT_LENGTH_HEADER)) {
+                for (int i = 0, n = responseHeaders.getLength(key); i < n; i++) {
+                    cacheHeaders.add(key, responseHeaders.get(key, i));
+                }
+            }
+        }
+
+        Object value = cacheValues ? freeze(result) : null;
+        QueryCache.Entry entry = new QueryCache.Entry(content, cacheHeaders, expirationTime, value);
+
+        if (expirationTime > now || (expirationTime == now && entry.isRevalidatable())) {
+            cache.put(cacheKey, entry);
+            return cacheValues ? value : result;
         }
 
+        cache.remove(cacheKey);
         return result;
     }
 
+    /**
+     * Returns a read-only copy of a deserialized value that is to be shared
+     * through the cache, so that no query can change the value that the
+     * others return.
+     */
+    @SuppressWarnings("unchecked")
+    private static Object freeze(final Object value) {
+        if (value instanceof Map<?, ?>) {
+            Map<String, Object> map = (Map<String, Object>) value;
+            HashMap<String, Object> copy = new HashMap<>();
+            for (String key : map) {
+                copy.put(key, freeze(map.get(key)));
+            }
+
+            return new ImmutableMap<>(copy);
+        }
+
+        if (value instanceof List<?>) {
+            ArrayList<Object> copy = new ArrayList<>();
+            for (Object item : (List<Object>) value) {
+                copy.add(freeze(item));
+            }
+
+            return new ImmutableList<>(copy);
+        }
+
+        return value;
+    }
+
+    private Object getCachedResult(final QueryCache.Entry cacheEntry, final Serializer<Object> serializerLocal)
+        throws IOException, SerializationException {
+        QueryDictionary cacheHeaders = cacheEntry.getResponseHeaders();
+        for (String key : cacheHeaders) {
+            for (int i = 0, n = cacheHeaders.getLength(key); i < n; i++) {
+                responseHeaders.add(key, cacheHeaders.get(key, i));
+            }
+        }
+
+        Object result = cacheEntry.getValue();
+        if (result == null) {
+            result = serializerLocal.readObject(new ByteArrayInputStream(cacheEntry.getContent()));
+        }
+
+        queryListeners.responseReceived(this);
+
+        return result;
+    }
+
+    /**
+     * Aborts the query, abandoning its request if it is in progress, so that
+     * a blocked connection or read fails rather than continuing to consume
+     * bandwidth.
+     */
+    @Override
+    public void abort() {
+        super.abort();
+
+        QueryTransport.Exchange exchange = activeExchange;
+        if (exchange != null) {
+            exchange.abort();
+        }
+    }
+
     /**
      * @return The query listener list.
      */
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+import org.apache.pivot.util.Utils;
+
+/**
+ * Client-side cache of GET responses. Entries are keyed by the query's
+ * location (including its parameters), its request headers and the type of
+ * its serializer. Responses with a <tt>Vary: *</tt> header are not cached.
+ *
+ * @see MemoryQueryCache
+ * @see DiskQueryCache
+ */
+public interface QueryCache {
+    /**
+     * A cached response.
+     */
+    public static final class Entry {
+        private final byte[] content;
+        private final QueryDictionary responseHeaders;
+        private final long expirationTime;
+        private final Object value;
+
+        /**
+         * @param content The decoded response body.
+         * @param responseHeaders The response headers.
+         * @param expirationTime The time until which the entry can be used
+         * without revalidation, in milliseconds since the epoch.
+         * @param value The deserialized response body, or <tt>null</tt> if it
+         * is not cached.
+         */
+        public Entry(final byte[] content, final QueryDictionary responseHeaders, final long expirationTime,
+            final Object value) {
+            Utils.checkNull(content, "content");
+            Utils.checkNull(responseHeaders, "responseHeaders");
+
+            this.content = content;
+            this.responseHeaders = responseHeaders;
+            this.expirationTime = expirationTime;
+            this.value = value;
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+
+        public QueryDictionary getResponseHeaders() {
+            return responseHeaders;
+        }
+
+        public long getExpirationTime() {
+            return expirationTime;
+        }
+
+        /**
+         * @return The deserialized response body, or <tt>null</tt> if only
+         * the content is cached.
+         */
+        public Object getValue() {
+            return value;
+        }
+
+        /**
+         * @return <tt>true</tt> if the entry can be used without asking the
+         * server whether it has changed.
+         */
+        public boolean isFresh() {
+            return System.currentTimeMillis() < expirationTime;
+        }
+
+        /**
+         * @return The entity tag the server sent with the response, or
+         * <tt>null</tt>.
+         */
+        public String getETag() {
+            return responseHeaders.get(ETAG_HEADER);
+        }
+
+        /**
+         * @return The last modification time the server sent with the
+         * response, or <tt>null</tt>.
+         */
+        public String getLastModified() {
+            return responseHeaders.get(LAST_MODIFIED_HEADER);
+        }
+
+        /**
+         * @return <tt>true</tt> if the entry can be revalidated with a
+         * conditional request.
+         */
+        public boolean isRevalidatable() {
+            return (getETag() != null || getLastModified() != null);
+        }
+
+        /**
+         * Returns a copy of this entry with a new expiration time, as when the
+         * server confirms that the entry has not changed.
+         *
+         * @param expirationTimeArgument The new expiration time.
+         * @return The updated entry.
+         */
+        public Entry withExpirationTime(final long expirationTimeArgument) {
+            return new Entry(content, responseHeaders, expirationTimeArgument, value);
+        }
+
+        /**
+         * @return A copy of this entry without the deserialized value.
+         */
+        public Entry withoutValue() {
+            return (value == null) ? this : new Entry(content, responseHeaders, expirationTime, null);
+        }
+    }
+
+    public static final String CACHE_CONTROL_HEADER = "Cache-Control";
+    public static final String EXPIRES_HEADER = "Expires";
+    public static final String ETAG_HEADER = "ETag";
+    public static final String LAST_MODIFIED_HEADER = "Last-Modified";
+    public static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+    public static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since";
+    public static final String VARY_HEADER = "Vary";
+
+    /**
+     * Returns a cached response.
+     *
+     * @param key The cache key.
+     * @return The entry, or <tt>null</tt> if there is none.
+     */
+    public Entry get(String key);
+
+    /**
+     * Adds or replaces a cached response.
+     *
+     * @param key The cache key.
+     * @param entry The entry.
+     */
+    public void put(String key, Entry entry);
+
+    /**
+     * Removes a cached response.
+     *
+     * @param key The cache key.
+     */
+    public void remove(String key);
+
+    /**
+     * Removes all cached responses.
+     */
+    public void clear();
+
+    /**
+     * Determines how long a response may be cached from its
+     * <tt>Cache-Control</tt> and <tt>Expires</tt> headers.
+     *
+     * @param responseHeaders The response headers.
+     * @param now The time the response was received.
+     * @return The expiration time of the response, which is <tt>now</tt> if
+     * it must be revalidated before every use, or <tt>-1</tt> if it must not
+     * be cached.
+     */
+    public static long getExpirationTime(final QueryDictionary responseHeaders, final long now) {
+        String cacheControl = responseHeaders.get(CACHE_CONTROL_HEADER);
+        long expirationTime = now;
+        boolean maxAge = false;
+        boolean noCache = false;
+
+        if (cacheControl != null) {
+            for (String directive : cacheControl.split(",")) {
+                String name = directive.trim().toLowerCase(Locale.ENGLISH);
+
+                if (name.equals("no-store")) {
+                    return -1;
+                } else if (name.equals("no-cache")) {
+                    noCache = true;
+                } else if (name.startsWith("max-age=")) {
+                    maxAge = true;
+
+                    try {
+                        expirationTime = now + Long.parseLong(name.substring(8).trim()) * 1000;
+                    } catch (NumberFormatException exception) {
+                        expirationTime = now;
+                    }
+                }
+            }
+        }
+
+        if (noCache) {
+            return now;
+        }
+
+        // max-age takes precedence over Expires
+        String expires = responseHeaders.get(EXPIRES_HEADER);
+        if (!maxAge && expires != null) {
+            try {
+                expirationTime = Math.max(now, ZonedDateTime.parse(expires,
+                    DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli());
+            } catch (DateTimeParseException exception) {
+                expirationTime = now;
+            }
+        }
+
+        return expirationTime;
+    }
+}
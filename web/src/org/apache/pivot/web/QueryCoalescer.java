@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets identical GET queries that are executed at the same time share a
+ * single request. The first query to be executed sends the request; queries
+ * executed while it is in flight wait for it and return the same result,
+ * with the same status and response headers. Queries are identical if they
+ * have the same location (including parameters), request headers and
+ * serializer type. <p> Optionally, a result is remembered for a short time
+ * after it is received, so that identical queries executed shortly after
+ * also share it. Failures are shared with the queries that are waiting, but
+ * not remembered. If the query that sent the request is aborted, the queries
+ * that are waiting send the request again (one of them, if they are still
+ * identical). <p> Since the result object is shared, it must not be
+ * modified by any of the queries' listeners.
+ *
+ * @see Query#setCoalescer(QueryCoalescer)
+ */
+public class QueryCoalescer {
+    /**
+     * A request that is in flight or whose result is remembered.
+     */
+    static final class Flight {
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        private volatile Object result = null;
+        private volatile QueryException exception = null;
+        private volatile int status = 0;
+        private volatile QueryDictionary responseHeaders = null;
+        private volatile long bytesReceived = 0;
+        private volatile long completionTime = 0;
+        private volatile boolean abandoned = false;
+
+        void complete(final Object resultArgument, final int statusArgument,
+            final QueryDictionary responseHeadersArgument, final long bytesReceivedArgument) {
+            // Keep a copy of the headers, as the query clears its own ones
+            // when it is executed again
+            QueryDictionary headers = new QueryDictionary(false);
+            for (String key : responseHeadersArgument) {
+                for (int i = 0, n = responseHeadersArgument.getLength(key); i < n; i++) {
+                    headers.add(key, responseHeadersArgument.get(key, i));
+                }
+            }
+
+            result = resultArgument;
+            status = statusArgument;
+            responseHeaders = headers;
+            bytesReceived = bytesReceivedArgument;
+            completionTime = System.currentTimeMillis();
+
+            latch.countDown();
+        }
+
+        void fail(final QueryException exceptionArgument) {
+            exception = exceptionArgument;
+            completionTime = System.currentTimeMillis();
+
+            latch.countDown();
+        }
+
+        /**
+         * Called when the query that sent the request was aborted, so that
+         * the queries waiting for it send their own.
+         */
+        void abandon() {
+            abandoned = true;
+            completionTime = System.currentTimeMillis();
+
+            latch.countDown();
+        }
+
+        boolean isAbandoned() {
+            return abandoned;
+        }
+
+        void await() throws InterruptedException {
+            latch.await();
+        }
+
+        boolean isDone() {
+            return (latch.getCount() == 0);
+        }
+
+        Object getResult() {
+            return result;
+        }
+
+        QueryException getException() {
+            return exception;
+        }
+
+        int getStatus() {
+            return status;
+        }
+
+        QueryDictionary getResponseHeaders() {
+            return responseHeaders;
+        }
+
+        long getBytesReceived() {
+            return bytesReceived;
+        }
+    }
+
+    private final long memoTime;
+
+    private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong sharedCount = new AtomicLong();
+
+    /**
+     * Creates a coalescer that only shares requests that are in flight.
+     */
+    public QueryCoalescer() {
+        this(0);
+    }
+
+    /**
+     * @param memoTime How long a result is shared after it has been received,
+     * in milliseconds.
+     */
+    public QueryCoalescer(final long memoTime) {
+        if (memoTime < 0) {
+            throw new IllegalArgumentException("memoTime is negative.");
+        }
+
+        this.memoTime = memoTime;
+    }
+
+    public long getMemoTime() {
+        return memoTime;
+    }
+
+    /**
+     * @return The number of requests that have been sent.
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return The number of query executions that shared the result of
+     * another one instead of sending a request.
+     */
+    public long getSharedCount() {
+        return sharedCount.get();
+    }
+
+    /**
+     * Forgets the remembered results. Requests that are in flight are still
+     * shared.
+     */
+    public void clear() {
+        flights.values().removeIf(Flight::isDone);
+    }
+
+    /**
+     * Joins the flight for a key, starting it if there is none.
+     *
+     * @param key The key of the query.
+     * @param flight The flight to start if the query is not already in flight.
+     * @return The flight the query is to share, which is <tt>flight</tt> if
+     * the caller is to send the request.
+     */
+    Flight join(final String key, final Flight flight) {
+        long now = System.currentTimeMillis();
+
+        Flight current = flights.compute(key, (k, existing) -> {
+            if (existing == null
+                || (existing.isDone() && (existing.getException() != null || existing.isAbandoned()
+                    || now - existing.completionTime >= memoTime))) {
+                return flight;
+            }
+
+            return existing;
+        });
+
+        if (current == flight) {
+            requestCount.incrementAndGet();
+        } else {
+            sharedCount.incrementAndGet();
+        }
+
+        return current;
+    }
+
+    /**
+     * Called when the request for a flight completes, successfully or not.
+     */
+    void land(final String key, final Flight flight) {
+        if (memoTime == 0 || flight.getException() != null || flight.isAbandoned()) {
+            flights.remove(key, flight);
+        }
+
+        // Discard the results that are no longer shared
+        if (memoTime > 0) {
+            long now = System.currentTimeMillis();
+            flights.values().removeIf(existing -> existing.isDone() && now - existing.completionTime >= memoTime);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+
+/**
+ * Sends the HTTP requests of web queries. A transport opens an
+ * {@link Exchange} for each execution of a query; the query writes the request
+ * body to the exchange, then reads the response status, headers and body from
+ * it.
+ *
+ * @see URLConnectionTransport
+ * @see HttpClientTransport
+ */
+public interface QueryTransport {
+    /**
+     * A single HTTP request and its response.
+     */
+    public interface Exchange extends Closeable {
+        /**
+         * Returns the stream the request body is written to. The request is
+         * complete when the stream is closed. This is only called for requests
+         * that have a body.
+         *
+         * @return The request body stream.
+         * @throws IOException if the stream cannot be opened.
+         */
+        public OutputStream getOutputStream() throws IOException;
+
+        /**
+         * Returns the response status code, waiting for the response if
+         * necessary.
+         *
+         * @return The HTTP status code.
+         * @throws IOException if the response cannot be received.
+         */
+        public int getStatus() throws IOException;
+
+        /**
+         * @return The response status message, or <tt>null</tt> if the
+         * protocol does not provide one.
+         * @throws IOException if the response cannot be received.
+         */
+        public String getMessage() throws IOException;
+
+        /**
+         * @return The value of the <tt>Content-Length</tt> response header,
+         * or <tt>-1</tt> if it is not known.
+         * @throws IOException if the response cannot be received.
+         */
+        public long getContentLength() throws IOException;
+
+        /**
+         * Adds the response headers to a dictionary.
+         *
+         * @param responseHeaders The dictionary to add the headers to.
+         * @throws IOException if the response cannot be received.
+         */
+        public void getResponseHeaders(QueryDictionary responseHeaders) throws IOException;
+
+        /**
+         * @return The stream the response body is read from.
+         * @throws IOException if the stream cannot be opened.
+         */
+        public InputStream getInputStream() throws IOException;
+
+        /**
+         * Abandons the exchange from another thread, so that the thread that
+         * is waiting on it fails promptly. This must not block. The default
+         * implementation does nothing, in which case the exchange ends when
+         * its connection does.
+         */
+        public default void abort() {
+            // No-op
+        }
+    }
+
+    /**
+     * Opens a connection for a query and sends its request headers.
+     *
+     * @param query The query being executed; its proxy and hostname verifier
+     * apply to the request, and its {@link Query#getRemainingTime() remaining
+     * time} bounds the time spent waiting for the connection and response.
+     * @param method The HTTP method.
+     * @param location The URL of the request, including the query string.
+     * @param requestHeaders The request headers to send, which include the
+     * query's request headers.
+     * @param contentType The type of the request body, or <tt>null</tt> if the
+     * request has no body.
+     * @return The exchange for the request.
+     * @throws IOException if the connection cannot be opened.
+     */
+    public Exchange open(Query<?> query, Query.Method method, URL location,
+        QueryDictionary requestHeaders, String contentType) throws IOException;
+}
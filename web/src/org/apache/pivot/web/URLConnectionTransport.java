@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import javax.net.ssl.HttpsURLConnection;
+
+import org.apache.pivot.util.Constants;
+
+/**
+ * Transport that opens a new {@link HttpURLConnection} for each request. This
+ * is the default transport.
+ */
+public class URLConnectionTransport implements QueryTransport {
+    private static class URLConnectionExchange implements Exchange {
+        private final HttpURLConnection connection;
+
+        public URLConnectionExchange(final HttpURLConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return connection.getOutputStream();
+        }
+
+        @Override
+        public int getStatus() throws IOException {
+            return connection.getResponseCode();
+        }
+
+        @Override
+        public String getMessage() throws IOException {
+            return connection.getResponseMessage();
+        }
+
+        @Override
+        public long getContentLength() {
+            return connection.getContentLengthLong();
+        }
+
+        @Override
+        public void getResponseHeaders(final QueryDictionary responseHeaders) {
+            // NOTE Header indexes start at 1, not 0
+            int i = 1;
+            for (String key = connection.getHeaderFieldKey(i); key != null; key = connection.getHeaderFieldKey(++i)) {
+                responseHeaders.add(key, connection.getHeaderField(i));
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return connection.getInputStream();
+        }
+
+        @Override
+        public void close() {
+            // The connection is released when its streams are closed
+        }
+
+        @Override
+        public void abort() {
+            // Disconnecting closes the response stream, which waits for a
+            // blocked read of a chunked response to return, so it may only
+            // take effect once more of the response or the deadline arrives
+            Thread thread = new Thread(connection::disconnect, getClass().getSimpleName() + " abort");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    @Override
+    public Exchange open(final Query<?> query, final Query.Method method, final URL location,
+        final QueryDictionary requestHeaders, final String contentType) throws IOException {
+        HttpURLConnection connection;
+
+        if (query.getProxy() == null) {
+            connection = (HttpURLConnection) location.openConnection();
+        } else {
+            connection = (HttpURLConnection) location.openConnection(query.getProxy());
+        }
+
+        connection.setRequestMethod(method.toString());
+        connection.setAllowUserInteraction(false);
+        connection.setInstanceFollowRedirects(false);
+        connection.setUseCaches(false);
+
+        long remainingTime = query.getRemainingTime();
+        if (remainingTime != Long.MAX_VALUE) {
+            // Zero would mean no timeout
+            int timeout = (int) Math.max(Math.min(remainingTime, Integer.MAX_VALUE), 1);
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+        }
+
+        if (connection instanceof HttpsURLConnection && query.getHostnameVerifier() != null) {
+            HttpsURLConnection httpsConnection = (HttpsURLConnection) connection;
+            httpsConnection.setHostnameVerifier(query.getHostnameVerifier());
+        }
+
+        // Set the request headers
+        if (contentType != null) {
+            connection.setRequestProperty(Constants.CONTENT_TYPE_HEADER, contentType);
+        }
+
+        for (String key : requestHeaders) {
+            for (int i = 0, n = requestHeaders.getLength(key); i < n; i++) {
+                if (i == 0) {
+                    connection.setRequestProperty(key, requestHeaders.get(key, i));
+                } else {
+                    connection.addRequestProperty(key, requestHeaders.get(key, i));
+                }
+            }
+        }
+
+        // Set the input/output state
+        connection.setDoInput(true);
+        connection.setDoOutput(contentType != null);
+
+        // Connect to the server
+        connection.connect();
+
+        return new URLConnectionExchange(connection);
+    }
+}
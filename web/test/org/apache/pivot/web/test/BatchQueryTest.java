@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.web.BatchQuery;
+import org.apache.pivot.web.DeleteQuery;
+import org.apache.pivot.web.GetQuery;
+import org.apache.pivot.web.PostQuery;
+import org.apache.pivot.web.PutQuery;
+import org.apache.pivot.web.Query;
+import org.apache.pivot.web.QueryException;
+import org.apache.pivot.web.QueryListener;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class BatchQueryTest {
+    private static HttpServer server = null;
+    private static AtomicInteger requestCount = new AtomicInteger();
+
+    /**
+     * Answers each query of a batch the way a query servlet would, echoing
+     * GET paths and POST bodies.
+     */
+    @BeforeClass
+    @SuppressWarnings("unchecked")
+    public static void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+
+        server.createContext("/app/batch", exchange -> {
+            requestCount.incrementAndGet();
+
+            ArrayList<Object> responses = new ArrayList<>();
+            byte[] responseBody;
+            try {
+                if (!BatchQuery.MIME_TYPE.equals(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+                    throw new SerializationException("Not a batch.");
+                }
+
+                List<Object> items = (List<Object>) new JSONSerializer().readObject(exchange.getRequestBody());
+                for (Object item : items) {
+                    Map<String, Object> request = (Map<String, Object>) item;
+                    String method = (String) request.get(BatchQuery.METHOD_KEY);
+                    String path = (String) request.get(BatchQuery.PATH_KEY);
+
+                    HashMap<String, Object> response = new HashMap<>();
+                    HashMap<String, Object> headers = new HashMap<>();
+                    response.put(BatchQuery.HEADERS_KEY, headers);
+
+                    if (path.endsWith("/missing")) {
+                        response.put(BatchQuery.STATUS_KEY, 404);
+                    } else if (method.equals("GET")) {
+                        Map<String, Object> parameters = (Map<String, Object>) request.get(BatchQuery.PARAMETERS_KEY);
+                        String body = "{\"path\": \"" + path + "\", \"q\": \""
+                            + ((List<Object>) parameters.get("q")).get(0) + "\"}";
+
+                        response.put(BatchQuery.STATUS_KEY, 200);
+                        response.put(BatchQuery.BODY_KEY,
+                            Base64.getEncoder().encodeToString(body.getBytes(StandardCharsets.UTF_8)));
+                    } else if (method.equals("POST")) {
+                        byte[] body = Base64.getDecoder().decode((String) request.get(BatchQuery.BODY_KEY));
+                        ArrayList<Object> location = new ArrayList<>();
+                        location.add(path + "/" + new String(body, StandardCharsets.UTF_8).length());
+
+                        headers.put("Location", location);
+                        response.put(BatchQuery.STATUS_KEY, 201);
+                    } else {
+                        response.put(BatchQuery.STATUS_KEY, 204);
+                    }
+
+                    responses.add(response);
+                }
+
+                responseBody = JSONSerializer.toString(responses).getBytes(StandardCharsets.UTF_8);
+            } catch (SerializationException exception) {
+                exchange.sendResponseHeaders(400, -1);
+                exchange.close();
+                return;
+            }
+
+            exchange.getResponseHeaders().add("Content-Type", BatchQuery.MIME_TYPE);
+            exchange.sendResponseHeaders(200, responseBody.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(responseBody);
+            }
+        });
+
+        server.start();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBatch() throws Exception {
+        int port = server.getAddress().getPort();
+        requestCount.set(0);
+
+        BatchQuery batchQuery = new BatchQuery("localhost", port, "/app/batch", false);
+
+        GetQuery getQuery = new GetQuery("localhost", port, "/app/items/1", false);
+        getQuery.getParameters().put("q", "x y");
+
+        PostQuery postQuery = new PostQuery("localhost", port, "/app/items", false);
+        HashMap<String, Object> value = new HashMap<>();
+        value.put("name", "abc");
+        postQuery.setValue(value);
+
+        PutQuery putQuery = new PutQuery("localhost", port, "/app/items/1", false);
+        putQuery.setValue(value);
+
+        DeleteQuery deleteQuery = new DeleteQuery("localhost", port, "/app/missing", false);
+
+        int[] responseCount = new int[1];
+        int[] failureCount = new int[1];
+        QueryListener<Object> listener = new QueryListener<Object>() {
+            @Override
+            public void responseReceived(final Query<Object> query) {
+                responseCount[0]++;
+            }
+
+            @Override
+            public void failed(final Query<Object> query) {
+                failureCount[0]++;
+            }
+        };
+        getQuery.getQueryListeners().add(listener);
+        deleteQuery.getQueryListeners().add((QueryListener<Void>) (QueryListener<?>) listener);
+
+        List<Query<?>> queries = batchQuery.getQueries();
+        queries.add(getQuery);
+        queries.add(postQuery);
+        queries.add(putQuery);
+        queries.add(deleteQuery);
+
+        Sequence<Object> results = batchQuery.execute();
+
+        // One round trip for the four queries
+        assertEquals(1, requestCount.get());
+        assertEquals(4, results.getLength());
+
+        Map<String, Object> getResult = (Map<String, Object>) results.get(0);
+        assertEquals("/app/items/1", getResult.get("path"));
+        assertEquals("x y", getResult.get("q"));
+        assertEquals(200, getQuery.getStatus());
+        assertEquals(1, responseCount[0]);
+
+        String postBody = JSONSerializer.toString(value);
+        assertEquals(new URL("http://localhost:" + port + "/app/items/" + postBody.length()), results.get(1));
+        assertEquals(201, postQuery.getStatus());
+        assertTrue(postQuery.getResponseHeaders().get("Location").endsWith("/" + postBody.length()));
+
+        assertEquals(Boolean.FALSE, results.get(2));
+        assertEquals(204, putQuery.getStatus());
+
+        assertEquals(404, ((QueryException) results.get(3)).getStatus());
+        assertEquals(404, deleteQuery.getStatus());
+        assertEquals(1, failureCount[0]);
+    }
+
+    @Test
+    public void testEmptyBatch() throws QueryException {
+        BatchQuery batchQuery = new BatchQuery("localhost", server.getAddress().getPort(), "/app/batch", false);
+        assertEquals(0, batchQuery.execute().getLength());
+    }
+}
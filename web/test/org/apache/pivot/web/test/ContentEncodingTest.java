@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+
+import org.apache.pivot.web.ContentEncoding;
+import org.junit.Test;
+
+public class ContentEncodingTest {
+    @Test
+    public void testNegotiate() {
+        assertEquals(ContentEncoding.IDENTITY, ContentEncoding.negotiate(null));
+        assertEquals(ContentEncoding.IDENTITY, ContentEncoding.negotiate("identity"));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("gzip, deflate"));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("deflate, gzip"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0.5, deflate"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0, *"));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("br, *;q=0.1"));
+        assertEquals(ContentEncoding.IDENTITY, ContentEncoding.negotiate("*;q=0, identity"));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("X-GZIP"));
+    }
+
+    @Test
+    public void testDecode() {
+        assertEquals(ContentEncoding.IDENTITY, ContentEncoding.decode(null));
+        assertEquals(ContentEncoding.IDENTITY, ContentEncoding.decode(""));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.decode("gzip"));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.decode("x-gzip"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.decode(" Deflate "));
+        assertNull(ContentEncoding.decode("br"));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            buf.append("{\"id\": ").append(i).append("}\n");
+        }
+        byte[] data = buf.toString().getBytes(StandardCharsets.UTF_8);
+
+        for (ContentEncoding encoding : ContentEncoding.values()) {
+            int[] levels = {Deflater.BEST_SPEED, Deflater.DEFAULT_COMPRESSION, Deflater.BEST_COMPRESSION};
+
+            for (int level : levels) {
+                ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+                try (OutputStream outputStream = encoding.getOutputStream(encoded, level)) {
+                    outputStream.write(data);
+                }
+
+                ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+                try (InputStream inputStream = encoding.getInputStream(
+                    new ByteArrayInputStream(encoded.toByteArray()))) {
+                    byte[] buffer = new byte[512];
+                    int n;
+                    while ((n = inputStream.read(buffer)) != -1) {
+                        decoded.write(buffer, 0, n);
+                    }
+                }
+
+                assertArrayEquals(data, decoded.toByteArray());
+            }
+        }
+    }
+}
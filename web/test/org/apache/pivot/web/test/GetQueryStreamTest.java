@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.serialization.CSVSerializer;
+import org.apache.pivot.web.GetQuery;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class GetQueryStreamTest {
+    private static HttpServer server = null;
+
+    private static final int ROW_COUNT = 100000;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+
+        server.createContext("/rows.json", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(),
+                StandardCharsets.UTF_8))) {
+                writer.write('[');
+                for (int i = 0; i < ROW_COUNT; i++) {
+                    if (i > 0) {
+                        writer.write(",\n");
+                    }
+                    writer.write("{\"id\": " + i + ", \"name\": \"Row " + i + "\", \"tags\": [\"a\", \"b\"]}");
+                }
+                writer.write(']');
+            }
+        });
+
+        server.createContext("/rows.csv", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(),
+                StandardCharsets.ISO_8859_1))) {
+                writer.write("id,name\r\n");
+                for (int i = 0; i < ROW_COUNT; i++) {
+                    writer.write(i + ",Row " + i + "\r\n");
+                }
+            }
+        });
+
+        server.start();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.stop(0);
+    }
+
+    private static GetQuery newQuery(final String path) {
+        return new GetQuery("localhost", server.getAddress().getPort(), path, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object getValue(final Object item, final String key) {
+        return ((Map<String, Object>) item).get(key);
+    }
+
+    private static void testStream(final GetQuery query, final String name) throws Exception {
+        ExecutorService callbackExecutor = Executors.newSingleThreadExecutor();
+        List<Object> target = new ArrayList<>();
+        long[] firstBatchTime = new long[1];
+        int[] firstBatchLength = new int[1];
+
+        query.setStreamTarget(target, runnable -> callbackExecutor.execute(() -> {
+            runnable.run();
+
+            if (firstBatchTime[0] == 0) {
+                firstBatchTime[0] = System.nanoTime();
+                firstBatchLength[0] = target.getLength();
+            }
+        }));
+
+        long start = System.nanoTime();
+        Object result = query.execute();
+        long end = System.nanoTime();
+
+        // All of the items have been added by the time execute() returns
+        assertEquals(ROW_COUNT, target.getLength());
+        assertEquals(ROW_COUNT, ((List<?>) result).getLength());
+        for (int i = 0; i < ROW_COUNT; i += 997) {
+            assertEquals("Row " + i, getValue(target.get(i), "name"));
+        }
+
+        assertEquals(32, firstBatchLength[0]);
+
+        callbackExecutor.shutdown();
+
+        System.out.format("%s: first batch after %.1f ms, %d items after %.1f ms%n", name,
+            (firstBatchTime[0] - start) / 1e6, ROW_COUNT, (end - start) / 1e6);
+    }
+
+    @Test
+    public void testJSONStream() throws Exception {
+        testStream(newQuery("/rows.json"), "JSON");
+    }
+
+    @Test
+    public void testCSVStream() throws Exception {
+        GetQuery query = newQuery("/rows.csv");
+        query.setSerializer(new CSVSerializer());
+
+        testStream(query, "CSV");
+    }
+
+    @Test
+    public void testNotStreamed() throws Exception {
+        List<?> result = (List<?>) newQuery("/rows.json").execute();
+        assertEquals(ROW_COUNT, result.getLength());
+    }
+
+    @Test
+    public void testBackPressure() throws Exception {
+        // Batches are only run when the test says so
+        ConcurrentLinkedQueue<Runnable> batches = new ConcurrentLinkedQueue<>();
+        List<Object> target = new ArrayList<>();
+
+        GetQuery query = newQuery("/rows.json");
+        query.setBatchSize(100);
+        query.setMaxPendingBatches(2);
+        query.setStreamTarget(target, batches::add);
+
+        ExecutorService queryExecutor = Executors.newSingleThreadExecutor();
+        Future<Object> future = queryExecutor.submit(() -> query.execute());
+
+        while (batches.size() < 2) {
+            Thread.sleep(10);
+        }
+
+        // Parsing pauses while two batches are pending
+        Thread.sleep(200);
+        assertEquals(2, batches.size());
+        assertEquals(0, target.getLength());
+
+        int batchCount = 0;
+        while (!future.isDone() || !batches.isEmpty()) {
+            Runnable batch = batches.poll();
+            if (batch == null) {
+                Thread.sleep(1);
+            } else {
+                batch.run();
+                batchCount++;
+
+                assertTrue(batches.size() <= 2);
+            }
+        }
+
+        future.get(10, TimeUnit.SECONDS);
+        queryExecutor.shutdown();
+
+        assertEquals(ROW_COUNT, target.getLength());
+        assertEquals(0, getValue(target.get(0), "id"));
+        assertEquals(ROW_COUNT - 1, getValue(target.get(ROW_COUNT - 1), "id"));
+        assertTrue(batchCount > ROW_COUNT / 100);
+    }
+}
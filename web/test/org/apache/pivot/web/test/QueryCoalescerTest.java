@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pivot.util.concurrent.AbortException;
+import org.apache.pivot.util.concurrent.Task;
+import org.apache.pivot.util.concurrent.TaskListener;
+import org.apache.pivot.web.GetQuery;
+import org.apache.pivot.web.QueryCoalescer;
+import org.apache.pivot.web.QueryException;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class QueryCoalescerTest {
+    private static HttpServer server = null;
+    private static AtomicInteger requestCount = new AtomicInteger();
+
+    private static final int QUERY_COUNT = 8;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+
+        // Responds slowly, so that the queries overlap
+        server.createContext("/slow", exchange -> {
+            requestCount.incrementAndGet();
+
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException exception) {
+                // No-op
+            }
+
+            byte[] body = ("{\"query\": \"" + exchange.getRequestURI().getQuery() + "\"}")
+                .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("X-Request", String.valueOf(requestCount.get()));
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+
+        server.createContext("/error", exchange -> {
+            requestCount.incrementAndGet();
+
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException exception) {
+                // No-op
+            }
+
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+
+        server.start();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.stop(0);
+    }
+
+    private static GetQuery newQuery(final QueryCoalescer coalescer, final String path) {
+        GetQuery query = new GetQuery("localhost", server.getAddress().getPort(), path, false);
+        query.setCoalescer(coalescer);
+
+        return query;
+    }
+
+    /**
+     * Executes identical queries at the same time and waits for all of them.
+     */
+    private static GetQuery[] executeAll(final QueryCoalescer coalescer, final String path,
+        final Object[] results, final Throwable[] faults) throws InterruptedException {
+        GetQuery[] queries = new GetQuery[QUERY_COUNT];
+        CountDownLatch latch = new CountDownLatch(QUERY_COUNT);
+
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            int index = i;
+
+            queries[i] = newQuery(coalescer, path);
+            queries[i].getParameters().put("a", "1");
+            queries[i].execute(new TaskListener<Object>() {
+                @Override
+                public void taskExecuted(final Task<Object> task) {
+                    results[index] = task.getResult();
+                    latch.countDown();
+                }
+
+                @Override
+                public void executeFailed(final Task<Object> task) {
+                    faults[index] = task.getFault();
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        return queries;
+    }
+
+    @Test
+    public void testInFlight() throws Exception {
+        QueryCoalescer coalescer = new QueryCoalescer();
+        Object[] results = new Object[QUERY_COUNT];
+        Throwable[] faults = new Throwable[QUERY_COUNT];
+        requestCount.set(0);
+
+        GetQuery[] queries = executeAll(coalescer, "/slow", results, faults);
+
+        // One request, one parsed result, fanned out to every listener
+        assertEquals(1, requestCount.get());
+        assertEquals(1, coalescer.getRequestCount());
+        assertEquals(QUERY_COUNT - 1, coalescer.getSharedCount());
+
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            assertNotNull(results[i]);
+            assertSame(results[0], results[i]);
+            assertEquals(200, queries[i].getStatus());
+            assertEquals("1", queries[i].getResponseHeaders().get("X-Request"));
+        }
+
+        System.out.println(QUERY_COUNT + " concurrent queries sent " + coalescer.getRequestCount() + " request.");
+
+        // Without a memo time, a later query sends its own request
+        newQuery(coalescer, "/slow").execute();
+        assertEquals(2, requestCount.get());
+    }
+
+    @Test
+    public void testDistinctQueries() throws Exception {
+        QueryCoalescer coalescer = new QueryCoalescer(60000);
+        requestCount.set(0);
+
+        newQuery(coalescer, "/slow").execute();
+
+        GetQuery query = newQuery(coalescer, "/slow");
+        query.getParameters().put("b", "2");
+        query.execute();
+
+        query = newQuery(coalescer, "/slow");
+        query.getRequestHeaders().put("Accept-Language", "fr");
+        query.execute();
+
+        assertEquals(3, requestCount.get());
+        assertEquals(0, coalescer.getSharedCount());
+    }
+
+    @Test
+    public void testMemo() throws Exception {
+        QueryCoalescer coalescer = new QueryCoalescer(60000);
+        requestCount.set(0);
+
+        Object result = newQuery(coalescer, "/slow").execute();
+        assertSame(result, newQuery(coalescer, "/slow").execute());
+        assertEquals(1, requestCount.get());
+
+        coalescer.clear();
+        newQuery(coalescer, "/slow").execute();
+        assertEquals(2, requestCount.get());
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        QueryCoalescer coalescer = new QueryCoalescer(60000);
+        Object[] results = new Object[QUERY_COUNT];
+        Throwable[] faults = new Throwable[QUERY_COUNT];
+        requestCount.set(0);
+
+        executeAll(coalescer, "/error", results, faults);
+        assertEquals(1, requestCount.get());
+
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            assertEquals(500, ((QueryException) faults[i]).getStatus());
+        }
+
+        // Failures are not remembered
+        try {
+            newQuery(coalescer, "/error").execute();
+            fail();
+        } catch (QueryException exception) {
+            assertEquals(500, exception.getStatus());
+        }
+
+        assertEquals(2, requestCount.get());
+    }
+
+    @Test
+    public void testLeaderAborted() throws Exception {
+        QueryCoalescer coalescer = new QueryCoalescer();
+        requestCount.set(0);
+
+        GetQuery leader = newQuery(coalescer, "/slow");
+        CountDownLatch leaderDone = new CountDownLatch(1);
+        Throwable[] leaderFault = new Throwable[1];
+        leader.execute(new TaskListener<Object>() {
+            @Override
+            public void taskExecuted(final Task<Object> task) {
+                leaderDone.countDown();
+            }
+
+            @Override
+            public void executeFailed(final Task<Object> task) {
+                leaderFault[0] = task.getFault();
+                leaderDone.countDown();
+            }
+        });
+
+        while (requestCount.get() == 0) {
+            Thread.sleep(10);
+        }
+
+        // Queries that joined the aborted request send it again and succeed
+        int followerCount = 3;
+        CountDownLatch followersDone = new CountDownLatch(followerCount);
+        Object[] results = new Object[followerCount];
+        Throwable[] faults = new Throwable[followerCount];
+
+        for (int i = 0; i < followerCount; i++) {
+            int index = i;
+            newQuery(coalescer, "/slow").execute(new TaskListener<Object>() {
+                @Override
+                public void taskExecuted(final Task<Object> task) {
+                    results[index] = task.getResult();
+                    followersDone.countDown();
+                }
+
+                @Override
+                public void executeFailed(final Task<Object> task) {
+                    faults[index] = task.getFault();
+                    followersDone.countDown();
+                }
+            });
+        }
+
+        while (coalescer.getSharedCount() < followerCount) {
+            Thread.sleep(10);
+        }
+
+        leader.abort();
+
+        assertTrue(leaderDone.await(10, TimeUnit.SECONDS));
+        assertTrue(leaderFault[0] instanceof AbortException);
+
+        assertTrue(followersDone.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < followerCount; i++) {
+            assertNull(faults[i]);
+            assertNotNull(results[i]);
+        }
+
+        assertEquals(2, requestCount.get());
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.util.concurrent.AbortException;
+import org.apache.pivot.util.concurrent.Task;
+import org.apache.pivot.util.concurrent.TaskListener;
+import org.apache.pivot.util.concurrent.TimeoutException;
+import org.apache.pivot.web.ContentEncoding;
+import org.apache.pivot.web.GetQuery;
+import org.apache.pivot.web.HttpClientTransport;
+import org.apache.pivot.web.PostQuery;
+import org.apache.pivot.web.Query;
+import org.apache.pivot.web.QueryException;
+import org.apache.pivot.web.QueryTransport;
+import org.apache.pivot.web.URLConnectionTransport;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class QueryTransportTest {
+    private static HttpServer server = null;
+    private static ExecutorService serverExecutor = null;
+    private static CountDownLatch slowResponses = new CountDownLatch(1);
+
+    private static final String RESPONSE = "{\"a\": 1, \"b\": \"two\"}";
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        serverExecutor = Executors.newFixedThreadPool(16);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(serverExecutor);
+
+        server.createContext("/data", exchange -> {
+            byte[] body = RESPONSE.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add("X-Echo", String.valueOf(
+                exchange.getRequestHeaders().getFirst("X-Echo")));
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+
+        server.createContext("/items", exchange -> {
+            byte[] body = readBody(exchange);
+            exchange.getResponseHeaders().add("Location", "/items/" + body.length);
+            exchange.sendResponseHeaders(201, -1);
+            exchange.close();
+        });
+
+        // Compresses the response with the coding the client prefers, and
+        // echoes the request body's coding and decoded length
+        server.createContext("/compressed", exchange -> {
+            ContentEncoding requestEncoding = ContentEncoding.decode(
+                exchange.getRequestHeaders().getFirst(ContentEncoding.CONTENT_ENCODING_HEADER));
+            byte[] requestBody;
+            try (InputStream inputStream = requestEncoding.getInputStream(
+                new ByteArrayInputStream(readBody(exchange)))) {
+                requestBody = readFully(inputStream);
+            }
+
+            ContentEncoding encoding = ContentEncoding.negotiate(
+                exchange.getRequestHeaders().getFirst(ContentEncoding.ACCEPT_ENCODING_HEADER));
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (OutputStream outputStream = encoding.getOutputStream(body, Deflater.BEST_SPEED)) {
+                outputStream.write(getLargeResponse().getBytes(StandardCharsets.UTF_8));
+            }
+
+            exchange.getResponseHeaders().add(ContentEncoding.CONTENT_ENCODING_HEADER, encoding.getName());
+            exchange.getResponseHeaders().add("Location", "/compressed/" + requestEncoding.getName()
+                + "/" + requestBody.length);
+            exchange.sendResponseHeaders(requestBody.length > 0 ? 201 : 200, body.size());
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                body.writeTo(outputStream);
+            }
+        });
+
+        // Sends the start of a response, then stalls until the test ends
+        server.createContext("/slow", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write('[');
+                outputStream.flush();
+
+                slowResponses.await(10, TimeUnit.SECONDS);
+                outputStream.write(']');
+            } catch (InterruptedException | IOException exception) {
+                // The client has gone
+            }
+        });
+
+        server.createContext("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+
+        server.start();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        slowResponses.countDown();
+        server.stop(0);
+        serverExecutor.shutdown();
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        try (InputStream inputStream = exchange.getRequestBody()) {
+            return readFully(inputStream);
+        }
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        byte[] buffer = new byte[1024];
+        int n;
+        while ((n = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, n);
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    private static String getLargeResponse() {
+        StringBuilder buf = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            buf.append((i == 0) ? "" : ",").append("{\"id\": ").append(i).append(", \"name\": \"item\"}");
+        }
+
+        return buf.append(']').toString();
+    }
+
+    private static int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void testTransport(QueryTransport transport) throws QueryException {
+        GetQuery getQuery = new GetQuery("localhost", getPort(), "/data", false);
+        getQuery.setTransport(transport);
+        getQuery.getRequestHeaders().put("X-Echo", "hello");
+
+        Map<String, Object> result = (Map<String, Object>) getQuery.execute();
+        assertEquals(1, result.get("a"));
+        assertEquals("two", result.get("b"));
+        assertEquals(Query.Status.OK, getQuery.getStatus());
+        assertEquals("hello", getQuery.getResponseHeaders().get("x-echo"));
+        assertEquals(RESPONSE.length(), getQuery.getBytesExpected());
+        assertEquals(RESPONSE.length(), getQuery.getBytesReceived());
+
+        PostQuery postQuery = new PostQuery("localhost", getPort(), "/items", false);
+        postQuery.setTransport(transport);
+        postQuery.setValue("value");
+
+        assertEquals("/items/7", postQuery.execute().getPath());
+        assertEquals(7, postQuery.getBytesSent());
+
+        // Compressed responses are decoded; the bytes received are those sent
+        GetQuery compressedQuery = new GetQuery("localhost", getPort(), "/compressed", false);
+        compressedQuery.setTransport(transport);
+        List<?> items = (List<?>) compressedQuery.execute();
+        assertEquals(1000, items.getLength());
+        assertEquals("gzip", compressedQuery.getResponseHeaders().get(ContentEncoding.CONTENT_ENCODING_HEADER));
+        assertEquals(compressedQuery.getBytesExpected(), compressedQuery.getBytesReceived());
+        assertTrue(compressedQuery.getBytesReceived() < getLargeResponse().length() / 5);
+
+        compressedQuery.setAcceptCompression(false);
+        assertEquals(1000, ((List<?>) compressedQuery.execute()).getLength());
+        assertEquals("identity", compressedQuery.getResponseHeaders().get(ContentEncoding.CONTENT_ENCODING_HEADER));
+
+        compressedQuery.getRequestHeaders().put(ContentEncoding.ACCEPT_ENCODING_HEADER, "deflate");
+        compressedQuery.setAcceptCompression(true);
+        assertEquals(1000, ((List<?>) compressedQuery.execute()).getLength());
+        assertEquals("deflate", compressedQuery.getResponseHeaders().get(ContentEncoding.CONTENT_ENCODING_HEADER));
+
+        PostQuery compressedPostQuery = new PostQuery("localhost", getPort(), "/compressed", false);
+        compressedPostQuery.setTransport(transport);
+        compressedPostQuery.setRequestEncoding(ContentEncoding.GZIP);
+        compressedPostQuery.setCompressionLevel(Deflater.BEST_COMPRESSION);
+        String value = getLargeResponse().replace('"', '_');
+        compressedPostQuery.setValue(value);
+        assertEquals("/compressed/gzip/" + (value.length() + 2), compressedPostQuery.execute().getPath());
+        assertTrue(compressedPostQuery.getBytesSent() < value.length() / 5);
+
+        GetQuery missingQuery = new GetQuery("localhost", getPort(), "/missing", false);
+        missingQuery.setTransport(transport);
+        try {
+            missingQuery.execute();
+            fail("Expected QueryException");
+        } catch (QueryException exception) {
+            assertEquals(Query.Status.NOT_FOUND, exception.getStatus());
+        }
+    }
+
+    @Test
+    public void testURLConnectionTransport() throws QueryException {
+        testTransport(new URLConnectionTransport());
+    }
+
+    @Test
+    public void testHttpClientTransport() throws QueryException {
+        testTransport(HttpClientTransport.getSharedInstance());
+    }
+
+    /**
+     * Executes a query in the background and returns its fault, once it has
+     * failed.
+     */
+    private static Throwable executeSlowQuery(QueryTransport transport, long timeout, boolean abort)
+        throws Exception {
+        GetQuery query = new GetQuery("localhost", getPort(), "/slow", false);
+        query.setTransport(transport);
+        if (timeout != Long.MAX_VALUE) {
+            query.setTimeout(timeout);
+        }
+
+        CountDownLatch done = new CountDownLatch(1);
+        query.execute(new TaskListener<Object>() {
+            @Override
+            public void taskExecuted(Task<Object> task) {
+                done.countDown();
+            }
+
+            @Override
+            public void executeFailed(Task<Object> task) {
+                done.countDown();
+            }
+        });
+
+        if (abort) {
+            // Wait until the response has started to arrive
+            for (int i = 0; i < 500 && query.getBytesReceived() == 0; i++) {
+                Thread.sleep(10);
+            }
+
+            query.abort();
+        }
+
+        long start = System.nanoTime();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        long time = System.nanoTime() - start;
+
+        System.out.format("%s: %s after %.1f ms%n", transport.getClass().getSimpleName(),
+            query.getFault().getClass().getSimpleName(), time / 1e6);
+
+        return query.getFault();
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        // Blocked connections are abandoned at the deadline
+        QueryTransport[] transports = {new URLConnectionTransport(), new HttpClientTransport()};
+
+        for (QueryTransport transport : transports) {
+            assertTrue(executeSlowQuery(transport, 300, false) instanceof TimeoutException);
+        }
+
+        // A blocked read of a chunked response cannot be interrupted with
+        // HttpURLConnection, so only the client transport ends it at once
+        assertTrue(executeSlowQuery(new HttpClientTransport(), Long.MAX_VALUE, true) instanceof AbortException);
+    }
+
+    @Test
+    public void testBodyDeadline() throws Exception {
+        // The client transport ends a stalled body at the query's deadline,
+        // without relying on the query's own timer
+        GetQuery query = new GetQuery("localhost", getPort(), "/slow", false) {
+            @Override
+            public long getRemainingTime() {
+                return 300;
+            }
+        };
+
+        QueryTransport.Exchange exchange = new HttpClientTransport().open(query, Query.Method.GET,
+            query.getLocation(), query.getRequestHeaders(), null);
+
+        long start = System.nanoTime();
+        try (InputStream inputStream = exchange.getInputStream()) {
+            assertEquals('[', inputStream.read());
+            inputStream.read();
+            fail("Expected HttpTimeoutException");
+        } catch (HttpTimeoutException exception) {
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static long runConcurrentQueries(QueryTransport transport, int count,
+        ExecutorService executorService) throws Exception {
+        ArrayList<Future<Object>> futures = new ArrayList<>(count);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            GetQuery query = new GetQuery("localhost", getPort(), "/data", false);
+            query.setTransport(transport);
+            futures.add(executorService.submit(() -> query.execute()));
+        }
+
+        for (Future<Object> future : futures) {
+            assertTrue(future.get() instanceof Map<?, ?>);
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void testThroughput() throws Exception {
+        final int count = 2000;
+        ExecutorService executorService = Executors.newFixedThreadPool(50);
+
+        try {
+            QueryTransport[] transports = {new URLConnectionTransport(), new HttpClientTransport()};
+
+            for (QueryTransport transport : transports) {
+                // Warm up
+                runConcurrentQueries(transport, count / 10, executorService);
+
+                long elapsed = runConcurrentQueries(transport, count, executorService);
+                System.out.format("%s: %d queries in %d ms (%.0f queries/s)%n",
+                    transport.getClass().getSimpleName(), count, elapsed / 1_000_000,
+                    count / (elapsed / 1e9));
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+}
@@ -1210,6 +1210,11 @@ public class TerraListViewSkin extends ComponentSkin implements ListView.Skin, L
         invalidateComponent();
     }
 
+    @Override
+    public void itemsInserted(final ListView listView, final int index, final int count) {
+        invalidateComponent();
+    }
+
     @Override
     public void itemsRemoved(final ListView listView, final int index, final int count) {
         if (highlightIndex >= index) {
@@ -1223,6 +1228,11 @@ public class TerraListViewSkin extends ComponentSkin implements ListView.Skin, L
         invalidateComponent();
     }
 
+    @Override
+    public void itemsUpdated(final ListView listView, final int index, final int count) {
+        invalidateComponent();
+    }
+
     @Override
     public void itemsCleared(final ListView listView) {
         highlightIndex = -1;
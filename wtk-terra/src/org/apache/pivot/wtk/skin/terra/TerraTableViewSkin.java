@@ -1529,6 +1529,11 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
         invalidateComponent();
     }
 
+    @Override
+    public void rowsInserted(final TableView tableView, final int index, final int count) {
+        invalidateComponent();
+    }
+
     @Override
     public void rowsRemoved(final TableView tableView, final int index, final int count) {
         invalidateComponent();
@@ -1543,6 +1548,15 @@ public class TerraTableViewSkin extends ComponentSkin implements TableView.Skin,
         }
     }
 
+    @Override
+    public void rowsUpdated(final TableView tableView, final int index, final int count) {
+        if (variableRowHeight || defaultWidthColumnCount > 0) {
+            invalidateComponent();
+        } else if (count > 0) {
+            repaintComponent(getRowBounds(index).union(getRowBounds(index + count - 1)));
+        }
+    }
+
     @Override
     public void rowsCleared(final TableView listView) {
         invalidateComponent();
@@ -16,7 +16,7 @@
  */
 package org.apache.pivot.wtk;
 
-import org.apache.pivot.util.ListenerList;
+import org.apache.pivot.util.CopyOnWriteListenerList;
 
 /**
  * Component class listener interface.
@@ -25,7 +25,7 @@ public interface ComponentClassListener {
     /**
      * Component class listeners.
      */
-    public static class Listeners extends ListenerList<ComponentClassListener>
+    public static class Listeners extends CopyOnWriteListenerList<ComponentClassListener>
         implements ComponentClassListener {
         @Override
         public void focusedComponentChanged(Component previousFocusedComponent) {
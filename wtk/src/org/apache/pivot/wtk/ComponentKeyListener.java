@@ -17,7 +17,7 @@
 package org.apache.pivot.wtk;
 
 import org.apache.pivot.util.BooleanResult;
-import org.apache.pivot.util.ListenerList;
+import org.apache.pivot.util.CopyOnWriteListenerList;
 
 /**
  * Component key listener interface.
@@ -26,7 +26,7 @@ public interface ComponentKeyListener {
     /**
      * Component key listeners.
      */
-    public static class Listeners extends ListenerList<ComponentKeyListener>
+    public static class Listeners extends CopyOnWriteListenerList<ComponentKeyListener>
         implements ComponentKeyListener {
         @Override
         public boolean keyTyped(Component component, char character) {
@@ -16,7 +16,7 @@
  */
 package org.apache.pivot.wtk;
 
-import org.apache.pivot.util.ListenerList;
+import org.apache.pivot.util.CopyOnWriteListenerList;
 
 /**
  * Component listener interface.
@@ -25,7 +25,7 @@ public interface ComponentListener {
     /**
      * Component listeners.
      */
-    public static class Listeners extends ListenerList<ComponentListener> implements
+    public static class Listeners extends CopyOnWriteListenerList<ComponentListener> implements
         ComponentListener {
         @Override
         public void parentChanged(Component component, Container previousParent) {
@@ -17,7 +17,7 @@
 package org.apache.pivot.wtk;
 
 import org.apache.pivot.util.BooleanResult;
-import org.apache.pivot.util.ListenerList;
+import org.apache.pivot.util.CopyOnWriteListenerList;
 
 /**
  * Component mouse button listener interface.
@@ -26,7 +26,7 @@ public interface ComponentMouseButtonListener {
     /**
      * Component mouse button listeners.
      */
-    public static class Listeners extends ListenerList<ComponentMouseButtonListener>
+    public static class Listeners extends CopyOnWriteListenerList<ComponentMouseButtonListener>
         implements ComponentMouseButtonListener {
         @Override
         public boolean mouseDown(Component component, Mouse.Button button, int x, int y) {
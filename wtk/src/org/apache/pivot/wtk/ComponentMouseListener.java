@@ -17,7 +17,7 @@
 package org.apache.pivot.wtk;
 
 import org.apache.pivot.util.BooleanResult;
-import org.apache.pivot.util.ListenerList;
+import org.apache.pivot.util.CopyOnWriteListenerList;
 
 /**
  * Component mouse listener interface. Component mouse events are "bubbling" and
@@ -27,7 +27,7 @@ public interface ComponentMouseListener {
     /**
      * Component mouse listeners.
      */
-    public static class Listeners extends ListenerList<ComponentMouseListener>
+    public static class Listeners extends CopyOnWriteListenerList<ComponentMouseListener>
         implements ComponentMouseListener {
         @Override
         public boolean mouseMove(Component component, int x, int y) {
@@ -17,7 +17,7 @@
 package org.apache.pivot.wtk;
 
 import org.apache.pivot.util.BooleanResult;
-import org.apache.pivot.util.ListenerList;
+import org.apache.pivot.util.CopyOnWriteListenerList;
 
 /**
  * Component mouse wheel listener interface.
@@ -26,7 +26,7 @@ public interface ComponentMouseWheelListener {
     /**
      * Mouse wheel listeners.
      */
-    public static class Listeners extends ListenerList<ComponentMouseWheelListener>
+    public static class Listeners extends CopyOnWriteListenerList<ComponentMouseWheelListener>
         implements ComponentMouseWheelListener {
         @Override
         public boolean mouseWheel(Component component, Mouse.ScrollType scrollType,
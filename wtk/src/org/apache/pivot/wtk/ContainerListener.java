@@ -17,7 +17,7 @@
 package org.apache.pivot.wtk;
 
 import org.apache.pivot.collections.Sequence;
-import org.apache.pivot.util.ListenerList;
+import org.apache.pivot.util.CopyOnWriteListenerList;
 
 /**
  * Container listener interface.
@@ -26,7 +26,7 @@ public interface ContainerListener {
     /**
      * Container listeners.
      */
-    public static class Listeners extends ListenerList<ContainerListener> implements
+    public static class Listeners extends CopyOnWriteListenerList<ContainerListener> implements
         ContainerListener {
         @Override
         public void componentInserted(Container container, int index) {
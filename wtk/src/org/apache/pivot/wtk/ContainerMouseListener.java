@@ -17,7 +17,7 @@
 package org.apache.pivot.wtk;
 
 import org.apache.pivot.util.BooleanResult;
-import org.apache.pivot.util.ListenerList;
+import org.apache.pivot.util.CopyOnWriteListenerList;
 
 /**
  * Container mouse listener interface. Container mouse events are "tunneling"
@@ -27,7 +27,7 @@ public interface ContainerMouseListener {
     /**
      * Container mouse listeners.
      */
-    public static class Listeners extends ListenerList<ContainerMouseListener>
+    public static class Listeners extends CopyOnWriteListenerList<ContainerMouseListener>
         implements ContainerMouseListener {
         @Override
         public boolean mouseMove(Container container, int x, int y) {
@@ -252,8 +252,31 @@ public class ListView extends Component {
     private ListListener<Object> listDataListener = new ListListener<Object>() {
         @Override
         public void itemInserted(List<Object> list, int index) {
+            int updated = insertIndexes(index, 1);
+
+            // Notify listeners that items were inserted
+            listViewItemListeners.itemInserted(ListView.this, index);
+
+            if (updated > 0) {
+                listViewSelectionListeners.selectedRangesChanged(ListView.this, getSelectedRanges());
+            }
+        }
+
+        @Override
+        public void itemsInserted(List<Object> list, int index, int count) {
+            int updated = insertIndexes(index, count);
+
+            // Notify listeners that items were inserted
+            listViewItemListeners.itemsInserted(ListView.this, index, count);
+
+            if (updated > 0) {
+                listViewSelectionListeners.selectedRangesChanged(ListView.this, getSelectedRanges());
+            }
+        }
+
+        private int insertIndexes(int index, int count) {
             // Increment selected ranges
-            int updated = rangeSelection.insertIndex(index);
+            int updated = rangeSelection.insertIndexes(index, count);
 
             // Increment checked and mixed indexes
             int i = ArrayList.binarySearch(checkedIndexes, Integer.valueOf(index));
@@ -263,7 +286,7 @@ public class ListView extends Component {
 
             int n = checkedIndexes.getLength();
             while (i < n) {
-                checkedIndexes.update(i, Integer.valueOf(checkedIndexes.get(i).intValue() + 1));
+                checkedIndexes.update(i, Integer.valueOf(checkedIndexes.get(i).intValue() + count));
                 i++;
             }
 
@@ -275,17 +298,12 @@ public class ListView extends Component {
 
                 n = mixedIndexes.getLength();
                 while (i < n) {
-                    mixedIndexes.update(i, Integer.valueOf(mixedIndexes.get(i).intValue() + 1));
+                    mixedIndexes.update(i, Integer.valueOf(mixedIndexes.get(i).intValue() + count));
                     i++;
                 }
             }
 
-            // Notify listeners that items were inserted
-            listViewItemListeners.itemInserted(ListView.this, index);
-
-            if (updated > 0) {
-                listViewSelectionListeners.selectedRangesChanged(ListView.this, getSelectedRanges());
-            }
+            return updated;
         }
 
         @Override
@@ -362,6 +380,11 @@ public class ListView extends Component {
             listViewItemListeners.itemUpdated(ListView.this, index);
         }
 
+        @Override
+        public void itemsUpdated(List<Object> list, int index, Sequence<Object> previousItems) {
+            listViewItemListeners.itemsUpdated(ListView.this, index, previousItems.getLength());
+        }
+
         @Override
         public void listCleared(List<Object> list) {
             int cleared = rangeSelection.getLength();
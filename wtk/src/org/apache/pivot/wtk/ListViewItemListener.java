@@ -32,6 +32,11 @@ public interface ListViewItemListener {
             forEach(listener -> listener.itemInserted(listView, index));
         }
 
+        @Override
+        public void itemsInserted(ListView listView, int index, int count) {
+            forEach(listener -> listener.itemsInserted(listView, index, count));
+        }
+
         @Override
         public void itemsRemoved(ListView listView, int index, int count) {
             forEach(listener -> listener.itemsRemoved(listView, index, count));
@@ -42,6 +47,11 @@ public interface ListViewItemListener {
             forEach(listener -> listener.itemUpdated(listView, index));
         }
 
+        @Override
+        public void itemsUpdated(ListView listView, int index, int count) {
+            forEach(listener -> listener.itemsUpdated(listView, index, count));
+        }
+
         @Override
         public void itemsCleared(ListView listView) {
             forEach(listener -> listener.itemsCleared(listView));
@@ -94,6 +104,20 @@ public interface ListViewItemListener {
     default void itemInserted(ListView listView, int index) {
     }
 
+    /**
+     * Called when a range of items has been inserted into the list view. The
+     * default implementation calls {@link #itemInserted} for each item.
+     *
+     * @param listView The source of the event.
+     * @param index The index of the first item that was inserted.
+     * @param count The number of items that were inserted.
+     */
+    default void itemsInserted(ListView listView, int index, int count) {
+        for (int i = 0; i < count; i++) {
+            itemInserted(listView, index + i);
+        }
+    }
+
     /**
      * Called when items have been removed from the list view.
      *
@@ -114,6 +138,20 @@ public interface ListViewItemListener {
     default void itemUpdated(ListView listView, int index) {
     }
 
+    /**
+     * Called when a range of items in the list view has been updated. The
+     * default implementation calls {@link #itemUpdated} for each item.
+     *
+     * @param listView The source of the event.
+     * @param index The index of the first item that was updated.
+     * @param count The number of items that were updated.
+     */
+    default void itemsUpdated(ListView listView, int index, int count) {
+        for (int i = 0; i < count; i++) {
+            itemUpdated(listView, index + i);
+        }
+    }
+
     /**
      * Called when the items in a list view have been cleared.
      *
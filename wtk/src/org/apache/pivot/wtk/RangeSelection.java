@@ -279,6 +279,18 @@ public class RangeSelection {
      * @return The number of ranges that were updated.
      */
     public int insertIndex(int index) {
+        return insertIndexes(index, 1);
+    }
+
+    /**
+     * Inserts a range of indexes into the span sequence (e.g. when several
+     * items are inserted into the model data at once).
+     *
+     * @param index The location to insert into the sequence.
+     * @param count The number of indexes to insert.
+     * @return The number of ranges that were updated.
+     */
+    public int insertIndexes(int index, int count) {
         int updated = 0;
 
         // Get the insertion point for the range corresponding to the given
@@ -296,7 +308,7 @@ public class RangeSelection {
             // If the inserted index falls within the current range, increment
             // the endpoint only
             if (selectedRange.start < index) {
-                selectedRanges.update(i, selectedRange.lengthen(1));
+                selectedRanges.update(i, selectedRange.lengthen(count));
 
                 // Start incrementing range bounds beginning at the next range
                 i++;
@@ -307,7 +319,7 @@ public class RangeSelection {
         int n = selectedRanges.getLength();
         while (i < n) {
             Span selectedRange = selectedRanges.get(i);
-            selectedRanges.update(i, selectedRange.offset(1));
+            selectedRanges.update(i, selectedRange.offset(count));
             updated++;
             i++;
         }
@@ -822,6 +822,20 @@ public class TableView extends Component {
             }
         }
 
+        @Override
+        public void itemsInserted(final List<Object> list, final int index, final int count) {
+            // Increment selected ranges
+            int updated = rangeSelection.insertIndexes(index, count);
+
+            // Notify listeners that items were inserted
+            tableViewRowListeners.rowsInserted(TableView.this, index, count);
+
+            if (updated > 0) {
+                tableViewSelectionListeners.selectedRangesChanged(TableView.this,
+                    getSelectedRanges());
+            }
+        }
+
         @Override
         public void itemsRemoved(final List<Object> list, final int index, final Sequence<Object> items) {
             int count = items.getLength();
@@ -854,6 +868,11 @@ public class TableView extends Component {
             tableViewRowListeners.rowUpdated(TableView.this, index);
         }
 
+        @Override
+        public void itemsUpdated(final List<Object> list, final int index, final Sequence<Object> previousItems) {
+            tableViewRowListeners.rowsUpdated(TableView.this, index, previousItems.getLength());
+        }
+
         @Override
         public void listCleared(final List<Object> list) {
             int cleared = rangeSelection.getLength();
@@ -32,6 +32,11 @@ public interface TableViewRowListener {
             forEach(listener -> listener.rowInserted(tableView, index));
         }
 
+        @Override
+        public void rowsInserted(TableView tableView, int index, int count) {
+            forEach(listener -> listener.rowsInserted(tableView, index, count));
+        }
+
         @Override
         public void rowsRemoved(TableView tableView, int index, int count) {
             forEach(listener -> listener.rowsRemoved(tableView, index, count));
@@ -42,6 +47,11 @@ public interface TableViewRowListener {
             forEach(listener -> listener.rowUpdated(tableView, index));
         }
 
+        @Override
+        public void rowsUpdated(TableView tableView, int index, int count) {
+            forEach(listener -> listener.rowsUpdated(tableView, index, count));
+        }
+
         @Override
         public void rowsCleared(TableView tableView) {
             forEach(listener -> listener.rowsCleared(tableView));
@@ -94,6 +104,20 @@ public interface TableViewRowListener {
     default void rowInserted(TableView tableView, int index) {
     }
 
+    /**
+     * Called when a range of rows has been inserted into the table view. The
+     * default implementation calls {@link #rowInserted} for each row.
+     *
+     * @param tableView The source of the event.
+     * @param index The index of the first row that was inserted.
+     * @param count The number of rows that were inserted.
+     */
+    default void rowsInserted(TableView tableView, int index, int count) {
+        for (int i = 0; i < count; i++) {
+            rowInserted(tableView, index + i);
+        }
+    }
+
     /**
      * Called when rows have been removed from the table view.
      *
@@ -114,6 +138,20 @@ public interface TableViewRowListener {
     default void rowUpdated(TableView tableView, int index) {
     }
 
+    /**
+     * Called when a range of rows in the table view has been updated. The
+     * default implementation calls {@link #rowUpdated} for each row.
+     *
+     * @param tableView The source of the event.
+     * @param index The index of the first row that was updated.
+     * @param count The number of rows that were updated.
+     */
+    default void rowsUpdated(TableView tableView, int index, int count) {
+        for (int i = 0; i < count; i++) {
+            rowUpdated(tableView, index + i);
+        }
+    }
+
     /**
      * Called when the rows in a table view have been cleared.
      *
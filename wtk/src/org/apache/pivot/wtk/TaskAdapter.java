@@ -16,17 +16,28 @@
  */
 package org.apache.pivot.wtk;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 import org.apache.pivot.util.Utils;
 import org.apache.pivot.util.concurrent.Task;
 import org.apache.pivot.util.concurrent.TaskListener;
 
 /**
- * Class that forwards task events to the UI thread.
+ * Class that forwards task events to the UI thread. <p> The static
+ * {@link #toCompletableFuture(Task)} method does the same for the future of a
+ * task, and {@link #UI_EXECUTOR} runs the asynchronous stages of any future
+ * on the UI thread.
  */
 public class TaskAdapter<T> implements TaskListener<T> {
     /** The TaskListener that we're adapting. */
     private TaskListener<T> taskListener;
 
+    /**
+     * Executor that queues commands to run on the UI thread.
+     */
+    public static final Executor UI_EXECUTOR = command -> ApplicationContext.queueCallback(command);
+
     /**
      * Creates a new <tt>TaskAdapter</tt> that wraps the specified task listener.
      *
@@ -49,4 +60,37 @@ public class TaskAdapter<T> implements TaskListener<T> {
     public void executeFailed(final Task<T> task) {
         ApplicationContext.queueCallback(() -> taskListener.executeFailed(task));
     }
+
+    /**
+     * Asynchronously executes a task, returning a future that is completed on
+     * the UI thread, so that the stages that depend on it and are not
+     * asynchronous can update the user interface. Cancelling the future
+     * aborts the task.
+     *
+     * @param <T> The type of the task's result.
+     * @param task The task to execute.
+     * @return The future of the task's execution.
+     */
+    public static <T> CompletableFuture<T> toCompletableFuture(final Task<T> task) {
+        Utils.checkNull(task, "task");
+
+        CompletableFuture<T> taskFuture = task.toCompletableFuture();
+        CompletableFuture<T> future = new CompletableFuture<T>() {
+            @Override
+            public boolean cancel(final boolean mayInterruptIfRunning) {
+                taskFuture.cancel(mayInterruptIfRunning);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+
+        taskFuture.whenComplete((result, fault) -> ApplicationContext.queueCallback(() -> {
+            if (fault == null) {
+                future.complete(result);
+            } else {
+                future.completeExceptionally(fault);
+            }
+        }));
+
+        return future;
+    }
 }
@@ -27,8 +27,8 @@ import java.util.Iterator;
 
 import org.apache.pivot.annotations.UnsupportedOperation;
 import org.apache.pivot.collections.ArrayList;
-import org.apache.pivot.collections.LinkedStack;
 import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.collections.immutable.PersistentList;
 import org.apache.pivot.json.JSON;
 import org.apache.pivot.text.CharSpan;
 import org.apache.pivot.util.ImmutableIterator;
@@ -500,7 +500,7 @@ public class TextArea extends Component {
     private BindType textBindType = BindType.BOTH;
     private TextBindMapping textBindMapping = null;
 
-    private LinkedStack<Edit> editHistory = new LinkedStack<>(MAXIMUM_EDIT_HISTORY_LENGTH);
+    private PersistentList<Edit> editHistory = PersistentList.empty();
 
     private TextAreaListener.Listeners textAreaListeners = new TextAreaListener.Listeners();
     private TextAreaContentListener.Listeners textAreaContentListeners = new TextAreaContentListener.Listeners();
@@ -664,7 +664,7 @@ public class TextArea extends Component {
         paragraphsLocal.add(paragraph);
 
         // Clear the edit history
-        editHistory.clear();
+        editHistory = PersistentList.empty();
 
         // Update content
         paragraphSequence.remove(0, paragraphSequence.getLength());
@@ -730,7 +730,7 @@ public class TextArea extends Component {
 
             // Add an insert history item
             if (addToEditHistory) {
-                editHistory.push(new InsertTextEdit(text, index));
+                pushEdit(new InsertTextEdit(text, index));
             }
         }
     }
@@ -747,7 +747,7 @@ public class TextArea extends Component {
         if (count > 0) {
             // Add a remove history item
             if (addToEditHistory) {
-                editHistory.push(new RemoveTextEdit(index, count));
+                pushEdit(new RemoveTextEdit(index, count));
             }
 
             // Identify the leading and trailing paragraph indexes
@@ -886,9 +886,20 @@ public class TextArea extends Component {
         }
     }
 
+    private void pushEdit(Edit edit) {
+        editHistory = editHistory.with(edit);
+
+        // Drop the oldest edit once the history is full
+        if (editHistory.getLength() > MAXIMUM_EDIT_HISTORY_LENGTH) {
+            editHistory = editHistory.without(0);
+        }
+    }
+
     public void undo() {
-        if (editHistory.getDepth() > 0) {
-            Edit edit = editHistory.pop();
+        int length = editHistory.getLength();
+        if (length > 0) {
+            Edit edit = editHistory.get(length - 1);
+            editHistory = editHistory.without(length - 1);
             edit.undo();
         }
     }
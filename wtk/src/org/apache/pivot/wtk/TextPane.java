@@ -24,8 +24,8 @@ import java.io.StringReader;
 import java.net.URL;
 
 import org.apache.pivot.beans.DefaultProperty;
-import org.apache.pivot.collections.LinkedStack;
 import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.collections.immutable.PersistentList;
 import org.apache.pivot.text.AttributedStringCharacterIterator;
 import org.apache.pivot.text.CharSpan;
 import org.apache.pivot.util.ListenerList;
@@ -189,7 +189,7 @@ public class TextPane extends Container {
             }
 
             if (!undoingHistory) {
-                editHistory.push(new TextInsertedEdit(node, offset, characterCount));
+                pushEdit(new TextInsertedEdit(node, offset, characterCount));
             }
 
             if (!bulkOperation) {
@@ -247,7 +247,7 @@ public class TextPane extends Container {
             }
 
             if (!undoingHistory && removedChars != null) {
-                editHistory.push(new TextRemovedEdit(node, offset, removedChars));
+                pushEdit(new TextRemovedEdit(node, offset, removedChars));
             }
 
             if (!bulkOperation) {
@@ -256,7 +256,7 @@ public class TextPane extends Container {
         }
     };
 
-    private LinkedStack<Edit> editHistory = new LinkedStack<>(MAXIMUM_EDIT_HISTORY_LENGTH);
+    private PersistentList<Edit> editHistory = PersistentList.empty();
 
     private TextPaneListener.Listeners textPaneListeners = new TextPaneListener.Listeners();
     private TextPaneCharacterListener.Listeners textPaneCharacterListeners = new TextPaneCharacterListener.Listeners();
@@ -316,7 +316,7 @@ public class TextPane extends Container {
             }
 
             // Clear the edit history
-            editHistory.clear();
+            editHistory = PersistentList.empty();
 
             this.document = document;
 
@@ -758,10 +758,21 @@ public class TextPane extends Container {
         }
     }
 
+    private void pushEdit(Edit edit) {
+        editHistory = editHistory.with(edit);
+
+        // Drop the oldest edit once the history is full
+        if (editHistory.getLength() > MAXIMUM_EDIT_HISTORY_LENGTH) {
+            editHistory = editHistory.without(0);
+        }
+    }
+
     public void undo() {
-        if (editHistory.getDepth() > 0) {
+        int length = editHistory.getLength();
+        if (length > 0) {
             undoingHistory = true;
-            Edit edit = editHistory.pop();
+            Edit edit = editHistory.get(length - 1);
+            editHistory = editHistory.without(length - 1);
             edit.undo();
             undoingHistory = false;
         }